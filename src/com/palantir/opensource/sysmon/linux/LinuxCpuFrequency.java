@@ -0,0 +1,120 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the frequency, thermal throttling and idle
+ * states of one CPU, or of all of them, used by {@link LinuxCpuFrequencyJMXWrapper}.
+ */
+public class LinuxCpuFrequency implements LinuxCpuFrequencyMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String cpu;
+
+	private double frequencyMHz = 0;
+	private double maxFrequencyMHz = 0;
+	private long coreThrottleCount = 0;
+	private long packageThrottleCount = 0;
+	private double coreThrottlesPerSecond = 0;
+	private double packageThrottlesPerSecond = 0;
+	private int throttlingCpuCount = 0;
+	private Map<String, Double> idleResidencyPercentage = Collections.emptyMap();
+	private double deepestIdleResidencyPercentage = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxCpuFrequency(String objectName, String cpu) {
+		this.objectName = objectName;
+		this.cpu = cpu;
+	}
+
+	/**
+	 * Publishes a new reading.
+	 */
+	synchronized void update(double frequencyMHz, double maxFrequencyMHz, long coreThrottleCount,
+	                         long packageThrottleCount) {
+		this.frequencyMHz = frequencyMHz;
+		this.maxFrequencyMHz = maxFrequencyMHz;
+		this.coreThrottleCount = coreThrottleCount;
+		this.packageThrottleCount = packageThrottleCount;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Publishes the rates and residencies since the previous reading.  The map is published as
+	 * passed and must not be modified afterwards.
+	 */
+	synchronized void updateRates(double coreThrottlesPerSecond, double packageThrottlesPerSecond,
+	                              int throttlingCpuCount, Map<String, Double> idleResidencyPercentage,
+	                              double deepestIdleResidencyPercentage) {
+		this.coreThrottlesPerSecond = coreThrottlesPerSecond;
+		this.packageThrottlesPerSecond = packageThrottlesPerSecond;
+		this.throttlingCpuCount = throttlingCpuCount;
+		this.idleResidencyPercentage = idleResidencyPercentage;
+		this.deepestIdleResidencyPercentage = deepestIdleResidencyPercentage;
+	}
+
+	public String getCpu() {
+		return cpu;
+	}
+
+	public synchronized double getFrequencyMHz() {
+		return frequencyMHz;
+	}
+
+	public synchronized double getMaxFrequencyMHz() {
+		return maxFrequencyMHz;
+	}
+
+	public synchronized double getFrequencyPercentage() {
+		return maxFrequencyMHz <= 0 ? 0.0 : 100.0 * frequencyMHz / maxFrequencyMHz;
+	}
+
+	public synchronized long getCoreThrottleCount() {
+		return coreThrottleCount;
+	}
+
+	public synchronized long getPackageThrottleCount() {
+		return packageThrottleCount;
+	}
+
+	public synchronized double getCoreThrottlesPerSecond() {
+		return coreThrottlesPerSecond;
+	}
+
+	public synchronized double getPackageThrottlesPerSecond() {
+		return packageThrottlesPerSecond;
+	}
+
+	public synchronized int getThrottlingCpuCount() {
+		return throttlingCpuCount;
+	}
+
+	public synchronized Map<String, Double> getIdleResidencyPercentage() {
+		return idleResidencyPercentage;
+	}
+
+	public synchronized double getDeepestIdleResidencyPercentage() {
+		return deepestIdleResidencyPercentage;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,449 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors CPU frequency, thermal throttling and idle state residency from sysfs.</p>
+ * <p>
+ * For each CPU, reads the current frequency from <code>cpufreq/scaling_cur_freq</code>, the
+ * thermal throttle counts from <code>thermal_throttle/*_throttle_count</code> and the time spent
+ * in each idle state from <code>cpuidle/state*&#47;time</code>, all under
+ * <code>/sys/devices/system/cpu/cpu&lt;n&gt;</code>.  Deep idle states and throttling both add
+ * latency that utilization doesn't show: a CPU waking from a deep C-state takes tens to hundreds
+ * of microseconds before it runs anything.  Files a CPU doesn't have (for example
+ * <code>thermal_throttle</code> on non-Intel CPUs, or everything in a VM) are skipped.
+ * </p><p>
+ * A host has a handful of these files per CPU, thousands on large hosts, so each is opened once,
+ * when the monitor starts, and re-read with positional reads ({@link PositionalFileReader}).
+ * CPUs that go offline are dropped; CPUs that come online later are not picked up.  Off by
+ * default.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each CPU will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=cpufreq,cpu=&lt;cpu number&gt;</code><br/>
+ * The means and sums over all CPUs will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=cpufreq,cpu=total</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=cpufreq</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.cpufreq.enabled</td>
+ * <td>whether to run this monitor at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_CPUFREQ_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.cpufreq.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_CPUFREQ_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxCpuFrequencyJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxCpuFrequencyJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".cpufreq";
+	/**
+	 * Set to <code>true</code> to turn on this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_CPUFREQ_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_CPUFREQ_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_CPUFREQ_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_CPUFREQ_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * The monitor is off unless asked for.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_CPUFREQ_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_CPUFREQ_ENABLED = false;
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_CPUFREQ_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_CPUFREQ_PERIOD = 5000;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=cpufreq,cpu=";
+
+	static final File DATA_PATH = new File("/sys/devices/system/cpu");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final List<CpuFiles> cpus = new ArrayList<CpuFiles>();
+	final LinuxCpuFrequency total;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxCpuFrequencyJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxCpuFrequencyJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxCpuFrequencyJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_CPUFREQ_PERIOD,
+			                                          DEFAULT_CPUFREQ_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_CPUFREQ_PERIOD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "cpufreq");
+		this.total = new LinuxCpuFrequency(beanPrefix + "total", "total");
+
+		// check to make sure it will all work
+		final String[] names = dataPath.list();
+		if(names == null) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							". Can't read CPU frequencies. (Is /sys mounted?)");
+		}
+		final Map<Integer, File> cpuDirs = new TreeMap<Integer, File>();
+		for(String name : names) {
+			if(name.matches("cpu\\d+")) {
+				cpuDirs.put(Integer.valueOf(name.substring(3)), new File(dataPath, name));
+			}
+		}
+		for(Map.Entry<Integer, File> e : cpuDirs.entrySet()) {
+			final CpuFiles cpu = new CpuFiles(e.getKey().toString(), e.getValue());
+			if(cpu.isEmpty()) {
+				// offline, or a VM without cpufreq and cpuidle
+				continue;
+			}
+			cpus.add(cpu);
+		}
+		if(cpus.isEmpty()) {
+			throw new LinuxMonitoringException("No CPU frequency, throttling or idle state files in " +
+			                                   dataPath.getAbsolutePath());
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = total.objectName;
+		try {
+			readData();
+			JMXUtils.registerMBean(total, objectName);
+			for(CpuFiles cpu : cpus) {
+				objectName = cpu.bean.objectName;
+				JMXUtils.registerMBean(cpu.bean, objectName);
+			}
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down CPU frequency monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(CpuFiles cpu : cpus) {
+			cpu.close();
+		}
+	}
+
+	void readData() {
+		double frequencySum = 0;
+		double maxFrequencySum = 0;
+		int frequencyCount = 0;
+		long coreThrottles = 0;
+		long packageThrottles = 0;
+		double coreRate = 0;
+		double packageRate = 0;
+		int throttling = 0;
+		boolean rated = false;
+		final Map<String, Double> residencySum = new LinkedHashMap<String, Double>();
+		final Map<String, Integer> residencyCount = new LinkedHashMap<String, Integer>();
+		double deepestSum = 0;
+		int deepestCount = 0;
+		for(Iterator<CpuFiles> it = cpus.iterator(); it.hasNext();) {
+			final CpuFiles cpu = it.next();
+			try {
+				cpu.read();
+			} catch (IOException e) {
+				log.info("CPU " + cpu.cpu + " could not be read (offline?): " + e.getMessage());
+				it.remove();
+				cpu.close();
+				JMXUtils.unregisterMBeanCatchAndLogExceptions(cpu.bean.objectName);
+				history.remove(cpu.bean.objectName);
+				continue;
+			}
+			history.record(cpu.bean.objectName, cpu.bean);
+			final LinuxCpuFrequency bean = cpu.bean;
+			if(cpu.frequency != null) {
+				frequencySum += bean.getFrequencyMHz();
+				maxFrequencySum += bean.getMaxFrequencyMHz();
+				frequencyCount++;
+			}
+			coreThrottles += bean.getCoreThrottleCount();
+			packageThrottles += bean.getPackageThrottleCount();
+			if(!cpu.rated) {
+				continue;
+			}
+			rated = true;
+			coreRate += bean.getCoreThrottlesPerSecond();
+			packageRate += bean.getPackageThrottlesPerSecond();
+			throttling += bean.getThrottlingCpuCount();
+			for(Map.Entry<String, Double> e : bean.getIdleResidencyPercentage().entrySet()) {
+				final Double sum = residencySum.get(e.getKey());
+				residencySum.put(e.getKey(), (sum == null ? 0.0 : sum) + e.getValue());
+				final Integer count = residencyCount.get(e.getKey());
+				residencyCount.put(e.getKey(), (count == null ? 0 : count) + 1);
+			}
+			if(cpu.stateTimes.length > 0) {
+				deepestSum += bean.getDeepestIdleResidencyPercentage();
+				deepestCount++;
+			}
+		}
+		total.update(frequencyCount == 0 ? 0.0 : frequencySum / frequencyCount,
+		             frequencyCount == 0 ? 0.0 : maxFrequencySum / frequencyCount,
+		             coreThrottles, packageThrottles);
+		if(rated) {
+			final Map<String, Double> residency = new LinkedHashMap<String, Double>();
+			for(Map.Entry<String, Double> e : residencySum.entrySet()) {
+				residency.put(e.getKey(), e.getValue() / residencyCount.get(e.getKey()));
+			}
+			total.updateRates(coreRate, packageRate, throttling, residency,
+			                  deepestCount == 0 ? 0.0 : deepestSum / deepestCount);
+		}
+		history.record(total.objectName, total);
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	/**
+	 * The open files of one CPU and the previous reading of its counters.
+	 */
+	final class CpuFiles {
+		final String cpu;
+		final LinuxCpuFrequency bean;
+		final PositionalFileReader frequency;
+		final double maxFrequencyMHz;
+		final PositionalFileReader coreThrottle;
+		final PositionalFileReader packageThrottle;
+		/**
+		 * Idle states, shallowest first.
+		 */
+		final String[] stateNames;
+		final PositionalFileReader[] stateTimes;
+		final long[] previousStateTimes;
+		long previousCoreThrottle = 0;
+		long previousPackageThrottle = 0;
+		long previousNanos = 0;
+		boolean primed = false;
+		boolean rated = false;
+
+		CpuFiles(String cpu, File dir) {
+			this.cpu = cpu;
+			this.bean = new LinuxCpuFrequency(beanPrefix + cpu, cpu);
+			frequency = PositionalFileReader.openIfReadable(new File(dir, "cpufreq/scaling_cur_freq"), 32);
+			double maxFrequency = 0;
+			final PositionalFileReader max =
+				PositionalFileReader.openIfReadable(new File(dir, "cpufreq/cpuinfo_max_freq"), 32);
+			if(max != null) {
+				try {
+					maxFrequency = max.readLong() / 1000.0;
+				} catch (IOException e) {
+					// leave it unknown
+				} catch (NumberFormatException e) {
+					// leave it unknown
+				} finally {
+					max.close();
+				}
+			}
+			maxFrequencyMHz = maxFrequency;
+			final File throttle = new File(dir, "thermal_throttle");
+			coreThrottle = PositionalFileReader.openIfReadable(new File(throttle, "core_throttle_count"), 32);
+			packageThrottle = PositionalFileReader.openIfReadable(new File(throttle, "package_throttle_count"),
+			                                                      32);
+
+			final Map<Integer, String> names = new TreeMap<Integer, String>();
+			final Map<Integer, PositionalFileReader> times = new TreeMap<Integer, PositionalFileReader>();
+			final String[] states = new File(dir, "cpuidle").list();
+			if(states != null) {
+				for(String state : states) {
+					if(!state.matches("state\\d+")) {
+						continue;
+					}
+					final File stateDir = new File(new File(dir, "cpuidle"), state);
+					final PositionalFileReader time =
+						PositionalFileReader.openIfReadable(new File(stateDir, "time"), 32);
+					if(time == null) {
+						continue;
+					}
+					String name = state;
+					final PositionalFileReader nameReader =
+						PositionalFileReader.openIfReadable(new File(stateDir, "name"), 32);
+					if(nameReader != null) {
+						try {
+							name = nameReader.readString();
+						} catch (IOException e) {
+							// keep the directory name
+						} finally {
+							nameReader.close();
+						}
+					}
+					final Integer index = Integer.valueOf(state.substring(5));
+					names.put(index, name);
+					times.put(index, time);
+				}
+			}
+			stateNames = names.values().toArray(new String[names.size()]);
+			stateTimes = times.values().toArray(new PositionalFileReader[times.size()]);
+			previousStateTimes = new long[stateTimes.length];
+		}
+
+		boolean isEmpty() {
+			return frequency == null && coreThrottle == null && packageThrottle == null &&
+			       stateTimes.length == 0;
+		}
+
+		void read() throws IOException {
+			final double frequencyMHz = frequency == null ? 0.0 : frequency.readLong() / 1000.0;
+			final long core = coreThrottle == null ? 0 : coreThrottle.readLong();
+			final long pkg = packageThrottle == null ? 0 : packageThrottle.readLong();
+			final long[] stateTimes = new long[this.stateTimes.length];
+			for(int i = 0; i < stateTimes.length; i++) {
+				stateTimes[i] = this.stateTimes[i].readLong();
+			}
+			final long nanos = System.nanoTime();
+			bean.update(frequencyMHz, maxFrequencyMHz, core, pkg);
+
+			rated = primed && nanos > previousNanos;
+			if(rated) {
+				final double seconds = (nanos - previousNanos) / 1e9;
+				final int bits = CounterRates.LONG_BITS;
+				final double coreRate = CounterRates.delta(previousCoreThrottle, core, bits) / seconds;
+				final double packageRate = CounterRates.delta(previousPackageThrottle, pkg, bits) / seconds;
+				final Map<String, Double> residency = new LinkedHashMap<String, Double>();
+				double deepest = 0;
+				for(int i = 0; i < stateTimes.length; i++) {
+					// idle state times are in microseconds
+					final double percentage = Math.min(100.0, CounterRates.delta(previousStateTimes[i],
+					                                                             stateTimes[i], 64) /
+					                                          (seconds * 1e4));
+					residency.put(stateNames[i], percentage);
+					deepest = percentage;
+				}
+				bean.updateRates(coreRate, packageRate, coreRate + packageRate > 0 ? 1 : 0,
+				                 residency, deepest);
+			}
+			previousCoreThrottle = core;
+			previousPackageThrottle = pkg;
+			System.arraycopy(stateTimes, 0, previousStateTimes, 0, stateTimes.length);
+			previousNanos = nanos;
+			primed = true;
+		}
+
+		void close() {
+			if(frequency != null) {
+				frequency.close();
+			}
+			if(coreThrottle != null) {
+				coreThrottle.close();
+			}
+			if(packageThrottle != null) {
+				packageThrottle.close();
+			}
+			for(PositionalFileReader reader : stateTimes) {
+				reader.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,77 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxCpuFrequencyJMXWrapper}.  For the total, frequencies and
+ * residencies are means over CPUs and counts and rates are sums.
+ */
+public interface LinuxCpuFrequencyMBean {
+
+	/**
+	 * @return the CPU these values are for, or <code>total</code> for all CPUs.
+	 */
+	public abstract String getCpu();
+
+	/**
+	 * @return the current frequency, from <code>cpufreq/scaling_cur_freq</code>, in MHz.
+	 */
+	public abstract double getFrequencyMHz();
+
+	/**
+	 * @return the highest frequency the CPU can run at, from <code>cpufreq/cpuinfo_max_freq</code>,
+	 * in MHz.
+	 */
+	public abstract double getMaxFrequencyMHz();
+
+	/**
+	 * @return the current frequency as a percentage of the highest.
+	 */
+	public abstract double getFrequencyPercentage();
+
+	/**
+	 * @return times the core has been throttled for running too hot since boot.
+	 */
+	public abstract long getCoreThrottleCount();
+
+	/**
+	 * @return times the CPU's package has been throttled for running too hot since boot.
+	 */
+	public abstract long getPackageThrottleCount();
+
+	public abstract double getCoreThrottlesPerSecond();
+
+	public abstract double getPackageThrottlesPerSecond();
+
+	/**
+	 * @return the number of CPUs throttled during the last period: 0 or 1 for a single CPU.
+	 */
+	public abstract int getThrottlingCpuCount();
+
+	/**
+	 * @return the percentage of the last period spent in each idle state, by state name (for
+	 * example <code>C1E</code> or <code>C6</code>).
+	 */
+	public abstract Map<String, Double> getIdleResidencyPercentage();
+
+	/**
+	 * @return the percentage of the last period spent in the deepest idle state, the one with the
+	 * highest exit latency.
+	 */
+	public abstract double getDeepestIdleResidencyPercentage();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,90 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the utilization of one socket's physical cores,
+ * or of all of them, used by {@link LinuxCpuTopologyJMXWrapper}.
+ */
+public class LinuxCpuTopology implements LinuxCpuTopologyMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String socket;
+	final int logicalCpuCount;
+	final int coreCount;
+
+	private double utilizationPercentage = 0;
+	private double coreUtilizationPercentage = 0;
+	private int coresWithAllSiblingsBusy = 0;
+	private Map<String, Double> coreUtilization = Collections.emptyMap();
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxCpuTopology(String objectName, String socket, int logicalCpuCount, int coreCount) {
+		this.objectName = objectName;
+		this.socket = socket;
+		this.logicalCpuCount = logicalCpuCount;
+		this.coreCount = coreCount;
+	}
+
+	/**
+	 * Publishes a new reading.  The map is published as passed and must not be modified
+	 * afterwards.
+	 */
+	synchronized void update(double utilizationPercentage, double coreUtilizationPercentage,
+	                         int coresWithAllSiblingsBusy, Map<String, Double> coreUtilization) {
+		this.utilizationPercentage = utilizationPercentage;
+		this.coreUtilizationPercentage = coreUtilizationPercentage;
+		this.coresWithAllSiblingsBusy = coresWithAllSiblingsBusy;
+		this.coreUtilization = coreUtilization;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getSocket() {
+		return socket;
+	}
+
+	public int getLogicalCpuCount() {
+		return logicalCpuCount;
+	}
+
+	public int getCoreCount() {
+		return coreCount;
+	}
+
+	public synchronized double getUtilizationPercentage() {
+		return utilizationPercentage;
+	}
+
+	public synchronized double getCoreUtilizationPercentage() {
+		return coreUtilizationPercentage;
+	}
+
+	public synchronized int getCoresWithAllSiblingsBusy() {
+		return coresWithAllSiblingsBusy;
+	}
+
+	public synchronized Map<String, Double> getCoreUtilization() {
+		return coreUtilization;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,444 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CpuStatLine;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors CPU utilization rolled up by physical core and by socket.</p>
+ * <p>
+ * Per-logical-CPU utilization overstates headroom on hosts with hyperthreading: two hyperthreads
+ * share one core's execution units, so a core with one busy hyperthread has far less than half of
+ * its capacity left.  This monitor reports each core's utilization as that of its busiest
+ * hyperthread, rolled up per socket and for the whole host, and counts the cores on which every
+ * hyperthread is busy.
+ * </p><p>
+ * The topology is read once, at start up, from
+ * <code>/sys/devices/system/cpu/cpu*&#47;topology</code>: hyperthreads are grouped into cores by
+ * <code>thread_siblings_list</code> and cores into sockets by <code>physical_package_id</code>.
+ * Each tick then reads the per-CPU lines of <code>/proc/stat</code> and does O(CPUs) work over
+ * arrays indexed by CPU and core number.  CPUs brought online later are not included.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each socket will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=cpu-topology,socket=&lt;physical package id&gt;</code><br/>
+ * The whole host will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=cpu-topology,socket=total</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=cpu-topology</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.cputopology.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>2000</code></td>
+ * <td>{@link #CONFIG_KEY_CPUTOPOLOGY_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.cputopology.busyThreshold</td>
+ * <td>utilization percentage at or above which a hyperthread counts as busy</td>
+ * <td><code>50.0</code></td>
+ * <td>{@link #CONFIG_KEY_CPUTOPOLOGY_BUSY_THRESHOLD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxCpuTopologyJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxCpuTopologyJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".cputopology";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_CPUTOPOLOGY_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_CPUTOPOLOGY_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Utilization percentage at or above which a hyperthread counts as busy.
+	 * Config key: {@value}
+	 * @see #DEFAULT_CPUTOPOLOGY_BUSY_THRESHOLD default value
+	 */
+	public static final String CONFIG_KEY_CPUTOPOLOGY_BUSY_THRESHOLD = CONFIG_KEY_PREFIX + ".busyThreshold";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_CPUTOPOLOGY_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_CPUTOPOLOGY_PERIOD = 2000;
+	/**
+	 * Default busy threshold, in percent.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_CPUTOPOLOGY_BUSY_THRESHOLD for config key to override default value.
+	 */
+	public static final double DEFAULT_CPUTOPOLOGY_BUSY_THRESHOLD = 50.0;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=cpu-topology,socket=";
+
+	static final File TOPOLOGY_PATH = new File("/sys/devices/system/cpu");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final double busyThreshold;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final PositionalFileReader reader;
+
+	/**
+	 * Core index of each CPU number, or -1 for CPUs without topology.
+	 */
+	final int[] coreOfCpu;
+	final int[] socketOfCore;
+	final int[] siblingsOfCore;
+	final String[] coreNames;
+	final LinuxCpuTopology[] sockets;
+	final LinuxCpuTopology total;
+
+	private final long[] previousBusy;
+	private final long[] previousTotal;
+	private final boolean[] primed;
+	private final double[] coreMax;
+	private final double[] coreMin;
+	private final int[] coreSeen;
+	private final long[] columns = new long[CpuStatLine.TIME_COLUMNS];
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxCpuTopologyJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, TOPOLOGY_PATH, CpuStatLine.STAT_PATH);
+	}
+
+	LinuxCpuTopologyJMXWrapper(Properties config, File topologyPath, File statPath)
+		throws LinuxMonitoringException {
+		super(LinuxCpuTopologyJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_CPUTOPOLOGY_PERIOD,
+			                                          DEFAULT_CPUTOPOLOGY_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_CPUTOPOLOGY_PERIOD, e);
+		}
+		try {
+			this.busyThreshold = PropertiesUtils.extractDouble(config,
+			                                                   CONFIG_KEY_CPUTOPOLOGY_BUSY_THRESHOLD,
+			                                                   DEFAULT_CPUTOPOLOGY_BUSY_THRESHOLD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_CPUTOPOLOGY_BUSY_THRESHOLD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "cpu-topology");
+
+		// build the topology
+		final String[] names = topologyPath.list();
+		if(names == null) {
+			throw new LinuxMonitoringException("No such path: " + topologyPath.getAbsolutePath() +
+							". Can't read CPU topology. (Is /sys mounted?)");
+		}
+		final TreeMap<Integer, String> siblingsOfCpu = new TreeMap<Integer, String>();
+		final Map<Integer, Integer> packageOfCpu = new TreeMap<Integer, Integer>();
+		for(String name : names) {
+			if(!name.matches("cpu\\d+")) {
+				continue;
+			}
+			final File topology = new File(new File(topologyPath, name), "topology");
+			if(!topology.isDirectory()) {
+				// offline
+				continue;
+			}
+			final int cpu = Integer.parseInt(name.substring(3));
+			try {
+				siblingsOfCpu.put(cpu, readOnce(new File(topology, "thread_siblings_list")));
+				packageOfCpu.put(cpu, Integer.valueOf(readOnce(new File(topology, "physical_package_id"))));
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Could not read topology of " + name, e);
+			} catch (NumberFormatException e) {
+				throw new LinuxMonitoringException("Could not read topology of " + name, e);
+			}
+		}
+		if(siblingsOfCpu.isEmpty()) {
+			throw new LinuxMonitoringException("No CPU topology in " + topologyPath.getAbsolutePath());
+		}
+		final int maxCpu = siblingsOfCpu.lastKey();
+		coreOfCpu = new int[maxCpu + 1];
+		Arrays.fill(coreOfCpu, -1);
+		final Map<String, Integer> cores = new LinkedHashMap<String, Integer>();
+		final List<Integer> coreSockets = new ArrayList<Integer>();
+		final List<Integer> coreSiblings = new ArrayList<Integer>();
+		final Map<Integer, Integer> socketIndexes = new TreeMap<Integer, Integer>();
+		for(Integer pkg : new TreeSet<Integer>(packageOfCpu.values())) {
+			socketIndexes.put(pkg, socketIndexes.size());
+		}
+		for(Map.Entry<Integer, String> e : siblingsOfCpu.entrySet()) {
+			Integer core = cores.get(e.getValue());
+			if(core == null) {
+				core = cores.size();
+				cores.put(e.getValue(), core);
+				coreSockets.add(socketIndexes.get(packageOfCpu.get(e.getKey())));
+				coreSiblings.add(0);
+			}
+			coreOfCpu[e.getKey()] = core;
+			coreSiblings.set(core, coreSiblings.get(core) + 1);
+		}
+		coreNames = cores.keySet().toArray(new String[cores.size()]);
+		socketOfCore = new int[coreNames.length];
+		siblingsOfCore = new int[coreNames.length];
+		final int[] socketCpus = new int[socketIndexes.size()];
+		final int[] socketCores = new int[socketIndexes.size()];
+		for(int core = 0; core < coreNames.length; core++) {
+			socketOfCore[core] = coreSockets.get(core);
+			siblingsOfCore[core] = coreSiblings.get(core);
+			socketCpus[socketOfCore[core]] += siblingsOfCore[core];
+			socketCores[socketOfCore[core]]++;
+		}
+		sockets = new LinuxCpuTopology[socketIndexes.size()];
+		for(Map.Entry<Integer, Integer> e : socketIndexes.entrySet()) {
+			final String socket = e.getKey().toString();
+			final int index = e.getValue();
+			sockets[index] = new LinuxCpuTopology(beanPrefix + socket, socket, socketCpus[index],
+			                                      socketCores[index]);
+		}
+		total = new LinuxCpuTopology(beanPrefix + "total", "total", siblingsOfCpu.size(),
+		                             coreNames.length);
+
+		previousBusy = new long[maxCpu + 1];
+		previousTotal = new long[maxCpu + 1];
+		primed = new boolean[maxCpu + 1];
+		coreMax = new double[coreNames.length];
+		coreMin = new double[coreNames.length];
+		coreSeen = new int[coreNames.length];
+
+		if(!statPath.canRead()) {
+			throw new LinuxMonitoringException("Permission denied: " + statPath.getAbsolutePath());
+		}
+		try {
+			this.reader = new PositionalFileReader(statPath, 16384);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Could not open " + statPath.getAbsolutePath(), e);
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = total.objectName;
+		try {
+			readData();
+			JMXUtils.registerMBean(total, objectName);
+			for(LinuxCpuTopology socket : sockets) {
+				objectName = socket.objectName;
+				JMXUtils.registerMBean(socket, objectName);
+			}
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	private static String readOnce(File file) throws IOException {
+		final PositionalFileReader reader = new PositionalFileReader(file, 64);
+		try {
+			return reader.readString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down CPU topology monitoring due to error.",e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final int length;
+		try {
+			length = reader.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final byte[] buffer = reader.getBuffer();
+		for(int core = 0; core < coreSeen.length; core++) {
+			coreMax[core] = 0;
+			coreMin[core] = 100.0;
+			coreSeen[core] = 0;
+		}
+		final double[] socketSum = new double[sockets.length];
+		final int[] socketSeen = new int[sockets.length];
+		double totalSum = 0;
+		int totalSeen = 0;
+
+		int position = 0;
+		while(position < length) {
+			int end = position;
+			while(end < length && buffer[end] != '\n') {
+				end++;
+			}
+			// the per-CPU lines come first; stop at the long interrupt line that follows them
+			if(end - position < 4 || buffer[position] != 'c' || buffer[position + 1] != 'p' ||
+			   buffer[position + 2] != 'u') {
+				break;
+			}
+			final int line = position;
+			position = end + 1;
+			if(buffer[line + 3] < '0' || buffer[line + 3] > '9') {
+				// the aggregate "cpu" line
+				continue;
+			}
+			int i = line + 3;
+			int cpu = 0;
+			while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				cpu = cpu * 10 + (buffer[i] - '0');
+				i++;
+			}
+			if(cpu >= coreOfCpu.length || coreOfCpu[cpu] < 0) {
+				continue;
+			}
+			CpuStatLine.parseTimes(buffer, i, end, columns);
+			long totalTime = 0;
+			for(long column : columns) {
+				totalTime += column;
+			}
+			final long busyTime = totalTime - columns[CpuStatLine.IDLE] - columns[CpuStatLine.IOWAIT];
+			final boolean rated = primed[cpu] && totalTime > previousTotal[cpu];
+			final double utilization = rated ? 100.0 * Math.max(0, busyTime - previousBusy[cpu]) /
+			                                   (totalTime - previousTotal[cpu]) : 0.0;
+			previousBusy[cpu] = busyTime;
+			previousTotal[cpu] = totalTime;
+			primed[cpu] = true;
+			if(!rated) {
+				continue;
+			}
+			final int core = coreOfCpu[cpu];
+			coreMax[core] = Math.max(coreMax[core], utilization);
+			coreMin[core] = Math.min(coreMin[core], utilization);
+			coreSeen[core]++;
+			socketSum[socketOfCore[core]] += utilization;
+			socketSeen[socketOfCore[core]]++;
+			totalSum += utilization;
+			totalSeen++;
+		}
+
+		final double[] socketCoreSum = new double[sockets.length];
+		final int[] socketCoresSeen = new int[sockets.length];
+		final int[] socketAllBusy = new int[sockets.length];
+		final List<Map<String, Double>> socketMaps = new ArrayList<Map<String, Double>>(sockets.length);
+		for(int s = 0; s < sockets.length; s++) {
+			socketMaps.add(new LinkedHashMap<String, Double>());
+		}
+		final Map<String, Double> totalMap = new LinkedHashMap<String, Double>();
+		double totalCoreSum = 0;
+		int totalAllBusy = 0;
+		for(int core = 0; core < coreSeen.length; core++) {
+			if(coreSeen[core] == 0) {
+				continue;
+			}
+			final int socket = socketOfCore[core];
+			socketCoreSum[socket] += coreMax[core];
+			socketCoresSeen[socket]++;
+			totalCoreSum += coreMax[core];
+			// a core whose siblings are offline or unread can't have them all busy
+			if(coreSeen[core] == siblingsOfCore[core] && siblingsOfCore[core] > 1 &&
+			   coreMin[core] >= busyThreshold) {
+				socketAllBusy[socket]++;
+				totalAllBusy++;
+			}
+			socketMaps.get(socket).put(coreNames[core], coreMax[core]);
+			totalMap.put(coreNames[core], coreMax[core]);
+		}
+		int totalCoresSeen = 0;
+		for(int s = 0; s < sockets.length; s++) {
+			totalCoresSeen += socketCoresSeen[s];
+			sockets[s].update(socketSeen[s] == 0 ? 0.0 : socketSum[s] / socketSeen[s],
+			                  socketCoresSeen[s] == 0 ? 0.0 : socketCoreSum[s] / socketCoresSeen[s],
+			                  socketAllBusy[s], socketMaps.get(s));
+			history.record(sockets[s].objectName, sockets[s]);
+		}
+		total.update(totalSeen == 0 ? 0.0 : totalSum / totalSeen,
+		             totalCoresSeen == 0 ? 0.0 : totalCoreSum / totalCoresSeen,
+		             totalAllBusy, totalMap);
+		history.record(total.objectName, total);
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+}
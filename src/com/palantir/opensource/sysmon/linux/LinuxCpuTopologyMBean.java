@@ -0,0 +1,57 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxCpuTopologyJMXWrapper}.
+ */
+public interface LinuxCpuTopologyMBean {
+
+	/**
+	 * @return the physical package (socket) these values are for, or <code>total</code> for all of
+	 * them.
+	 */
+	public abstract String getSocket();
+
+	public abstract int getLogicalCpuCount();
+
+	public abstract int getCoreCount();
+
+	/**
+	 * @return busy time as a percentage of the time of all logical CPUs, which is what per-CPU
+	 * tools report.  Overstates headroom when hyperthreads share busy cores.
+	 */
+	public abstract double getUtilizationPercentage();
+
+	/**
+	 * @return the mean over physical cores of each core's busiest hyperthread.  A core with one
+	 * busy hyperthread counts as busy, since the other has little left to give it.
+	 */
+	public abstract double getCoreUtilizationPercentage();
+
+	/**
+	 * @return the number of physical cores on which every hyperthread is above the busy threshold.
+	 */
+	public abstract int getCoresWithAllSiblingsBusy();
+
+	/**
+	 * @return the utilization of each physical core's busiest hyperthread, keyed by the core's
+	 * logical CPUs (for example <code>3,99</code>).
+	 */
+	public abstract Map<String, Double> getCoreUtilization();
+
+	public abstract long getTimestamp();
+}
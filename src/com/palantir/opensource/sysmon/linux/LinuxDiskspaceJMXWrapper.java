@@ -15,6 +15,14 @@ package com.palantir.opensource.sysmon.linux;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +34,8 @@ import org.apache.log4j.Logger;
 
 import com.palantir.opensource.sysmon.Monitor;
 import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.LinearTrend;
+import com.palantir.opensource.sysmon.util.MountTable;
 import com.palantir.opensource.sysmon.util.PropertiesUtils;
 
 
@@ -35,21 +45,35 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * <a href='http://linux.die.net/man/1/df'>df</a> utility (part of the coreutils package
  * on Redhat based systems.
  * </p><p>
- * Reads the output from 'df -P -B M' that looks like this:
+ * Lists the mounts and their filesystem types from the mtab file, then, for each mount, reads
+ * the output from 'df -P -B M &lt;mount point&gt;' that looks like this:
  *
  * <pre>
  *  Filesystem         1048576-blocks      Used Available Capacity Mounted on
- *  /dev/md0                19689M     5275M    13414M      29% /
- *  none                     4021M        0M     4021M       0% /dev/shm
  *  /dev/md1                51376M    48506M      262M     100% /u1
  * </pre>
  *
- * It then looks up the filesystem type by reading /proc/self/mounts (for maximum portability).
+ * and the matching output of 'df -P -i'.  Mounts reporting no blocks at all, like /proc, are
+ * left out, as df leaves them out of its listing.
+ * </p><p>
+ * One hung mount, typically an NFS server that stopped answering, makes <code>df</code> block.
+ * So <code>df</code> is run for each mount on its own, on a small pool of worker threads, and
+ * killed if it doesn't finish within a deadline.  A mount that times out or fails keeps its last
+ * values, is marked stale, and is not checked again for a period that doubles with each
+ * consecutive failure, while the other mounts keep updating on schedule.  Each mount's bean also
+ * reports how long its last check took.
+ * </p><p>
+ * Each mount also forecasts when it will fill up, from the least-squares trend of its used
+ * megabytes and inodes over a sliding window ({@link LinearTrend}): the fill rates, and the
+ * seconds until the available space or inodes run out at that rate.  The forecasts need a few
+ * checks before they are published, and are empty while the filesystem isn't filling.
  * </p>
  *
  * <h3>JMX Data Path</h3>
  * Each device will be at:<br/>
- * <code>sysmon.linux.beanpath:type=filesystem,devicename=&lt;devicename&gt;</code>
+ * <code>sysmon.linux.beanpath:type=filesystem,devicename=&lt;devicename&gt;</code><br/>
+ * Recent history of the devices' values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=filesystem</code>
  *
  * <h3>Configuration parameters</h3>
  * <em>Note that any value not set in the config file will use the default value.</em>
@@ -82,6 +106,22 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * <td>path to <code>mtab</code> file</td>
  * <td><code>/etc/mtab</code></td>
  * <td>{@link #CONFIG_KEY_MTAB_PATH}</td></tr>
+ * <tr><td>sysmon.linux.df.workers</td>
+ * <td>number of mounts checked at the same time</td>
+ * <td><code>4</code></td>
+ * <td>{@link #CONFIG_KEY_DF_WORKERS}</td></tr>
+ * <tr><td>sysmon.linux.df.timeoutMillis</td>
+ * <td>time, in milliseconds, a mount's check may take before it is killed and the mount marked stale</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_DF_TIMEOUT}</td></tr>
+ * <tr><td>sysmon.linux.df.maxQuarantineSeconds</td>
+ * <td>longest time, in seconds, a failing mount goes unchecked</td>
+ * <td><code>600</code></td>
+ * <td>{@link #CONFIG_KEY_DF_MAX_QUARANTINE}</td></tr>
+ * <tr><td>sysmon.linux.df.forecastWindowSeconds</td>
+ * <td>time, in seconds, of the trend that fill forecasts are made from</td>
+ * <td><code>3600</code></td>
+ * <td>{@link #CONFIG_KEY_DF_FORECAST_WINDOW}</td></tr>
  * </tr></table>
 *
  * @see Monitor Lifecycle documentation
@@ -154,6 +194,36 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	 * @see <a href='http://linux.die.net/man/8/mount'>mount(8) on your local linux box</a>
 	 */
 	public static final String CONFIG_KEY_MTAB_PATH = CONFIG_KEY_PREFIX + ".mtab.path";
+	/**
+	 * Number of worker threads running <code>df</code>, and so the number of hung mounts that can
+	 * be waited on before the others stop being checked.
+	 *
+	 * Config key: {@value}
+	 * @see #DEFAULT_DF_WORKERS
+	 */
+	public static final String CONFIG_KEY_DF_WORKERS = CONFIG_KEY_PREFIX + ".workers";
+	/**
+	 * Time, in milliseconds, a mount's <code>df</code> runs may take before they are killed.
+	 *
+	 * Config key: {@value}
+	 * @see #DEFAULT_DF_TIMEOUT
+	 */
+	public static final String CONFIG_KEY_DF_TIMEOUT = CONFIG_KEY_PREFIX + ".timeoutMillis";
+	/**
+	 * Longest time, in seconds, a mount that keeps failing goes unchecked.
+	 *
+	 * Config key: {@value}
+	 * @see #DEFAULT_DF_MAX_QUARANTINE
+	 */
+	public static final String CONFIG_KEY_DF_MAX_QUARANTINE = CONFIG_KEY_PREFIX + ".maxQuarantineSeconds";
+	/**
+	 * How far back, in seconds, the fill forecasts look.  Longer windows ride out bursts, such as
+	 * a log rotation, but are slower to notice a new trend.
+	 *
+	 * Config key: {@value}
+	 * @see #DEFAULT_DF_FORECAST_WINDOW
+	 */
+	public static final String CONFIG_KEY_DF_FORECAST_WINDOW = CONFIG_KEY_PREFIX + ".forecastWindowSeconds";
 	/**
 	 * For each device name and the passed JMX bean path, the a bean will be mounted
 	 * with the name '{@value}&lt;devicename&gt;'
@@ -201,6 +271,43 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	 * @see #CONFIG_KEY_MTAB_PATH for information on overriding the default value.
 	 */
 	public static final String DEFAULT_MTAB_PATH = "/etc/mtab";
+	/**
+	 * Default number of worker threads.
+	 * Default value: {@value}
+	 * @see #CONFIG_KEY_DF_WORKERS for information on overriding the default value.
+	 */
+	public static final int DEFAULT_DF_WORKERS = 4;
+	/**
+	 * Default deadline for a mount's check, in milliseconds.
+	 * Default value: {@value}
+	 * @see #CONFIG_KEY_DF_TIMEOUT for information on overriding the default value.
+	 */
+	public static final long DEFAULT_DF_TIMEOUT = 5000;
+	/**
+	 * Default longest quarantine, in seconds.
+	 * Default value: {@value}
+	 * @see #CONFIG_KEY_DF_MAX_QUARANTINE for information on overriding the default value.
+	 */
+	public static final long DEFAULT_DF_MAX_QUARANTINE = 600;
+	/**
+	 * Default forecast window, in seconds.
+	 * Default value: {@value}
+	 * @see #CONFIG_KEY_DF_FORECAST_WINDOW for information on overriding the default value.
+	 */
+	public static final long DEFAULT_DF_FORECAST_WINDOW = 3600;
+	/**
+	 * Fewest checks a forecast is made from.
+	 */
+	static final int MIN_FORECAST_SAMPLES = 3;
+	/**
+	 * Filesystem type that is never checked: running <code>df</code> on an automount point mounts
+	 * it.
+	 */
+	static final String AUTOFS = "autofs";
+	/**
+	 * Prefix of mount sources that are block devices, and so name a single filesystem.
+	 */
+	static final String DEVICE_PREFIX = "/dev/";
 	/**
 	 * {@link Pattern} for recognizing the df header.
 	 */
@@ -225,9 +332,14 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	 * {@link Pattern} for parsing of mtab data.
 	 */
 	private static final Pattern MTAB_DATA =
-		Pattern.compile("^\\s*(\\S+)\\s+\\S(.*?\\S)?\\s+(\\S+)\\s+\\S+\\s+\\d+\\s+\\d+\\s*$");
+		Pattern.compile("^\\s*(\\S+)\\s+(\\S(?:.*?\\S)?)\\s+(\\S+)\\s+\\S+\\s+\\d+\\s+\\d+\\s*$");
 
 
+	/**
+	 * Extra time, beyond the deadline, to wait for a killed <code>df</code> to be reaped.
+	 */
+	static final long KILL_GRACE_MILLIS = 500;
+
 	// instance variables to hold all the config options
 	final String dfCmd[];
 	final String dfInodeCmd[];
@@ -239,6 +351,20 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	final String dfOptions;
 	final String dfInodeOptions;
 	final File mtabPath;
+	final int workers;
+	final long timeout;
+	/**
+	 * Stored in millis, but configured in seconds.
+	 */
+	final long maxQuarantine;
+	/**
+	 * Stored in millis, but configured in seconds.
+	 */
+	final long forecastWindow;
+	/**
+	 * Checks kept by each mount's forecasts: a window's worth, at one per period.
+	 */
+	final int forecastSamples;
 	final Set<String> dfDeviceNameFilter = new HashSet<String>();
 	final Set<String> dfFsTypeFilter = new HashSet<String>();
 	/**
@@ -250,12 +376,20 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	 */
 	final String beanPathPrefix;
 	/**
-	 * Current set of beans, for update purposes.  JMX requires update of the beans in place, so
-	 * we hold a reference to them here.
+	 * Current set of mounts, keyed by mount point.  Each holds its bean, which JMX requires be
+	 * updated in place.
+	 */
+	final Map<String, MountState> mounts = new HashMap<String, MountState>();
+	/**
+	 * Compressed history and rollups of the published values.
+	 */
+	final LinuxMetricHistory history;
+	/**
+	 * Runs the <code>df</code> processes, so that a hung one only ties up its own worker.
 	 */
-	final Map<String, LinuxFileSystem> filesystems = new HashMap<String, LinuxFileSystem>();
+	final ExecutorService executor;
 
-	private Process process = null; // Any currently running process, protected by synchronized(this).
+	private final Set<Process> processes = new HashSet<Process>(); // Currently running processes, protected by synchronized(this).
 
 	public LinuxDiskspaceJMXWrapper(Properties config) throws LinuxMonitoringException {
 		// initialize thread
@@ -269,15 +403,34 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 		this.dfPath = config.getProperty(CONFIG_KEY_DF_PATH,DEFAULT_DF_PATH);
 		this.dfOptions = config.getProperty(CONFIG_KEY_DF_OPTIONS, DEFAULT_DF_OPTIONS);
 		this.dfInodeOptions = config.getProperty(CONFIG_KEY_DF_INODE_OPTIONS, DEFAULT_DF_INODE_OPTIONS);
+		String key = CONFIG_KEY_DF_PERIOD;
 		try {
 			int periodSeconds = PropertiesUtils.extractInteger(config,
 			                                                   CONFIG_KEY_DF_PERIOD,
 			                                                   DEFAULT_DF_PERIOD);
 			this.period = periodSeconds * 1000; // millis
+			key = CONFIG_KEY_DF_WORKERS;
+			this.workers = PropertiesUtils.extractInteger(config, key, DEFAULT_DF_WORKERS);
+			key = CONFIG_KEY_DF_TIMEOUT;
+			this.timeout = PropertiesUtils.extractLong(config, key, DEFAULT_DF_TIMEOUT);
+			key = CONFIG_KEY_DF_MAX_QUARANTINE;
+			this.maxQuarantine = PropertiesUtils.extractLong(config, key, DEFAULT_DF_MAX_QUARANTINE) * 1000;
+			key = CONFIG_KEY_DF_FORECAST_WINDOW;
+			this.forecastWindow = PropertiesUtils.extractLong(config, key, DEFAULT_DF_FORECAST_WINDOW) * 1000;
 		} catch (NumberFormatException e) {
-			throw new LinuxMonitoringException("Invalid config value for " + CONFIG_KEY_DF_PERIOD,e);
+			throw new LinuxMonitoringException("Invalid config value for " + key,e);
+		}
+		if(forecastWindow <= 0) {
+			throw new LinuxMonitoringException("Invalid config value for " + CONFIG_KEY_DF_FORECAST_WINDOW +
+			                                   ": " + forecastWindow / 1000 + " (must be positive)");
+		}
+		this.forecastSamples = (int)Math.min(forecastWindow / Math.max(period, 1000) + 2, 100000);
+		if(workers < 1) {
+			throw new LinuxMonitoringException("Invalid config value for " + CONFIG_KEY_DF_WORKERS +
+			                                   ": " + workers + " (must be at least 1)");
 		}
 		this.mtabPath = new File(config.getProperty(CONFIG_KEY_MTAB_PATH, DEFAULT_MTAB_PATH));
+		this.history = new LinuxMetricHistory(config, "filesystem");
 
 		// configure filters
 		String filters = config.getProperty(CONFIG_KEY_DF_DEVICE_NAME_FILTER,
@@ -308,14 +461,24 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 		dfInodeCmd[0] = dfPath;
 		System.arraycopy(opts, 0, dfInodeCmd, 1, opts.length);
 
-		// read once to throw config exceptions on calling thread
-		// QA-28918: Previously used InterruptTimerTask, which wasn't properly interrupting the df process.  Switching to a process kill.
-		KillTimerTask timer = setKillTimer(4 * period);
+		this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			int count = 0;
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "LinuxDiskspaceMonitor-" + (++count));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		// read once to throw config exceptions on calling thread.  Each df process is killed at
+		// its own deadline, so a hung mount can't hold this up for longer than the timeout.
 		try {
 			readData();
-		} finally {
-			timer.cancel();
+		} catch (LinuxMonitoringException e) {
+			close();
+			throw e;
 		}
+		history.register();
 	}
 
 	/**
@@ -332,7 +495,8 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	public void stopMonitoring() throws InterruptedException {
 		this.shutdown = true;
 		this.interrupt();
-		this.join(this.period * 2);
+		this.join(this.period * 2 + this.timeout);
+		close();
 	}
 
 	@Override
@@ -346,52 +510,272 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 			if(!shutdown) {
 				log.error("Shutting down filesytem monitoring due to error.",e);
 			}
+		} finally {
+			close();
 		}
 	}
 
+	/**
+	 * Kills any running df processes.
+	 */
 	public void kill() {
 		synchronized(this) {
-			if (process != null) {
+			for (Process process : processes) {
 				process.destroy();
-				process = null;
 			}
+			processes.clear();
 		}
 	}
 
+	/**
+	 * Stops the workers and kills their df processes.
+	 */
+	void close() {
+		executor.shutdownNow();
+		kill();
+	}
+
+	/**
+	 * Checks every mount that isn't quarantined or still busy with an earlier check, then waits
+	 * for the checks to finish, for at most the timeout.
+	 */
+	void readData() throws LinuxMonitoringException {
+		final Map<String, MountEntry> current = readMounts();
+		final long tickStart = System.currentTimeMillis();
+
+		// forget unmounted filesystems
+		for (Iterator<MountState> i = mounts.values().iterator(); i.hasNext(); ) {
+			final MountState mount = i.next();
+			if (!current.containsKey(mount.mountPoint)) {
+				if (mount.pending != null) {
+					mount.pending.cancel(true);
+				}
+				if (mount.bean != null) {
+					JMXUtils.unregisterMBeanCatchAndLogExceptions(mount.bean.objectName);
+					history.remove(mount.bean.objectName);
+				}
+				i.remove();
+			}
+		}
+
+		// start a check of each mount that is due one
+		for (MountEntry entry : current.values()) {
+			MountState mount = mounts.get(entry.mountPoint);
+			if (mount == null) {
+				mount = new MountState(entry, forecastWindow, forecastSamples);
+				mounts.put(entry.mountPoint, mount);
+			}
+			if (mount.pending == null && !mount.empty && tickStart >= mount.quarantinedUntil) {
+				mount.task = new DfTask(mount.mountPoint);
+				mount.pending = executor.submit(mount.task);
+				mount.timedOut = false;
+			}
+		}
+
+		// collect the results, waiting no longer than the timeout overall
+		final long deadline = tickStart + timeout + KILL_GRACE_MILLIS;
+		for (MountState mount : mounts.values()) {
+			if (mount.pending == null) {
+				continue;
+			}
+			// a check that outlived its deadline has been counted as failed already
+			final boolean counted = mount.timedOut;
+			DfResult result = null;
+			Throwable failure = null;
+			try {
+				final long wait = counted ? 0 : Math.max(deadline - System.currentTimeMillis(), 0);
+				result = mount.pending.get(wait, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				final long started = mount.task.started;
+				if (counted || started == 0 || System.currentTimeMillis() - started < timeout) {
+					// still hung, or hasn't had its full time yet for want of a worker
+					markStale(mount);
+					continue;
+				}
+				mount.timedOut = true;
+				failure = new LinuxMonitoringException("df did not finish within " + timeout + "ms");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					// couldn't run df at all, which no mount will fare better with
+					throw new LinuxMonitoringException("Error starting df process: " + dfPath, e.getCause());
+				}
+				failure = e.getCause();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new LinuxMonitoringException("Interrupted while waiting for df", e);
+			}
+			if (mount.pending.isDone()) {
+				mount.pending = null;
+				mount.task = null;
+			}
+			if (result != null) {
+				updateBean(mount, result);
+			} else if (!counted) {
+				quarantine(mount, failure);
+			}
+		}
+	}
 
+	private void updateBean(MountState mount, DfResult result) throws LinuxMonitoringException {
+		final DfData dfData = result.blocks;
+		final DfData dfInodeData = result.inodes;
+		if (dfData.getTotal() != null && dfData.getTotal() == 0) {
+			// a pseudo filesystem, which df leaves out of its listing too
+			mount.empty = true;
+			return;
+		}
+		if (mount.failures > 0) {
+			log.info("Filesystem " + mount.mountPoint + " is responding again after " +
+			         mount.failures + " failed checks.");
+		}
+		mount.failures = 0;
+		mount.quarantinedUntil = 0;
+		LinuxFileSystem fs = new LinuxFileSystem(beanPathPrefix + mount.mountPoint,
+		                                         mount.deviceName,
+		                                         mount.fsType,
+		                                         mount.mountPoint,
+		                                         dfData.getTotal(),
+		                                         dfData.getUsed(),
+		                                         dfData.getAvailable(),
+		                                         dfData.getPercentageUsed(),
+		                                         dfInodeData.getTotal(),
+		                                         dfInodeData.getUsed(),
+		                                         dfInodeData.getAvailable(),
+		                                         dfInodeData.getPercentageUsed(),
+		                                         result.latency,
+		                                         false);
+		if (dfData.getUsed() != null) {
+			mount.usedMegabytes.add(result.time, dfData.getUsed());
+		}
+		if (dfInodeData.getUsed() != null) {
+			mount.usedInodes.add(result.time, dfInodeData.getUsed());
+		}
+		fs.forecast(fillRate(mount.usedMegabytes),
+		            secondsUntilFull(mount.usedMegabytes, dfData.getAvailable()),
+		            fillRate(mount.usedInodes),
+		            secondsUntilFull(mount.usedInodes, dfInodeData.getAvailable()));
+		if (publish(mount, fs)) {
+			// updates bean in place
+			mount.bean.takeValues(fs);
+			log.debug(mount.bean.toString());
+		}
+		history.record(fs.objectName, fs);
+	}
 
-	private void readData() throws LinuxMonitoringException {
-		Map<String, String> fsTypeMap = readFileSystemTypes();
-		Map<String, DfData> dfDataMap = readDfData(dfCmd, DF_HEADER_PATTERN, DF_DATA_PATTERN);
-		Map<String, DfData> dfInodeDataMap = readDfData(dfInodeCmd, DF_INODE_HEADER_PATTERN, DF_INODE_DATA_PATTERN);
-		updateBeans(fsTypeMap, dfDataMap, dfInodeDataMap);
+	/**
+	 * @return the trend's slope, or null if it has too few samples to go by.
+	 */
+	private static Double fillRate(LinearTrend trend) {
+		final double slope = trend.getSlope();
+		if (trend.getSampleCount() < MIN_FORECAST_SAMPLES || Double.isNaN(slope)) {
+			return null;
+		}
+		return slope;
 	}
 
 	/**
-	 * Here's where the sausage gets made - run df in separate process and read its output into
-	 * {@link DfData} structures.
+	 * @return how long until <code>available</code> runs out at the trend's rate, or null if it
+	 * isn't being used up.
+	 */
+	private static Double secondsUntilFull(LinearTrend trend, Long available) {
+		final double slope = trend.getSlope();
+		if (available == null || trend.getSampleCount() < MIN_FORECAST_SAMPLES || !(slope > 0)) {
+			return null;
+		}
+		return available / slope;
+	}
+
+	/**
+	 * Marks the mount stale and keeps it from being checked again for a period that doubles with
+	 * each consecutive failure, up to the maximum.
+	 */
+	private void quarantine(MountState mount, Throwable failure) {
+		mount.failures++;
+		final long backoff = Math.min(period << Math.min(mount.failures - 1, 20), maxQuarantine);
+		mount.quarantinedUntil = System.currentTimeMillis() + backoff;
+		if (mount.failures == 1) {
+			log.warn("Check of filesystem " + mount.mountPoint + " failed, marking it stale and " +
+			         "not checking it again for " + backoff + "ms.", failure);
+		} else if (log.isDebugEnabled()) {
+			log.debug("Check " + mount.failures + " of filesystem " + mount.mountPoint + " failed, " +
+			          "not checking it again for " + backoff + "ms.", failure);
+		}
+		markStale(mount);
+	}
+
+	private void markStale(MountState mount) {
+		if (mount.bean == null) {
+			// never checked successfully; publish the mount anyway so that it's visible
+			publish(mount, new LinuxFileSystem(beanPathPrefix + mount.mountPoint,
+			                                   mount.deviceName,
+			                                   mount.fsType,
+			                                   mount.mountPoint,
+			                                   null, null, null, null,
+			                                   null, null, null, null,
+			                                   null,
+			                                   true));
+		} else {
+			mount.bean.markStale();
+		}
+	}
+
+	/**
+	 * Registers the mount's bean if it has none yet.
+	 * @return true if the mount already had a bean, which must then be updated in place.
+	 */
+	private boolean publish(MountState mount, LinuxFileSystem fs) {
+		if (mount.bean != null) {
+			return true;
+		}
+		try {
+			JMXUtils.registerMBean(fs, fs.objectName);
+			mount.bean = fs;
+		} catch (JMException e) {
+			log.error("Error registering bean for " + fs.objectName,e);
+		}
+		return false;
+	}
+
+	/**
+	 * Here's where the sausage gets made - run df on one mount in a separate process and read its
+	 * output into a {@link DfData} structure.  The process is killed at the passed deadline.
 	 *
 	 * @param cmd
+	 * @param mountPoint
 	 * @param headerPattern
 	 * @param dataPattern
+	 * @param deadline time, in millis since the epoch, to kill the process at.
 	 * @return parsed output of the df command
-	 * @throws LinuxMonitoringException
+	 * @throws IOException if df couldn't be run.
+	 * @throws LinuxMonitoringException if df's output couldn't be read or parsed.
 	 */
-	private Map<String, DfData> readDfData(String[] cmd, Pattern headerPattern, Pattern dataPattern) throws LinuxMonitoringException {
-		Map<String, DfData> result = new HashMap<String, DfData>();
-		BufferedReader stdout = null;
-		InputStream stderr = null;
-		OutputStream stdin = null;
-		try {
-			synchronized(this) {
-				process = Runtime.getRuntime().exec(cmd); // (authorized)
-				stdout = new BufferedReader(new InputStreamReader(process.getInputStream()));
-				stderr = process.getErrorStream();
-				stdin = process.getOutputStream();
+	private DfData readDfData(String[] cmd,
+	                          String mountPoint,
+	                          Pattern headerPattern,
+	                          Pattern dataPattern,
+	                          long deadline) throws IOException, LinuxMonitoringException {
+		final String[] mountCmd = new String[cmd.length + 1];
+		System.arraycopy(cmd, 0, mountCmd, 0, cmd.length);
+		mountCmd[cmd.length] = mountPoint;
+
+		Process process;
+		synchronized(this) {
+			if (executor.isShutdown()) {
+				throw new LinuxMonitoringException("Monitoring is shutting down");
 			}
+			process = Runtime.getRuntime().exec(mountCmd); // (authorized)
+			processes.add(process);
+		}
+		final KillTimerTask timer = setKillTimer(process, Math.max(deadline - System.currentTimeMillis(), 1));
+		final BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		final InputStream stderr = process.getErrorStream();
+		final OutputStream stdin = process.getOutputStream();
+		try {
 			String line = stdout.readLine();
 			if (line == null) {
-				throw new LinuxMonitoringException("No data read from df process!");
+				throw new LinuxMonitoringException(timer.fired ? "df process for " + mountPoint +
+				                                   " killed after " + timeout + "ms" :
+				                                   "No data read from df process for " + mountPoint);
 			}
 			// Check header.
 			Matcher m = headerPattern.matcher(line);
@@ -400,116 +784,82 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 				                                   "Did not mach with regex: " + headerPattern.pattern());
 			}
 			// Read data.
-			do {
-				line = stdout.readLine();
-				if (line != null) {
-					m = dataPattern.matcher(line);
-					if (m.matches()) {
-						DfData dfData = new DfData(
-						                           m.group(1),                       // device name
-						                           m.group(6),                       // mount point
-						                           parseLongIgnoreAlpha(m.group(2)), // total
-						                           parseLongIgnoreAlpha(m.group(3)), // used
-						                           parseLongIgnoreAlpha(m.group(4)), // available
-						                           parseByteIgnorePcnt(m.group(5))); // percentage used
-						result.put(dfData.getDeviceName(), dfData);
-					} else {
-						String msg = "Df data line did not match: " + line + ". Pattern: " + dataPattern.pattern();
-						log.warn(msg);
-					}
+			DfData result = null;
+			while ((line = stdout.readLine()) != null) {
+				m = dataPattern.matcher(line);
+				if (m.matches()) {
+					result = new DfData(
+					                    m.group(1),                       // device name
+					                    m.group(6),                       // mount point
+					                    parseLongIgnoreAlpha(m.group(2)), // total
+					                    parseLongIgnoreAlpha(m.group(3)), // used
+					                    parseLongIgnoreAlpha(m.group(4)), // available
+					                    parseByteIgnorePcnt(m.group(5))); // percentage used
+				} else {
+					String msg = "Df data line did not match: " + line + ". Pattern: " + dataPattern.pattern();
+					log.warn(msg);
 				}
-			} while (line != null);
+			}
+			if (result == null) {
+				throw new LinuxMonitoringException("No data read from df process for " + mountPoint);
+			}
+			return result;
 		} catch (IOException e) {
 			throw new LinuxMonitoringException("Error while reading data from df process",e);
 		} finally {
+			timer.cancel();
 			IOUtils.closeQuietly(stdout);
 			IOUtils.closeQuietly(stderr);
 			IOUtils.closeQuietly(stdin);
-			kill();
-		}
-		return result;
-	}
-
-	private void updateBeans(Map<String, String> fsTypeMap,
-	                         Map<String, DfData> dfDataMap,
-	                         Map<String, DfData> dfInodeDataMap) throws LinuxMonitoringException {
-
-		// these are maps df output data, keyed by devicename
-		for (String deviceName : dfDataMap.keySet()) {
-			String fsType = fsTypeMap.get(deviceName);
-			DfData dfData = dfDataMap.get(deviceName);
-			DfData dfInodeData = dfInodeDataMap.get(deviceName);
-
-			// Check filters, skipping if necessary
-			if (dfDeviceNameFilter.contains(deviceName)) {
-				continue;
-			}
-			if (dfFsTypeFilter.contains(fsType)) {
-				continue;
-			}
-
-			// May have null values in the case of parse errors.
-			if (fsType == null) {
-				log.warn("Unexpected null 'fsType' for device '" + deviceName + "'.");
-			}
-			if (dfData == null) {
-				log.warn("Unexpected null 'dfData' for device '" + deviceName + "'.  Will update with empty values.");
-				dfData = new DfData(deviceName, null, null, null, null, null);
-			}
-			if (dfInodeData == null) {
-				log.warn("Unexpected null 'dfInodeData' for device '" + deviceName + "'.  Will update with empty values.");
-				dfInodeData = new DfData(deviceName, null, null, null, null, null);
-			}
-
-			LinuxFileSystem newBean = new LinuxFileSystem(beanPathPrefix + dfData.getMountPoint(),
-			                                              deviceName,
-			                                              fsType,
-			                                              dfData.getMountPoint(),
-			                                              dfData.getTotal(),
-			                                              dfData.getUsed(),
-			                                              dfData.getAvailable(),
-			                                              dfData.getPercentageUsed(),
-			                                              dfInodeData.getTotal(),
-			                                              dfInodeData.getUsed(),
-			                                              dfInodeData.getAvailable(),
-			                                              dfInodeData.getPercentageUsed());
-			updateBean(newBean);
-		}
-	}
-
-	private void updateBean(LinuxFileSystem fs) throws LinuxMonitoringException {
-		LinuxFileSystem jmxBean = filesystems.get(fs.objectName);
-		if(jmxBean == null) { // new device
-			try {
-				JMXUtils.registerMBean(fs, fs.objectName);
-				filesystems.put(fs.objectName, fs);
-			} catch (JMException e) {
-				log.error("Error registering bean for " + fs.objectName,e);
+			synchronized(this) {
+				processes.remove(process);
 			}
-		} else {
-			// updates bean in place
-			jmxBean.takeValues(fs);
-			log.debug(jmxBean.toString());
+			process.destroy();
 		}
 	}
 
-	private Map<String, String> readFileSystemTypes() throws LinuxMonitoringException {
-		BufferedReader mounts = null;
-		final Map<String,String> fsTypeMap = new HashMap<String, String>();
+	/**
+	 * Reads the mounts to check from the mtab file, applying the filters.  Where a block device
+	 * is mounted more than once (bind mounts), only its shortest mount point is kept.  Other
+	 * sources, such as <code>overlay</code>, <code>none</code> or an NFS export, don't name a
+	 * single filesystem, so every mount of them is kept.
+	 * @return the mounts keyed by mount point.
+	 */
+	private Map<String, MountEntry> readMounts() throws LinuxMonitoringException {
+		BufferedReader mtab = null;
+		final Map<String, MountEntry> result = new HashMap<String, MountEntry>();
+		final Map<String, MountEntry> byDevice = new HashMap<String, MountEntry>();
 		try {
-			mounts = new BufferedReader(new InputStreamReader(new FileInputStream(mtabPath)));
+			mtab = new BufferedReader(new InputStreamReader(new FileInputStream(mtabPath)));
 
 			String line = null;
 			do {
-				line = mounts.readLine();
+				line = mtab.readLine();
 				if(line != null) {
 					// parse out the fields
 					// sample line: /dev/sda2 / ext3 rw 0 0
 					Matcher m = MTAB_DATA.matcher(line);
 					if(m.matches()) {
-						String fsName = m.group(1);
-						String fsType = m.group(3);
-						fsTypeMap.put(fsName, fsType);
+						MountEntry entry = new MountEntry(MountTable.unescape(m.group(1)),
+						                                  MountTable.unescape(m.group(2)),
+						                                  m.group(3));
+						// Check filters, skipping if necessary
+						if (dfDeviceNameFilter.contains(entry.deviceName) ||
+						    dfFsTypeFilter.contains(entry.fsType) ||
+						    AUTOFS.equals(entry.fsType)) {
+							continue;
+						}
+						if (entry.deviceName.startsWith(DEVICE_PREFIX)) {
+							final MountEntry previous = byDevice.get(entry.deviceName);
+							if (previous != null) {
+								if (previous.mountPoint.length() <= entry.mountPoint.length()) {
+									continue;
+								}
+								result.remove(previous.mountPoint);
+							}
+							byDevice.put(entry.deviceName, entry);
+						}
+						result.put(entry.mountPoint, entry);
 					}
 				}
 			} while(line != null);
@@ -518,11 +868,107 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 			                                   mtabPath.getAbsolutePath(),
 			                                   e);
 		} finally {
-			IOUtils.closeQuietly(mounts);
+			IOUtils.closeQuietly(mtab);
 		}
-		return fsTypeMap;
+		return result;
 	}
 
+	/**
+	 * A line of the mtab file.
+	 */
+	private static final class MountEntry {
+		final String deviceName;
+		final String mountPoint;
+		final String fsType;
+		MountEntry(String deviceName, String mountPoint, String fsType) {
+			this.deviceName = deviceName;
+			this.mountPoint = mountPoint;
+			this.fsType = fsType;
+		}
+	}
+
+	/**
+	 * A monitored mount: its bean and the state of its checks.  Only touched by the thread running
+	 * {@link LinuxDiskspaceJMXWrapper#readData()}.
+	 */
+	static final class MountState {
+		final String deviceName;
+		final String mountPoint;
+		final String fsType;
+		LinuxFileSystem bean = null;
+		/**
+		 * The check in progress or waiting for a worker, if any.
+		 */
+		Future<DfResult> pending = null;
+		DfTask task = null;
+		/**
+		 * Whether the pending check has already been counted as failed.
+		 */
+		boolean timedOut = false;
+		/**
+		 * Consecutive failed checks.
+		 */
+		int failures = 0;
+		long quarantinedUntil = 0;
+		/**
+		 * Reports no blocks at all, like /proc.  Not checked again while it stays mounted.
+		 */
+		boolean empty = false;
+		/**
+		 * Trends of the used space and inodes, for the fill forecasts.
+		 */
+		final LinearTrend usedMegabytes;
+		final LinearTrend usedInodes;
+		MountState(MountEntry entry, long forecastWindow, int forecastSamples) {
+			this.deviceName = entry.deviceName;
+			this.mountPoint = entry.mountPoint;
+			this.fsType = entry.fsType;
+			this.usedMegabytes = new LinearTrend(forecastWindow, forecastSamples);
+			this.usedInodes = new LinearTrend(forecastWindow, forecastSamples);
+		}
+	}
+
+	/**
+	 * Runs df for blocks and then for inodes on one mount, both under one deadline.
+	 */
+	final class DfTask implements Callable<DfResult> {
+		final String mountPoint;
+		/**
+		 * When a worker picked the task up, or zero while it waits for one.
+		 */
+		volatile long started = 0;
+		DfTask(String mountPoint) {
+			this.mountPoint = mountPoint;
+		}
+		public DfResult call() throws IOException, LinuxMonitoringException {
+			started = System.currentTimeMillis();
+			final long deadline = started + timeout;
+			DfData blocks = readDfData(dfCmd, mountPoint, DF_HEADER_PATTERN, DF_DATA_PATTERN, deadline);
+			DfData inodes = readDfData(dfInodeCmd, mountPoint, DF_INODE_HEADER_PATTERN, DF_INODE_DATA_PATTERN,
+			                           deadline);
+			final long finished = System.currentTimeMillis();
+			return new DfResult(blocks, inodes, finished - started, finished);
+		}
+	}
+
+	/**
+	 * The outcome of a {@link DfTask}.
+	 */
+	static final class DfResult {
+		final DfData blocks;
+		final DfData inodes;
+		final long latency;
+		/**
+		 * When the check finished, in millis since the epoch.
+		 */
+		final long time;
+		DfResult(DfData blocks, DfData inodes, long latency, long time) {
+			this.blocks = blocks;
+			this.inodes = inodes;
+			this.latency = latency;
+			this.time = time;
+		}
+	}
 
 	/**
 	 * Data container representing a device/mount point and all its attendant data.
@@ -586,16 +1032,17 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	private static final Timer TIMER = new Timer("DiskspaceMonitor Kill Timer", true);
 
 	/**
-	 * Sets a background task to kill the child process of this monitor
+	 * Sets a background task to kill a child process of this monitor
 	 * if it's taking too long to produce data.  Caller holds reference to passed
 	 * object and calls {@link KillTimerTask#cancel()} once background work has completed.
 	 *
+	 * @param process the process to kill
 	 * @param delay millis to wait before killing background process
 	 * @see Timer
 	 * @return {@link KillTimerTask} object used to cancel timer.
 	 */
-	private KillTimerTask setKillTimer(long delay) {
-		KillTimerTask tt = new KillTimerTask();
+	private static KillTimerTask setKillTimer(Process process, long delay) {
+		KillTimerTask tt = new KillTimerTask(process);
 		TIMER.schedule(tt, delay);
 		return tt;
 	}
@@ -605,14 +1052,20 @@ public class LinuxDiskspaceJMXWrapper extends Thread implements Monitor {
 	 *
 	 *
 	 */
-	private class KillTimerTask extends TimerTask {
+	private static class KillTimerTask extends TimerTask {
+		private final Process process;
+		volatile boolean fired = false;
+		KillTimerTask(Process process) {
+			this.process = process;
+		}
 		@Override
 		public void run() {
 			if (log.isDebugEnabled()) {
 				log.debug("Killing DiskspaceMonitor child process.");
 			}
-			// kill destroys the child process of the thread, not the thread itself
-			LinuxDiskspaceJMXWrapper.this.kill();
+			// kill destroys the child process of the worker, not the worker itself
+			fired = true;
+			process.destroy();
 		}
 	}
 
@@ -41,7 +41,9 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * and is read out of the /proc filesystem on a configurable period.
  * </p>
  * <h3>JMX Data Path</h3>
- * <code>sysmon.linux.beanpath:type=EntropyLevel</code>
+ * <code>sysmon.linux.beanpath:type=EntropyLevel</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=EntropyLevel</code>
  * <h3>Configuration parameters</h3>
  * <em>Note that any value not set in the config file will use the default value.</em>
  * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
@@ -124,6 +126,11 @@ public class LinuxEntropyLevelJMXWrapper extends Thread implements Monitor {
 	 */
 	final String beanPath;
 
+	/**
+	 * Compressed history and rollups of the entropy pool size.
+	 */
+	final LinuxMetricHistory history;
+
 	/**
 	 * Constructs a new {@link LinuxEntropyLevel} object.  You must call
 	 * {@link #startMonitoring()} to start the background thread that will
@@ -158,6 +165,8 @@ public class LinuxEntropyLevelJMXWrapper extends Thread implements Monitor {
 			throw new LinuxMonitoringException("Invalid config parameter for " + CONFIG_KEY_ENTROPY_LEVEL_PERIOD, e);
 		}
 
+		this.history = new LinuxMetricHistory(config, "EntropyLevel");
+
 		// Check to make sure it will all work.
 		if(!DATA_PATH.exists()) {
 			throw new LinuxMonitoringException("No such path: " + DATA_PATH.getAbsolutePath() +
@@ -174,6 +183,7 @@ public class LinuxEntropyLevelJMXWrapper extends Thread implements Monitor {
 			// take a reading
 			readData();
 			JMXUtils.registerMBean(bean, beanPath);
+			history.register();
 		} catch(JMException e){
 			final String msg = "Error while registering bean to path " + beanPath;
 			throw new LinuxMonitoringException(msg,e);
@@ -222,6 +232,7 @@ public class LinuxEntropyLevelJMXWrapper extends Thread implements Monitor {
 				log.warn("Error parsing value: " + entropyValue, e);
 			}
 			bean.updateValue(entropyLevel);
+			history.record(beanPath, bean);
 		} catch (IOException e) {
 			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
 		} finally {
@@ -44,6 +44,14 @@ public class LinuxFileSystem implements LinuxFileSystemMBean {
 	private Long availableInodes;
 	private Byte percentageInodesUsed;
 
+	private Long statLatencyInMillis;
+	private boolean stale;
+
+	private Double fillRateInMegabytesPerSecond;
+	private Double secondsUntilFull;
+	private Double inodeFillRatePerSecond;
+	private Double secondsUntilInodesFull;
+
 	public LinuxFileSystem(
 			String objectName,
 			String filesystemName,
@@ -58,6 +66,28 @@ public class LinuxFileSystem implements LinuxFileSystemMBean {
 			Long availableInodes,
 			Byte percentageInodesUsed
 			) {
+		this(objectName, filesystemName, filesytemType, mountPoint,
+		     totalMegabytes, usedMegabytes, availableMegabytes, percentageSpaceUsed,
+		     totalInodes, usedInodes, availableInodes, percentageInodesUsed,
+		     null, false);
+	}
+
+	public LinuxFileSystem(
+			String objectName,
+			String filesystemName,
+			String filesytemType,
+			String mountPoint,
+			Long totalMegabytes,
+			Long usedMegabytes,
+			Long availableMegabytes,
+			Byte percentageSpaceUsed,
+			Long totalInodes,
+			Long usedInodes,
+			Long availableInodes,
+			Byte percentageInodesUsed,
+			Long statLatencyInMillis,
+			boolean stale
+			) {
 		this.objectName = objectName;
 		this.deviceName = filesystemName;
 		this.filesytemType = filesytemType;
@@ -70,6 +100,8 @@ public class LinuxFileSystem implements LinuxFileSystemMBean {
 		this.usedInodes = usedInodes;
 		this.availableInodes = availableInodes;
 		this.percentageInodesUsed = percentageInodesUsed;
+		this.statLatencyInMillis = statLatencyInMillis;
+		this.stale = stale;
 	}
 
 	public String getDevicName() {
@@ -116,6 +148,47 @@ public class LinuxFileSystem implements LinuxFileSystemMBean {
 		return percentageInodesUsed;
 	}
 
+	public Long getStatLatencyInMillis() {
+		return statLatencyInMillis;
+	}
+
+	public boolean isStale() {
+		return stale;
+	}
+
+	public Double getFillRateInMegabytesPerSecond() {
+		return fillRateInMegabytesPerSecond;
+	}
+
+	public Double getSecondsUntilFull() {
+		return secondsUntilFull;
+	}
+
+	public Double getInodeFillRatePerSecond() {
+		return inodeFillRatePerSecond;
+	}
+
+	public Double getSecondsUntilInodesFull() {
+		return secondsUntilInodesFull;
+	}
+
+	synchronized void forecast(Double fillRateInMegabytesPerSecond,
+	                           Double secondsUntilFull,
+	                           Double inodeFillRatePerSecond,
+	                           Double secondsUntilInodesFull) {
+		this.fillRateInMegabytesPerSecond = fillRateInMegabytesPerSecond;
+		this.secondsUntilFull = secondsUntilFull;
+		this.inodeFillRatePerSecond = inodeFillRatePerSecond;
+		this.secondsUntilInodesFull = secondsUntilInodesFull;
+	}
+
+	/**
+	 * Flags the values as left over from the last successful check.
+	 */
+	public synchronized void markStale() {
+		this.stale = true;
+	}
+
 	public synchronized void takeValues(LinuxFileSystemMBean dataBean) throws LinuxMonitoringException {
 		try {
 			Field[] fields = dataBean.getClass().getDeclaredFields();
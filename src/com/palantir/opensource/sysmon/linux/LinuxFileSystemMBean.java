@@ -40,4 +40,38 @@ public interface LinuxFileSystemMBean {
 
 	public abstract Byte getPercentageInodesUsed();
 
+	/**
+	 * @return how long, in milliseconds, the last successful check of this filesystem took.
+	 */
+	public abstract Long getStatLatencyInMillis();
+
+	/**
+	 * @return true if the last check of this filesystem failed or timed out, in which case the
+	 * other values are those of the last successful check, if any.
+	 */
+	public abstract boolean isStale();
+
+	/**
+	 * @return the trend of the used space, in megabytes per second, over the forecast window;
+	 * negative while space is being freed.  Null until there have been enough checks.
+	 */
+	public abstract Double getFillRateInMegabytesPerSecond();
+
+	/**
+	 * @return seconds until the available space runs out at the current fill rate, or null if
+	 * the filesystem isn't filling.
+	 */
+	public abstract Double getSecondsUntilFull();
+
+	/**
+	 * @return the trend of the used inodes, in inodes per second, over the forecast window.
+	 */
+	public abstract Double getInodeFillRatePerSecond();
+
+	/**
+	 * @return seconds until the free inodes run out at the current rate, or null if they aren't
+	 * being used up.
+	 */
+	public abstract Double getSecondsUntilInodesFull();
+
 }
\ No newline at end of file
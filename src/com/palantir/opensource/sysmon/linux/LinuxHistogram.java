@@ -0,0 +1,166 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import com.palantir.opensource.sysmon.util.IntervalHistogramRecorder;
+import com.palantir.opensource.sysmon.util.LogLinearHistogram;
+
+/**
+ * <p>
+ * Percentiles of one attribute of one bean over fixed windows of time, fed from every sample
+ * the monitor takes.  See {@link LinuxMetricHistory} for where these are published.
+ * </p><p>
+ * Samples go into a {@link LogLinearHistogram} through an {@link IntervalHistogramRecorder}, so
+ * they cost a few shifts and increments each and JMX reads never hold up the monitor thread.
+ * When a window ends, its histogram is swapped out and published; the attributes of this bean
+ * always describe the most recently completed window.  Values are kept to three decimal places
+ * and reported to within 1/64 (about 1.6%) of the recorded value.
+ * </p>
+ */
+public class LinuxHistogram implements LinuxHistogramMBean {
+
+	/**
+	 * Recorded values are multiplied by this before being stored as longs.
+	 */
+	static final double SCALE = 1000.0;
+
+	static final int PRECISION_BITS = 7;
+
+	/**
+	 * Up to about 2.8e11 after scaling, enough for 280GB/s or three days in milliseconds.
+	 */
+	static final int MAX_VALUE_BITS = 48;
+
+	final String objectName;
+	final String attribute;
+	final long windowMillis;
+	private final IntervalHistogramRecorder recorder;
+	private volatile long nextRotation;
+	private long windowStart;
+	private volatile Window completed;
+
+	public LinuxHistogram(String objectName, String attribute, long windowSeconds) {
+		if(windowSeconds <= 0) {
+			throw new IllegalArgumentException("Histogram window must be positive: " + windowSeconds);
+		}
+		this.objectName = objectName;
+		this.attribute = attribute;
+		this.windowMillis = 1000L * windowSeconds;
+		this.recorder = new IntervalHistogramRecorder(PRECISION_BITS, MAX_VALUE_BITS);
+		this.completed = new Window(0, 0, new LogLinearHistogram(PRECISION_BITS, MAX_VALUE_BITS));
+		final long now = System.currentTimeMillis();
+		this.windowStart = now - now % windowMillis;
+		this.nextRotation = windowStart + windowMillis;
+	}
+
+	/**
+	 * Records a sample taken at <code>timestamp</code>.  NaN is ignored.
+	 */
+	void record(long timestamp, double value) {
+		if(timestamp >= nextRotation) {
+			rotate(timestamp);
+		}
+		if(!Double.isNaN(value)) {
+			recorder.record(Math.round(value * SCALE));
+		}
+	}
+
+	/**
+	 * Publishes the current window if it has ended.
+	 */
+	private synchronized void rotate(long now) {
+		if(now < nextRotation) {
+			// someone else got here first
+			return;
+		}
+		final LogLinearHistogram interval = recorder.getIntervalHistogram(null);
+		completed = new Window(windowStart, nextRotation, interval);
+		windowStart = now - now % windowMillis;
+		nextRotation = windowStart + windowMillis;
+	}
+
+	private Window current() {
+		final long now = System.currentTimeMillis();
+		if(now >= nextRotation) {
+			rotate(now);
+		}
+		return completed;
+	}
+
+	private static double unscale(long value) {
+		return value / SCALE;
+	}
+
+	public String getAttribute() {
+		return attribute;
+	}
+
+	public long getWindowSeconds() {
+		return windowMillis / 1000L;
+	}
+
+	public long getWindowStartMillis() {
+		return current().start;
+	}
+
+	public long getWindowEndMillis() {
+		return current().end;
+	}
+
+	public long getCount() {
+		return current().histogram.getTotalCount();
+	}
+
+	public double getP50() {
+		return percentile(50.0);
+	}
+
+	public double getP90() {
+		return percentile(90.0);
+	}
+
+	public double getP99() {
+		return percentile(99.0);
+	}
+
+	public double getP999() {
+		return percentile(99.9);
+	}
+
+	public double getMax() {
+		return unscale(current().histogram.getMax());
+	}
+
+	public double percentile(double percentile) {
+		if(!(percentile >= 0.0 && percentile <= 100.0)) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		return unscale(current().histogram.getValueAtPercentile(percentile));
+	}
+
+	/**
+	 * A completed window.  Never modified once published.
+	 */
+	private static final class Window {
+		final long start;
+		final long end;
+		final LogLinearHistogram histogram;
+
+		Window(long start, long end, LogLinearHistogram histogram) {
+			this.start = start;
+			this.end = end;
+			this.histogram = histogram;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for {@link LinuxHistogram}.  Values are for the most recently completed
+ * window.
+ */
+public interface LinuxHistogramMBean {
+
+	public abstract String getAttribute();
+
+	public abstract long getWindowSeconds();
+
+	/**
+	 * @return the start of the most recently completed window, in milliseconds since the epoch,
+	 * or zero if no window has completed yet.
+	 */
+	public abstract long getWindowStartMillis();
+
+	/**
+	 * @return the end of the most recently completed window, in milliseconds since the epoch,
+	 * or zero if no window has completed yet.
+	 */
+	public abstract long getWindowEndMillis();
+
+	public abstract long getCount();
+
+	public abstract double getP50();
+
+	public abstract double getP90();
+
+	public abstract double getP99();
+
+	public abstract double getP999();
+
+	public abstract double getMax();
+
+	/**
+	 * @return the value at the passed percentile (0 to 100) of the most recently completed window.
+	 */
+	public abstract double percentile(double percentile);
+}
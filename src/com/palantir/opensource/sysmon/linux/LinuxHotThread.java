@@ -0,0 +1,96 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the thread at one rank, used by
+ * {@link LinuxHotThreadsJMXWrapper}.
+ */
+public class LinuxHotThread implements LinuxHotThreadMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String rankedBy;
+	final int rank;
+
+	private int tid = 0;
+	private long javaThreadId = -1;
+	private String name = "";
+	private double cpuPercentage = 0;
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxHotThread(String objectName, String rankedBy, int rank) {
+		this.objectName = objectName;
+		this.rankedBy = rankedBy;
+		this.rank = rank;
+	}
+
+	synchronized void update(int tid, long javaThreadId, String name, double cpuPercentage,
+	                         double readBytesPerSecond, double writeBytesPerSecond) {
+		this.tid = tid;
+		this.javaThreadId = javaThreadId;
+		this.name = name;
+		this.cpuPercentage = cpuPercentage;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * No thread at this rank.
+	 */
+	void clear() {
+		update(0, -1, "", 0.0, 0.0, 0.0);
+	}
+
+	public String getRankedBy() {
+		return rankedBy;
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public synchronized int getTid() {
+		return tid;
+	}
+
+	public synchronized long getJavaThreadId() {
+		return javaThreadId;
+	}
+
+	public synchronized String getName() {
+		return name;
+	}
+
+	public synchronized double getCpuPercentage() {
+		return cpuPercentage;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,58 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for one rank of {@link LinuxHotThreadsJMXWrapper}.
+ */
+public interface LinuxHotThreadMBean {
+
+	/**
+	 * @return what threads are ranked by: <code>cpu</code> or <code>io</code> (bytes read plus
+	 * written).
+	 */
+	public abstract String getRankedBy();
+
+	/**
+	 * @return the rank, starting from 1.
+	 */
+	public abstract int getRank();
+
+	/**
+	 * @return the native thread id, or 0 if fewer threads than ranks had anything to rank.
+	 */
+	public abstract int getTid();
+
+	/**
+	 * @return the {@link Thread#getId()} of the Java thread, or -1 for threads the JVM runs
+	 * itself (garbage collection, compilation) and threads that couldn't be matched.
+	 */
+	public abstract long getJavaThreadId();
+
+	/**
+	 * @return the Java thread's name or, for other threads, the native thread name.
+	 */
+	public abstract String getName();
+
+	/**
+	 * @return user plus system CPU time as a percentage of one CPU.
+	 */
+	public abstract double getCpuPercentage();
+
+	public abstract double getReadBytesPerSecond();
+
+	public abstract double getWriteBytesPerSecond();
+
+	public abstract long getTimestamp();
+}
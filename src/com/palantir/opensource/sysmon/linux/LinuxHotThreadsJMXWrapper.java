@@ -0,0 +1,564 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors which of the JVM's own threads use the most CPU and I/O.</p>
+ * <p>
+ * Each tick reads <code>/proc/self/task/&lt;tid&gt;/stat</code> and <code>io</code> for every
+ * thread of the process, through files opened once per thread and re-read with positional reads
+ * ({@link PositionalFileReader}), and publishes the threads with the most CPU time and the most
+ * bytes read and written since the last tick.  Threads are published one bean per rank, so bean
+ * names stay the same as threads come and go.
+ * </p><p>
+ * The kernel only knows native thread ids, so they are matched to Java threads through a thread
+ * dump, taken with the <code>threadPrint</code> operation of the
+ * <code>com.sun.management:type=DiagnosticCommand</code> MBean (HotSpot, Java 7u4 and later).
+ * Each thread in the dump carries its native id (<code>nid</code>), its name and, for Java
+ * threads, its Java thread id.  Matches are cached, and a dump is only taken when new native
+ * threads appear.  Threads the JVM runs itself, such as garbage collection and compiler threads,
+ * are published under their names in the dump with a Java thread id of -1.  Where no dump can be
+ * taken, threads are published under their native names, which on JVMs before Java 9 are all
+ * <code>java</code>, with a Java thread id of -1.  Off by default.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each rank will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=hot-threads,by=&lt;cpu|io&gt;,rank=&lt;n&gt;</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=hot-threads</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.hotthreads.enabled</td>
+ * <td>whether to run this monitor at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_HOT_THREADS_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.hotthreads.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_HOT_THREADS_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.hotthreads.count</td>
+ * <td>number of threads published for each ranking</td>
+ * <td><code>5</code></td>
+ * <td>{@link #CONFIG_KEY_HOT_THREADS_COUNT}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxHotThreadsJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxHotThreadsJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".hotthreads";
+	/**
+	 * Set to <code>true</code> to turn on this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HOT_THREADS_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_HOT_THREADS_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HOT_THREADS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_HOT_THREADS_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Number of threads published for each ranking.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HOT_THREADS_COUNT default value
+	 */
+	public static final String CONFIG_KEY_HOT_THREADS_COUNT = CONFIG_KEY_PREFIX + ".count";
+	/**
+	 * The monitor is off unless asked for.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HOT_THREADS_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_HOT_THREADS_ENABLED = false;
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HOT_THREADS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_HOT_THREADS_PERIOD = 5000;
+	/**
+	 * Default number of threads published for each ranking.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HOT_THREADS_COUNT for config key to override default value.
+	 */
+	public static final int DEFAULT_HOT_THREADS_COUNT = 5;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=hot-threads,by=";
+
+	static final File TASK_PATH = new File("/proc/self/task");
+
+	static final String[] RANKINGS = { "cpu", "io" };
+	static final int CPU = 0;
+	static final int IO = 1;
+
+	static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+	/**
+	 * {@link Task#javaThreadId} of threads not matched yet.
+	 */
+	static final long UNMATCHED = -2;
+	/**
+	 * {@link Task#javaThreadId} of threads with no Java thread, or none known.
+	 */
+	static final long NOT_JAVA = -1;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final int count;
+	final File taskPath;
+	final MBeanServer server;
+	/**
+	 * The MBean thread dumps are taken with, or null if there is none.
+	 */
+	final ObjectName diagnosticCommand;
+	final LinuxMetricHistory history;
+	/**
+	 * Indexed by ranking, then rank.
+	 */
+	final LinuxHotThread[][] ranks;
+	final Map<String, Task> tasks = new HashMap<String, Task>();
+	final ProcessStatLine statLine = new ProcessStatLine();
+	final KeyValueTable io = new KeyValueTable();
+	int generation = 0;
+	/**
+	 * Number of thread dumps taken to match Java threads to native ones.
+	 */
+	int matchCount = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxHotThreadsJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, TASK_PATH, ManagementFactory.getPlatformMBeanServer());
+	}
+
+	LinuxHotThreadsJMXWrapper(Properties config, File taskPath, MBeanServer server)
+		throws LinuxMonitoringException {
+		super(LinuxHotThreadsJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		String key = CONFIG_KEY_HOT_THREADS_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_HOT_THREADS_PERIOD);
+			key = CONFIG_KEY_HOT_THREADS_COUNT;
+			this.count = PropertiesUtils.extractInteger(config, key, DEFAULT_HOT_THREADS_COUNT);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		if(count < 1) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_HOT_THREADS_COUNT + ": " + count);
+		}
+		this.history = new LinuxMetricHistory(config, "hot-threads");
+		this.ranks = new LinuxHotThread[RANKINGS.length][count];
+		for(int r = 0; r < RANKINGS.length; r++) {
+			for(int i = 0; i < count; i++) {
+				ranks[r][i] = new LinuxHotThread(beanPath + OBJECT_NAME_PREFIX + RANKINGS[r] +
+				                                 ",rank=" + (i + 1), RANKINGS[r], i + 1);
+			}
+		}
+		this.taskPath = taskPath;
+		this.server = server;
+		try {
+			final ObjectName name = new ObjectName(DIAGNOSTIC_COMMAND);
+			if(server.isRegistered(name)) {
+				this.diagnosticCommand = name;
+			} else {
+				this.diagnosticCommand = null;
+				log.info("No " + DIAGNOSTIC_COMMAND + " MBean to take thread dumps with; threads " +
+				         "will be published under their native names.");
+			}
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while naming " + DIAGNOSTIC_COMMAND, e);
+		}
+
+		// check to make sure it will all work
+		final String[] ids = taskPath.list();
+		if(ids == null || ids.length == 0) {
+			throw new LinuxMonitoringException("No such path: " + taskPath.getAbsolutePath() +
+							". Can't read thread statistics. (Is /proc mounted?)");
+		}
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			for(LinuxHotThread[] ranking : ranks) {
+				for(LinuxHotThread rank : ranking) {
+					objectName = rank.objectName;
+					JMXUtils.registerMBean(rank, objectName);
+				}
+			}
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down hot thread monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(Task task : tasks.values()) {
+			task.close();
+		}
+		tasks.clear();
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final String[] ids = taskPath.list();
+		if(ids == null) {
+			throw new LinuxMonitoringException("Can't list " + taskPath.getAbsolutePath());
+		}
+		generation++;
+		boolean unmatched = false;
+		final List<Task> rated = new ArrayList<Task>(ids.length);
+		for(String id : ids) {
+			Task task = tasks.get(id);
+			if(task == null) {
+				final File dir = new File(taskPath, id);
+				try {
+					task = new Task(id, new PositionalFileReader(new File(dir, "stat"), 512));
+				} catch (IOException e) {
+					// exited since the listing
+					continue;
+				}
+				task.io = PositionalFileReader.openIfReadable(new File(dir, "io"), 256);
+				task.nativeName = readName(new File(dir, "comm"));
+				tasks.put(id, task);
+				unmatched = true;
+			}
+			if(task.read()) {
+				task.generation = generation;
+				if(task.rated) {
+					rated.add(task);
+				}
+			}
+		}
+		for(Iterator<Task> it = tasks.values().iterator(); it.hasNext();) {
+			final Task task = it.next();
+			if(task.generation != generation) {
+				task.close();
+				it.remove();
+			}
+		}
+		if(unmatched) {
+			match();
+		}
+
+		for(int r = 0; r < RANKINGS.length; r++) {
+			final int ranking = r;
+			Collections.sort(rated, new Comparator<Task>() {
+				public int compare(Task o1, Task o2) {
+					return Double.compare(o2.value(ranking), o1.value(ranking));
+				}
+			});
+			for(int i = 0; i < count; i++) {
+				final LinuxHotThread bean = ranks[r][i];
+				if(i < rated.size() && rated.get(i).value(r) > 0) {
+					final Task task = rated.get(i);
+					bean.update(task.tid, task.javaThreadId, task.name, task.cpuPercentage,
+					            task.readBytesPerSecond, task.writeBytesPerSecond);
+				} else {
+					bean.clear();
+				}
+				history.record(bean.objectName, bean);
+			}
+		}
+	}
+
+	/**
+	 * Matches every thread to its Java thread from a thread dump, refreshing the names of those
+	 * matched before.
+	 */
+	void match() {
+		matchCount++;
+		final Map<Integer, DumpedThread> dumped = dumpThreads();
+		for(Task task : tasks.values()) {
+			final DumpedThread thread = dumped.get(task.tid);
+			if(thread == null) {
+				task.javaThreadId = NOT_JAVA;
+				task.name = task.nativeName;
+			} else {
+				task.javaThreadId = thread.javaThreadId;
+				task.name = thread.name;
+			}
+		}
+	}
+
+	/**
+	 * @return the threads of a thread dump by native id, or none if no dump could be taken.
+	 */
+	private Map<Integer, DumpedThread> dumpThreads() {
+		if(diagnosticCommand == null) {
+			return Collections.emptyMap();
+		}
+		final Object dump;
+		try {
+			dump = server.invoke(diagnosticCommand, "threadPrint", new Object[] { new String[0] },
+			                     new String[] { String[].class.getName() });
+		} catch (JMException e) {
+			log.warn("Error taking thread dump; publishing native thread names.", e);
+			return Collections.emptyMap();
+		}
+		return parseThreadDump(String.valueOf(dump));
+	}
+
+	/**
+	 * Parses the header lines of a thread dump, such as
+	 * <pre>
+	 * "main" #1 prio=5 os_prio=0 cpu=228.82ms elapsed=0.41s tid=0x00007f78f4024ef0 nid=0x2a22 runnable
+	 * "GC Thread#0" os_prio=0 cpu=1.21ms elapsed=0.42s tid=0x00007f78f403b2a0 nid=0x2a23 runnable
+	 * </pre>
+	 * The Java thread id (<code>#1</code>) is missing for threads the JVM runs itself.  Native ids
+	 * are in hex, or in decimal from Java 19 on.
+	 * @return the threads by native id.
+	 */
+	static Map<Integer, DumpedThread> parseThreadDump(String dump) {
+		final Map<Integer, DumpedThread> threads = new HashMap<Integer, DumpedThread>();
+		for(String line : dump.split("\n")) {
+			if(!line.startsWith("\"")) {
+				continue;
+			}
+			final int nid = line.lastIndexOf(" nid=");
+			// names may hold anything, quotes included, but the fields after them don't
+			final int nameEnd = nid < 0 ? -1 : line.lastIndexOf('"', nid);
+			if(nameEnd <= 0) {
+				continue;
+			}
+			int end = nid + " nid=".length();
+			while(end < line.length() && line.charAt(end) != ' ') {
+				end++;
+			}
+			final String id = line.substring(nid + " nid=".length(), end);
+			final int tid;
+			try {
+				tid = id.startsWith("0x") ? Integer.parseInt(id.substring(2), 16) : Integer.parseInt(id);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			long javaThreadId = NOT_JAVA;
+			if(line.startsWith(" #", nameEnd + 1)) {
+				int i = nameEnd + 3;
+				long value = 0;
+				while(i < nid && Character.isDigit(line.charAt(i))) {
+					value = value * 10 + (line.charAt(i) - '0');
+					i++;
+				}
+				if(i > nameEnd + 3) {
+					javaThreadId = value;
+				}
+			}
+			threads.put(tid, new DumpedThread(line.substring(1, nameEnd), javaThreadId));
+		}
+		return threads;
+	}
+
+	/**
+	 * A thread in a thread dump.
+	 */
+	static final class DumpedThread {
+		final String name;
+		final long javaThreadId;
+
+		DumpedThread(String name, long javaThreadId) {
+			this.name = name;
+			this.javaThreadId = javaThreadId;
+		}
+	}
+
+	/**
+	 * @return the native name of a thread, or an empty string if it can't be read.
+	 */
+	private static String readName(File comm) {
+		try {
+			final PositionalFileReader reader = new PositionalFileReader(comm, 32);
+			try {
+				return reader.readString();
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * The open files and last reading of one of the process's threads.
+	 */
+	final class Task {
+		final String id;
+		final int tid;
+		final PositionalFileReader stat;
+		PositionalFileReader io;
+		String nativeName = "";
+		long javaThreadId = UNMATCHED;
+		String name = "";
+		long cpuTicks = 0;
+		long readBytes = 0;
+		long writeBytes = 0;
+		long readNanos = 0;
+		boolean rated = false;
+		double cpuPercentage = 0;
+		double readBytesPerSecond = 0;
+		double writeBytesPerSecond = 0;
+		int generation = 0;
+
+		Task(String id, PositionalFileReader stat) {
+			this.id = id;
+			this.tid = Integer.parseInt(id);
+			this.stat = stat;
+		}
+
+		/**
+		 * @return false if the thread exited.
+		 */
+		boolean read() {
+			final long cpuTicks;
+			try {
+				final int length = stat.read();
+				if(!statLine.parse(stat.getBuffer(), length)) {
+					return false;
+				}
+				cpuTicks = statLine.getCpuTicks();
+			} catch (IOException e) {
+				return false;
+			}
+			long readBytes = 0;
+			long writeBytes = 0;
+			if(io != null) {
+				try {
+					final int length = io.read();
+					LinuxHotThreadsJMXWrapper.this.io.parse(io.getBuffer(), length);
+					readBytes = LinuxHotThreadsJMXWrapper.this.io.get("read_bytes", 0);
+					writeBytes = LinuxHotThreadsJMXWrapper.this.io.get("write_bytes", 0);
+				} catch (IOException e) {
+					// exited; the stat read next tick will tell
+				}
+			}
+			final long now = System.nanoTime();
+			rated = readNanos != 0 && now > readNanos;
+			if(rated) {
+				final double seconds = (now - readNanos) / 1e9;
+				cpuPercentage = CounterRates.delta(this.cpuTicks, cpuTicks, 64) * 100.0 /
+				                ProcessStatLine.CLOCK_TICKS_PER_SECOND / seconds;
+				readBytesPerSecond = CounterRates.delta(this.readBytes, readBytes, 64) / seconds;
+				writeBytesPerSecond = CounterRates.delta(this.writeBytes, writeBytes, 64) / seconds;
+			}
+			this.cpuTicks = cpuTicks;
+			this.readBytes = readBytes;
+			this.writeBytes = writeBytes;
+			readNanos = now;
+			return true;
+		}
+
+		double value(int ranking) {
+			return ranking == CPU ? cpuPercentage : readBytesPerSecond + writeBytesPerSecond;
+		}
+
+		void close() {
+			stat.close();
+			if(io != null) {
+				io.close();
+			}
+		}
+	}
+}
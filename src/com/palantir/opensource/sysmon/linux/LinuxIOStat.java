@@ -19,6 +19,8 @@ import java.lang.reflect.Modifier;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import com.palantir.opensource.sysmon.util.RollupSeries;
+
 /**
  * <p>
  * Data container and JMX MBean implementation for I/O statistics used by
@@ -51,6 +53,11 @@ public class LinuxIOStat implements LinuxIOStatMBean {
 
 	final String objectName;
 
+	/**
+	 * Where windowed queries are answered from.  May be null.
+	 */
+	final LinuxMetricHistory history;
+
 
 	/**
 	 * Over what period the aveages were computed, in seconds;
@@ -110,7 +117,12 @@ public class LinuxIOStat implements LinuxIOStatMBean {
 
 
 	public LinuxIOStat(String objectName) {
+		this(objectName, null);
+	}
+
+	public LinuxIOStat(String objectName, LinuxMetricHistory history) {
 		this.objectName = objectName;
+		this.history = history;
 	}
 
 	public synchronized void takeValues(LinuxIOStatMBean dataBean) throws LinuxMonitoringException {
@@ -211,6 +223,34 @@ public class LinuxIOStat implements LinuxIOStatMBean {
 		return bandwidthUtilizationPercentage;
 	}
 
+	public double max(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getMax();
+	}
+
+	public double min(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getMin();
+	}
+
+	public double avg(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getAverage();
+	}
+
+	public double percentile(String attribute, long windowSeconds, double percentile) {
+		checkHistory();
+		return history.percentile(objectName, attribute, windowSeconds, percentile);
+	}
+
+	private RollupSeries.Aggregate window(String attribute, long windowSeconds) {
+		checkHistory();
+		return history.window(objectName, attribute, windowSeconds);
+	}
+
+	private void checkHistory() {
+		if(history == null) {
+			throw new IllegalStateException("No history is retained for " + objectName);
+		}
+	}
+
 
 	@Override
 	public int hashCode() {
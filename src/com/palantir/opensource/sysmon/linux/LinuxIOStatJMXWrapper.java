@@ -45,7 +45,11 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  *
  * <h3>JMX Data Path</h3>
  * Each device will be placed at:
- * <code>sysmon.linux.beanpath:type=io-device,devicename=&lt;devicename&gt;</code>
+ * <code>sysmon.linux.beanpath:type=io-device,devicename=&lt;devicename&gt;</code><br/>
+ * Recent history of the devices' values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=io-device</code><br/>
+ * Percentile histograms ({@link LinuxHistogram}) of selected attributes will be at:
+ * <code>sysmon.linux.beanpath:type=histogram,source=io-device,devicename=&lt;devicename&gt;,attribute=&lt;attribute&gt;</code>
  *
  * <h3>Configuration parameters</h3>
  * <em>Note that any value not set in the config file will use the default value.</em>
@@ -62,6 +66,10 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * <td>period, in seconds, between iostat reports</td>
  * <td><code>60</code></td>
  * <td>{@link #CONFIG_KEY_IOSTAT_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.iostat.histogramAttributes</td>
+ * <td>comma-separated attributes to keep percentile histograms of.  Empty disables them.</td>
+ * <td><code>AverageWaitTimeInMillis,AverageServiceTimeInMillis,BandwidthUtilizationPercentage</code></td>
+ * <td>{@link #CONFIG_KEY_IOSTAT_HISTOGRAMS}</td></tr>
  * </tr></table>
  * @see Monitor Lifecycle documentation
  * @see <a href='http://linux.die.net/man/1/iostat'>iostat(1)</a> for more information on <code>iostat</code>.
@@ -108,6 +116,15 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 	 */
 	public static final String CONFIG_KEY_IOSTAT_PERIOD = CONFIG_KEY_PREFIX + ".period";
 
+	/**
+	 * Attributes of each device to keep percentile histograms of, comma-separated.
+	 *
+	 * Config key: {@value}
+	 * @see LinuxIOStatJMXWrapper#DEFAULT_IOSTAT_HISTOGRAMS default value for this config parameter
+	 * @see LinuxHistogram
+	 */
+	public static final String CONFIG_KEY_IOSTAT_HISTOGRAMS = CONFIG_KEY_PREFIX + ".histogramAttributes";
+
 	/**
 	 * Default path to iostat executable. Defaults to "iostat" (uses $PATH to find executable).
 	 *
@@ -135,6 +152,15 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 	 */
 	public static final Integer DEFAULT_IOSTAT_PERIOD = Integer.valueOf(60);
 
+	/**
+	 * Default attributes to keep percentile histograms of: await, svctm and %util.
+	 *
+	 * Config key: {@value}
+	 * @see LinuxIOStatJMXWrapper#CONFIG_KEY_IOSTAT_HISTOGRAMS Instructions on overriding this value.
+	 */
+	public static final String DEFAULT_IOSTAT_HISTOGRAMS =
+		"AverageWaitTimeInMillis,AverageServiceTimeInMillis,BandwidthUtilizationPercentage";
+
 	/**
 	 * Relative JMX data path where this monitor publishes its data.  This will have the
 	 * individual device name appended to the end in the JMX tree.
@@ -236,6 +262,7 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 	Pattern headerPattern = null;
 
 	final Map<String,LinuxIOStat> beans = new HashMap<String, LinuxIOStat>();
+	final LinuxMetricHistory history;
 
 	/**
 	 * Constructs a new iostat JMX wrapper.  Does not start monitoring.  Call
@@ -271,6 +298,9 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 			String cmd = iostatPath + " " + iostatOpts + " " + period;
 			this.iostatCmd = (cmd).split("\\s+");
 			log.info("iostat cmd: " + cmd);
+			history = new LinuxMetricHistory(config, "io-device",
+			                                 config.getProperty(CONFIG_KEY_IOSTAT_HISTOGRAMS,
+			                                                    DEFAULT_IOSTAT_HISTOGRAMS));
 
 		} catch (NumberFormatException e) {
 			throw new LinuxMonitoringException("Invalid config Parameter for " +
@@ -292,6 +322,7 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 		try {
 			// check that we can start iostat in the background
 			startIOStat();
+			history.register();
 			// jump off into thread land
 			start();
 		} catch (LinuxMonitoringException e) {
@@ -474,6 +505,7 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 	private void removeBean(LinuxIOStat bean) {
 		log.info("Removing " + bean + " from MBean server");
 		JMXUtils.unregisterMBeanCatchAndLogExceptions(bean.objectName);
+		history.remove(bean.objectName);
 	}
 
 	private void processLine(String line) throws LinuxMonitoringException {
@@ -493,7 +525,7 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 		if(m.matches()) {
 			log.trace("Processing data line: " + line);
 			String objectName = m.group(1);
-			LinuxIOStat dataRow = new LinuxIOStat(beanPath + objectName);
+			LinuxIOStat dataRow = new LinuxIOStat(beanPath + objectName, history);
 			dataRow.timestamp = System.currentTimeMillis();
 			dataRow.device = m.group(1);
 			dataRow.samplePeriodInSeconds = period;
@@ -538,6 +570,7 @@ public class LinuxIOStatJMXWrapper extends Thread implements Monitor {
 		} else {
 			jmxBean.takeValues(bean);
 		}
+		history.record(bean.objectName, bean, bean.timestamp);
 	}
 
 	/**
@@ -45,4 +45,28 @@ public interface LinuxIOStatMBean {
 
 	public abstract float getBandwidthUtilizationPercentage();
 
+	/**
+	 * @return largest value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double max(String attribute, long windowSeconds);
+
+	/**
+	 * @return smallest value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double min(String attribute, long windowSeconds);
+
+	/**
+	 * @return mean value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double avg(String attribute, long windowSeconds);
+
+	/**
+	 * @return nearest-rank percentile (0 to 100) of <code>attribute</code> over the last
+	 * <code>windowSeconds</code>, or NaN if none was retained.
+	 */
+	public abstract double percentile(String attribute, long windowSeconds, double percentile);
+
 }
\ No newline at end of file
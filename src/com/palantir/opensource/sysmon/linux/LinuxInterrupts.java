@@ -0,0 +1,143 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the interrupt or softirq counters of all CPUs,
+ * used by {@link LinuxInterruptsJMXWrapper}.
+ */
+public class LinuxInterrupts implements LinuxInterruptsMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String source;
+
+	private int cpuCount = 0;
+	private long total = 0;
+	private double totalPerSecond = 0;
+	private double imbalanceScore = 0;
+	private String busiestCpu = "";
+	private Map<String, Double> perSecondByCpu = Collections.emptyMap();
+	private Map<String, Double> perSecondByLine = Collections.emptyMap();
+	private Map<String, Double> imbalanceByLine = Collections.emptyMap();
+	private Map<String, String> descriptions = Collections.emptyMap();
+	private Map<String, Double> perSecondByGroup = Collections.emptyMap();
+	private Map<String, Double> imbalanceByGroup = Collections.emptyMap();
+	private int imbalancedGroupCount = 0;
+	private String imbalancedGroups = "";
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxInterrupts(String objectName, String source) {
+		this.objectName = objectName;
+		this.source = source;
+	}
+
+	/**
+	 * Publishes the counts of a reading.
+	 */
+	synchronized void update(int cpuCount, long total, Map<String, String> descriptions) {
+		this.cpuCount = cpuCount;
+		this.total = total;
+		this.descriptions = descriptions;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Publishes the rates since the previous reading.  The maps are published as passed and must
+	 * not be modified afterwards.
+	 */
+	synchronized void updateRates(double totalPerSecond, double imbalanceScore, String busiestCpu,
+	                              Map<String, Double> perSecondByCpu,
+	                              Map<String, Double> perSecondByLine,
+	                              Map<String, Double> imbalanceByLine,
+	                              Map<String, Double> perSecondByGroup,
+	                              Map<String, Double> imbalanceByGroup,
+	                              int imbalancedGroupCount, String imbalancedGroups) {
+		this.totalPerSecond = totalPerSecond;
+		this.imbalanceScore = imbalanceScore;
+		this.busiestCpu = busiestCpu;
+		this.perSecondByCpu = perSecondByCpu;
+		this.perSecondByLine = perSecondByLine;
+		this.imbalanceByLine = imbalanceByLine;
+		this.perSecondByGroup = perSecondByGroup;
+		this.imbalanceByGroup = imbalanceByGroup;
+		this.imbalancedGroupCount = imbalancedGroupCount;
+		this.imbalancedGroups = imbalancedGroups;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public synchronized int getCpuCount() {
+		return cpuCount;
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized double getTotalPerSecond() {
+		return totalPerSecond;
+	}
+
+	public synchronized double getImbalanceScore() {
+		return imbalanceScore;
+	}
+
+	public synchronized String getBusiestCpu() {
+		return busiestCpu;
+	}
+
+	public synchronized Map<String, Double> getPerSecondByCpu() {
+		return perSecondByCpu;
+	}
+
+	public synchronized Map<String, Double> getPerSecondByLine() {
+		return perSecondByLine;
+	}
+
+	public synchronized Map<String, Double> getImbalanceByLine() {
+		return imbalanceByLine;
+	}
+
+	public synchronized Map<String, String> getDescriptions() {
+		return descriptions;
+	}
+
+	public synchronized Map<String, Double> getPerSecondByGroup() {
+		return perSecondByGroup;
+	}
+
+	public synchronized Map<String, Double> getImbalanceByGroup() {
+		return imbalanceByGroup;
+	}
+
+	public synchronized int getImbalancedGroupCount() {
+		return imbalancedGroupCount;
+	}
+
+	public synchronized String getImbalancedGroups() {
+		return imbalancedGroups;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
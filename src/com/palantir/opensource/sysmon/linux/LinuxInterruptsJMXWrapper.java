@@ -0,0 +1,509 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PerCpuTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors how interrupts and softirqs are spread over the CPUs, from
+ * <code>/proc/interrupts</code> and <code>/proc/softirqs</code>.</p>
+ * <p>
+ * Both files are tables with a counter per CPU for each interrupt line or softirq type.  On large
+ * hosts they have hundreds of columns and rows, so they are kept open, re-read with positional
+ * reads ({@link PositionalFileReader}) and parsed in a single pass into reused arrays
+ * ({@link PerCpuTable}).
+ * </p><p>
+ * Rates are published per CPU and per line, along with an imbalance score (see
+ * {@link #imbalance(double[], int, int)}).  Interrupt lines are also grouped by device, using a
+ * regular expression on their descriptions, so that a NIC or NVMe drive whose queue interrupts
+ * all land on one core stands out.  Each softirq type is a group of its own.  Groups busier than
+ * a minimum rate whose imbalance score is above a threshold are flagged.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Hardware interrupts will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=interrupts,source=hardirq</code><br/>
+ * Softirqs will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=interrupts,source=softirq</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=interrupts</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.interrupts.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_INTERRUPTS_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.interrupts.devicePattern</td>
+ * <td>regular expression found in interrupt descriptions whose first matching capture group
+ * names the device</td>
+ * <td><code>(nvme\d+)q\d+|(\S+?)-(?:TxRx|txrx|rx|tx|fp)-\d+|(mlx\d+_comp)\d+|(virtio\d+)-(?:input|output|req)</code></td>
+ * <td>{@link #CONFIG_KEY_INTERRUPTS_DEVICE_PATTERN}</td></tr>
+ * <tr><td>sysmon.linux.interrupts.imbalanceMinRate</td>
+ * <td>rate, per second, below which a group is never flagged</td>
+ * <td><code>100.0</code></td>
+ * <td>{@link #CONFIG_KEY_INTERRUPTS_MIN_RATE}</td></tr>
+ * <tr><td>sysmon.linux.interrupts.imbalanceThreshold</td>
+ * <td>imbalance score, between 0 and 1, above which a group is flagged</td>
+ * <td><code>0.5</code></td>
+ * <td>{@link #CONFIG_KEY_INTERRUPTS_IMBALANCE_THRESHOLD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxInterruptsJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxInterruptsJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".interrupts";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_INTERRUPTS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_INTERRUPTS_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Regular expression found in interrupt descriptions to group interrupt lines by device.
+	 * Config key: {@value}
+	 * @see #DEFAULT_INTERRUPTS_DEVICE_PATTERN default value
+	 */
+	public static final String CONFIG_KEY_INTERRUPTS_DEVICE_PATTERN = CONFIG_KEY_PREFIX + ".devicePattern";
+	/**
+	 * Rate, per second, below which a group is never flagged as imbalanced.
+	 * Config key: {@value}
+	 * @see #DEFAULT_INTERRUPTS_MIN_RATE default value
+	 */
+	public static final String CONFIG_KEY_INTERRUPTS_MIN_RATE = CONFIG_KEY_PREFIX + ".imbalanceMinRate";
+	/**
+	 * Imbalance score above which a group is flagged.
+	 * Config key: {@value}
+	 * @see #DEFAULT_INTERRUPTS_IMBALANCE_THRESHOLD default value
+	 */
+	public static final String CONFIG_KEY_INTERRUPTS_IMBALANCE_THRESHOLD = CONFIG_KEY_PREFIX + ".imbalanceThreshold";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_INTERRUPTS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_INTERRUPTS_PERIOD = 5000;
+	/**
+	 * Default device pattern: NVMe queues (<code>nvme0q3</code>), NIC queues
+	 * (<code>eth0-TxRx-3</code>), Mellanox completion vectors (<code>mlx5_comp3</code>) and virtio
+	 * queues.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_INTERRUPTS_DEVICE_PATTERN for config key to override default value.
+	 */
+	public static final String DEFAULT_INTERRUPTS_DEVICE_PATTERN =
+		"(nvme\\d+)q\\d+|(\\S+?)-(?:TxRx|txrx|rx|tx|fp)-\\d+|(mlx\\d+_comp)\\d+|(virtio\\d+)-(?:input|output|req)";
+	/**
+	 * Default minimum rate for a group to be flagged, per second.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_INTERRUPTS_MIN_RATE for config key to override default value.
+	 */
+	public static final double DEFAULT_INTERRUPTS_MIN_RATE = 100.0;
+	/**
+	 * Default imbalance threshold.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_INTERRUPTS_IMBALANCE_THRESHOLD for config key to override default value.
+	 */
+	public static final double DEFAULT_INTERRUPTS_IMBALANCE_THRESHOLD = 0.5;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=interrupts,source=";
+
+	static final File INTERRUPTS_PATH = new File("/proc/interrupts");
+	static final File SOFTIRQS_PATH = new File("/proc/softirqs");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final Pattern devicePattern;
+	final double minRate;
+	final double imbalanceThreshold;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final List<Table> tables = new ArrayList<Table>();
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxInterruptsJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, INTERRUPTS_PATH, SOFTIRQS_PATH);
+	}
+
+	LinuxInterruptsJMXWrapper(Properties config, File interruptsPath, File softirqsPath)
+		throws LinuxMonitoringException {
+		super(LinuxInterruptsJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_INTERRUPTS_PERIOD,
+			                                          DEFAULT_INTERRUPTS_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_INTERRUPTS_PERIOD, e);
+		}
+		try {
+			this.devicePattern = Pattern.compile(config.getProperty(CONFIG_KEY_INTERRUPTS_DEVICE_PATTERN,
+			                                                        DEFAULT_INTERRUPTS_DEVICE_PATTERN));
+		} catch (PatternSyntaxException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_INTERRUPTS_DEVICE_PATTERN, e);
+		}
+		try {
+			this.minRate = PropertiesUtils.extractDouble(config, CONFIG_KEY_INTERRUPTS_MIN_RATE,
+			                                             DEFAULT_INTERRUPTS_MIN_RATE);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_INTERRUPTS_MIN_RATE, e);
+		}
+		try {
+			this.imbalanceThreshold = PropertiesUtils.extractDouble(config,
+			                                                        CONFIG_KEY_INTERRUPTS_IMBALANCE_THRESHOLD,
+			                                                        DEFAULT_INTERRUPTS_IMBALANCE_THRESHOLD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_INTERRUPTS_IMBALANCE_THRESHOLD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "interrupts");
+
+		// check to make sure it will all work
+		if(!interruptsPath.exists()) {
+			throw new LinuxMonitoringException("No such path: " + interruptsPath.getAbsolutePath() +
+							". Can't read interrupt statistics. (Is /proc mounted?)");
+		}
+		tables.add(new Table("hardirq", interruptsPath, true));
+		if(softirqsPath.exists()) {
+			tables.add(new Table("softirq", softirqsPath, false));
+		} else {
+			// older kernels only have the NET_RX and NET_TX totals in /proc/stat
+			log.info("No " + softirqsPath.getAbsolutePath() + ", not monitoring softirqs.");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			for(Table table : tables) {
+				objectName = table.bean.objectName;
+				JMXUtils.registerMBean(table.bean, objectName);
+			}
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down interrupt monitoring due to error.",e);
+		} finally {
+			for(Table table : tables) {
+				table.reader.close();
+			}
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		for(Table table : tables) {
+			table.read();
+			history.record(table.bean.objectName, table.bean);
+		}
+	}
+
+	/**
+	 * Scores how unevenly a rate is spread: 0 when the busiest CPU takes no more than its fair
+	 * share, 1 when it takes everything.  The fair share is one over the number of ways the work
+	 * could be split, which is the number of CPUs for a single softirq type but only the number of
+	 * queues for a device, since each queue interrupt can only go to one CPU at a time.
+	 * @param rates rate on each CPU.
+	 * @param length number of CPUs in <code>rates</code>.
+	 * @param ways number of ways the work could be split.
+	 */
+	static double imbalance(double[] rates, int length, int ways) {
+		ways = Math.min(ways, length);
+		double total = 0;
+		double max = 0;
+		for(int i = 0; i < length; i++) {
+			total += rates[i];
+			max = Math.max(max, rates[i]);
+		}
+		if(ways <= 1 || total <= 0) {
+			return 0;
+		}
+		final double fairShare = 1.0 / ways;
+		return Math.max(0, (max / total - fairShare) / (1 - fairShare));
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	/**
+	 * One of the files, with the previous reading and the per-line grouping, which are only
+	 * rebuilt when the lines or CPUs change.
+	 */
+	final class Table {
+		final LinuxInterrupts bean;
+		final PositionalFileReader reader;
+		final boolean groupByDevice;
+		final PerCpuTable table = new PerCpuTable();
+		long[][] previous = new long[0][0];
+		long previousNanos = 0;
+		boolean primed = false;
+		Map<String, String> descriptions = Collections.emptyMap();
+		/**
+		 * Group of each line, or -1.
+		 */
+		int[] groupOf = new int[0];
+		String[] groupNames = new String[0];
+		int[] groupWays = new int[0];
+		double[] cpuRates = new double[0];
+		double[] lineRates = new double[0];
+		double[][] groupRates = new double[0][0];
+
+		Table(String source, File dataPath, boolean groupByDevice) throws LinuxMonitoringException {
+			if(!dataPath.canRead()) {
+				throw new LinuxMonitoringException("Permission denied: " + dataPath.getAbsolutePath());
+			}
+			this.bean = new LinuxInterrupts(beanPrefix + source, source);
+			this.groupByDevice = groupByDevice;
+			try {
+				this.reader = new PositionalFileReader(dataPath, 16384);
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Could not open " + dataPath.getAbsolutePath(), e);
+			}
+		}
+
+		void read() throws LinuxMonitoringException {
+			final int length;
+			try {
+				length = reader.read();
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+			}
+			final long nanos = System.nanoTime();
+			try {
+				table.parse(reader.getBuffer(), length);
+			} catch (NumberFormatException e) {
+				throw new LinuxMonitoringException("Could not parse " + reader.getFile(), e);
+			}
+			if(table.isLayoutChanged()) {
+				relayout();
+			}
+			final int rows = table.getRowCount();
+			final int cpus = table.getCpuCount();
+			final double seconds = primed ? (nanos - previousNanos) / 1e9 : 0.0;
+			final boolean rated = seconds > 0;
+
+			Arrays.fill(cpuRates, 0);
+			for(double[] perCpu : groupRates) {
+				Arrays.fill(perCpu, 0);
+			}
+			final Map<String, Double> perSecondByLine = new LinkedHashMap<String, Double>();
+			final Map<String, Double> imbalanceByLine = new LinkedHashMap<String, Double>();
+			long total = 0;
+			for(int row = 0; row < rows; row++) {
+				final long[] previousRow = previous[row];
+				final int group = groupOf[row];
+				double rowRate = 0;
+				for(int cpu = 0; cpu < cpus; cpu++) {
+					final long value = table.get(row, cpu);
+					total += value;
+					if(rated) {
+						final double rate = CounterRates.delta(previousRow[cpu], value, 32) / seconds;
+						lineRates[cpu] = rate;
+						rowRate += rate;
+						cpuRates[cpu] += rate;
+						if(group >= 0) {
+							groupRates[group][cpu] += rate;
+						}
+					}
+					previousRow[cpu] = value;
+				}
+				if(rated) {
+					perSecondByLine.put(table.getRowName(row), rowRate);
+					imbalanceByLine.put(table.getRowName(row), imbalance(lineRates, cpus, cpus));
+				}
+			}
+			previousNanos = nanos;
+			primed = true;
+			bean.update(cpus, total, descriptions);
+			if(!rated) {
+				return;
+			}
+
+			final Map<String, Double> perSecondByCpu = new LinkedHashMap<String, Double>();
+			double totalPerSecond = 0;
+			int busiest = 0;
+			for(int cpu = 0; cpu < cpus; cpu++) {
+				perSecondByCpu.put(table.getCpuName(cpu), cpuRates[cpu]);
+				totalPerSecond += cpuRates[cpu];
+				if(cpuRates[cpu] > cpuRates[busiest]) {
+					busiest = cpu;
+				}
+			}
+			final Map<String, Double> perSecondByGroup = new LinkedHashMap<String, Double>();
+			final Map<String, Double> imbalanceByGroup = new LinkedHashMap<String, Double>();
+			final StringBuilder imbalanced = new StringBuilder();
+			int imbalancedCount = 0;
+			for(int group = 0; group < groupNames.length; group++) {
+				double groupRate = 0;
+				for(int cpu = 0; cpu < cpus; cpu++) {
+					groupRate += groupRates[group][cpu];
+				}
+				final double score = imbalance(groupRates[group], cpus, groupWays[group]);
+				perSecondByGroup.put(groupNames[group], groupRate);
+				imbalanceByGroup.put(groupNames[group], score);
+				if(groupRate >= minRate && score > imbalanceThreshold) {
+					imbalancedCount++;
+					if(imbalanced.length() > 0) {
+						imbalanced.append(',');
+					}
+					imbalanced.append(groupNames[group]);
+				}
+			}
+			bean.updateRates(totalPerSecond, imbalance(cpuRates, cpus, cpus), table.getCpuName(busiest),
+			                 perSecondByCpu, perSecondByLine, imbalanceByLine,
+			                 perSecondByGroup, imbalanceByGroup, imbalancedCount, imbalanced.toString());
+		}
+
+		/**
+		 * Lines or CPUs came or went: start over without rates, and regroup.
+		 */
+		private void relayout() {
+			final int rows = table.getRowCount();
+			final int cpus = table.getCpuCount();
+			previous = new long[rows][cpus];
+			primed = false;
+			cpuRates = new double[cpus];
+			lineRates = new double[cpus];
+			groupOf = new int[rows];
+
+			final Map<String, String> descriptions = new LinkedHashMap<String, String>();
+			final Map<String, Integer> groups = new LinkedHashMap<String, Integer>();
+			final Map<String, Integer> ways = new HashMap<String, Integer>();
+			for(int row = 0; row < rows; row++) {
+				String group = null;
+				if(groupByDevice) {
+					final String description = table.getDescription(row);
+					if(description.length() > 0) {
+						descriptions.put(table.getRowName(row), description);
+					}
+					final Matcher m = devicePattern.matcher(description);
+					if(m.find()) {
+						group = m.group();
+						for(int i = 1; i <= m.groupCount(); i++) {
+							if(m.group(i) != null) {
+								group = m.group(i);
+								break;
+							}
+						}
+					}
+				} else {
+					group = table.getRowName(row);
+				}
+				if(group == null) {
+					groupOf[row] = -1;
+					continue;
+				}
+				Integer index = groups.get(group);
+				if(index == null) {
+					index = groups.size();
+					groups.put(group, index);
+					ways.put(group, 0);
+				}
+				groupOf[row] = index;
+				ways.put(group, ways.get(group) + 1);
+			}
+			groupNames = groups.keySet().toArray(new String[groups.size()]);
+			groupWays = new int[groupNames.length];
+			for(int group = 0; group < groupNames.length; group++) {
+				// a softirq type can run on every CPU
+				groupWays[group] = groupByDevice ? ways.get(groupNames[group]) : cpus;
+			}
+			groupRates = new double[groupNames.length][cpus];
+			this.descriptions = descriptions;
+		}
+	}
+}
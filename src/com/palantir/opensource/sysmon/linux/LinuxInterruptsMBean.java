@@ -0,0 +1,95 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxInterruptsJMXWrapper}.
+ */
+public interface LinuxInterruptsMBean {
+
+	/**
+	 * @return <code>hardirq</code> for <code>/proc/interrupts</code> or <code>softirq</code> for
+	 * <code>/proc/softirqs</code>.
+	 */
+	public abstract String getSource();
+
+	public abstract int getCpuCount();
+
+	/**
+	 * @return the sum of all counters over all CPUs since boot.
+	 */
+	public abstract long getTotal();
+
+	public abstract double getTotalPerSecond();
+
+	/**
+	 * @return how unevenly the total is spread over the CPUs: 0 when every CPU takes the same
+	 * share, 1 when a single CPU takes all of it.
+	 * @see LinuxInterruptsJMXWrapper#imbalance(double[], int, int)
+	 */
+	public abstract double getImbalanceScore();
+
+	/**
+	 * @return the CPU with the highest rate, for example <code>CPU3</code>.
+	 */
+	public abstract String getBusiestCpu();
+
+	/**
+	 * @return the rate on each CPU, summed over all interrupt lines or softirq types.
+	 */
+	public abstract Map<String, Double> getPerSecondByCpu();
+
+	/**
+	 * @return the rate of each interrupt line or softirq type, summed over all CPUs.
+	 */
+	public abstract Map<String, Double> getPerSecondByLine();
+
+	/**
+	 * @return the imbalance score of each interrupt line or softirq type.
+	 */
+	public abstract Map<String, Double> getImbalanceByLine();
+
+	/**
+	 * @return the description of each interrupt line: interrupt controller, trigger and device
+	 * names.  Empty for softirqs.
+	 */
+	public abstract Map<String, String> getDescriptions();
+
+	/**
+	 * @return the rate of each group: interrupt lines grouped by device (all the queues of a NIC or
+	 * NVMe drive), or each softirq type on its own.
+	 */
+	public abstract Map<String, Double> getPerSecondByGroup();
+
+	/**
+	 * @return the imbalance score of each group.  A device whose queues all land on one CPU scores
+	 * close to 1.
+	 */
+	public abstract Map<String, Double> getImbalanceByGroup();
+
+	/**
+	 * @return the number of groups busy enough to matter whose imbalance score is above the
+	 * configured threshold.
+	 */
+	public abstract int getImbalancedGroupCount();
+
+	/**
+	 * @return comma-separated groups counted by {@link #getImbalancedGroupCount()}.
+	 */
+	public abstract String getImbalancedGroups();
+
+	public abstract long getTimestamp();
+}
@@ -46,7 +46,9 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * </p>
  *
  * <h3>JMX Data Path</h3>
- * <code>sysmon.linux.beanpath:type=LoadAverage</code>
+ * <code>sysmon.linux.beanpath:type=LoadAverage</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=LoadAverage</code>
  *
  * <h3>Configuration parameters</h3>
  * <em>Note that any value not set in the config file will use the default value.</em>
@@ -107,6 +109,7 @@ public class LinuxLoadAverageJMXWrapper extends Thread implements Monitor {
 	final String beanPath;
 
 	LinuxLoadAverage bean = null;
+	final LinuxMetricHistory history;
 
 	public LinuxLoadAverageJMXWrapper(Properties config) throws LinuxMonitoringException {
 		// initialize thread
@@ -128,6 +131,7 @@ public class LinuxLoadAverageJMXWrapper extends Thread implements Monitor {
 		// build command line
 		uptimeCmd = new String[1];
 		uptimeCmd[0] = uptimePath;
+		history = new LinuxMetricHistory(config, "LoadAverage");
 
 		// read once to throw config exceptions on calling thread
 		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(4 * periodMillis);
@@ -137,6 +141,7 @@ public class LinuxLoadAverageJMXWrapper extends Thread implements Monitor {
 		finally {
 			timer.cancel();
 		}
+		history.register();
 	}
 
 	public void startMonitoring() throws SysmonException {
@@ -215,6 +220,7 @@ public class LinuxLoadAverageJMXWrapper extends Thread implements Monitor {
 			} else {
 				bean.updateValues(oneMinuteLoadAvg, tenMinuteloadAvg, fifteenMinuteLoadAvg);
 			}
+			history.record(beanPath, bean);
 		} else {
 			String msg = "Data line did not match: " +line + ". Pattern: " + UPTIME_DATA.pattern();
 			log.warn(msg);
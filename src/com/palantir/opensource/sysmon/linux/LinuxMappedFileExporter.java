@@ -0,0 +1,555 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>
+ * Publishes the current value of every numeric attribute of every Sysmon bean into a
+ * memory-mapped file, so that non-JVM agents can read Sysmon data without JMX, RMI, or HTTP
+ * (in the spirit of the HotSpot <code>hsperfdata</code> files).
+ * </p><p>
+ * The file is laid out once and then updated in place. The layout is only rebuilt when beans
+ * are registered or unregistered under the Sysmon bean path (detected via
+ * {@link MBeanServerNotification}s, not by polling), so a steady-state tick is nothing more
+ * than a set of absolute puts into the mapped buffer.
+ * </p>
+ * <h3>File format</h3>
+ * All multi-byte values are in the byte order recorded in the header (the native order of the
+ * host). Offsets are from the start of the file.
+ * <pre>
+ * Header (64 bytes)
+ *   0  int   magic ({@link #MAGIC}, 'SYSM')
+ *   4  byte  byte order (0 = big endian, 1 = little endian)
+ *   5  byte  format version ({@link #FORMAT_VERSION})
+ *   6  short reserved
+ *   8  long  generation - odd while a tick is being written, even when stable
+ *  16  long  timestamp (millis since the epoch) of the last completed tick
+ *  24  int   layout version - incremented each time the slot table is rebuilt
+ *  28  int   slot count
+ *  32  int   offset of slot table
+ *  36  int   offset of value area
+ *  40  int   offset of string area
+ *  44  int   total length of the file
+ *  48  ...   reserved
+ *
+ * Slot table (16 bytes per slot)
+ *   0  int   offset of NUL-terminated UTF-8 bean (object) name
+ *   4  int   offset of NUL-terminated UTF-8 attribute name
+ *   8  int   offset of the 8 byte value
+ *  12  byte  value type ({@link #TYPE_LONG} or {@link #TYPE_DOUBLE})
+ *  13  ...   reserved
+ *
+ * Value area: one 8-byte, 8-byte aligned value per slot.  Missing values are written as
+ * {@link Long#MIN_VALUE} (longs) or NaN (doubles).
+ * </pre>
+ * Readers should read the generation, then the data they need, then the generation again,
+ * retrying if the two differ or if the generation is odd (a seqlock).  If the file length in
+ * the header is larger than the reader's mapping, the file has grown and must be re-mapped.
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.mmap.enabled</td>
+ * <td>whether to export values to a memory-mapped file at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_MMAP_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.mmap.path</td>
+ * <td>path of the exported file</td>
+ * <td><code>/dev/shm/sysmon_&lt;pid&gt;</code></td>
+ * <td>{@link #CONFIG_KEY_MMAP_PATH}</td></tr>
+ * <tr><td>sysmon.linux.mmap.periodMillis</td>
+ * <td>period, in milliseconds, between updates of the file</td>
+ * <td><code>1000</code></td>
+ * <td>{@link #CONFIG_KEY_MMAP_PERIOD}</td></tr>
+ * </tr></table>
+ *
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxMappedFileExporter extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxMappedFileExporter.class);
+
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".mmap";
+
+	/**
+	 * Set to <code>true</code> to turn on the memory-mapped export.
+	 * Config key: {@value}
+	 * @see #DEFAULT_MMAP_ENABLED
+	 */
+	public static final String CONFIG_KEY_MMAP_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Path of the file to export into.
+	 * Config key: {@value}
+	 * @see #DEFAULT_MMAP_PATH
+	 */
+	public static final String CONFIG_KEY_MMAP_PATH = CONFIG_KEY_PREFIX + ".path";
+	/**
+	 * Time between updates of the exported file, in milliseconds.
+	 * Config key: {@value}
+	 * @see #DEFAULT_MMAP_PERIOD
+	 */
+	public static final String CONFIG_KEY_MMAP_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * The export is off unless asked for.
+	 * Default: {@value}
+	 */
+	public static final boolean DEFAULT_MMAP_ENABLED = false;
+	/**
+	 * Default file path: a per-process file in shared memory.
+	 */
+	public static final String DEFAULT_MMAP_PATH = "/dev/shm/sysmon_" + getPid();
+	/**
+	 * Default update period, in milliseconds.
+	 * Default: {@value}
+	 */
+	public static final long DEFAULT_MMAP_PERIOD = 1000;
+
+	/**
+	 * Magic number at offset 0 of the file: 'SYSM'.
+	 */
+	public static final int MAGIC = 0x5359534D;
+	public static final byte FORMAT_VERSION = 1;
+	public static final byte TYPE_LONG = 0;
+	public static final byte TYPE_DOUBLE = 1;
+
+	static final int HEADER_SIZE = 64;
+	static final int SLOT_SIZE = 16;
+	static final int OFFSET_GENERATION = 8;
+	static final int OFFSET_TIMESTAMP = 16;
+	static final int OFFSET_LAYOUT_VERSION = 24;
+	static final int OFFSET_SLOT_COUNT = 28;
+	static final int OFFSET_SLOT_TABLE = 32;
+	static final int OFFSET_VALUE_AREA = 36;
+	static final int OFFSET_STRING_AREA = 40;
+	static final int OFFSET_FILE_LENGTH = 44;
+
+	final File path;
+	final long period;
+	final String beanDomain;
+	volatile boolean shutdown = false;
+	/**
+	 * Set when beans come or go; the layout gets rebuilt on the next tick.
+	 */
+	volatile boolean layoutDirty = true;
+
+	final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	final NotificationListener registrationListener = new NotificationListener() {
+		public void handleNotification(Notification notification, Object handback) {
+			layoutDirty = true;
+		}
+	};
+
+	RandomAccessFile file = null;
+	FileChannel channel = null;
+	MappedByteBuffer buffer = null;
+	int layoutVersion = 0;
+	/**
+	 * Current layout, one entry per exported bean.
+	 */
+	BeanSlots[] layout = new BeanSlots[0];
+
+	public LinuxMappedFileExporter(Properties config) throws LinuxMonitoringException {
+		super(LinuxMappedFileExporter.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		this.beanDomain = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                     LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.path = new File(config.getProperty(CONFIG_KEY_MMAP_PATH, DEFAULT_MMAP_PATH));
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_MMAP_PERIOD, DEFAULT_MMAP_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config value for " + CONFIG_KEY_MMAP_PERIOD, e);
+		}
+
+		try {
+			file = new RandomAccessFile(path, "rw");
+			channel = file.getChannel();
+		} catch (IOException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error opening export file " + path.getAbsolutePath(), e);
+		}
+		try {
+			server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME,
+			                               registrationListener,
+			                               new DomainFilter(beanDomain),
+			                               null);
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error listening for bean registrations", e);
+		}
+
+		// tick once to detect any errors
+		try {
+			writeData();
+		} catch (LinuxMonitoringException e) {
+			cleanup();
+			throw e;
+		} catch (RuntimeException e) {
+			cleanup();
+			throw e;
+		}
+	}
+
+	public void startMonitoring() {
+		start();
+	}
+
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.interrupt();
+		this.join(this.period * 4);
+		if(this.isAlive()) {
+			log.error(this.getName() + " did not die after four periods.");
+		}
+		cleanup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				writeData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (InterruptedException e) {
+			if(!shutdown) {
+				log.error("Interrupted while exporting data.", e);
+			}
+		} catch (Exception e) {
+			log.error("Shutting down memory-mapped export due to error.", e);
+		} finally {
+			cleanup();
+		}
+	}
+
+	/**
+	 * One export tick: rebuild the layout if beans have come or gone, then write every value in
+	 * place inside a generation bump.
+	 */
+	synchronized void writeData() throws LinuxMonitoringException {
+		if(layoutDirty) {
+			layoutDirty = false;
+			rebuildLayout();
+		}
+		final long generation = buffer.getLong(OFFSET_GENERATION) + 1;
+		buffer.putLong(OFFSET_GENERATION, generation); // odd: write in progress
+		try {
+			for(BeanSlots bean : layout) {
+				writeBean(bean);
+			}
+			buffer.putLong(OFFSET_TIMESTAMP, System.currentTimeMillis());
+		} finally {
+			buffer.putLong(OFFSET_GENERATION, generation + 1);
+		}
+	}
+
+	private void writeBean(BeanSlots bean) {
+		AttributeList values = null;
+		try {
+			values = server.getAttributes(bean.objectName, bean.attributes);
+		} catch (JMException e) {
+			// bean went away - notification will trigger a rebuild
+			if(log.isDebugEnabled()) {
+				log.debug("Could not read attributes of " + bean.objectName, e);
+			}
+		}
+		for(int i = 0; i < bean.attributes.length; i++) {
+			Object value = null;
+			if(values != null) {
+				value = findValue(values, bean.attributes[i], i);
+			}
+			final int offset = bean.valueOffsets[i];
+			if(bean.types[i] == TYPE_DOUBLE) {
+				buffer.putDouble(offset, value == null ? Double.NaN : ((Number)value).doubleValue());
+			} else {
+				buffer.putLong(offset, value == null ? Long.MIN_VALUE : ((Number)value).longValue());
+			}
+		}
+	}
+
+	/**
+	 * {@link MBeanServer#getAttributes(ObjectName, String[])} drops attributes that fail to
+	 * read, so indexes can shift. The expected index is tried first.
+	 */
+	private static Object findValue(AttributeList values, String name, int expectedIndex) {
+		if(expectedIndex < values.size()) {
+			Attribute a = (Attribute)values.get(expectedIndex);
+			if(a.getName().equals(name)) {
+				return a.getValue();
+			}
+		}
+		for(Object o : values) {
+			Attribute a = (Attribute)o;
+			if(a.getName().equals(name)) {
+				return a.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Scans the bean server for Sysmon beans and lays out the slot table, string area, and
+	 * value area.  Grows (re-maps) the file if needed.
+	 */
+	void rebuildLayout() throws LinuxMonitoringException {
+		final Set<ObjectName> names;
+		try {
+			names = new TreeSet<ObjectName>(server.queryNames(new ObjectName(beanDomain + ":*"), null));
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error querying beans under " + beanDomain, e);
+		}
+
+		final List<BeanSlots> beans = new ArrayList<BeanSlots>();
+		int slotCount = 0;
+		int stringBytes = 0;
+		for(ObjectName name : names) {
+			BeanSlots bean = BeanSlots.describe(server, name);
+			if(bean == null || bean.attributes.length == 0) {
+				continue;
+			}
+			beans.add(bean);
+			slotCount += bean.attributes.length;
+			stringBytes += bean.nameBytes.length + 1;
+			for(byte[] attribute : bean.attributeBytes) {
+				stringBytes += attribute.length + 1;
+			}
+		}
+
+		final int slotTableOffset = HEADER_SIZE;
+		final int valueAreaOffset = align8(slotTableOffset + slotCount * SLOT_SIZE);
+		final int stringAreaOffset = valueAreaOffset + slotCount * 8;
+		final int fileLength = align8(stringAreaOffset + stringBytes);
+
+		final long generation = buffer == null ? 0 : buffer.getLong(OFFSET_GENERATION);
+		mapFile(fileLength);
+		buffer.putLong(OFFSET_GENERATION, generation + 1); // odd: layout in flux
+
+		int slot = 0;
+		int stringOffset = stringAreaOffset;
+		for(BeanSlots bean : beans) {
+			final int beanNameOffset = stringOffset;
+			stringOffset = putString(stringOffset, bean.nameBytes);
+			for(int i = 0; i < bean.attributes.length; i++) {
+				final int attributeNameOffset = stringOffset;
+				stringOffset = putString(stringOffset, bean.attributeBytes[i]);
+				final int slotOffset = slotTableOffset + slot * SLOT_SIZE;
+				final int valueOffset = valueAreaOffset + slot * 8;
+				bean.valueOffsets[i] = valueOffset;
+				buffer.putInt(slotOffset, beanNameOffset);
+				buffer.putInt(slotOffset + 4, attributeNameOffset);
+				buffer.putInt(slotOffset + 8, valueOffset);
+				buffer.put(slotOffset + 12, bean.types[i]);
+				buffer.put(slotOffset + 13, (byte)0);
+				buffer.putShort(slotOffset + 14, (short)0);
+				buffer.putLong(valueOffset, bean.types[i] == TYPE_DOUBLE ?
+				                            Double.doubleToRawLongBits(Double.NaN) : Long.MIN_VALUE);
+				slot++;
+			}
+		}
+
+		layoutVersion++;
+		buffer.putInt(0, MAGIC);
+		buffer.put(4, (byte)(buffer.order() == ByteOrder.LITTLE_ENDIAN ? 1 : 0));
+		buffer.put(5, FORMAT_VERSION);
+		buffer.putInt(OFFSET_LAYOUT_VERSION, layoutVersion);
+		buffer.putInt(OFFSET_SLOT_COUNT, slotCount);
+		buffer.putInt(OFFSET_SLOT_TABLE, slotTableOffset);
+		buffer.putInt(OFFSET_VALUE_AREA, valueAreaOffset);
+		buffer.putInt(OFFSET_STRING_AREA, stringAreaOffset);
+		buffer.putInt(OFFSET_FILE_LENGTH, fileLength);
+		buffer.putLong(OFFSET_GENERATION, generation + 2);
+
+		layout = beans.toArray(new BeanSlots[beans.size()]);
+		log.info("Laid out " + slotCount + " slots for " + layout.length + " beans in " +
+		         path.getAbsolutePath() + " (layout version " + layoutVersion + ")");
+	}
+
+	private void mapFile(int length) throws LinuxMonitoringException {
+		if(buffer != null && buffer.capacity() >= length) {
+			return;
+		}
+		// leave some room to grow so a new device doesn't always force a re-map
+		final int mappedLength = Math.max(length + length / 2, 4096);
+		try {
+			file.setLength(mappedLength);
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedLength);
+			buffer.order(ByteOrder.nativeOrder());
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Error mapping " + path.getAbsolutePath(), e);
+		}
+	}
+
+	private int putString(int offset, byte[] bytes) {
+		for(int i = 0; i < bytes.length; i++) {
+			buffer.put(offset + i, bytes[i]);
+		}
+		buffer.put(offset + bytes.length, (byte)0);
+		return offset + bytes.length + 1;
+	}
+
+	private static int align8(int offset) {
+		return (offset + 7) & ~7;
+	}
+
+	private synchronized void cleanup() {
+		try {
+			server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, registrationListener);
+		} catch (JMException e) {
+			// never added
+		}
+		if(file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				log.debug("Error closing export file", e);
+			}
+		}
+		file = null;
+		channel = null;
+		buffer = null;
+		if(path.exists() && !path.delete()) {
+			log.warn("Unable to delete export file " + path.getAbsolutePath());
+		}
+	}
+
+	static String getPid() {
+		// RuntimeMXBean name is of the form pid@hostname
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int at = name.indexOf('@');
+		return at > 0 ? name.substring(0, at) : name;
+	}
+
+	/**
+	 * The exported attributes of a single bean and where their values live in the file.
+	 */
+	static final class BeanSlots {
+		final ObjectName objectName;
+		final byte[] nameBytes;
+		final String[] attributes;
+		final byte[][] attributeBytes;
+		final byte[] types;
+		final int[] valueOffsets;
+
+		BeanSlots(ObjectName objectName, List<String> attributes, List<Byte> types) {
+			this.objectName = objectName;
+			this.nameBytes = utf8(objectName.getCanonicalName());
+			this.attributes = attributes.toArray(new String[attributes.size()]);
+			this.attributeBytes = new byte[this.attributes.length][];
+			this.types = new byte[this.attributes.length];
+			this.valueOffsets = new int[this.attributes.length];
+			for(int i = 0; i < this.attributes.length; i++) {
+				this.attributeBytes[i] = utf8(this.attributes[i]);
+				this.types[i] = types.get(i);
+			}
+		}
+
+		static BeanSlots describe(MBeanServer server, ObjectName name) {
+			final MBeanAttributeInfo[] infos;
+			try {
+				infos = server.getMBeanInfo(name).getAttributes();
+			} catch (JMException e) {
+				log.debug("Skipping bean " + name, e);
+				return null;
+			}
+			List<String> attributes = new ArrayList<String>();
+			List<Byte> types = new ArrayList<Byte>();
+			for(MBeanAttributeInfo info : infos) {
+				if(!info.isReadable()) {
+					continue;
+				}
+				Byte type = typeOf(info.getType());
+				if(type != null) {
+					attributes.add(info.getName());
+					types.add(type);
+				}
+			}
+			return new BeanSlots(name, attributes, types);
+		}
+
+		static Byte typeOf(String className) {
+			if("long".equals(className) || "int".equals(className) ||
+			   "short".equals(className) || "byte".equals(className) ||
+			   Long.class.getName().equals(className) || Integer.class.getName().equals(className) ||
+			   Short.class.getName().equals(className) || Byte.class.getName().equals(className)) {
+				return TYPE_LONG;
+			}
+			if("double".equals(className) || "float".equals(className) ||
+			   Double.class.getName().equals(className) || Float.class.getName().equals(className)) {
+				return TYPE_DOUBLE;
+			}
+			return null;
+		}
+
+		private static byte[] utf8(String s) {
+			try {
+				return s.getBytes("UTF-8");
+			} catch (java.io.UnsupportedEncodingException e) {
+				throw new IllegalStateException(e); // UTF-8 is always supported
+			}
+		}
+	}
+
+	/**
+	 * Only pass registration notifications for beans in the Sysmon domain.
+	 */
+	static final class DomainFilter implements NotificationFilter {
+		private static final long serialVersionUID = 1L;
+		final String domain;
+
+		DomainFilter(String domain) {
+			this.domain = domain;
+		}
+
+		public boolean isNotificationEnabled(Notification notification) {
+			if(!(notification instanceof MBeanServerNotification)) {
+				return false;
+			}
+			return domain.equals(((MBeanServerNotification)notification).getMBeanName().getDomain());
+		}
+	}
+}
@@ -0,0 +1,233 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+
+/**
+ * Data container and JMX MBean implementation for <code>/proc/meminfo</code>, used by
+ * {@link LinuxMemInfoJMXWrapper}.
+ */
+public class LinuxMemInfo implements LinuxMemInfoMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+
+	private String[] keys = new String[0];
+	private long[] values = new long[0];
+	private Map<String, Integer> index = new HashMap<String, Integer>();
+	private long memAvailable = 0;
+	private boolean memAvailableEstimated = false;
+	private double availablePercentage = 0;
+	private double commitRatioPercentage = 0;
+	private double swapUsedPercentage = 0;
+	private double hugePagesUsedPercentage = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxMemInfo(String objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Publishes a new reading and derives the percentages from it.  Values are copied into arrays
+	 * that are only reallocated when the file's keys change.
+	 * @param table the parsed file.
+	 */
+	synchronized void update(KeyValueTable table) {
+		final int size = table.size();
+		if(table.isLayoutChanged() || keys.length != size) {
+			keys = new String[size];
+			values = new long[size];
+			final Map<String, Integer> index = new HashMap<String, Integer>();
+			for(int i = 0; i < size; i++) {
+				keys[i] = table.getKey(i);
+				index.put(keys[i], i);
+			}
+			this.index = index;
+		}
+		for(int i = 0; i < size; i++) {
+			values[i] = table.getValue(i);
+		}
+		final Integer available = index.get("MemAvailable");
+		memAvailableEstimated = available == null;
+		if(available != null) {
+			memAvailable = values[available];
+		} else {
+			// roughly what the kernel computes: free memory plus what reclaim could easily free
+			memAvailable = value("MemFree") + value("Active(file)") + value("Inactive(file)") +
+			               value("SReclaimable");
+		}
+		availablePercentage = percentage(memAvailable, value("MemTotal"));
+		commitRatioPercentage = percentage(value("Committed_AS"), value("CommitLimit"));
+		swapUsedPercentage = percentage(value("SwapTotal") - value("SwapFree"), value("SwapTotal"));
+		hugePagesUsedPercentage = percentage(value("HugePages_Total") - value("HugePages_Free"),
+		                                     value("HugePages_Total"));
+		timestamp = System.currentTimeMillis();
+	}
+
+	private long value(String key) {
+		final Integer i = index.get(key);
+		return i == null ? 0 : values[i];
+	}
+
+	private static double percentage(long part, long whole) {
+		return whole <= 0 ? 0.0 : 100.0 * part / whole;
+	}
+
+	public synchronized long getMemTotalInKB() {
+		return value("MemTotal");
+	}
+
+	public synchronized long getMemFreeInKB() {
+		return value("MemFree");
+	}
+
+	public synchronized long getMemAvailableInKB() {
+		return memAvailable;
+	}
+
+	public synchronized long getBuffersInKB() {
+		return value("Buffers");
+	}
+
+	public synchronized long getCachedInKB() {
+		return value("Cached");
+	}
+
+	public synchronized long getSwapCachedInKB() {
+		return value("SwapCached");
+	}
+
+	public synchronized long getActiveInKB() {
+		return value("Active");
+	}
+
+	public synchronized long getInactiveInKB() {
+		return value("Inactive");
+	}
+
+	public synchronized long getSwapTotalInKB() {
+		return value("SwapTotal");
+	}
+
+	public synchronized long getSwapFreeInKB() {
+		return value("SwapFree");
+	}
+
+	public synchronized long getDirtyInKB() {
+		return value("Dirty");
+	}
+
+	public synchronized long getWritebackInKB() {
+		return value("Writeback");
+	}
+
+	public synchronized long getAnonPagesInKB() {
+		return value("AnonPages");
+	}
+
+	public synchronized long getMappedInKB() {
+		return value("Mapped");
+	}
+
+	public synchronized long getShmemInKB() {
+		return value("Shmem");
+	}
+
+	public synchronized long getSlabInKB() {
+		return value("Slab");
+	}
+
+	public synchronized long getSReclaimableInKB() {
+		return value("SReclaimable");
+	}
+
+	public synchronized long getSUnreclaimInKB() {
+		return value("SUnreclaim");
+	}
+
+	public synchronized long getPageTablesInKB() {
+		return value("PageTables");
+	}
+
+	public synchronized long getCommitLimitInKB() {
+		return value("CommitLimit");
+	}
+
+	public synchronized long getCommittedASInKB() {
+		return value("Committed_AS");
+	}
+
+	public synchronized long getAnonHugePagesInKB() {
+		return value("AnonHugePages");
+	}
+
+	public synchronized long getHugePagesTotal() {
+		return value("HugePages_Total");
+	}
+
+	public synchronized long getHugePagesFree() {
+		return value("HugePages_Free");
+	}
+
+	public synchronized long getHugePagesRsvd() {
+		return value("HugePages_Rsvd");
+	}
+
+	public synchronized long getHugePagesSurp() {
+		return value("HugePages_Surp");
+	}
+
+	public synchronized long getHugePageSizeInKB() {
+		return value("Hugepagesize");
+	}
+
+	public synchronized boolean isMemAvailableEstimated() {
+		return memAvailableEstimated;
+	}
+
+	public synchronized double getAvailablePercentage() {
+		return availablePercentage;
+	}
+
+	public synchronized double getCommitRatioPercentage() {
+		return commitRatioPercentage;
+	}
+
+	public synchronized double getSwapUsedPercentage() {
+		return swapUsedPercentage;
+	}
+
+	public synchronized double getHugePagesUsedPercentage() {
+		return hugePagesUsedPercentage;
+	}
+
+	public synchronized Map<String, Long> getValues() {
+		final Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < keys.length; i++) {
+			map.put(keys[i], values[i]);
+		}
+		return map;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
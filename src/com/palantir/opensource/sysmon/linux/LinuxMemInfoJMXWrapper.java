@@ -0,0 +1,211 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors memory usage from <code>/proc/meminfo</code>.</p>
+ * <p>
+ * Every key in the file is published with its 64-bit value, including keys added by newer
+ * kernels, along with attributes for the commonly used ones (available memory, dirty and
+ * writeback pages, slab, shared memory, huge pages and the commit limit) and percentages derived
+ * from them.  Unlike {@link LinuxVMStatJMXWrapper}, sizes don't overflow on hosts with terabytes
+ * of memory.
+ * </p><p>
+ * The file is kept open and re-read with positional reads ({@link PositionalFileReader}).
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * <code>sysmon.linux.beanpath:type=meminfo</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=meminfo</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.meminfo.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_MEMINFO_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxMemInfoJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxMemInfoJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".meminfo";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_MEMINFO_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_MEMINFO_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_MEMINFO_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_MEMINFO_PERIOD = 5000;
+
+	public static final String OBJECT_NAME = ":type=meminfo";
+
+	static final File DATA_PATH = new File("/proc/meminfo");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final LinuxMetricHistory history;
+	final PositionalFileReader reader;
+	final KeyValueTable table = new KeyValueTable();
+	final LinuxMemInfo bean;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxMemInfoJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxMemInfoJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxMemInfoJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.bean = new LinuxMemInfo(beanPath + OBJECT_NAME);
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_MEMINFO_PERIOD,
+			                                          DEFAULT_MEMINFO_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_MEMINFO_PERIOD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "meminfo");
+
+		// check to make sure it will all work
+		if(!dataPath.exists()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							". Can't read memory statistics. (Is /proc mounted?)");
+		}
+		if(!dataPath.canRead()) {
+			throw new LinuxMonitoringException("Permission denied: " + dataPath.getAbsolutePath());
+		}
+		try {
+			this.reader = new PositionalFileReader(dataPath, 4096);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Could not open " + dataPath.getAbsolutePath(), e);
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+			JMXUtils.registerMBean(bean, bean.objectName);
+		} catch (LinuxMonitoringException e) {
+			reader.close();
+			throw e;
+		} catch (RuntimeException e) {
+			reader.close();
+			throw e;
+		} catch (JMException e) {
+			reader.close();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   bean.objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down meminfo monitoring due to error.",e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final int length;
+		try {
+			length = reader.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		table.parse(reader.getBuffer(), length);
+		if(table.indexOf("MemTotal") < 0) {
+			throw new LinuxMonitoringException("No MemTotal in " + reader.getFile());
+		}
+		bean.update(table);
+		history.record(bean.objectName, bean);
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+}
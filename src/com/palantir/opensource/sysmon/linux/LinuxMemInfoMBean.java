@@ -0,0 +1,145 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxMemInfoJMXWrapper}.  Sizes are in kilobytes, as reported by
+ * the kernel, and are 0 for keys the running kernel doesn't have.
+ */
+public interface LinuxMemInfoMBean {
+
+	/**
+	 * @return total usable RAM.
+	 */
+	public abstract long getMemTotalInKB();
+
+	/**
+	 * @return RAM not used for anything.
+	 */
+	public abstract long getMemFreeInKB();
+
+	/**
+	 * @return the kernel's estimate of memory available to start new applications without swapping.  Estimated from free memory, file pages and reclaimable slab on kernels that don't report it.
+	 */
+	public abstract long getMemAvailableInKB();
+
+	public abstract long getBuffersInKB();
+
+	public abstract long getCachedInKB();
+
+	public abstract long getSwapCachedInKB();
+
+	public abstract long getActiveInKB();
+
+	public abstract long getInactiveInKB();
+
+	public abstract long getSwapTotalInKB();
+
+	public abstract long getSwapFreeInKB();
+
+	/**
+	 * @return memory waiting to be written back to disk.
+	 */
+	public abstract long getDirtyInKB();
+
+	/**
+	 * @return memory being written back to disk.
+	 */
+	public abstract long getWritebackInKB();
+
+	public abstract long getAnonPagesInKB();
+
+	public abstract long getMappedInKB();
+
+	/**
+	 * @return shared memory and tmpfs.
+	 */
+	public abstract long getShmemInKB();
+
+	/**
+	 * @return kernel data structure caches.
+	 */
+	public abstract long getSlabInKB();
+
+	public abstract long getSReclaimableInKB();
+
+	public abstract long getSUnreclaimInKB();
+
+	public abstract long getPageTablesInKB();
+
+	/**
+	 * @return the most memory that can be allocated under strict overcommit.
+	 */
+	public abstract long getCommitLimitInKB();
+
+	/**
+	 * @return memory allocated by all processes, even if not yet used.
+	 */
+	public abstract long getCommittedASInKB();
+
+	/**
+	 * @return anonymous memory backed by transparent huge pages.
+	 */
+	public abstract long getAnonHugePagesInKB();
+
+	/**
+	 * @return the size of the huge page pool, in pages.
+	 */
+	public abstract long getHugePagesTotal();
+
+	public abstract long getHugePagesFree();
+
+	public abstract long getHugePagesRsvd();
+
+	public abstract long getHugePagesSurp();
+
+	public abstract long getHugePageSizeInKB();
+
+	/**
+	 * @return whether {@link #getMemAvailableInKB()} was estimated because the kernel doesn't
+	 * report <code>MemAvailable</code>.
+	 */
+	public abstract boolean isMemAvailableEstimated();
+
+	/**
+	 * @return available memory as a percentage of total memory.
+	 */
+	public abstract double getAvailablePercentage();
+
+	/**
+	 * @return committed memory as a percentage of the commit limit.  Above 100 means the system
+	 * relies on overcommit.
+	 */
+	public abstract double getCommitRatioPercentage();
+
+	/**
+	 * @return used swap as a percentage of total swap, or 0 if there is no swap.
+	 */
+	public abstract double getSwapUsedPercentage();
+
+	/**
+	 * @return used huge pages as a percentage of the huge page pool, or 0 if there is no pool.
+	 */
+	public abstract double getHugePagesUsedPercentage();
+
+	/**
+	 * @return every key in <code>/proc/meminfo</code> with its value, including any not
+	 * published as attributes of their own.
+	 */
+	public abstract Map<String, Long> getValues();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,568 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.util.CompressedTimeSeries;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.NumericAttributes;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+import com.palantir.opensource.sysmon.util.RollupSeries;
+
+/**
+ * <p>
+ * Retains the recent history of every numeric attribute of the beans published by one monitor,
+ * so that values can be looked at after the fact instead of only as of the last sample.
+ * </p><p>
+ * Samples are held in memory as {@link CompressedTimeSeries}, which typically cost a byte or
+ * two per sample.  A window of any series can be pulled out over JMX as CSV or as a compressed
+ * binary blob.
+ * </p><p>
+ * Every sample is also folded into {@link RollupSeries} at a few coarser resolutions, which keep
+ * min/max/sum/count/last per bucket.  These retain days of history in bounded memory, and
+ * answer questions such as "what was the peak await in the last hour" without raw samples.
+ * </p><p>
+ * Monitors may also ask for percentile histograms of a few attributes (see
+ * {@link LinuxHistogram}).  Each is published as its own bean with p50/p90/p99/p99.9/max of the
+ * most recently completed window.
+ * </p>
+ *
+ * <h3>JMX Data Path</h3>
+ * Each monitor's history will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=&lt;bean type&gt;</code>
+ * <br/>
+ * Histograms will be at:
+ * <code>sysmon.linux.beanpath:type=histogram,source=&lt;bean type&gt;,&lt;bean keys&gt;,attribute=&lt;attribute&gt;</code>
+ * <br/>
+ * where the bean keys are those of the recorded bean other than its type, for example
+ * <code>devicename=sda</code>.
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.history.retentionSeconds</td>
+ * <td>how long, in seconds, raw samples are retained.  Zero disables retention.</td>
+ * <td><code>3600</code></td>
+ * <td>{@link #CONFIG_KEY_HISTORY_RETENTION}</td></tr>
+ * <tr><td>sysmon.linux.history.rollups</td>
+ * <td>comma-separated <code>resolution:buckets</code> pairs, finest first, with resolutions in
+ * seconds.  Empty disables rollups.</td>
+ * <td><code>1:60,60:60,3600:72</code></td>
+ * <td>{@link #CONFIG_KEY_HISTORY_ROLLUPS}</td></tr>
+ * <tr><td>sysmon.linux.history.histogramWindowSeconds</td>
+ * <td>length, in seconds, of each window that histogram percentiles are reported for.</td>
+ * <td><code>600</code></td>
+ * <td>{@link #CONFIG_KEY_HISTOGRAM_WINDOW}</td></tr>
+ * </tr></table>
+ */
+public class LinuxMetricHistory implements LinuxMetricHistoryMBean {
+
+	static final Logger log = LogManager.getLogger(LinuxMetricHistory.class);
+
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".history";
+
+	/**
+	 * How long raw samples are retained, in seconds.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HISTORY_RETENTION default value
+	 */
+	public static final String CONFIG_KEY_HISTORY_RETENTION = CONFIG_KEY_PREFIX + ".retentionSeconds";
+
+	/**
+	 * Resolutions of the rollups, as comma-separated <code>seconds:buckets</code> pairs, finest
+	 * first.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HISTORY_ROLLUPS default value
+	 */
+	public static final String CONFIG_KEY_HISTORY_ROLLUPS = CONFIG_KEY_PREFIX + ".rollups";
+
+	/**
+	 * Length of the windows that histograms report percentiles for, in seconds.
+	 * Config key: {@value}
+	 * @see #DEFAULT_HISTOGRAM_WINDOW default value
+	 */
+	public static final String CONFIG_KEY_HISTOGRAM_WINDOW = CONFIG_KEY_PREFIX + ".histogramWindowSeconds";
+
+	/**
+	 * Default retention for raw samples, in seconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HISTORY_RETENTION
+	 */
+	public static final long DEFAULT_HISTORY_RETENTION = 3600;
+
+	/**
+	 * Default rollups: one-second buckets for a minute, one-minute buckets for an hour and
+	 * one-hour buckets for three days.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HISTORY_ROLLUPS
+	 */
+	public static final String DEFAULT_HISTORY_ROLLUPS = "1:60,60:60,3600:72";
+
+	/**
+	 * Default histogram window, in seconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_HISTOGRAM_WINDOW
+	 */
+	public static final long DEFAULT_HISTOGRAM_WINDOW = 600;
+
+	/**
+	 * Relative JMX data path where the history is published.  The type of the beans being
+	 * recorded is appended.
+	 * Path: {@value}
+	 */
+	public static final String OBJECT_NAME_PREFIX = ":type=metric-history,source=";
+
+	/**
+	 * Relative JMX data path where histograms are published.  The type of the beans being
+	 * recorded, the other keys of the recorded bean and the attribute name are appended.
+	 * Path: {@value}
+	 */
+	public static final String HISTOGRAM_OBJECT_NAME_PREFIX = ":type=histogram,source=";
+
+	final String objectName;
+	final String histogramNamePrefix;
+	final long retentionSeconds;
+	final long[] rollupResolutions;
+	final int[] rollupBuckets;
+	final Set<String> histogramAttributes;
+	final long histogramWindowSeconds;
+
+	private final Map<String, BeanHistory> beans = new ConcurrentHashMap<String, BeanHistory>();
+
+	/**
+	 * @param config configuration, may be null
+	 * @param source the type of bean recorded by this history, used in its object name.
+	 * @throws LinuxMonitoringException on invalid config.
+	 */
+	public LinuxMetricHistory(Properties config, String source) throws LinuxMonitoringException {
+		this(config, source, "");
+	}
+
+	/**
+	 * @param config configuration, may be null
+	 * @param source the type of bean recorded by this history, used in its object name.
+	 * @param histogramAttributes comma-separated names of the attributes to keep percentile
+	 * histograms for.  May be empty.
+	 * @throws LinuxMonitoringException on invalid config.
+	 */
+	public LinuxMetricHistory(Properties config, String source, String histogramAttributes)
+	throws LinuxMonitoringException {
+		if(config == null) {
+			config = new Properties();
+		}
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.objectName = beanPath + OBJECT_NAME_PREFIX + source;
+		this.histogramNamePrefix = beanPath + HISTOGRAM_OBJECT_NAME_PREFIX + source;
+		try {
+			this.retentionSeconds = PropertiesUtils.extractLong(config,
+			                                                    CONFIG_KEY_HISTORY_RETENTION,
+			                                                    DEFAULT_HISTORY_RETENTION);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_HISTORY_RETENTION, e);
+		}
+		try {
+			this.histogramWindowSeconds = PropertiesUtils.extractLong(config,
+			                                                          CONFIG_KEY_HISTOGRAM_WINDOW,
+			                                                          DEFAULT_HISTOGRAM_WINDOW);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_HISTOGRAM_WINDOW, e);
+		}
+		this.histogramAttributes = new TreeSet<String>();
+		for(String attribute : histogramAttributes.split(",")) {
+			if(attribute.trim().length() > 0) {
+				this.histogramAttributes.add(attribute.trim());
+			}
+		}
+		if(!this.histogramAttributes.isEmpty() && histogramWindowSeconds <= 0) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_HISTOGRAM_WINDOW + ": " +
+			                                   histogramWindowSeconds);
+		}
+
+		final String rollups = config.getProperty(CONFIG_KEY_HISTORY_ROLLUPS,
+		                                          DEFAULT_HISTORY_ROLLUPS).trim();
+		final String[] specs = rollups.length() == 0 ? new String[0] : rollups.split("\\s*,\\s*");
+		rollupResolutions = new long[specs.length];
+		rollupBuckets = new int[specs.length];
+		try {
+			for(int i = 0; i < specs.length; i++) {
+				String[] parts = specs[i].split(":");
+				if(parts.length != 2) {
+					throw new NumberFormatException("Expected seconds:buckets, got " + specs[i]);
+				}
+				rollupResolutions[i] = 1000L * Long.parseLong(parts[0].trim());
+				rollupBuckets[i] = Integer.parseInt(parts[1].trim());
+			}
+			if(specs.length > 0) {
+				// validates the resolutions
+				new RollupSeries(rollupResolutions, rollupBuckets);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_HISTORY_ROLLUPS + ": " + rollups, e);
+		}
+	}
+
+	void register() throws LinuxMonitoringException {
+		try {
+			JMXUtils.registerMBean(this, objectName);
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean for " + objectName, e);
+		}
+	}
+
+	/**
+	 * Records the current value of each numeric attribute of the passed bean.
+	 */
+	void record(String beanName, Object bean) {
+		record(beanName, bean, System.currentTimeMillis());
+	}
+
+	void record(String beanName, Object bean, long timestamp) {
+		if(retentionSeconds <= 0 && rollupResolutions.length == 0 && histogramAttributes.isEmpty()) {
+			return;
+		}
+		BeanHistory history = beans.get(beanName);
+		if(history == null) {
+			history = new BeanHistory(beanName, NumericAttributes.forClass(bean.getClass()));
+			beans.put(beanName, history);
+		}
+		final NumericAttributes attributes = history.attributes;
+		for(int i = 0; i < attributes.size(); i++) {
+			final double value = attributes.getValue(bean, i);
+			if(history.series != null) {
+				history.series[i].append(timestamp, value);
+			}
+			if(history.rollups != null) {
+				history.rollups[i].add(timestamp, value);
+			}
+			if(history.histograms[i] != null) {
+				history.histograms[i].record(timestamp, value);
+			}
+		}
+	}
+
+	/**
+	 * Drops the history of a bean that is no longer published, and unregisters its histograms.
+	 */
+	void remove(String beanName) {
+		BeanHistory history = beans.remove(beanName);
+		if(history == null) {
+			return;
+		}
+		for(LinuxHistogram histogram : history.histograms) {
+			if(histogram != null) {
+				JMXUtils.unregisterMBeanCatchAndLogExceptions(histogram.objectName);
+			}
+		}
+	}
+
+	/**
+	 * @return the histogram for the passed attribute, or null if none is kept.
+	 */
+	LinuxHistogram getHistogram(String beanName, String attribute) {
+		BeanHistory history = beans.get(beanName);
+		if(history == null) {
+			return null;
+		}
+		int index = history.attributes.indexOf(attribute);
+		return index < 0 ? null : history.histograms[index];
+	}
+
+	/**
+	 * Builds the name of the histogram of an attribute from the keys of the recorded bean.
+	 */
+	private String histogramName(String beanName, String attribute) {
+		final StringBuilder name = new StringBuilder(histogramNamePrefix);
+		final int colon = beanName.indexOf(':');
+		if(colon >= 0) {
+			for(String key : beanName.substring(colon + 1).split(",")) {
+				if(!key.startsWith("type=")) {
+					name.append(',').append(key);
+				}
+			}
+		}
+		return name.append(",attribute=").append(attribute).toString();
+	}
+
+	/**
+	 * @return the series for the passed attribute, or null if it has not been recorded.
+	 */
+	CompressedTimeSeries getSeries(String beanName, String attribute) {
+		BeanHistory history = beans.get(beanName);
+		if(history == null || history.series == null) {
+			return null;
+		}
+		int index = history.attributes.indexOf(attribute);
+		return index < 0 ? null : history.series[index];
+	}
+
+	/**
+	 * @return the rollups for the passed attribute, or null if it has not been recorded.
+	 */
+	RollupSeries getRollups(String beanName, String attribute) {
+		BeanHistory history = beans.get(beanName);
+		if(history == null || history.rollups == null) {
+			return null;
+		}
+		int index = history.attributes.indexOf(attribute);
+		return index < 0 ? null : history.rollups[index];
+	}
+
+	private CompressedTimeSeries lookupSeries(String beanName, String attribute) {
+		CompressedTimeSeries series = getSeries(beanName, attribute);
+		if(series == null) {
+			throw new IllegalArgumentException("No history for " + beanName + " " + attribute);
+		}
+		return series;
+	}
+
+	private RollupSeries.Aggregate aggregate(String beanName, String attribute, long windowSeconds) {
+		RollupSeries rollups = getRollups(beanName, attribute);
+		if(rollups == null) {
+			throw new IllegalArgumentException("No rollups for " + beanName + " " + attribute);
+		}
+		final long now = System.currentTimeMillis();
+		return rollups.aggregate(now - 1000L * windowSeconds, now);
+	}
+
+	/**
+	 * Aggregates the last <code>windowSeconds</code> of an attribute.  Raw samples are used when
+	 * they cover the window, otherwise the finest rollup that does.
+	 * @throws IllegalArgumentException if the attribute has not been recorded.
+	 */
+	RollupSeries.Aggregate window(String beanName, String attribute, long windowSeconds) {
+		final CompressedTimeSeries series = getSeries(beanName, attribute);
+		final RollupSeries rollups = getRollups(beanName, attribute);
+		if(series == null && rollups == null) {
+			throw new IllegalArgumentException("No history for " + beanName + " " + attribute);
+		}
+		final long now = System.currentTimeMillis();
+		final long start = now - 1000L * windowSeconds;
+		if(series != null && (rollups == null || series.getFirstTimestamp() <= start)) {
+			final RollupSeries.Aggregate result = new RollupSeries.Aggregate();
+			series.scan(start, now, new CompressedTimeSeries.SampleVisitor() {
+				public void visit(long timestamp, double value) {
+					result.add(value);
+				}
+			});
+			return result;
+		}
+		return rollups.aggregate(start, now);
+	}
+
+	/**
+	 * Nearest-rank percentile of the raw samples of an attribute over the last
+	 * <code>windowSeconds</code>.
+	 * @param percentile between 0 and 100
+	 * @return the percentile, or NaN if there are no samples in the window.
+	 * @throws IllegalArgumentException if raw samples of the attribute are not retained.
+	 */
+	public double percentile(String beanName, String attribute, long windowSeconds, double percentile) {
+		if(!(percentile >= 0.0 && percentile <= 100.0)) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		final long now = System.currentTimeMillis();
+		final ValueCollector samples = new ValueCollector();
+		lookupSeries(beanName, attribute).scan(now - 1000L * windowSeconds, now, samples);
+		if(samples.count == 0) {
+			return Double.NaN;
+		}
+		Arrays.sort(samples.values, 0, samples.count);
+		final int rank = (int)Math.ceil(percentile / 100.0 * samples.count);
+		return samples.values[Math.max(rank, 1) - 1];
+	}
+
+	public long getRetentionSeconds() {
+		return retentionSeconds;
+	}
+
+	public long[] getRollupResolutionsInSeconds() {
+		long[] seconds = new long[rollupResolutions.length];
+		for(int i = 0; i < seconds.length; i++) {
+			seconds[i] = rollupResolutions[i] / 1000L;
+		}
+		return seconds;
+	}
+
+	public String[] getBeanNames() {
+		Set<String> names = new TreeSet<String>(beans.keySet());
+		return names.toArray(new String[names.size()]);
+	}
+
+	public int getSeriesCount() {
+		int count = 0;
+		for(BeanHistory history : beans.values()) {
+			count += history.attributes.size();
+		}
+		return count;
+	}
+
+	public long getSampleCount() {
+		long count = 0;
+		for(BeanHistory history : beans.values()) {
+			if(history.series != null) {
+				for(CompressedTimeSeries series : history.series) {
+					count += series.getSampleCount();
+				}
+			}
+		}
+		return count;
+	}
+
+	public long getSizeInBytes() {
+		long rollupSize = 0;
+		for(int buckets : rollupBuckets) {
+			// a bucket id, four doubles and a count per bucket
+			rollupSize += 48L * buckets;
+		}
+		long size = 0;
+		for(BeanHistory history : beans.values()) {
+			if(history.series != null) {
+				for(CompressedTimeSeries series : history.series) {
+					size += series.getSizeInBytes();
+				}
+			}
+			if(history.rollups != null) {
+				size += rollupSize * history.rollups.length;
+			}
+		}
+		return size;
+	}
+
+	public String[] attributeNames(String beanName) {
+		BeanHistory history = beans.get(beanName);
+		if(history == null) {
+			return new String[0];
+		}
+		String[] names = new String[history.attributes.size()];
+		for(int i = 0; i < names.length; i++) {
+			names[i] = history.attributes.getName(i);
+		}
+		return names;
+	}
+
+	public String exportCsv(String beanName, String attribute, long startMillis, long endMillis) {
+		final StringBuilder csv = new StringBuilder("timestamp,").append(attribute).append('\n');
+		lookupSeries(beanName, attribute).scan(startMillis, endMillis, new CompressedTimeSeries.SampleVisitor() {
+			public void visit(long timestamp, double value) {
+				csv.append(timestamp).append(',').append(value).append('\n');
+			}
+		});
+		return csv.toString();
+	}
+
+	public byte[] exportBinary(String beanName, String attribute, long startMillis, long endMillis) {
+		return lookupSeries(beanName, attribute).export(startMillis, endMillis);
+	}
+
+	public double rollupMin(String beanName, String attribute, long windowSeconds) {
+		return aggregate(beanName, attribute, windowSeconds).getMin();
+	}
+
+	public double rollupMax(String beanName, String attribute, long windowSeconds) {
+		return aggregate(beanName, attribute, windowSeconds).getMax();
+	}
+
+	public double rollupAverage(String beanName, String attribute, long windowSeconds) {
+		return aggregate(beanName, attribute, windowSeconds).getAverage();
+	}
+
+	public double rollupLast(String beanName, String attribute, long windowSeconds) {
+		return aggregate(beanName, attribute, windowSeconds).getLast();
+	}
+
+	public long rollupCount(String beanName, String attribute, long windowSeconds) {
+		return aggregate(beanName, attribute, windowSeconds).getCount();
+	}
+
+	private static final class ValueCollector implements CompressedTimeSeries.SampleVisitor {
+		double[] values = new double[64];
+		int count = 0;
+
+		public void visit(long timestamp, double value) {
+			if(Double.isNaN(value)) {
+				return;
+			}
+			if(count == values.length) {
+				final double[] grown = new double[count * 2];
+				System.arraycopy(values, 0, grown, 0, count);
+				values = grown;
+			}
+			values[count++] = value;
+		}
+	}
+
+	private final class BeanHistory {
+		final NumericAttributes attributes;
+		final CompressedTimeSeries[] series;
+		final RollupSeries[] rollups;
+		/**
+		 * Indexed like the attributes, null for those without a histogram.
+		 */
+		final LinuxHistogram[] histograms;
+
+		BeanHistory(String beanName, NumericAttributes attributes) {
+			this.attributes = attributes;
+			if(retentionSeconds > 0) {
+				series = new CompressedTimeSeries[attributes.size()];
+				for(int i = 0; i < series.length; i++) {
+					series[i] = new CompressedTimeSeries(1000L * retentionSeconds);
+				}
+			} else {
+				series = null;
+			}
+			if(rollupResolutions.length > 0) {
+				rollups = new RollupSeries[attributes.size()];
+				for(int i = 0; i < rollups.length; i++) {
+					rollups[i] = new RollupSeries(rollupResolutions, rollupBuckets);
+				}
+			} else {
+				rollups = null;
+			}
+			histograms = new LinuxHistogram[attributes.size()];
+			for(String attribute : histogramAttributes) {
+				final int index = attributes.indexOf(attribute);
+				if(index < 0) {
+					log.warn("No numeric attribute " + attribute + " to keep a histogram of on " +
+					         beanName);
+					continue;
+				}
+				final LinuxHistogram histogram =
+					new LinuxHistogram(histogramName(beanName, attribute), attribute,
+					                   histogramWindowSeconds);
+				try {
+					JMXUtils.registerMBean(histogram, histogram.objectName);
+					histograms[index] = histogram;
+				} catch (JMException e) {
+					log.error("Error while registering histogram " + histogram.objectName, e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for {@link LinuxMetricHistory}.
+ */
+public interface LinuxMetricHistoryMBean {
+
+	public abstract long getRetentionSeconds();
+
+	public abstract long[] getRollupResolutionsInSeconds();
+
+	public abstract String[] getBeanNames();
+
+	public abstract int getSeriesCount();
+
+	public abstract long getSampleCount();
+
+	public abstract long getSizeInBytes();
+
+	/**
+	 * @return the names of the recorded attributes of the passed bean.
+	 */
+	public abstract String[] attributeNames(String beanName);
+
+	/**
+	 * @return retained samples of one attribute between the passed times (in milliseconds since
+	 * the epoch, inclusive), as <code>timestamp,value</code> lines with a header line.
+	 */
+	public abstract String exportCsv(String beanName, String attribute, long startMillis, long endMillis);
+
+	/**
+	 * @return retained samples of one attribute between the passed times (in milliseconds since
+	 * the epoch, inclusive), in the compressed format of
+	 * {@link com.palantir.opensource.sysmon.util.CompressedTimeSeries#export(long, long)}.
+	 */
+	public abstract byte[] exportBinary(String beanName, String attribute, long startMillis, long endMillis);
+
+	/**
+	 * @return smallest value of the attribute over the last <code>windowSeconds</code>, from
+	 * the finest rollup that covers the window, or NaN if there are no samples.
+	 */
+	public abstract double rollupMin(String beanName, String attribute, long windowSeconds);
+
+	/**
+	 * @return largest value of the attribute over the last <code>windowSeconds</code>, from
+	 * the finest rollup that covers the window, or NaN if there are no samples.
+	 */
+	public abstract double rollupMax(String beanName, String attribute, long windowSeconds);
+
+	/**
+	 * @return mean value of the attribute over the last <code>windowSeconds</code>, from
+	 * the finest rollup that covers the window, or NaN if there are no samples.
+	 */
+	public abstract double rollupAverage(String beanName, String attribute, long windowSeconds);
+
+	/**
+	 * @return most recent value of the attribute within the last <code>windowSeconds</code>,
+	 * or NaN if there are no samples.
+	 */
+	public abstract double rollupLast(String beanName, String attribute, long windowSeconds);
+
+	/**
+	 * @return number of samples of the attribute over the last <code>windowSeconds</code>.
+	 */
+	public abstract long rollupCount(String beanName, String attribute, long windowSeconds);
+
+	/**
+	 * @return the nearest-rank percentile (0 to 100) of the raw samples of the attribute over the
+	 * last <code>windowSeconds</code>, or NaN if there are no samples.
+	 */
+	public abstract double percentile(String beanName, String attribute, long windowSeconds, double percentile);
+}
@@ -28,6 +28,7 @@ import com.palantir.opensource.sysmon.Monitor;
 import com.palantir.opensource.sysmon.SysmonDaemon.ShutdownTask;
 import com.palantir.opensource.sysmon.SysmonException;
 import com.palantir.opensource.sysmon.SystemMonitor;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
 
 /**
  * <p>
@@ -123,6 +124,154 @@ public class LinuxMonitor implements SystemMonitor {
 			} catch(LinuxMonitoringException e) {
 				log.error("Error starting entropy level monitoring.", e);
 			}
+			try {
+				LinuxSoftnetJMXWrapper softnetWrapper = new LinuxSoftnetJMXWrapper(config);
+				softnetWrapper.startMonitoring();
+				monitors.add(softnetWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting softnet monitoring.", e);
+			}
+			try {
+				LinuxInterruptsJMXWrapper interruptsWrapper = new LinuxInterruptsJMXWrapper(config);
+				interruptsWrapper.startMonitoring();
+				monitors.add(interruptsWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting interrupt monitoring.", e);
+			}
+			try {
+				LinuxMemInfoJMXWrapper memInfoWrapper = new LinuxMemInfoJMXWrapper(config);
+				memInfoWrapper.startMonitoring();
+				monitors.add(memInfoWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting meminfo monitoring.", e);
+			}
+			try {
+				LinuxVMEventsJMXWrapper vmEventsWrapper = new LinuxVMEventsJMXWrapper(config);
+				vmEventsWrapper.startMonitoring();
+				monitors.add(vmEventsWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting VM event monitoring.", e);
+			}
+			try {
+				LinuxNumaJMXWrapper numaWrapper = new LinuxNumaJMXWrapper(config);
+				numaWrapper.startMonitoring();
+				monitors.add(numaWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting NUMA monitoring.", e);
+			}
+			try {
+				LinuxCpuTopologyJMXWrapper cpuTopologyWrapper = new LinuxCpuTopologyJMXWrapper(config);
+				cpuTopologyWrapper.startMonitoring();
+				monitors.add(cpuTopologyWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting CPU topology monitoring.", e);
+			}
+			try {
+				LinuxSchedStatJMXWrapper schedStatWrapper = new LinuxSchedStatJMXWrapper(config);
+				schedStatWrapper.startMonitoring();
+				monitors.add(schedStatWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting scheduler statistics monitoring.", e);
+			}
+			try {
+				LinuxSelfProcessJMXWrapper selfProcessWrapper = new LinuxSelfProcessJMXWrapper(config);
+				selfProcessWrapper.startMonitoring();
+				monitors.add(selfProcessWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting self process monitoring.", e);
+			}
+			try {
+				LinuxMountIOJMXWrapper mountIOWrapper = new LinuxMountIOJMXWrapper(config);
+				mountIOWrapper.startMonitoring();
+				monitors.add(mountIOWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting mount I/O monitoring.", e);
+			}
+			try {
+				LinuxNfsJMXWrapper nfsWrapper = new LinuxNfsJMXWrapper(config);
+				nfsWrapper.startMonitoring();
+				monitors.add(nfsWrapper);
+			} catch(LinuxMonitoringException e) {
+				log.error("Error starting NFS monitoring.", e);
+			}
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxSysfsNetJMXWrapper.CONFIG_KEY_SYSFSNET_ENABLED,
+			                                  LinuxSysfsNetJMXWrapper.DEFAULT_SYSFSNET_ENABLED)) {
+				try {
+					LinuxSysfsNetJMXWrapper sysfsNetWrapper = new LinuxSysfsNetJMXWrapper(config);
+					sysfsNetWrapper.startMonitoring();
+					monitors.add(sysfsNetWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting sysfs network monitoring.", e);
+				}
+			}
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxCpuFrequencyJMXWrapper.CONFIG_KEY_CPUFREQ_ENABLED,
+			                                  LinuxCpuFrequencyJMXWrapper.DEFAULT_CPUFREQ_ENABLED)) {
+				try {
+					LinuxCpuFrequencyJMXWrapper cpuFrequencyWrapper = new LinuxCpuFrequencyJMXWrapper(config);
+					cpuFrequencyWrapper.startMonitoring();
+					monitors.add(cpuFrequencyWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting CPU frequency monitoring.", e);
+				}
+			}
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxTopProcessesJMXWrapper.CONFIG_KEY_TOP_PROCESSES_ENABLED,
+			                                  LinuxTopProcessesJMXWrapper.DEFAULT_TOP_PROCESSES_ENABLED)) {
+				try {
+					LinuxTopProcessesJMXWrapper topProcessesWrapper = new LinuxTopProcessesJMXWrapper(config);
+					topProcessesWrapper.startMonitoring();
+					monitors.add(topProcessesWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting top process monitoring.", e);
+				}
+			}
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxHotThreadsJMXWrapper.CONFIG_KEY_HOT_THREADS_ENABLED,
+			                                  LinuxHotThreadsJMXWrapper.DEFAULT_HOT_THREADS_ENABLED)) {
+				try {
+					LinuxHotThreadsJMXWrapper hotThreadsWrapper = new LinuxHotThreadsJMXWrapper(config);
+					hotThreadsWrapper.startMonitoring();
+					monitors.add(hotThreadsWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting hot thread monitoring.", e);
+				}
+			}
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxTaskStatesJMXWrapper.CONFIG_KEY_TASK_STATES_ENABLED,
+			                                  LinuxTaskStatesJMXWrapper.DEFAULT_TASK_STATES_ENABLED)) {
+				try {
+					LinuxTaskStatesJMXWrapper taskStatesWrapper = new LinuxTaskStatesJMXWrapper(config);
+					taskStatesWrapper.startMonitoring();
+					monitors.add(taskStatesWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting task state monitoring.", e);
+				}
+			}
+			// only if there is something to watch
+			if(config.getProperty(LinuxWatchedProcessesJMXWrapper.CONFIG_KEY_WATCHED_NAMES,
+			                      LinuxWatchedProcessesJMXWrapper.DEFAULT_WATCHED_NAMES).trim().length() > 0) {
+				try {
+					LinuxWatchedProcessesJMXWrapper watchedWrapper = new LinuxWatchedProcessesJMXWrapper(config);
+					watchedWrapper.startMonitoring();
+					monitors.add(watchedWrapper);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting watched process monitoring.", e);
+				}
+			}
+			// last, so that the initial layout includes the other monitors' beans
+			if(PropertiesUtils.extractBoolean(config,
+			                                  LinuxMappedFileExporter.CONFIG_KEY_MMAP_ENABLED,
+			                                  LinuxMappedFileExporter.DEFAULT_MMAP_ENABLED)) {
+				try {
+					LinuxMappedFileExporter exporter = new LinuxMappedFileExporter(config);
+					exporter.startMonitoring();
+					monitors.add(exporter);
+				} catch(LinuxMonitoringException e) {
+					log.error("Error starting memory-mapped export.", e);
+				}
+			}
 			log.info("Platform-specific monitoring for Linux Started.");
 		} catch (LinuxMonitoringException e) {
 			// re-catching an earlier exception
@@ -0,0 +1,122 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the disk I/O of one mounted filesystem, used
+ * by {@link LinuxMountIOJMXWrapper}.
+ */
+public class LinuxMountIO implements LinuxMountIOMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String mountPoint;
+	final String fileSystemType;
+	final String deviceName;
+	final String deviceMapperName;
+	final String disks;
+
+	private double readsPerSecond = 0;
+	private double writesPerSecond = 0;
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private double averageReadLatencyInMillis = 0;
+	private double averageWriteLatencyInMillis = 0;
+	private double utilizationPercentage = 0;
+	private long inFlight = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxMountIO(String objectName, String mountPoint, String fileSystemType, String deviceName,
+	             String deviceMapperName, String disks) {
+		this.objectName = objectName;
+		this.mountPoint = mountPoint;
+		this.fileSystemType = fileSystemType;
+		this.deviceName = deviceName;
+		this.deviceMapperName = deviceMapperName;
+		this.disks = disks;
+	}
+
+	synchronized void update(double readsPerSecond, double writesPerSecond,
+	                         double readBytesPerSecond, double writeBytesPerSecond,
+	                         double averageReadLatencyInMillis, double averageWriteLatencyInMillis,
+	                         double utilizationPercentage, long inFlight) {
+		this.readsPerSecond = readsPerSecond;
+		this.writesPerSecond = writesPerSecond;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+		this.averageReadLatencyInMillis = averageReadLatencyInMillis;
+		this.averageWriteLatencyInMillis = averageWriteLatencyInMillis;
+		this.utilizationPercentage = utilizationPercentage;
+		this.inFlight = inFlight;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getMountPoint() {
+		return mountPoint;
+	}
+
+	public String getFileSystemType() {
+		return fileSystemType;
+	}
+
+	public String getDeviceName() {
+		return deviceName;
+	}
+
+	public String getDeviceMapperName() {
+		return deviceMapperName;
+	}
+
+	public String getDisks() {
+		return disks;
+	}
+
+	public synchronized double getReadsPerSecond() {
+		return readsPerSecond;
+	}
+
+	public synchronized double getWritesPerSecond() {
+		return writesPerSecond;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized double getAverageReadLatencyInMillis() {
+		return averageReadLatencyInMillis;
+	}
+
+	public synchronized double getAverageWriteLatencyInMillis() {
+		return averageWriteLatencyInMillis;
+	}
+
+	public synchronized double getUtilizationPercentage() {
+		return utilizationPercentage;
+	}
+
+	public synchronized long getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,390 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.MountTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors disk I/O per mounted filesystem, tying the filesystems of
+ * {@link LinuxDiskspaceJMXWrapper} to the devices of {@link LinuxIOStatJMXWrapper}.</p>
+ * <p>
+ * Mounts are read from <code>/proc/self/mountinfo</code> and resolved to block devices through
+ * <code>/sys/block</code> by {@link MountTable}, which only does so again when the mount table
+ * changes.  Each tick reads <code>/proc/diskstats</code> and publishes, for every mount backed by
+ * a block device, the throughput, average latency and utilization of that device since the last
+ * tick.  Mounts of the same device, such as bind mounts, report the same device's numbers.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each mount will be at the same <code>devicename</code> as its {@link LinuxFileSystem} bean:<br/>
+ * <code>sysmon.linux.beanpath:type=mount-io,devicename=&lt;mount point&gt;</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=mount-io</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.mountio.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>10000</code></td>
+ * <td>{@link #CONFIG_KEY_MOUNT_IO_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxMountIOJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxMountIOJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".mountio";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_MOUNT_IO_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_MOUNT_IO_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_MOUNT_IO_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_MOUNT_IO_PERIOD = 10000;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=mount-io,devicename=";
+
+	static final File DISKSTATS_PATH = new File("/proc/diskstats");
+
+	/**
+	 * Columns of <code>/proc/diskstats</code> after the device name.
+	 */
+	static final int READS = 0;
+	static final int SECTORS_READ = 2;
+	static final int READ_MILLIS = 3;
+	static final int WRITES = 4;
+	static final int SECTORS_WRITTEN = 6;
+	static final int WRITE_MILLIS = 7;
+	static final int IN_FLIGHT = 8;
+	static final int IO_MILLIS = 9;
+	static final int COLUMNS = 10;
+	/**
+	 * diskstats counts 512-byte sectors whatever the device's sector size.
+	 */
+	static final int SECTOR_SIZE = 512;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final MountTable mountTable;
+	final PositionalFileReader diskstats;
+	/**
+	 * By mount point.
+	 */
+	final Map<String, MountDevice> mounts = new LinkedHashMap<String, MountDevice>();
+	/**
+	 * The same mounts, by device name.
+	 */
+	final Map<String, List<MountDevice>> byDevice = new HashMap<String, List<MountDevice>>();
+	final long[] columns = new long[COLUMNS];
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxMountIOJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, MountTable.MOUNTINFO_PATH, MountTable.SYS_BLOCK_PATH, DISKSTATS_PATH);
+	}
+
+	LinuxMountIOJMXWrapper(Properties config, File mountInfoPath, File sysBlockPath, File diskstatsPath)
+		throws LinuxMonitoringException {
+		super(LinuxMountIOJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		this.beanPrefix = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                     LinuxMonitor.DEFAULT_JMX_BEAN_PATH) + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_MOUNT_IO_PERIOD,
+			                                          DEFAULT_MOUNT_IO_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_MOUNT_IO_PERIOD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "mount-io");
+
+		// check to make sure it will all work
+		try {
+			this.mountTable = new MountTable(mountInfoPath, sysBlockPath);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("No such path: " + mountInfoPath.getAbsolutePath() +
+							". Can't read mounts. (Is /proc mounted?)", e);
+		}
+		try {
+			this.diskstats = new PositionalFileReader(diskstatsPath, 8192);
+		} catch (IOException e) {
+			mountTable.close();
+			throw new LinuxMonitoringException("No such path: " + diskstatsPath.getAbsolutePath() +
+							". Can't read disk statistics. (Is /proc mounted?)", e);
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+		} catch (LinuxMonitoringException e) {
+			cleanup();
+			throw e;
+		} finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down mount I/O monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		mountTable.close();
+		diskstats.close();
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final int length;
+		try {
+			if(mountTable.refresh()) {
+				updateMounts();
+			}
+			length = diskstats.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final long now = System.nanoTime();
+		final byte[] buffer = diskstats.getBuffer();
+		int position = 0;
+		while(position < length) {
+			int end = position;
+			while(end < length && buffer[end] != '\n') {
+				end++;
+			}
+			final int line = position;
+			position = end + 1;
+			// major and minor, then the name
+			int i = skipField(buffer, skipField(buffer, line, end), end);
+			while(i < end && buffer[i] == ' ') {
+				i++;
+			}
+			final int nameStart = i;
+			while(i < end && buffer[i] != ' ') {
+				i++;
+			}
+			if(i == nameStart) {
+				continue;
+			}
+			final List<MountDevice> devices = byDevice.get(new String(buffer, nameStart, i - nameStart));
+			if(devices == null) {
+				continue;
+			}
+			int count = 0;
+			while(count < COLUMNS) {
+				while(i < end && buffer[i] == ' ') {
+					i++;
+				}
+				if(i == end) {
+					break;
+				}
+				long value = 0;
+				while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+					value = value * 10 + (buffer[i] - '0');
+					i++;
+				}
+				columns[count++] = value;
+			}
+			if(count < COLUMNS) {
+				continue;
+			}
+			for(MountDevice device : devices) {
+				device.update(columns, now);
+			}
+		}
+		for(MountDevice device : mounts.values()) {
+			history.record(device.bean.objectName, device.bean);
+		}
+	}
+
+	private static int skipField(byte[] buffer, int i, int end) {
+		while(i < end && buffer[i] == ' ') {
+			i++;
+		}
+		while(i < end && buffer[i] != ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Publishes new mounts, and stops publishing those that are gone.
+	 */
+	private void updateMounts() {
+		final Map<String, MountTable.Mount> current = new LinkedHashMap<String, MountTable.Mount>();
+		for(MountTable.Mount mount : mountTable.getMounts()) {
+			// a later mount on the same mount point hides the earlier one
+			current.remove(mount.getMountPoint());
+			current.put(mount.getMountPoint(), mount);
+		}
+		for(Iterator<MountDevice> it = mounts.values().iterator(); it.hasNext();) {
+			final MountDevice device = it.next();
+			final MountTable.Mount mount = current.get(device.bean.mountPoint);
+			if(mount == null || !device.bean.deviceName.equals(mount.getDeviceName())) {
+				log.info("Mount " + device.bean.mountPoint + " on " + device.bean.deviceName + " is gone.");
+				it.remove();
+				JMXUtils.unregisterMBeanCatchAndLogExceptions(device.bean.objectName);
+				history.remove(device.bean.objectName);
+			}
+		}
+		for(MountTable.Mount mount : current.values()) {
+			if(!mount.isBlockDevice() || mounts.containsKey(mount.getMountPoint())) {
+				continue;
+			}
+			final StringBuilder disks = new StringBuilder();
+			for(String disk : mount.getDisks()) {
+				disks.append(disks.length() == 0 ? "" : ",").append(disk);
+			}
+			final LinuxMountIO bean = new LinuxMountIO(beanPrefix + mount.getMountPoint(),
+			                                           mount.getMountPoint(),
+			                                           mount.getFileSystemType(),
+			                                           mount.getDeviceName(),
+			                                           mount.getDeviceMapperName() == null ?
+			                                           "" : mount.getDeviceMapperName(),
+			                                           disks.toString());
+			try {
+				JMXUtils.registerMBean(bean, bean.objectName);
+				mounts.put(mount.getMountPoint(), new MountDevice(bean));
+			} catch (JMException e) {
+				log.error("Error registering bean for " + bean.objectName, e);
+			}
+		}
+		byDevice.clear();
+		for(MountDevice device : mounts.values()) {
+			List<MountDevice> devices = byDevice.get(device.bean.deviceName);
+			if(devices == null) {
+				devices = new ArrayList<MountDevice>();
+				byDevice.put(device.bean.deviceName, devices);
+			}
+			devices.add(device);
+		}
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * A published mount and the last diskstats reading of its device.
+	 */
+	static final class MountDevice {
+		final LinuxMountIO bean;
+		final long[] previous = new long[COLUMNS];
+		long readNanos = 0;
+
+		MountDevice(LinuxMountIO bean) {
+			this.bean = bean;
+		}
+
+		void update(long[] columns, long now) {
+			if(readNanos != 0 && now > readNanos) {
+				final double seconds = (now - readNanos) / 1e9;
+				// counts are unsigned longs, times 32-bit milliseconds
+				final int bits = CounterRates.LONG_BITS;
+				final long reads = CounterRates.delta(previous[READS], columns[READS], bits);
+				final long writes = CounterRates.delta(previous[WRITES], columns[WRITES], bits);
+				final long readMillis = CounterRates.delta(previous[READ_MILLIS], columns[READ_MILLIS], 32);
+				final long writeMillis = CounterRates.delta(previous[WRITE_MILLIS], columns[WRITE_MILLIS], 32);
+				bean.update(reads / seconds, writes / seconds,
+				            CounterRates.delta(previous[SECTORS_READ], columns[SECTORS_READ], bits) *
+				            (double)SECTOR_SIZE / seconds,
+				            CounterRates.delta(previous[SECTORS_WRITTEN], columns[SECTORS_WRITTEN], bits) *
+				            (double)SECTOR_SIZE / seconds,
+				            reads == 0 ? 0.0 : (double)readMillis / reads,
+				            writes == 0 ? 0.0 : (double)writeMillis / writes,
+				            Math.min(100.0, CounterRates.delta(previous[IO_MILLIS], columns[IO_MILLIS], 32) /
+				                            (seconds * 10.0)),
+				            columns[IN_FLIGHT]);
+			}
+			System.arraycopy(columns, 0, previous, 0, COLUMNS);
+			readNanos = now;
+		}
+	}
+}
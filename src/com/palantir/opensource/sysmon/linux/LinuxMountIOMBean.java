@@ -0,0 +1,76 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for the disk I/O of one mounted filesystem, published by
+ * {@link LinuxMountIOJMXWrapper}.
+ */
+public interface LinuxMountIOMBean {
+
+	public abstract String getMountPoint();
+
+	public abstract String getFileSystemType();
+
+	/**
+	 * @return the kernel's name for the device behind the mount, as used by
+	 * <code>/proc/diskstats</code> and {@link LinuxIOStatJMXWrapper} (<code>sda1</code>,
+	 * <code>dm-3</code>).
+	 */
+	public abstract String getDeviceName();
+
+	/**
+	 * @return the device-mapper name of the device (<code>vg-data</code>, as in
+	 * <code>/dev/mapper/vg-data</code>), or an empty string.
+	 */
+	public abstract String getDeviceMapperName();
+
+	/**
+	 * @return comma-separated whole disks the mount is on, through any device-mapper and md
+	 * layers.
+	 */
+	public abstract String getDisks();
+
+	public abstract double getReadsPerSecond();
+
+	public abstract double getWritesPerSecond();
+
+	public abstract double getReadBytesPerSecond();
+
+	public abstract double getWriteBytesPerSecond();
+
+	/**
+	 * @return average time, in milliseconds, reads completed since the last check took, queueing
+	 * included.
+	 */
+	public abstract double getAverageReadLatencyInMillis();
+
+	/**
+	 * @return average time, in milliseconds, writes completed since the last check took,
+	 * queueing included.
+	 */
+	public abstract double getAverageWriteLatencyInMillis();
+
+	/**
+	 * @return percentage of the time the device had I/O in flight.
+	 */
+	public abstract double getUtilizationPercentage();
+
+	/**
+	 * @return I/O requests in flight when last checked.
+	 */
+	public abstract long getInFlight();
+
+	public abstract long getTimestamp();
+}
@@ -47,7 +47,11 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * </p>
  * <h3>JMX Data Path</h3>
  * Each device will be at:<br/>
- * <code>sysmon.linux.beanpath:type=net-device,devicename=&lt;devicename&gt;</code>
+ * <code>sysmon.linux.beanpath:type=net-device,devicename=&lt;devicename&gt;</code><br/>
+ * Recent history of the devices' values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=net-device</code><br/>
+ * Percentile histograms ({@link LinuxHistogram}) of selected attributes will be at:
+ * <code>sysmon.linux.beanpath:type=histogram,source=net-device,devicename=&lt;devicename&gt;,attribute=&lt;attribute&gt;</code>
  *
  * <h3>Configuration parameters</h3>
  * <em>Note that any value not set in the config file will use the default value.</em>
@@ -56,6 +60,15 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * <td>period, in milliseconds, between interface statistics checks</td>
  * <td><code>2000</code></td>
  * <td>{@link #CONFIG_KEY_NETSTAT_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.netstat.histogramAttributes</td>
+ * <td>comma-separated attributes to keep percentile histograms of.  Empty disables them.</td>
+ * <td><code>BytesPerSecondReceived,BytesPerSecondSent</code></td>
+ * <td>{@link #CONFIG_KEY_NETSTAT_HISTOGRAMS}</td></tr>
+ * <tr><td>sysmon.linux.netstat.rateWindowsSeconds</td>
+ * <td>comma-separated windows, in seconds, that byte and packet rates are reported over.
+ * Windows shorter than the period report the rate since the previous check.</td>
+ * <td><code>1,10,60</code></td>
+ * <td>{@link #CONFIG_KEY_NETSTAT_RATE_WINDOWS}</td></tr>
  * </tr></table>
  * @see Monitor Lifecycle documentation
  * @see <a href='http://linux.die.net/man/5/proc'>proc(5)</a> for information on <code>/proc/net/dev</code>
@@ -76,6 +89,19 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	 *
 	 */
 	public static final String CONFIG_KEY_NETSTAT_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Attributes of each interface to keep percentile histograms of, comma-separated.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NETSTAT_HISTOGRAMS default value
+	 * @see LinuxHistogram
+	 */
+	public static final String CONFIG_KEY_NETSTAT_HISTOGRAMS = CONFIG_KEY_PREFIX + ".histogramAttributes";
+	/**
+	 * Windows, in seconds and comma-separated, that byte and packet rates are reported over.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NETSTAT_RATE_WINDOWS default value
+	 */
+	public static final String CONFIG_KEY_NETSTAT_RATE_WINDOWS = CONFIG_KEY_PREFIX + ".rateWindowsSeconds";
 	/**
 	 * Regex string to match the first header line in the /proc/net/dev files
 	 */
@@ -103,6 +129,20 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	 */
 	public static final long DEFAULT_NETSTAT_PERIOD = 2000;
 
+	/**
+	 * Default attributes to keep percentile histograms of.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NETSTAT_HISTOGRAMS for config key to override default value.
+	 */
+	public static final String DEFAULT_NETSTAT_HISTOGRAMS = "BytesPerSecondReceived,BytesPerSecondSent";
+
+	/**
+	 * Default windows that rates are reported over.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NETSTAT_RATE_WINDOWS for config key to override default value.
+	 */
+	public static final String DEFAULT_NETSTAT_RATE_WINDOWS = "1,10,60";
+
 	public static final String OBJECT_NAME_PREFIX =  ":type=net-device,devicename=";
 	static final Pattern DATA_PAT;
 
@@ -132,10 +172,16 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	 */
 	final long period;
 	final String beanPrefix;
+	final long[] rateWindows;
 	volatile boolean shutdown = false;
 	private long freshnessTimestamp = System.currentTimeMillis();
+	/**
+	 * {@link System#nanoTime()} of the most recent read of {@link #DATA_PATH}.
+	 */
+	private long readNanos = System.nanoTime();
 
 	final Map<String, LinuxNetworkInterface> interfaces = new HashMap<String, LinuxNetworkInterface>();
+	final LinuxMetricHistory history;
 
 
 	/**
@@ -158,6 +204,24 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 
 		this.period = PropertiesUtils.extractLong(config,CONFIG_KEY_NETSTAT_PERIOD,
 		                                          DEFAULT_NETSTAT_PERIOD);
+		final String windows = config.getProperty(CONFIG_KEY_NETSTAT_RATE_WINDOWS,
+		                                          DEFAULT_NETSTAT_RATE_WINDOWS).trim();
+		try {
+			final String[] parts = windows.split("\\s*,\\s*");
+			this.rateWindows = new long[parts.length];
+			for(int i = 0; i < parts.length; i++) {
+				rateWindows[i] = Long.parseLong(parts[i]);
+				if(rateWindows[i] <= 0) {
+					throw new NumberFormatException("Windows must be positive: " + windows);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_NETSTAT_RATE_WINDOWS + ": " + windows, e);
+		}
+		this.history = new LinuxMetricHistory(config, "net-device",
+		                                      config.getProperty(CONFIG_KEY_NETSTAT_HISTOGRAMS,
+		                                                         DEFAULT_NETSTAT_HISTOGRAMS));
 
 		// check to make sure it will all work
 		if(!DATA_PATH.exists()) {
@@ -176,6 +240,7 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 		finally {
 			timer.cancel();
 		}
+		history.register();
 	}
 
 	/**
@@ -219,6 +284,7 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 			data= new FileInputStream(DATA_PATH);
 			baos = new ByteArrayOutputStream();
 			IOUtils.copy(data, baos);
+			readNanos = System.nanoTime();
 			ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
 			InputStreamReader inputStreamReader = new InputStreamReader(bais);
 			lines = new BufferedReader(inputStreamReader);
@@ -270,7 +336,8 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	void processData(Matcher m) throws LinuxMonitoringException {
 		final String interfaceName = m.group(1);
 		String objectName = beanPrefix + interfaceName;
-		LinuxNetworkInterface bean = new LinuxNetworkInterface(objectName);
+		LinuxNetworkInterface bean = new LinuxNetworkInterface(objectName, history);
+		bean.readNanos = readNanos;
 		bean.interfaceName = interfaceName;
 		bean.bytesReceived = Long.parseLong(m.group(2));
 		bean.packetsReceived = Long.parseLong(m.group(3));
@@ -296,6 +363,7 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	void updateBean(LinuxNetworkInterface iface) throws LinuxMonitoringException {
 		LinuxNetworkInterface jmxBean = interfaces.get(iface.objectName);
 		if(jmxBean == null) { // new device
+			iface.initRates(rateWindows);
 			try {
 				JMXUtils.registerMBean(iface, iface.objectName);
 				interfaces.put(iface.objectName, iface);
@@ -307,6 +375,7 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 			jmxBean.compute(iface);
 			jmxBean.takeValues(iface);
 			log.debug(jmxBean.toString());
+			history.record(jmxBean.objectName, jmxBean, jmxBean.lastUpdated);
 		}
 	}
 
@@ -326,6 +395,7 @@ public class LinuxNetStatJMXWrapper extends Thread implements Monitor {
 	private void removeBean(LinuxNetworkInterface bean) {
 		log.info("Removing " + bean + " from MBean server");
 		JMXUtils.unregisterMBeanCatchAndLogExceptions(bean.objectName);
+		history.remove(bean.objectName);
 	}
 
 	public void cleanup() {
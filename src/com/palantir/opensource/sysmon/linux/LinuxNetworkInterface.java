@@ -15,6 +15,10 @@ package com.palantir.opensource.sysmon.linux;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.RollupSeries;
 
 /**
  * Data container and JMX MBean implementation for per-network interface statistics used by
@@ -22,15 +26,42 @@ import java.lang.reflect.Modifier;
  */
 public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 
+	/**
+	 * Counters that rates are kept for over each configured window, by attribute name.
+	 */
+	static final String[] RATE_COUNTERS = {
+		"BytesReceived", "BytesSent", "PacketsReceived", "PacketsSent"
+	};
+
+	/**
+	 * Width of the counters in <code>/proc/net/dev</code>, which have been 64 bits on every
+	 * architecture since Linux 2.6.35.
+	 */
+	static final int COUNTER_BITS = 64;
+
+	/**
+	 * Time constants of the smoothed rates, in minutes.
+	 */
+	static final int[] EWMA_MINUTES = { 1, 5, 15 };
+
 	/**
 	 * full objectName of this object in the JMX bean hierarchy.
 	 */
 	final String objectName;
+	/**
+	 * Where windowed queries are answered from.  May be null.
+	 */
+	final LinuxMetricHistory history;
 	/**
 	 * Freshness timestamp for the data held here.
 	 */
 	final long timestamp = System.currentTimeMillis();
 	volatile long lastUpdated = System.currentTimeMillis();
+	/**
+	 * {@link System#nanoTime()} when the counters were read, used for rates so that they are
+	 * immune to wall clock steps.
+	 */
+	long readNanos = System.nanoTime();
 	/*
 	 * Fields from /proc/net/dev, in left-to-right order
 	 */
@@ -114,15 +145,31 @@ public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 	/*
 	 * Computed stats
 	 */
-	private long bytesPerSecondReceived = 0;
-	private long bytesPerSecondSent = 0;
-	private long packetsPerSecondReceived = 0;
-	private long packetsPerSecondSent = 0;
+	private double bytesPerSecondReceived = 0;
+	private double bytesPerSecondSent = 0;
+	private double packetsPerSecondReceived = 0;
+	private double packetsPerSecondSent = 0;
 	private long timespan = 0;
+	/**
+	 * Exponentially weighted moving averages of the rates above over {@link #EWMA_MINUTES}, like
+	 * the load average, indexed [rate][average].
+	 */
+	private final double[][] ewma = new double[4][EWMA_MINUTES.length];
+	private boolean ewmaStarted = false;
+	/**
+	 * Rates of {@link #RATE_COUNTERS} over each window.  Null until {@link #initRates(long[])}.
+	 */
+	private CounterRates rates = null;
+	private long[] rateWindowsInSeconds = new long[0];
 
 
 	LinuxNetworkInterface(String objectName) {
+		this(objectName, null);
+	}
+
+	LinuxNetworkInterface(String objectName, LinuxMetricHistory history) {
 		this.objectName = objectName;
+		this.history = history;
 	}
 
 	public synchronized void takeValues(LinuxNetworkInterface dataBean) throws LinuxMonitoringException {
@@ -145,30 +192,73 @@ public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 			throw new LinuxMonitoringException("Error while refletively copying fields",e);
 		}
 	}
+	/**
+	 * Starts keeping rates over the passed windows, beginning with the current counter values.
+	 */
+	synchronized void initRates(long[] windowsInSeconds) {
+		final long[] windowNanos = new long[windowsInSeconds.length];
+		for(int i = 0; i < windowNanos.length; i++) {
+			windowNanos[i] = windowsInSeconds[i] * 1000000000L;
+		}
+		final int[] counterBits = new int[RATE_COUNTERS.length];
+		Arrays.fill(counterBits, COUNTER_BITS);
+		this.rates = new CounterRates(counterBits, windowNanos);
+		this.rateWindowsInSeconds = windowsInSeconds.clone();
+		rates.update(readNanos, rateCounterValues());
+	}
+
+	/**
+	 * @return the current values of {@link #RATE_COUNTERS}, in order.
+	 */
+	private long[] rateCounterValues() {
+		return new long[] { bytesReceived, bytesSent, packetsReceived, packetsSent };
+	}
+
 	/**
 	 * Computes the stats between these two beans, writing to this bean.
 	 * @param dataBean - which will be unchanged
 	 * @throws LinuxMonitoringException
 	 */
 	public synchronized void compute(LinuxNetworkInterface dataBean) throws LinuxMonitoringException {
-		long timespan = Math.abs(dataBean.lastUpdated - this.lastUpdated);
-		long bytesRec = Math.abs(dataBean.bytesReceived - this.bytesReceived);
-		long bytesSent = Math.abs(dataBean.bytesSent - this.bytesSent);
-		long packetsRec = Math.abs(dataBean.packetsReceived - this.packetsReceived);
-		long packetsSent = Math.abs(dataBean.packetsSent - this.packetsSent);
-
-		this.timespan = timespan;
-		this.bytesPerSecondReceived   = (long)(1000f * ((float) bytesRec / (float) timespan));
-		this.bytesPerSecondSent       = (long)(1000f * ((float) bytesSent / (float) timespan));
-		this.packetsPerSecondReceived = (long)(1000f * ((float) packetsRec / (float) timespan));
-		this.packetsPerSecondSent     = (long)(1000f * ((float) packetsSent / (float) timespan));
+		final long timespanNanos = dataBean.readNanos - this.readNanos;
+		if(timespanNanos <= 0) {
+			// nothing to compute a rate over
+			return;
+		}
+		// counters can wrap or be reset with the device
+		long bytesRec = CounterRates.delta(this.bytesReceived, dataBean.bytesReceived, COUNTER_BITS);
+		long bytesSent = CounterRates.delta(this.bytesSent, dataBean.bytesSent, COUNTER_BITS);
+		long packetsRec = CounterRates.delta(this.packetsReceived, dataBean.packetsReceived, COUNTER_BITS);
+		long packetsSent = CounterRates.delta(this.packetsSent, dataBean.packetsSent, COUNTER_BITS);
+		if(rates != null) {
+			rates.update(dataBean.readNanos, dataBean.rateCounterValues());
+		}
 
+		final double seconds = timespanNanos / 1e9;
+		this.timespan = Math.round(timespanNanos / 1e6);
+		this.bytesPerSecondReceived   = bytesRec / seconds;
+		this.bytesPerSecondSent       = bytesSent / seconds;
+		this.packetsPerSecondReceived = packetsRec / seconds;
+		this.packetsPerSecondSent     = packetsSent / seconds;
+
+		final double[] current = { bytesPerSecondReceived, bytesPerSecondSent,
+		                           packetsPerSecondReceived, packetsPerSecondSent };
+		for(int i = 0; i < current.length; i++) {
+			for(int j = 0; j < EWMA_MINUTES.length; j++) {
+				if(ewmaStarted) {
+					final double alpha = 1.0 - Math.exp(-seconds / (60.0 * EWMA_MINUTES[j]));
+					ewma[i][j] += alpha * (current[i] - ewma[i][j]);
+				} else {
+					ewma[i][j] = current[i];
+				}
+			}
+		}
+		ewmaStarted = true;
 	}
 
-	static final float ONE_MB = 1024 * 1024;
-	private String formatByteRates(long bytesPerSec) {
-		final float Bps = bytesPerSec;
-		final float MBps = Bps / ONE_MB;
+	static final double ONE_MB = 1024 * 1024;
+	private String formatByteRates(double bytesPerSec) {
+		final double MBps = bytesPerSec / ONE_MB;
 		return String.format("%f03 MBps", MBps);
 	}
 	@Override
@@ -176,8 +266,8 @@ public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 		StringBuilder out = new StringBuilder(interfaceName);
 		if(this.timespan > 0) {
 			// build up stats
-			out.append(" (rcvd=").append(formatByteRates(getBytesPerSecondReceived()));
-			out.append(" sent=").append(formatByteRates(getBytesPerSecondReceived()));
+			out.append(" (rcvd=").append(formatByteRates(bytesPerSecondReceived));
+			out.append(" sent=").append(formatByteRates(bytesPerSecondSent));
 			out.append(" sample=").append(this.timespan).append("ms");
 			out.append(")");
 		} else {
@@ -303,22 +393,82 @@ public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 
 
 	public synchronized final long getBytesPerSecondReceived() {
-		return bytesPerSecondReceived;
+		return Math.round(bytesPerSecondReceived);
 	}
 
 
 	public synchronized final long getBytesPerSecondSent() {
-		return bytesPerSecondSent;
+		return Math.round(bytesPerSecondSent);
 	}
 
 
 	public synchronized final long getPacketsPerSecondReceived() {
-		return packetsPerSecondReceived;
+		return Math.round(packetsPerSecondReceived);
 	}
 
 
 	public synchronized final long getPacketsPerSecondSent() {
-		return packetsPerSecondSent;
+		return Math.round(packetsPerSecondSent);
+	}
+
+
+	public synchronized final double getBytesPerSecondReceivedOneMinute() {
+		return ewma[0][0];
+	}
+
+
+	public synchronized final double getBytesPerSecondReceivedFiveMinute() {
+		return ewma[0][1];
+	}
+
+
+	public synchronized final double getBytesPerSecondReceivedFifteenMinute() {
+		return ewma[0][2];
+	}
+
+
+	public synchronized final double getBytesPerSecondSentOneMinute() {
+		return ewma[1][0];
+	}
+
+
+	public synchronized final double getBytesPerSecondSentFiveMinute() {
+		return ewma[1][1];
+	}
+
+
+	public synchronized final double getBytesPerSecondSentFifteenMinute() {
+		return ewma[1][2];
+	}
+
+
+	public synchronized final double getPacketsPerSecondReceivedOneMinute() {
+		return ewma[2][0];
+	}
+
+
+	public synchronized final double getPacketsPerSecondReceivedFiveMinute() {
+		return ewma[2][1];
+	}
+
+
+	public synchronized final double getPacketsPerSecondReceivedFifteenMinute() {
+		return ewma[2][2];
+	}
+
+
+	public synchronized final double getPacketsPerSecondSentOneMinute() {
+		return ewma[3][0];
+	}
+
+
+	public synchronized final double getPacketsPerSecondSentFiveMinute() {
+		return ewma[3][1];
+	}
+
+
+	public synchronized final double getPacketsPerSecondSentFifteenMinute() {
+		return ewma[3][2];
 	}
 
 
@@ -326,4 +476,73 @@ public class LinuxNetworkInterface implements LinuxNetworkInterfaceMBean {
 		return timespan;
 	}
 
+	public synchronized final long[] getRateWindowsInSeconds() {
+		return rateWindowsInSeconds.clone();
+	}
+
+	public double[] getBytesReceivedRates() {
+		return rates(0);
+	}
+
+	public double[] getBytesSentRates() {
+		return rates(1);
+	}
+
+	public double[] getPacketsReceivedRates() {
+		return rates(2);
+	}
+
+	public double[] getPacketsSentRates() {
+		return rates(3);
+	}
+
+	private synchronized double[] rates(int counter) {
+		return rates == null ? new double[0] : rates.rates(counter);
+	}
+
+	public synchronized double rate(String counter, long windowSeconds) {
+		int index = -1;
+		for(int i = 0; i < RATE_COUNTERS.length; i++) {
+			if(RATE_COUNTERS[i].equals(counter)) {
+				index = i;
+			}
+		}
+		if(index < 0) {
+			throw new IllegalArgumentException("No rates are kept for " + counter);
+		}
+		final int window = rates == null ? -1 : rates.indexOfWindow(windowSeconds * 1000000000L);
+		if(window < 0) {
+			throw new IllegalArgumentException("No rates are kept over " + windowSeconds + " seconds");
+		}
+		return rates.rate(index, window);
+	}
+
+	public double max(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getMax();
+	}
+
+	public double min(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getMin();
+	}
+
+	public double avg(String attribute, long windowSeconds) {
+		return window(attribute, windowSeconds).getAverage();
+	}
+
+	public double percentile(String attribute, long windowSeconds, double percentile) {
+		checkHistory();
+		return history.percentile(objectName, attribute, windowSeconds, percentile);
+	}
+
+	private RollupSeries.Aggregate window(String attribute, long windowSeconds) {
+		checkHistory();
+		return history.window(objectName, attribute, windowSeconds);
+	}
+
+	private void checkHistory() {
+		if(history == null) {
+			throw new IllegalStateException("No history is retained for " + objectName);
+		}
+	}
+
 }
@@ -58,5 +58,78 @@ public interface LinuxNetworkInterfaceMBean {
 	public abstract long getPacketsPerSecondSent();
 	public abstract long getTimespan();
 
+	/*
+	 * Rates smoothed over one, five and fifteen minutes, like the load average.
+	 */
+	public abstract double getBytesPerSecondReceivedOneMinute();
+	public abstract double getBytesPerSecondReceivedFiveMinute();
+	public abstract double getBytesPerSecondReceivedFifteenMinute();
+	public abstract double getBytesPerSecondSentOneMinute();
+	public abstract double getBytesPerSecondSentFiveMinute();
+	public abstract double getBytesPerSecondSentFifteenMinute();
+	public abstract double getPacketsPerSecondReceivedOneMinute();
+	public abstract double getPacketsPerSecondReceivedFiveMinute();
+	public abstract double getPacketsPerSecondReceivedFifteenMinute();
+	public abstract double getPacketsPerSecondSentOneMinute();
+	public abstract double getPacketsPerSecondSentFiveMinute();
+	public abstract double getPacketsPerSecondSentFifteenMinute();
+
+	/**
+	 * @return the windows, in seconds, that the <code>*Rates</code> attributes are reported over.
+	 */
+	public abstract long[] getRateWindowsInSeconds();
+
+	/**
+	 * @return bytes received per second over each of {@link #getRateWindowsInSeconds()}.
+	 */
+	public abstract double[] getBytesReceivedRates();
+
+	/**
+	 * @return bytes sent per second over each of {@link #getRateWindowsInSeconds()}.
+	 */
+	public abstract double[] getBytesSentRates();
+
+	/**
+	 * @return packets received per second over each of {@link #getRateWindowsInSeconds()}.
+	 */
+	public abstract double[] getPacketsReceivedRates();
+
+	/**
+	 * @return packets sent per second over each of {@link #getRateWindowsInSeconds()}.
+	 */
+	public abstract double[] getPacketsSentRates();
+
+	/**
+	 * @param counter one of <code>BytesReceived</code>, <code>BytesSent</code>,
+	 * <code>PacketsReceived</code> or <code>PacketsSent</code>.
+	 * @param windowSeconds one of {@link #getRateWindowsInSeconds()}.
+	 * @return the per-second rate of the counter over the window, or NaN if not yet known.
+	 */
+	public abstract double rate(String counter, long windowSeconds);
+
+	/**
+	 * @return largest value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double max(String attribute, long windowSeconds);
+
+	/**
+	 * @return smallest value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double min(String attribute, long windowSeconds);
+
+	/**
+	 * @return mean value of <code>attribute</code> over the last <code>windowSeconds</code>,
+	 * or NaN if none was retained.
+	 */
+	public abstract double avg(String attribute, long windowSeconds);
+
+	/**
+	 * @return nearest-rank percentile (0 to 100) of <code>attribute</code> over the last
+	 * <code>windowSeconds</code>, or NaN if none was retained.
+	 */
+	public abstract double percentile(String attribute, long windowSeconds, double percentile);
+
 
 }
\ No newline at end of file
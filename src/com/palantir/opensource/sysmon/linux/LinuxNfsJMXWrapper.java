@@ -0,0 +1,730 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.MountTable;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors the client side of NFS mounts: per-operation rates and latencies, retransmits and
+ * transport backlog.</p>
+ * <p>
+ * Each tick reads <code>/proc/self/mountstats</code>, which has a block of a few dozen lines for
+ * every NFS mount and grows large on hosts with many of them.  It is read through a fixed buffer
+ * and parsed a line at a time as it streams in, skipping the blocks of other filesystems and the
+ * operations that aren't published, so neither memory nor garbage grows with the file.
+ * </p><p>
+ * All the counters are cumulative, so everything is published as a rate or an average over the
+ * operations completed since the last tick.  Only the operations listed in the config are
+ * published on their own, but every operation counts towards the mount's totals.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each mount will be at the same <code>devicename</code> as its {@link LinuxFileSystem} bean:<br/>
+ * <code>sysmon.linux.beanpath:type=nfs-mount,devicename=&lt;mount point&gt;</code><br/>
+ * and each of its operations at:<br/>
+ * <code>sysmon.linux.beanpath:type=nfs-operation,devicename=&lt;mount point&gt;,operation=&lt;operation&gt;</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=nfs</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.nfs.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>10000</code></td>
+ * <td>{@link #CONFIG_KEY_NFS_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.nfs.operations</td>
+ * <td>comma-separated operations to publish for each mount</td>
+ * <td><code>READ,WRITE,GETATTR</code></td>
+ * <td>{@link #CONFIG_KEY_NFS_OPERATIONS}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ * @see <a href='https://utcc.utoronto.ca/~cks/space/blog/linux/NFSMountstatsIndex'>the fields
+ * of mountstats</a>
+ */
+public class LinuxNfsJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxNfsJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".nfs";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NFS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_NFS_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Comma-separated operations, as named in mountstats, to publish for each mount.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NFS_OPERATIONS default value
+	 */
+	public static final String CONFIG_KEY_NFS_OPERATIONS = CONFIG_KEY_PREFIX + ".operations";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NFS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_NFS_PERIOD = 10000;
+	/**
+	 * Default operations to publish.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NFS_OPERATIONS for config key to override default value.
+	 */
+	public static final String DEFAULT_NFS_OPERATIONS = "READ,WRITE,GETATTR";
+
+	public static final String OBJECT_NAME_PREFIX = ":type=nfs-mount,devicename=";
+	public static final String OPERATION_OBJECT_NAME_PREFIX = ":type=nfs-operation,devicename=";
+
+	static final File MOUNTSTATS_PATH = new File("/proc/self/mountstats");
+
+	/**
+	 * Size of the read buffer, which bounds the length of the lines that are parsed.  The longest
+	 * lines, mount options, come nowhere near it.
+	 */
+	static final int BUFFER_SIZE = 16384;
+
+	/**
+	 * Columns of a per-operation line, after its name.  Kernels before 5.2 have no errors column.
+	 */
+	static final int OPS = 0;
+	static final int TRANSMISSIONS = 1;
+	static final int MAJOR_TIMEOUTS = 2;
+	static final int BYTES_SENT = 3;
+	static final int BYTES_RECEIVED = 4;
+	static final int QUEUE_MILLIS = 5;
+	static final int RTT_MILLIS = 6;
+	static final int EXECUTE_MILLIS = 7;
+	static final int ERRORS = 8;
+	static final int OPERATION_COLUMNS = 9;
+
+	/**
+	 * Columns of the <code>bytes:</code> line.
+	 */
+	static final int NORMAL_READ = 0;
+	static final int NORMAL_WRITE = 1;
+	static final int DIRECT_READ = 2;
+	static final int DIRECT_WRITE = 3;
+	static final int SERVER_READ = 4;
+	static final int SERVER_WRITE = 5;
+	static final int BYTES_COLUMNS = 8;
+
+	/**
+	 * Columns of the <code>xprt:</code> line after the transport.  UDP has no connection, so its
+	 * counters start three columns earlier.
+	 */
+	static final int XPRT_SENDS = 5;
+	static final int XPRT_BACKLOG = 9;
+	static final int UDP_XPRT_SENDS = 2;
+	static final int UDP_XPRT_BACKLOG = 6;
+	static final int XPRT_COLUMNS = 10;
+
+	/**
+	 * Fields of a <code>device</code> line.
+	 */
+	static final int SOURCE = 1;
+	static final int MOUNT_POINT = 4;
+	static final int FSTYPE = 7;
+	static final int FIELDS = 8;
+
+	private static final byte[] DEVICE = ascii("device ");
+	private static final byte[] BYTES = ascii("bytes:");
+	private static final byte[] XPRT = ascii("xprt:");
+	private static final byte[] PER_OP = ascii("per-op statistics");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final String beanPrefix;
+	final String operationBeanPrefix;
+	final LinuxMetricHistory history;
+	final File mountstatsPath;
+	final String[] operations;
+	final byte[][] operationNames;
+	/**
+	 * By mount point.
+	 */
+	final Map<String, NfsMount> mounts = new LinkedHashMap<String, NfsMount>();
+	final byte[] buffer = new byte[BUFFER_SIZE];
+	final long[] columns = new long[XPRT_COLUMNS];
+	final int[] fieldStarts = new int[FIELDS];
+	final int[] fieldEnds = new int[FIELDS];
+	volatile boolean shutdown = false;
+
+	/**
+	 * Bumped every tick; mounts not seen in a tick are gone.
+	 */
+	int generation = 0;
+	/**
+	 * When this tick's read started; the time all of its rates are computed to.
+	 */
+	private long tickNanos = 0;
+	/**
+	 * The NFS mount whose lines are being parsed, or null while in another filesystem's block.
+	 */
+	private NfsMount current = null;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxNfsJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, MOUNTSTATS_PATH);
+	}
+
+	LinuxNfsJMXWrapper(Properties config, File mountstatsPath) throws LinuxMonitoringException {
+		super(LinuxNfsJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		this.operationBeanPrefix = beanPath + OPERATION_OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_NFS_PERIOD, DEFAULT_NFS_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_NFS_PERIOD, e);
+		}
+		final List<String> names = new ArrayList<String>();
+		for(String name : config.getProperty(CONFIG_KEY_NFS_OPERATIONS, DEFAULT_NFS_OPERATIONS).split(",")) {
+			name = name.trim();
+			if(name.length() > 0 && !names.contains(name)) {
+				names.add(name);
+			}
+		}
+		this.operations = names.toArray(new String[names.size()]);
+		this.operationNames = new byte[operations.length][];
+		for(int i = 0; i < operations.length; i++) {
+			operationNames[i] = ascii(operations[i] + ":");
+		}
+		this.history = new LinuxMetricHistory(config, "nfs");
+
+		// check to make sure it will all work
+		this.mountstatsPath = mountstatsPath;
+		if(!mountstatsPath.canRead()) {
+			throw new LinuxMonitoringException("Can't read " + mountstatsPath.getAbsolutePath() +
+			                                   ". Can't read NFS statistics. (Is /proc mounted?)");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+		} finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down NFS monitoring due to error.",e);
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		generation++;
+		tickNanos = System.nanoTime();
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(mountstatsPath);
+			int start = 0;
+			int end = 0;
+			boolean overlong = false;
+			boolean eof = false;
+			while(true) {
+				int newline = start;
+				while(newline < end && buffer[newline] != '\n') {
+					newline++;
+				}
+				if(newline < end || (eof && start < end)) {
+					if(overlong) {
+						overlong = false;
+					} else {
+						parseLine(start, newline);
+					}
+					start = newline + 1;
+				} else if(eof) {
+					break;
+				} else {
+					// keep the partial line and read more behind it
+					System.arraycopy(buffer, start, buffer, 0, end - start);
+					end -= start;
+					start = 0;
+					if(end == buffer.length) {
+						// a line that doesn't fit: drop what there is and the rest of it
+						overlong = true;
+						end = 0;
+					}
+					final int count = in.read(buffer, end, buffer.length - end);
+					if(count < 0) {
+						eof = true;
+					} else {
+						end += count;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException reading " +
+			                                   mountstatsPath.getAbsolutePath(), e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		finishMount();
+
+		for(Iterator<NfsMount> it = mounts.values().iterator(); it.hasNext();) {
+			final NfsMount mount = it.next();
+			if(mount.generation != generation) {
+				log.info("NFS mount " + mount.bean.mountPoint + " is gone.");
+				it.remove();
+				unregister(mount.bean.objectName);
+				for(LinuxNfsOperation operation : mount.operations) {
+					if(operation != null) {
+						unregister(operation.objectName);
+					}
+				}
+			}
+		}
+	}
+
+	private void unregister(String objectName) {
+		JMXUtils.unregisterMBeanCatchAndLogExceptions(objectName);
+		history.remove(objectName);
+	}
+
+	/**
+	 * Parses the line in <code>buffer[start, end)</code>.
+	 */
+	private void parseLine(int start, int end) {
+		if(startsWith(start, end, DEVICE)) {
+			finishMount();
+			current = startMount(start, end);
+			return;
+		}
+		if(current == null) {
+			return;
+		}
+		int i = start;
+		while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+			i++;
+		}
+		if(current.inOperations) {
+			parseOperation(i, end);
+		} else if(startsWith(i, end, BYTES)) {
+			parseColumns(i + BYTES.length, end, current.bytes, BYTES_COLUMNS);
+		} else if(startsWith(i, end, XPRT)) {
+			i += XPRT.length;
+			while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+				i++;
+			}
+			final int transportStart = i;
+			while(i < end && buffer[i] != ' ') {
+				i++;
+			}
+			// almost always unchanged, so don't allocate
+			if(!equalsAscii(transportStart, i, current.transport)) {
+				current.transport = string(transportStart, i);
+			}
+			final int count = parseColumns(i, end, columns, XPRT_COLUMNS);
+			final boolean udp = current.transport.equals("udp");
+			final int sends = udp ? UDP_XPRT_SENDS : XPRT_SENDS;
+			final int backlog = udp ? UDP_XPRT_BACKLOG : XPRT_BACKLOG;
+			if(count > Math.max(sends, backlog)) {
+				current.sends = columns[sends];
+				current.backlog = columns[backlog];
+			}
+		} else if(startsWith(i, end, PER_OP)) {
+			current.inOperations = true;
+		}
+	}
+
+	/**
+	 * Parses a per-operation line, adding it to the mount's totals and keeping its columns if the
+	 * operation is published.
+	 */
+	private void parseOperation(int start, int end) {
+		int i = start;
+		while(i < end && buffer[i] != ':') {
+			i++;
+		}
+		if(i == end) {
+			return;
+		}
+		final NfsMount mount = current;
+		long[] target = columns;
+		int index = -1;
+		for(int op = 0; op < operationNames.length; op++) {
+			if(startsWith(start, end, operationNames[op]) && operationNames[op].length == i + 1 - start) {
+				index = op;
+				target = mount.operationColumns[op];
+				break;
+			}
+		}
+		final int count = parseColumns(i + 1, end, target, OPERATION_COLUMNS);
+		if(count <= EXECUTE_MILLIS) {
+			return;
+		}
+		for(int c = count; c < OPERATION_COLUMNS; c++) {
+			target[c] = 0;
+		}
+		if(index >= 0) {
+			mount.seen[index] = true;
+		}
+		mount.ops += target[OPS];
+		mount.transmissions += target[TRANSMISSIONS];
+		mount.majorTimeouts += target[MAJOR_TIMEOUTS];
+	}
+
+	/**
+	 * Parses up to <code>max</code> space-separated numbers from <code>buffer[start, end)</code>.
+	 * @return how many were parsed.
+	 */
+	private int parseColumns(int start, int end, long[] target, int max) {
+		int i = start;
+		int count = 0;
+		while(count < max) {
+			while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+				i++;
+			}
+			if(i == end || buffer[i] < '0' || buffer[i] > '9') {
+				break;
+			}
+			long value = 0;
+			while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				value = value * 10 + (buffer[i] - '0');
+				i++;
+			}
+			target[count++] = value;
+		}
+		return count;
+	}
+
+	private boolean startsWith(int start, int end, byte[] prefix) {
+		if(end - start < prefix.length) {
+			return false;
+		}
+		for(int i = 0; i < prefix.length; i++) {
+			if(buffer[start + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts on the block of a <code>device &lt;source&gt; mounted on &lt;mount point&gt; with
+	 * fstype &lt;type&gt; ...</code> line.
+	 * @return the mount, or null if it isn't NFS.
+	 */
+	private NfsMount startMount(int start, int end) {
+		// device, source, mounted, on, mount point, with, fstype, type
+		int count = 0;
+		int i = start;
+		while(count < FIELDS && i < end) {
+			while(i < end && buffer[i] == ' ') {
+				i++;
+			}
+			fieldStarts[count] = i;
+			while(i < end && buffer[i] != ' ') {
+				i++;
+			}
+			fieldEnds[count++] = i;
+		}
+		if(count < FIELDS || !isNfs(fieldStarts[FSTYPE], fieldEnds[FSTYPE])) {
+			return null;
+		}
+		final String mountPoint = MountTable.unescape(string(fieldStarts[MOUNT_POINT], fieldEnds[MOUNT_POINT]));
+		NfsMount mount = mounts.get(mountPoint);
+		if(mount != null && mount.generation == generation) {
+			// mounted over in the same place; only the first is followed
+			return null;
+		}
+		if(mount == null) {
+			mount = newMount(mountPoint, MountTable.unescape(string(fieldStarts[SOURCE], fieldEnds[SOURCE])),
+			                 string(fieldStarts[FSTYPE], fieldEnds[FSTYPE]));
+			if(mount == null) {
+				return null;
+			}
+		}
+		mount.begin(generation);
+		return mount;
+	}
+
+	/**
+	 * @return true for <code>nfs</code> and <code>nfs4</code>.
+	 */
+	private boolean isNfs(int start, int end) {
+		final int length = end - start;
+		return (length == 3 || (length == 4 && buffer[start + 3] == '4')) &&
+		       buffer[start] == 'n' && buffer[start + 1] == 'f' && buffer[start + 2] == 's';
+	}
+
+	private boolean equalsAscii(int start, int end, String s) {
+		if(s.length() != end - start) {
+			return false;
+		}
+		for(int i = start; i < end; i++) {
+			if(buffer[i] != s.charAt(i - start)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String string(int start, int end) {
+		try {
+			return new String(buffer, start, end - start, "US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private NfsMount newMount(String mountPoint, String server, String fileSystemType) {
+		final LinuxNfsMount bean = new LinuxNfsMount(beanPrefix + mountPoint, mountPoint, server,
+		                                             fileSystemType);
+		try {
+			JMXUtils.registerMBean(bean, bean.objectName);
+		} catch (JMException e) {
+			log.error("Error registering bean for " + bean.objectName, e);
+			return null;
+		}
+		final NfsMount mount = new NfsMount(bean, operations.length);
+		mounts.put(mountPoint, mount);
+		return mount;
+	}
+
+	/**
+	 * Publishes the rates of the mount whose block has been parsed.
+	 */
+	private void finishMount() {
+		final NfsMount mount = current;
+		current = null;
+		if(mount == null) {
+			return;
+		}
+		for(int op = 0; op < operations.length; op++) {
+			if(mount.seen[op] && mount.operations[op] == null) {
+				final String mountPoint = mount.bean.mountPoint;
+				final LinuxNfsOperation operation =
+					new LinuxNfsOperation(operationBeanPrefix + mountPoint + ",operation=" + operations[op],
+					                      mountPoint, operations[op]);
+				try {
+					JMXUtils.registerMBean(operation, operation.objectName);
+					mount.operations[op] = operation;
+				} catch (JMException e) {
+					log.error("Error registering bean for " + operation.objectName, e);
+					mount.seen[op] = false;
+				}
+			}
+		}
+		if(mount.update(tickNanos)) {
+			history.record(mount.bean.objectName, mount.bean);
+			for(LinuxNfsOperation operation : mount.operations) {
+				if(operation != null) {
+					history.record(operation.objectName, operation);
+				}
+			}
+		}
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	private static byte[] ascii(String s) {
+		try {
+			return s.getBytes("US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A published mount, the counters parsed for it this tick and those of the last tick.
+	 */
+	static final class NfsMount {
+		final LinuxNfsMount bean;
+		final LinuxNfsOperation[] operations;
+		int generation = 0;
+		boolean inOperations = false;
+		String transport = "";
+
+		final long[] bytes = new long[BYTES_COLUMNS];
+		long sends = 0;
+		long backlog = 0;
+		long ops = 0;
+		long transmissions = 0;
+		long majorTimeouts = 0;
+		final long[][] operationColumns;
+		final boolean[] seen;
+
+		final long[] previousBytes = new long[BYTES_COLUMNS];
+		long previousSends = 0;
+		long previousBacklog = 0;
+		long previousOps = 0;
+		long previousTransmissions = 0;
+		long previousMajorTimeouts = 0;
+		final long[][] previousOperationColumns;
+		final boolean[] previousSeen;
+		long readNanos = 0;
+
+		NfsMount(LinuxNfsMount bean, int operationCount) {
+			this.bean = bean;
+			this.operations = new LinuxNfsOperation[operationCount];
+			this.operationColumns = new long[operationCount][OPERATION_COLUMNS];
+			this.previousOperationColumns = new long[operationCount][OPERATION_COLUMNS];
+			this.seen = new boolean[operationCount];
+			this.previousSeen = new boolean[operationCount];
+		}
+
+		void begin(int generation) {
+			this.generation = generation;
+			inOperations = false;
+			ops = 0;
+			transmissions = 0;
+			majorTimeouts = 0;
+			for(int op = 0; op < seen.length; op++) {
+				seen[op] = false;
+			}
+		}
+
+		/**
+		 * Publishes the rates since the last tick.
+		 * @return true if there was a last tick to compare with.
+		 */
+		boolean update(long now) {
+			final boolean updated = readNanos != 0 && now > readNanos;
+			if(updated) {
+				final double seconds = (now - readNanos) / 1e9;
+				final long sendDelta = CounterRates.delta(previousSends, sends, CounterRates.LONG_BITS);
+				final long opsDelta = CounterRates.delta(previousOps, ops, CounterRates.LONG_BITS);
+				bean.update(transport,
+				            (delta(NORMAL_READ) + delta(DIRECT_READ)) / seconds,
+				            (delta(NORMAL_WRITE) + delta(DIRECT_WRITE)) / seconds,
+				            delta(SERVER_READ) / seconds,
+				            delta(SERVER_WRITE) / seconds,
+				            opsDelta / seconds,
+				            sendDelta / seconds,
+				            Math.max(0, CounterRates.delta(previousTransmissions, transmissions,
+				                                           CounterRates.LONG_BITS) - opsDelta) / seconds,
+				            CounterRates.delta(previousMajorTimeouts, majorTimeouts,
+				                               CounterRates.LONG_BITS) / seconds,
+				            sendDelta == 0 ? 0.0 :
+				            (double)CounterRates.delta(previousBacklog, backlog, 64) / sendDelta);
+				for(int op = 0; op < operations.length; op++) {
+					if(seen[op] && previousSeen[op]) {
+						updateOperation(op, seconds);
+					}
+				}
+			}
+			System.arraycopy(bytes, 0, previousBytes, 0, BYTES_COLUMNS);
+			previousSends = sends;
+			previousBacklog = backlog;
+			previousOps = ops;
+			previousTransmissions = transmissions;
+			previousMajorTimeouts = majorTimeouts;
+			for(int op = 0; op < operations.length; op++) {
+				System.arraycopy(operationColumns[op], 0, previousOperationColumns[op], 0, OPERATION_COLUMNS);
+				previousSeen[op] = seen[op];
+			}
+			readNanos = now;
+			return updated;
+		}
+
+		private long delta(int column) {
+			return CounterRates.delta(previousBytes[column], bytes[column], 64);
+		}
+
+		private void updateOperation(int op, double seconds) {
+			final long[] previous = previousOperationColumns[op];
+			final long[] columns = operationColumns[op];
+			final int bits = CounterRates.LONG_BITS;
+			final long ops = CounterRates.delta(previous[OPS], columns[OPS], bits);
+			final long transmissions = CounterRates.delta(previous[TRANSMISSIONS], columns[TRANSMISSIONS], bits);
+			operations[op].update(ops / seconds,
+			                      Math.max(0, transmissions - ops) / seconds,
+			                      CounterRates.delta(previous[MAJOR_TIMEOUTS], columns[MAJOR_TIMEOUTS], bits) /
+			                      seconds,
+			                      CounterRates.delta(previous[ERRORS], columns[ERRORS], bits) / seconds,
+			                      CounterRates.delta(previous[BYTES_SENT], columns[BYTES_SENT], 64) / seconds,
+			                      CounterRates.delta(previous[BYTES_RECEIVED], columns[BYTES_RECEIVED], 64) /
+			                      seconds,
+			                      average(previous, columns, QUEUE_MILLIS, ops),
+			                      average(previous, columns, RTT_MILLIS, ops),
+			                      average(previous, columns, EXECUTE_MILLIS, ops));
+		}
+
+		private static double average(long[] previous, long[] columns, int column, long ops) {
+			// times are kept in 64 bits
+			return ops == 0 ? 0.0 : (double)CounterRates.delta(previous[column], columns[column], 64) / ops;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the client side of one NFS mount, used by
+ * {@link LinuxNfsJMXWrapper}.
+ */
+public class LinuxNfsMount implements LinuxNfsMountMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String mountPoint;
+	final String server;
+	final String fileSystemType;
+
+	private String transport = "";
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private double serverReadBytesPerSecond = 0;
+	private double serverWriteBytesPerSecond = 0;
+	private double operationsPerSecond = 0;
+	private double rpcSendsPerSecond = 0;
+	private double retransmitsPerSecond = 0;
+	private double majorTimeoutsPerSecond = 0;
+	private double averageBacklogQueueLength = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxNfsMount(String objectName, String mountPoint, String server, String fileSystemType) {
+		this.objectName = objectName;
+		this.mountPoint = mountPoint;
+		this.server = server;
+		this.fileSystemType = fileSystemType;
+	}
+
+	synchronized void update(String transport,
+	                         double readBytesPerSecond, double writeBytesPerSecond,
+	                         double serverReadBytesPerSecond, double serverWriteBytesPerSecond,
+	                         double operationsPerSecond, double rpcSendsPerSecond,
+	                         double retransmitsPerSecond, double majorTimeoutsPerSecond,
+	                         double averageBacklogQueueLength) {
+		this.transport = transport;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+		this.serverReadBytesPerSecond = serverReadBytesPerSecond;
+		this.serverWriteBytesPerSecond = serverWriteBytesPerSecond;
+		this.operationsPerSecond = operationsPerSecond;
+		this.rpcSendsPerSecond = rpcSendsPerSecond;
+		this.retransmitsPerSecond = retransmitsPerSecond;
+		this.majorTimeoutsPerSecond = majorTimeoutsPerSecond;
+		this.averageBacklogQueueLength = averageBacklogQueueLength;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getMountPoint() {
+		return mountPoint;
+	}
+
+	public String getServer() {
+		return server;
+	}
+
+	public String getFileSystemType() {
+		return fileSystemType;
+	}
+
+	public synchronized String getTransport() {
+		return transport;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized double getServerReadBytesPerSecond() {
+		return serverReadBytesPerSecond;
+	}
+
+	public synchronized double getServerWriteBytesPerSecond() {
+		return serverWriteBytesPerSecond;
+	}
+
+	public synchronized double getOperationsPerSecond() {
+		return operationsPerSecond;
+	}
+
+	public synchronized double getRpcSendsPerSecond() {
+		return rpcSendsPerSecond;
+	}
+
+	public synchronized double getRetransmitsPerSecond() {
+		return retransmitsPerSecond;
+	}
+
+	public synchronized double getMajorTimeoutsPerSecond() {
+		return majorTimeoutsPerSecond;
+	}
+
+	public synchronized double getAverageBacklogQueueLength() {
+		return averageBacklogQueueLength;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
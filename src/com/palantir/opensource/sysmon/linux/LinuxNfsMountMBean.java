@@ -0,0 +1,79 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for the client side of one NFS mount, published by {@link LinuxNfsJMXWrapper}.
+ */
+public interface LinuxNfsMountMBean {
+
+	public abstract String getMountPoint();
+
+	/**
+	 * @return the exported directory, as <code>server:/path</code>.
+	 */
+	public abstract String getServer();
+
+	public abstract String getFileSystemType();
+
+	/**
+	 * @return the RPC transport (<code>tcp</code>, <code>udp</code> or <code>rdma</code>).
+	 */
+	public abstract String getTransport();
+
+	/**
+	 * @return bytes read by applications, through the page cache or with O_DIRECT.
+	 */
+	public abstract double getReadBytesPerSecond();
+
+	/**
+	 * @return bytes written by applications, through the page cache or with O_DIRECT.
+	 */
+	public abstract double getWriteBytesPerSecond();
+
+	/**
+	 * @return bytes actually read from the server, which the page cache keeps below
+	 * {@link #getReadBytesPerSecond()}.
+	 */
+	public abstract double getServerReadBytesPerSecond();
+
+	public abstract double getServerWriteBytesPerSecond();
+
+	/**
+	 * @return NFS operations of every kind completed.
+	 */
+	public abstract double getOperationsPerSecond();
+
+	public abstract double getRpcSendsPerSecond();
+
+	/**
+	 * @return requests sent again because the server didn't answer in time, over every kind of
+	 * operation.
+	 */
+	public abstract double getRetransmitsPerSecond();
+
+	/**
+	 * @return major timeouts, after which a soft mount fails the request and a hard mount logs
+	 * "server not responding".
+	 */
+	public abstract double getMajorTimeoutsPerSecond();
+
+	/**
+	 * @return average number of requests waiting for a transport slot when a request was sent.
+	 * Above zero, the mount is sending more than its slot table allows.
+	 */
+	public abstract double getAverageBacklogQueueLength();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,110 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for one kind of NFS operation on one mount, used
+ * by {@link LinuxNfsJMXWrapper}.
+ */
+public class LinuxNfsOperation implements LinuxNfsOperationMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String mountPoint;
+	final String operation;
+
+	private double operationsPerSecond = 0;
+	private double retransmitsPerSecond = 0;
+	private double majorTimeoutsPerSecond = 0;
+	private double errorsPerSecond = 0;
+	private double sentBytesPerSecond = 0;
+	private double receivedBytesPerSecond = 0;
+	private double averageQueueTimeInMillis = 0;
+	private double averageRttInMillis = 0;
+	private double averageExecuteTimeInMillis = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxNfsOperation(String objectName, String mountPoint, String operation) {
+		this.objectName = objectName;
+		this.mountPoint = mountPoint;
+		this.operation = operation;
+	}
+
+	synchronized void update(double operationsPerSecond, double retransmitsPerSecond,
+	                         double majorTimeoutsPerSecond, double errorsPerSecond,
+	                         double sentBytesPerSecond, double receivedBytesPerSecond,
+	                         double averageQueueTimeInMillis, double averageRttInMillis,
+	                         double averageExecuteTimeInMillis) {
+		this.operationsPerSecond = operationsPerSecond;
+		this.retransmitsPerSecond = retransmitsPerSecond;
+		this.majorTimeoutsPerSecond = majorTimeoutsPerSecond;
+		this.errorsPerSecond = errorsPerSecond;
+		this.sentBytesPerSecond = sentBytesPerSecond;
+		this.receivedBytesPerSecond = receivedBytesPerSecond;
+		this.averageQueueTimeInMillis = averageQueueTimeInMillis;
+		this.averageRttInMillis = averageRttInMillis;
+		this.averageExecuteTimeInMillis = averageExecuteTimeInMillis;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getMountPoint() {
+		return mountPoint;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public synchronized double getOperationsPerSecond() {
+		return operationsPerSecond;
+	}
+
+	public synchronized double getRetransmitsPerSecond() {
+		return retransmitsPerSecond;
+	}
+
+	public synchronized double getMajorTimeoutsPerSecond() {
+		return majorTimeoutsPerSecond;
+	}
+
+	public synchronized double getErrorsPerSecond() {
+		return errorsPerSecond;
+	}
+
+	public synchronized double getSentBytesPerSecond() {
+		return sentBytesPerSecond;
+	}
+
+	public synchronized double getReceivedBytesPerSecond() {
+		return receivedBytesPerSecond;
+	}
+
+	public synchronized double getAverageQueueTimeInMillis() {
+		return averageQueueTimeInMillis;
+	}
+
+	public synchronized double getAverageRttInMillis() {
+		return averageRttInMillis;
+	}
+
+	public synchronized double getAverageExecuteTimeInMillis() {
+		return averageExecuteTimeInMillis;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,63 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for one kind of NFS operation on one mount, published by
+ * {@link LinuxNfsJMXWrapper}.  Averages are over the operations completed since the last check.
+ */
+public interface LinuxNfsOperationMBean {
+
+	public abstract String getMountPoint();
+
+	/**
+	 * @return the operation, as named by the kernel (<code>READ</code>, <code>GETATTR</code>).
+	 */
+	public abstract String getOperation();
+
+	public abstract double getOperationsPerSecond();
+
+	public abstract double getRetransmitsPerSecond();
+
+	public abstract double getMajorTimeoutsPerSecond();
+
+	/**
+	 * @return operations the server answered with an error.  Always zero on kernels older than
+	 * 5.2, which don't count them.
+	 */
+	public abstract double getErrorsPerSecond();
+
+	public abstract double getSentBytesPerSecond();
+
+	public abstract double getReceivedBytesPerSecond();
+
+	/**
+	 * @return average time, in milliseconds, a request waited in the client before it was sent.
+	 */
+	public abstract double getAverageQueueTimeInMillis();
+
+	/**
+	 * @return average time, in milliseconds, from sending a request to receiving the server's
+	 * reply.
+	 */
+	public abstract double getAverageRttInMillis();
+
+	/**
+	 * @return average time, in milliseconds, from the operation being issued to its completion,
+	 * queueing, retransmits and reply processing included.
+	 */
+	public abstract double getAverageExecuteTimeInMillis();
+
+	public abstract long getTimestamp();
+}
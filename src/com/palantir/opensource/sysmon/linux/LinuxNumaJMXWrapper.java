@@ -0,0 +1,462 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors memory and allocation locality of each NUMA node, from
+ * <code>/sys/devices/system/node/node*&#47;meminfo</code> and <code>numastat</code>.</p>
+ * <p>
+ * Besides each node's free and used memory, the rates of its allocation counters are published:
+ * allocations that missed their preferred node, and allocations made for processes running on
+ * another node.  Remote allocations mean slower memory accesses, which per-host memory
+ * statistics don't show.
+ * </p><p>
+ * This JVM's own residency on each node is taken from <code>/proc/self/numa_maps</code>.  The
+ * kernel walks the page tables of the whole process to produce that file, holding locks the
+ * JVM's own threads need, so it is only sampled every few minutes.
+ * </p><p>
+ * Nodes are found once, at start up.  The files are kept open and re-read with positional reads
+ * ({@link PositionalFileReader}).
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each node will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=numa,node=&lt;node number&gt;</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=numa</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.numa.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_NUMA_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.numa.numaMapsPeriodMillis</td>
+ * <td>period, in milliseconds, between samples of <code>/proc/self/numa_maps</code>, or 0 to never
+ * sample it</td>
+ * <td><code>300000</code></td>
+ * <td>{@link #CONFIG_KEY_NUMA_MAPS_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxNumaJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxNumaJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".numa";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NUMA_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_NUMA_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Time between samples of <code>/proc/self/numa_maps</code>, 0 for never.
+	 * Config key: {@value}
+	 * @see #DEFAULT_NUMA_MAPS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_NUMA_MAPS_PERIOD = CONFIG_KEY_PREFIX + ".numaMapsPeriodMillis";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NUMA_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_NUMA_PERIOD = 5000;
+	/**
+	 * Default time between samples of <code>/proc/self/numa_maps</code>, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_NUMA_MAPS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_NUMA_MAPS_PERIOD = 300000;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=numa,node=";
+
+	static final File DATA_PATH = new File("/sys/devices/system/node");
+	static final File NUMA_MAPS_PATH = new File("/proc/self/numa_maps");
+
+	/**
+	 * Counters in each node's <code>numastat</code>, in the order
+	 * {@link LinuxNumaNode#updateRates(double[])} takes their rates.
+	 */
+	static final String[] NUMASTAT = {
+		"numa_hit", "numa_miss", "numa_foreign", "interleave_hit", "local_node", "other_node",
+	};
+	static final int LOCAL_NODE = 4;
+	static final int OTHER_NODE = 5;
+	static final byte[] PAGE_SIZE_FIELD = { 'k', 'e', 'r', 'n', 'e', 'l', 'p', 'a', 'g', 'e', 's',
+	                                        'i', 'z', 'e', '_', 'k', 'B', '=' };
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final long numaMapsPeriod;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final List<Node> nodes = new ArrayList<Node>();
+	final PositionalFileReader numaMaps;
+	/**
+	 * This JVM's resident kilobytes on each node, indexed by node number.
+	 */
+	final long[] residentByNode;
+	private long lastNumaMaps = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxNumaJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH, NUMA_MAPS_PATH);
+	}
+
+	LinuxNumaJMXWrapper(Properties config, File dataPath, File numaMapsPath)
+		throws LinuxMonitoringException {
+		super(LinuxNumaJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_NUMA_PERIOD,
+			                                          DEFAULT_NUMA_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_NUMA_PERIOD, e);
+		}
+		try {
+			this.numaMapsPeriod = PropertiesUtils.extractLong(config, CONFIG_KEY_NUMA_MAPS_PERIOD,
+			                                                  DEFAULT_NUMA_MAPS_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_NUMA_MAPS_PERIOD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "numa");
+
+		// check to make sure it will all work
+		final String[] names = dataPath.list();
+		if(names == null) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							". Can't read NUMA statistics. (Is /sys mounted? Does the kernel support NUMA?)");
+		}
+		try {
+			for(String name : names) {
+				if(name.matches("node\\d+")) {
+					nodes.add(new Node(Integer.parseInt(name.substring(4)), new File(dataPath, name)));
+				}
+			}
+		} catch (IOException e) {
+			for(Node node : nodes) {
+				node.close();
+			}
+			throw new LinuxMonitoringException("Could not open NUMA statistics in " +
+			                                   dataPath.getAbsolutePath(), e);
+		}
+		if(nodes.isEmpty()) {
+			throw new LinuxMonitoringException("No NUMA nodes in " + dataPath.getAbsolutePath());
+		}
+		Collections.sort(nodes, new Comparator<Node>() {
+			public int compare(Node a, Node b) {
+				return a.id - b.id;
+			}
+		});
+		this.residentByNode = new long[nodes.get(nodes.size() - 1).id + 1];
+		PositionalFileReader numaMapsReader = null;
+		if(numaMapsPeriod > 0) {
+			try {
+				numaMapsReader = new PositionalFileReader(numaMapsPath, 65536);
+			} catch (IOException e) {
+				log.info("Not sampling JVM NUMA residency, could not open " +
+				         numaMapsPath.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+		this.numaMaps = numaMapsReader;
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			for(Node node : nodes) {
+				objectName = node.bean.objectName;
+				JMXUtils.registerMBean(node.bean, objectName);
+			}
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down NUMA monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(Node node : nodes) {
+			node.close();
+		}
+		if(numaMaps != null) {
+			numaMaps.close();
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long now = System.currentTimeMillis();
+		final boolean sampleNumaMaps = numaMaps != null && now - lastNumaMaps >= numaMapsPeriod;
+		long totalResident = 0;
+		if(sampleNumaMaps) {
+			lastNumaMaps = now;
+			try {
+				final int length = numaMaps.read();
+				parseNumaMaps(numaMaps.getBuffer(), length, residentByNode);
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+			}
+			for(long resident : residentByNode) {
+				totalResident += resident;
+			}
+		}
+		for(Node node : nodes) {
+			try {
+				node.read();
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+			}
+			if(sampleNumaMaps) {
+				node.bean.updateJvmResidency(residentByNode[node.id], totalResident);
+			}
+			history.record(node.bean.objectName, node.bean);
+		}
+	}
+
+	/**
+	 * Sums the pages on each node (the <code>N&lt;node&gt;=&lt;pages&gt;</code> fields) over all
+	 * mappings in <code>numa_maps</code>, in kilobytes, using each mapping's
+	 * <code>kernelpagesize_kB</code>.  Nodes beyond the end of <code>residentByNode</code> are
+	 * ignored.
+	 */
+	static void parseNumaMaps(byte[] buffer, int length, long[] residentByNode) {
+		Arrays.fill(residentByNode, 0);
+		final long[] pages = new long[residentByNode.length];
+		long pageSize = 4;
+		boolean any = false;
+		int i = 0;
+		while(i <= length) {
+			if(i == length || buffer[i] == '\n') {
+				if(any) {
+					for(int node = 0; node < pages.length; node++) {
+						residentByNode[node] += pages[node] * pageSize;
+						pages[node] = 0;
+					}
+				}
+				any = false;
+				pageSize = 4;
+				i++;
+				continue;
+			}
+			if(buffer[i] == ' ') {
+				i++;
+				continue;
+			}
+			// start of a field
+			if(buffer[i] == 'N' && i + 1 < length && buffer[i + 1] >= '0' && buffer[i + 1] <= '9') {
+				int j = i + 1;
+				int node = 0;
+				while(j < length && buffer[j] >= '0' && buffer[j] <= '9') {
+					node = node * 10 + (buffer[j] - '0');
+					j++;
+				}
+				if(j < length && buffer[j] == '=') {
+					long value = 0;
+					j++;
+					while(j < length && buffer[j] >= '0' && buffer[j] <= '9') {
+						value = value * 10 + (buffer[j] - '0');
+						j++;
+					}
+					if(node < pages.length) {
+						pages[node] += value;
+						any = true;
+					}
+				}
+				i = j;
+			} else if(startsWith(buffer, i, length, PAGE_SIZE_FIELD)) {
+				int j = i + PAGE_SIZE_FIELD.length;
+				long value = 0;
+				while(j < length && buffer[j] >= '0' && buffer[j] <= '9') {
+					value = value * 10 + (buffer[j] - '0');
+					j++;
+				}
+				pageSize = value;
+				i = j;
+			}
+			// skip the rest of the field
+			while(i < length && buffer[i] != ' ' && buffer[i] != '\n') {
+				i++;
+			}
+		}
+	}
+
+	private static boolean startsWith(byte[] buffer, int i, int length, byte[] prefix) {
+		if(length - i < prefix.length) {
+			return false;
+		}
+		for(int k = 0; k < prefix.length; k++) {
+			if(buffer[i + k] != prefix[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	/**
+	 * The open files of one node and the previous reading of its counters.
+	 */
+	final class Node {
+		final int id;
+		final LinuxNumaNode bean;
+		final PositionalFileReader meminfo;
+		final PositionalFileReader numastat;
+		final KeyValueTable meminfoTable = new KeyValueTable();
+		final KeyValueTable numastatTable = new KeyValueTable();
+		final String memTotalKey;
+		final String memFreeKey;
+		final String memUsedKey;
+		final String filePagesKey;
+		final String anonPagesKey;
+		final long[] previous = new long[NUMASTAT.length];
+		long previousNanos = 0;
+		boolean primed = false;
+
+		Node(int id, File dir) throws IOException {
+			this.id = id;
+			this.bean = new LinuxNumaNode(beanPrefix + id, Integer.toString(id));
+			// meminfo lines look like "Node 0 MemTotal:  4292344 kB"
+			final String prefix = "Node " + id + " ";
+			memTotalKey = prefix + "MemTotal";
+			memFreeKey = prefix + "MemFree";
+			memUsedKey = prefix + "MemUsed";
+			filePagesKey = prefix + "FilePages";
+			anonPagesKey = prefix + "AnonPages";
+			meminfo = new PositionalFileReader(new File(dir, "meminfo"), 4096);
+			try {
+				numastat = new PositionalFileReader(new File(dir, "numastat"), 256);
+			} catch (IOException e) {
+				meminfo.close();
+				throw e;
+			}
+		}
+
+		void read() throws IOException {
+			final int meminfoLength = meminfo.read();
+			meminfoTable.parse(meminfo.getBuffer(), meminfoLength);
+			final long memTotal = meminfoTable.get(memTotalKey, 0);
+			final long memFree = meminfoTable.get(memFreeKey, 0);
+			bean.update(memTotal, memFree, meminfoTable.get(memUsedKey, memTotal - memFree),
+			            meminfoTable.get(filePagesKey, 0), meminfoTable.get(anonPagesKey, 0));
+
+			final int length = numastat.read();
+			final long nanos = System.nanoTime();
+			numastatTable.parse(numastat.getBuffer(), length);
+			final double seconds = primed ? (nanos - previousNanos) / 1e9 : 0.0;
+			final double[] rates = new double[NUMASTAT.length];
+			for(int i = 0; i < NUMASTAT.length; i++) {
+				final long value = numastatTable.get(NUMASTAT[i], 0);
+				if(seconds > 0) {
+					rates[i] = CounterRates.delta(previous[i], value, CounterRates.LONG_BITS) / seconds;
+				}
+				previous[i] = value;
+			}
+			if(seconds > 0) {
+				bean.updateRates(rates);
+			}
+			previousNanos = nanos;
+			primed = true;
+		}
+
+		void close() {
+			meminfo.close();
+			numastat.close();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for one NUMA node, used by
+ * {@link LinuxNumaJMXWrapper}.
+ */
+public class LinuxNumaNode implements LinuxNumaNodeMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String node;
+
+	private long memTotal = 0;
+	private long memFree = 0;
+	private long memUsed = 0;
+	private long filePages = 0;
+	private long anonPages = 0;
+	private final double[] rates = new double[LinuxNumaJMXWrapper.NUMASTAT.length];
+	private double localAllocationPercentage = 100.0;
+	private long jvmResident = 0;
+	private double jvmResidentPercentage = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxNumaNode(String objectName, String node) {
+		this.objectName = objectName;
+		this.node = node;
+	}
+
+	/**
+	 * Publishes the node's memory usage, in kilobytes.
+	 */
+	synchronized void update(long memTotal, long memFree, long memUsed, long filePages,
+	                         long anonPages) {
+		this.memTotal = memTotal;
+		this.memFree = memFree;
+		this.memUsed = memUsed;
+		this.filePages = filePages;
+		this.anonPages = anonPages;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Publishes allocation rates.
+	 * @param rates in the order of {@link LinuxNumaJMXWrapper#NUMASTAT}.
+	 */
+	synchronized void updateRates(double[] rates) {
+		System.arraycopy(rates, 0, this.rates, 0, this.rates.length);
+		final double allocations = rates[LinuxNumaJMXWrapper.LOCAL_NODE] +
+		                           rates[LinuxNumaJMXWrapper.OTHER_NODE];
+		localAllocationPercentage = allocations <= 0 ? 100.0 :
+		                            100.0 * rates[LinuxNumaJMXWrapper.LOCAL_NODE] / allocations;
+	}
+
+	/**
+	 * Publishes this JVM's residency on the node.
+	 */
+	synchronized void updateJvmResidency(long residentInKB, long totalResidentInKB) {
+		jvmResident = residentInKB;
+		jvmResidentPercentage = totalResidentInKB <= 0 ? 0.0 : 100.0 * residentInKB / totalResidentInKB;
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	public synchronized long getMemTotalInKB() {
+		return memTotal;
+	}
+
+	public synchronized long getMemFreeInKB() {
+		return memFree;
+	}
+
+	public synchronized long getMemUsedInKB() {
+		return memUsed;
+	}
+
+	public synchronized double getMemUsedPercentage() {
+		return memTotal <= 0 ? 0.0 : 100.0 * memUsed / memTotal;
+	}
+
+	public synchronized long getFilePagesInKB() {
+		return filePages;
+	}
+
+	public synchronized long getAnonPagesInKB() {
+		return anonPages;
+	}
+
+	public synchronized double getNumaHitPerSecond() {
+		return rates[0];
+	}
+
+	public synchronized double getNumaMissPerSecond() {
+		return rates[1];
+	}
+
+	public synchronized double getNumaForeignPerSecond() {
+		return rates[2];
+	}
+
+	public synchronized double getInterleaveHitPerSecond() {
+		return rates[3];
+	}
+
+	public synchronized double getLocalNodePerSecond() {
+		return rates[4];
+	}
+
+	public synchronized double getOtherNodePerSecond() {
+		return rates[5];
+	}
+
+	public synchronized double getLocalAllocationPercentage() {
+		return localAllocationPercentage;
+	}
+
+	public synchronized long getJvmResidentInKB() {
+		return jvmResident;
+	}
+
+	public synchronized double getJvmResidentPercentage() {
+		return jvmResidentPercentage;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,87 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for {@link LinuxNumaJMXWrapper}.  Allocation rates are in pages per second.
+ */
+public interface LinuxNumaNodeMBean {
+
+	/**
+	 * @return the node number.
+	 */
+	public abstract String getNode();
+
+	public abstract long getMemTotalInKB();
+
+	public abstract long getMemFreeInKB();
+
+	public abstract long getMemUsedInKB();
+
+	public abstract double getMemUsedPercentage();
+
+	/**
+	 * @return page cache on this node.
+	 */
+	public abstract long getFilePagesInKB();
+
+	public abstract long getAnonPagesInKB();
+
+	/**
+	 * @return pages per second allocated on this node as intended.
+	 */
+	public abstract double getNumaHitPerSecond();
+
+	/**
+	 * @return pages per second allocated on this node although another node was preferred,
+	 * because that node was short of memory.
+	 */
+	public abstract double getNumaMissPerSecond();
+
+	/**
+	 * @return pages per second intended for this node but allocated on another.
+	 */
+	public abstract double getNumaForeignPerSecond();
+
+	public abstract double getInterleaveHitPerSecond();
+
+	/**
+	 * @return pages per second allocated on this node by processes running on it.
+	 */
+	public abstract double getLocalNodePerSecond();
+
+	/**
+	 * @return pages per second allocated on this node by processes running on another node.
+	 */
+	public abstract double getOtherNodePerSecond();
+
+	/**
+	 * @return local allocations as a percentage of all allocations on this node in the last
+	 * period, or 100 if there were none.
+	 */
+	public abstract double getLocalAllocationPercentage();
+
+	/**
+	 * @return memory of this JVM resident on this node, as of the last sample of
+	 * <code>/proc/self/numa_maps</code>, or 0 if it isn't sampled.
+	 */
+	public abstract long getJvmResidentInKB();
+
+	/**
+	 * @return this node's share of the memory of this JVM resident on any node.
+	 */
+	public abstract double getJvmResidentPercentage();
+
+	public abstract long getTimestamp();
+}
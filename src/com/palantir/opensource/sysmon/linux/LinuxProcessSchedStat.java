@@ -0,0 +1,85 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the run queue statistics of the monitored
+ * process, used by {@link LinuxSchedStatJMXWrapper}.
+ */
+public class LinuxProcessSchedStat implements LinuxProcessSchedStatMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+
+	private int threadCount = 0;
+	private double runningPercentage = 0;
+	private double runDelayPercentage = 0;
+	private double timeslicesPerSecond = 0;
+	private double runDelayPerTimesliceInMicros = 0;
+	private Map<String, Double> threadRunDelayPercentage = Collections.emptyMap();
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxProcessSchedStat(String objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Publishes a new reading.  The map is published as passed and must not be modified
+	 * afterwards.
+	 */
+	synchronized void update(int threadCount, double runningPercentage, double runDelayPercentage,
+	                         double timeslicesPerSecond, double runDelayPerTimesliceInMicros,
+	                         Map<String, Double> threadRunDelayPercentage) {
+		this.threadCount = threadCount;
+		this.runningPercentage = runningPercentage;
+		this.runDelayPercentage = runDelayPercentage;
+		this.timeslicesPerSecond = timeslicesPerSecond;
+		this.runDelayPerTimesliceInMicros = runDelayPerTimesliceInMicros;
+		this.threadRunDelayPercentage = threadRunDelayPercentage;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public synchronized int getThreadCount() {
+		return threadCount;
+	}
+
+	public synchronized double getRunningPercentage() {
+		return runningPercentage;
+	}
+
+	public synchronized double getRunDelayPercentage() {
+		return runDelayPercentage;
+	}
+
+	public synchronized double getTimeslicesPerSecond() {
+		return timeslicesPerSecond;
+	}
+
+	public synchronized double getRunDelayPerTimesliceInMicros() {
+		return runDelayPerTimesliceInMicros;
+	}
+
+	public synchronized Map<String, Double> getThreadRunDelayPercentage() {
+		return threadRunDelayPercentage;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,52 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for the values {@link LinuxSchedStatJMXWrapper} reports for the monitored
+ * process itself.
+ */
+public interface LinuxProcessSchedStatMBean {
+
+	public abstract int getThreadCount();
+
+	/**
+	 * @return time the process's threads spent running, as a percentage of elapsed time.  Over 100
+	 * when more than one thread ran at once.
+	 */
+	public abstract double getRunningPercentage();
+
+	/**
+	 * @return time the process's runnable threads spent waiting for a CPU, as a percentage of
+	 * elapsed time.  100 means that, on average, one thread was always waiting.
+	 */
+	public abstract double getRunDelayPercentage();
+
+	public abstract double getTimeslicesPerSecond();
+
+	/**
+	 * @return the mean time a thread waited in the run queue before each timeslice it ran.
+	 */
+	public abstract double getRunDelayPerTimesliceInMicros();
+
+	/**
+	 * @return the run delay percentage of the threads that waited longest, keyed by
+	 * <code>&lt;thread name&gt; (&lt;thread id&gt;)</code>, longest first.
+	 */
+	public abstract Map<String, Double> getThreadRunDelayPercentage();
+
+	public abstract long getTimestamp();
+}
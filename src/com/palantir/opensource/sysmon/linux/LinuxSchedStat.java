@@ -0,0 +1,71 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the run queue statistics of one CPU, or of all
+ * of them, used by {@link LinuxSchedStatJMXWrapper}.
+ */
+public class LinuxSchedStat implements LinuxSchedStatMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String cpu;
+
+	private double runningPercentage = 0;
+	private double runDelayPercentage = 0;
+	private double timeslicesPerSecond = 0;
+	private double runDelayPerTimesliceInMicros = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxSchedStat(String objectName, String cpu) {
+		this.objectName = objectName;
+		this.cpu = cpu;
+	}
+
+	synchronized void update(double runningPercentage, double runDelayPercentage,
+	                         double timeslicesPerSecond, double runDelayPerTimesliceInMicros) {
+		this.runningPercentage = runningPercentage;
+		this.runDelayPercentage = runDelayPercentage;
+		this.timeslicesPerSecond = timeslicesPerSecond;
+		this.runDelayPerTimesliceInMicros = runDelayPerTimesliceInMicros;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getCpu() {
+		return cpu;
+	}
+
+	public synchronized double getRunningPercentage() {
+		return runningPercentage;
+	}
+
+	public synchronized double getRunDelayPercentage() {
+		return runDelayPercentage;
+	}
+
+	public synchronized double getTimeslicesPerSecond() {
+		return timeslicesPerSecond;
+	}
+
+	public synchronized double getRunDelayPerTimesliceInMicros() {
+		return runDelayPerTimesliceInMicros;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
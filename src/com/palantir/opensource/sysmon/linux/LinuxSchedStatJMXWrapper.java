@@ -0,0 +1,580 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors how long runnable tasks wait for a CPU, from the scheduler's statistics.</p>
+ * <p>
+ * The load average counts runnable tasks but says nothing about how long they wait.  The kernel
+ * keeps, per CPU and per task, the time spent running, the time spent runnable but waiting in a
+ * run queue, and the number of timeslices run.  The wait per timeslice is the scheduling latency
+ * added to every wake up: it rises as soon as CPUs are saturated, well before utilization reaches
+ * 100%.
+ * </p><p>
+ * Per-CPU values come from the <code>cpu&lt;n&gt;</code> lines of <code>/proc/schedstat</code>,
+ * which needs a kernel built with <code>CONFIG_SCHEDSTATS</code>; without it only the process is
+ * monitored.  Values for the monitored process are summed over its threads, from
+ * <code>/proc/self/task/&lt;tid&gt;/schedstat</code> (<code>/proc/self/schedstat</code> only
+ * covers the main thread).  Each thread's file is opened once and re-read with positional reads
+ * ({@link PositionalFileReader}) until the thread exits, and the threads that waited longest are
+ * reported by name.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each CPU will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=schedstat,cpu=&lt;cpu number&gt;</code><br/>
+ * The means and sums over all CPUs will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=schedstat,cpu=total</code><br/>
+ * The monitored process will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=schedstat,process=self</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=schedstat</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.schedstat.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_SCHEDSTAT_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.schedstat.threadsEnabled</td>
+ * <td>whether to read the statistics of the monitored process's threads</td>
+ * <td><code>true</code></td>
+ * <td>{@link #CONFIG_KEY_SCHEDSTAT_THREADS_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.schedstat.topThreads</td>
+ * <td>number of threads to report the run delay of, longest first</td>
+ * <td><code>10</code></td>
+ * <td>{@link #CONFIG_KEY_SCHEDSTAT_TOP_THREADS}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxSchedStatJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxSchedStatJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".schedstat";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SCHEDSTAT_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_SCHEDSTAT_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Set to <code>false</code> to only monitor CPUs.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SCHEDSTAT_THREADS_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_SCHEDSTAT_THREADS_ENABLED = CONFIG_KEY_PREFIX + ".threadsEnabled";
+	/**
+	 * Number of threads whose run delay is reported.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SCHEDSTAT_TOP_THREADS default value
+	 */
+	public static final String CONFIG_KEY_SCHEDSTAT_TOP_THREADS = CONFIG_KEY_PREFIX + ".topThreads";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SCHEDSTAT_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_SCHEDSTAT_PERIOD = 5000;
+	/**
+	 * Threads are monitored by default.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SCHEDSTAT_THREADS_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_SCHEDSTAT_THREADS_ENABLED = true;
+	/**
+	 * Default number of threads whose run delay is reported.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SCHEDSTAT_TOP_THREADS for config key to override default value.
+	 */
+	public static final int DEFAULT_SCHEDSTAT_TOP_THREADS = 10;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=schedstat,cpu=";
+	public static final String PROCESS_OBJECT_NAME = ":type=schedstat,process=self";
+
+	static final File SCHEDSTAT_PATH = new File("/proc/schedstat");
+	static final File TASK_PATH = new File("/proc/self/task");
+
+	/**
+	 * Fields of a <code>cpu&lt;n&gt;</code> line, after the name.  The last three are the time
+	 * tasks ran and waited, in nanoseconds, and the number of timeslices.
+	 */
+	static final int CPU_FIELDS = 9;
+	static final int CPU_RUNNING = 6;
+	static final int CPU_WAITING = 7;
+	static final int CPU_TIMESLICES = 8;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final int topThreads;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final PositionalFileReader reader;
+	final File taskPath;
+	final LinuxSchedStat total;
+	final LinuxProcessSchedStat process;
+	/**
+	 * Indexed by CPU number, null for CPUs not seen.
+	 */
+	Cpu[] cpus = new Cpu[0];
+	final Map<String, Task> tasks = new HashMap<String, Task>();
+	final long[] fields = new long[CPU_FIELDS];
+	long previousNanos = 0;
+	int generation = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxSchedStatJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, SCHEDSTAT_PATH, TASK_PATH);
+	}
+
+	LinuxSchedStatJMXWrapper(Properties config, File schedstatPath, File taskPath)
+		throws LinuxMonitoringException {
+		super(LinuxSchedStatJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		String key = CONFIG_KEY_SCHEDSTAT_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_SCHEDSTAT_PERIOD);
+			key = CONFIG_KEY_SCHEDSTAT_TOP_THREADS;
+			this.topThreads = PropertiesUtils.extractInteger(config, key, DEFAULT_SCHEDSTAT_TOP_THREADS);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		final boolean threadsEnabled = PropertiesUtils.extractBoolean(config,
+		                                                              CONFIG_KEY_SCHEDSTAT_THREADS_ENABLED,
+		                                                              DEFAULT_SCHEDSTAT_THREADS_ENABLED);
+		this.history = new LinuxMetricHistory(config, "schedstat");
+
+		// check to make sure it will all work
+		if(schedstatPath.canRead()) {
+			try {
+				this.reader = new PositionalFileReader(schedstatPath, 4096);
+			} catch (IOException e) {
+				throw new LinuxMonitoringException("Error opening " + schedstatPath.getAbsolutePath(), e);
+			}
+			this.total = new LinuxSchedStat(beanPrefix + "total", "total");
+		} else {
+			log.info(schedstatPath.getAbsolutePath() + " is not readable (kernel built without " +
+			         "CONFIG_SCHEDSTATS?).  Per-CPU run delay will not be monitored.");
+			this.reader = null;
+			this.total = null;
+		}
+		if(threadsEnabled) {
+			if(!taskPath.isDirectory()) {
+				cleanup();
+				throw new LinuxMonitoringException("No such path: " + taskPath.getAbsolutePath() +
+								". Can't read thread scheduler statistics. (Is /proc mounted?)");
+			}
+			this.taskPath = taskPath;
+			this.process = new LinuxProcessSchedStat(beanPath + PROCESS_OBJECT_NAME);
+		} else {
+			this.taskPath = null;
+			this.process = null;
+		}
+		if(reader == null && process == null) {
+			throw new LinuxMonitoringException("Nothing to monitor: " +
+			                                   schedstatPath.getAbsolutePath() +
+			                                   " is not readable and threads are disabled");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			if(total != null) {
+				objectName = total.objectName;
+				JMXUtils.registerMBean(total, objectName);
+			}
+			if(process != null) {
+				objectName = process.objectName;
+				JMXUtils.registerMBean(process, objectName);
+			}
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down scheduler statistics monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		if(reader != null) {
+			reader.close();
+		}
+		for(Task task : tasks.values()) {
+			task.reader.close();
+		}
+		tasks.clear();
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long nanos = System.nanoTime();
+		final boolean rated = previousNanos != 0 && nanos > previousNanos;
+		// nanoseconds per percent of elapsed time
+		final double onePercent = (nanos - previousNanos) / 100.0;
+		final double seconds = (nanos - previousNanos) / 1e9;
+		generation++;
+		if(reader != null) {
+			readCpus(rated, onePercent, seconds);
+		}
+		if(process != null) {
+			readTasks(rated, onePercent, seconds);
+		}
+		previousNanos = nanos;
+	}
+
+	private void readCpus(boolean rated, double onePercent, double seconds) throws LinuxMonitoringException {
+		final int length;
+		try {
+			length = reader.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final byte[] buffer = reader.getBuffer();
+		double runningSum = 0;
+		double waitingSum = 0;
+		long timeslicesSum = 0;
+		int seen = 0;
+		int position = 0;
+		while(position < length) {
+			int end = position;
+			while(end < length && buffer[end] != '\n') {
+				end++;
+			}
+			final int line = position;
+			position = end + 1;
+			// skip the version, timestamp and domain lines
+			if(end - line < 4 || buffer[line] != 'c' || buffer[line + 1] != 'p' ||
+			   buffer[line + 2] != 'u' || buffer[line + 3] < '0' || buffer[line + 3] > '9') {
+				continue;
+			}
+			int i = line + 3;
+			int number = 0;
+			while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				number = number * 10 + (buffer[i] - '0');
+				i++;
+			}
+			int count = 0;
+			while(count < CPU_FIELDS) {
+				while(i < end && buffer[i] == ' ') {
+					i++;
+				}
+				if(i == end) {
+					break;
+				}
+				long value = 0;
+				while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+					value = value * 10 + (buffer[i] - '0');
+					i++;
+				}
+				fields[count++] = value;
+			}
+			if(count < CPU_FIELDS) {
+				continue;
+			}
+			final Cpu cpu = getCpu(number);
+			cpu.generation = generation;
+			final long running = fields[CPU_RUNNING];
+			final long waiting = fields[CPU_WAITING];
+			final long timeslices = fields[CPU_TIMESLICES];
+			if(rated && cpu.primed) {
+				final long ran = CounterRates.delta(cpu.running, running, 64);
+				final long waited = CounterRates.delta(cpu.waiting, waiting, 64);
+				final long slices = CounterRates.delta(cpu.timeslices, timeslices, CounterRates.LONG_BITS);
+				cpu.bean.update(ran / onePercent, waited / onePercent, slices / seconds,
+				                slices == 0 ? 0.0 : waited / 1000.0 / slices);
+				history.record(cpu.bean.objectName, cpu.bean);
+				runningSum += ran;
+				waitingSum += waited;
+				timeslicesSum += slices;
+				seen++;
+			}
+			cpu.running = running;
+			cpu.waiting = waiting;
+			cpu.timeslices = timeslices;
+			cpu.primed = true;
+		}
+		// CPUs that went offline
+		for(int i = 0; i < cpus.length; i++) {
+			if(cpus[i] != null && cpus[i].generation != generation) {
+				JMXUtils.unregisterMBeanCatchAndLogExceptions(cpus[i].bean.objectName);
+				history.remove(cpus[i].bean.objectName);
+				cpus[i] = null;
+			}
+		}
+		if(seen > 0) {
+			total.update(runningSum / onePercent / seen, waitingSum / onePercent / seen,
+			             timeslicesSum / seconds,
+			             timeslicesSum == 0 ? 0.0 : waitingSum / 1000.0 / timeslicesSum);
+			history.record(total.objectName, total);
+		}
+	}
+
+	private Cpu getCpu(int number) throws LinuxMonitoringException {
+		if(number >= cpus.length) {
+			final Cpu[] larger = new Cpu[Math.max(number + 1, cpus.length * 2)];
+			System.arraycopy(cpus, 0, larger, 0, cpus.length);
+			cpus = larger;
+		}
+		if(cpus[number] == null) {
+			final Cpu cpu = new Cpu(new LinuxSchedStat(beanPrefix + number, Integer.toString(number)));
+			try {
+				JMXUtils.registerMBean(cpu.bean, cpu.bean.objectName);
+			} catch (JMException e) {
+				throw new LinuxMonitoringException("Error while registering bean to path " +
+				                                   cpu.bean.objectName, e);
+			}
+			cpus[number] = cpu;
+		}
+		return cpus[number];
+	}
+
+	private void readTasks(boolean rated, double onePercent, double seconds) throws LinuxMonitoringException {
+		final String[] ids = taskPath.list();
+		if(ids == null) {
+			throw new LinuxMonitoringException("Can't list " + taskPath.getAbsolutePath());
+		}
+		long runningSum = 0;
+		long waitingSum = 0;
+		long timeslicesSum = 0;
+		final List<Task> waited = new ArrayList<Task>();
+		for(String id : ids) {
+			Task task = tasks.get(id);
+			if(task == null) {
+				try {
+					task = new Task(id, new PositionalFileReader(new File(new File(taskPath, id),
+					                                                      "schedstat"), 64));
+				} catch (IOException e) {
+					// exited since the listing
+					continue;
+				}
+				tasks.put(id, task);
+			}
+			final long running;
+			final long waiting;
+			final long timeslices;
+			try {
+				final int length = task.reader.read();
+				final byte[] buffer = task.reader.getBuffer();
+				int i = 0;
+				running = PositionalFileReader.parseLong(buffer, i, length);
+				i = skipNumber(buffer, i, length);
+				waiting = PositionalFileReader.parseLong(buffer, i, length);
+				i = skipNumber(buffer, i, length);
+				timeslices = PositionalFileReader.parseLong(buffer, i, length);
+			} catch (IOException e) {
+				// exited since the listing; dropped below
+				continue;
+			} catch (NumberFormatException e) {
+				throw new LinuxMonitoringException("Unexpected contents in " +
+				                                   task.reader.getFile().getAbsolutePath(), e);
+			}
+			task.generation = generation;
+			// threads first seen after the first tick started since the last one
+			if(rated) {
+				final long ran = CounterRates.delta(task.running, running, 64);
+				final long delay = CounterRates.delta(task.waiting, waiting, 64);
+				runningSum += ran;
+				waitingSum += delay;
+				timeslicesSum += CounterRates.delta(task.timeslices, timeslices, CounterRates.LONG_BITS);
+				task.runDelayPercentage = delay / onePercent;
+				if(delay > 0) {
+					waited.add(task);
+				}
+			}
+			task.running = running;
+			task.waiting = waiting;
+			task.timeslices = timeslices;
+		}
+		for(Iterator<Task> it = tasks.values().iterator(); it.hasNext();) {
+			final Task task = it.next();
+			if(task.generation != generation) {
+				task.reader.close();
+				it.remove();
+			}
+		}
+		if(!rated) {
+			return;
+		}
+		Collections.sort(waited, new Comparator<Task>() {
+			public int compare(Task o1, Task o2) {
+				return Double.compare(o2.runDelayPercentage, o1.runDelayPercentage);
+			}
+		});
+		final Map<String, Double> top = new LinkedHashMap<String, Double>();
+		for(int i = 0; i < Math.min(topThreads, waited.size()); i++) {
+			final Task task = waited.get(i);
+			top.put(task.getName() + " (" + task.id + ")", task.runDelayPercentage);
+		}
+		process.update(tasks.size(), runningSum / onePercent, waitingSum / onePercent,
+		               timeslicesSum / seconds,
+		               timeslicesSum == 0 ? 0.0 : waitingSum / 1000.0 / timeslicesSum, top);
+		history.record(process.objectName, process);
+	}
+
+	/**
+	 * @return the index just past the number at or after <code>offset</code>.
+	 */
+	static int skipNumber(byte[] buffer, int offset, int end) {
+		int i = offset;
+		while(i < end && buffer[i] == ' ') {
+			i++;
+		}
+		while(i < end && buffer[i] != ' ' && buffer[i] != '\n') {
+			i++;
+		}
+		return i;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * The last reading of one CPU.
+	 */
+	static final class Cpu {
+		final LinuxSchedStat bean;
+		long running = 0;
+		long waiting = 0;
+		long timeslices = 0;
+		boolean primed = false;
+		int generation = 0;
+
+		Cpu(LinuxSchedStat bean) {
+			this.bean = bean;
+		}
+	}
+
+	/**
+	 * The open schedstat file and last reading of one of the process's threads.
+	 */
+	final class Task {
+		final String id;
+		final PositionalFileReader reader;
+		String name = null;
+		long running = 0;
+		long waiting = 0;
+		long timeslices = 0;
+		double runDelayPercentage = 0;
+		int generation = 0;
+
+		Task(String id, PositionalFileReader reader) {
+			this.id = id;
+			this.reader = reader;
+		}
+
+		/**
+		 * @return the thread's name, read the first time it is asked for.
+		 */
+		String getName() {
+			if(name == null) {
+				final File comm = new File(new File(taskPath, id), "comm");
+				try {
+					final PositionalFileReader commReader = new PositionalFileReader(comm, 32);
+					try {
+						name = commReader.readString();
+					} finally {
+						commReader.close();
+					}
+				} catch (IOException e) {
+					// exited, or a kernel without comm
+					name = "thread";
+				}
+			}
+			return name;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for the per-CPU values of {@link LinuxSchedStatJMXWrapper}.
+ */
+public interface LinuxSchedStatMBean {
+
+	/**
+	 * @return the CPU number these values are for, or <code>total</code> for all CPUs.
+	 */
+	public abstract String getCpu();
+
+	/**
+	 * @return time tasks spent running on this CPU, as a percentage of elapsed time.  For the
+	 * total, the mean over CPUs.
+	 */
+	public abstract double getRunningPercentage();
+
+	/**
+	 * @return time runnable tasks spent waiting for this CPU, as a percentage of elapsed time.
+	 * 100 means that, on average, one task was always waiting.  For the total, the mean over CPUs.
+	 */
+	public abstract double getRunDelayPercentage();
+
+	public abstract double getTimeslicesPerSecond();
+
+	/**
+	 * @return the mean time a task waited in the run queue before each timeslice it ran.
+	 */
+	public abstract double getRunDelayPerTimesliceInMicros();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,186 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the resource use of this JVM's own process,
+ * used by {@link LinuxSelfProcessJMXWrapper}.
+ */
+public class LinuxSelfProcess implements LinuxSelfProcessMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+
+	private long residentInKB = 0;
+	private long anonymousResidentInKB = 0;
+	private long fileResidentInKB = 0;
+	private long swapInKB = 0;
+	private long virtualInKB = 0;
+	private long proportionalInKB = 0;
+	private long heapCommittedInKB = 0;
+	private long nonHeapCommittedInKB = 0;
+	private int threadCount = 0;
+	private int fileDescriptorCount = 0;
+	private long fileDescriptorLimit = 0;
+	private double cpuPercentage = 0;
+	private double hostCpuPercentage = 0;
+	private double hostBusyPercentage = 0;
+	private double minorFaultsPerSecond = 0;
+	private double majorFaultsPerSecond = 0;
+	private double voluntaryContextSwitchesPerSecond = 0;
+	private double involuntaryContextSwitchesPerSecond = 0;
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxSelfProcess(String objectName) {
+		this.objectName = objectName;
+	}
+
+	synchronized void updateMemory(long residentInKB, long anonymousResidentInKB,
+	                               long fileResidentInKB, long swapInKB, long virtualInKB,
+	                               long heapCommittedInKB, long nonHeapCommittedInKB) {
+		this.residentInKB = residentInKB;
+		this.anonymousResidentInKB = anonymousResidentInKB;
+		this.fileResidentInKB = fileResidentInKB;
+		this.swapInKB = swapInKB;
+		this.virtualInKB = virtualInKB;
+		this.heapCommittedInKB = heapCommittedInKB;
+		this.nonHeapCommittedInKB = nonHeapCommittedInKB;
+		timestamp = System.currentTimeMillis();
+	}
+
+	synchronized void updateProportional(long proportionalInKB) {
+		this.proportionalInKB = proportionalInKB;
+	}
+
+	synchronized void updateCounts(int threadCount, int fileDescriptorCount, long fileDescriptorLimit) {
+		this.threadCount = threadCount;
+		this.fileDescriptorCount = fileDescriptorCount;
+		this.fileDescriptorLimit = fileDescriptorLimit;
+	}
+
+	synchronized void updateCpu(double cpuPercentage, double hostCpuPercentage,
+	                            double hostBusyPercentage) {
+		this.cpuPercentage = cpuPercentage;
+		this.hostCpuPercentage = hostCpuPercentage;
+		this.hostBusyPercentage = hostBusyPercentage;
+	}
+
+	synchronized void updateRates(double minorFaultsPerSecond, double majorFaultsPerSecond,
+	                              double voluntaryContextSwitchesPerSecond,
+	                              double involuntaryContextSwitchesPerSecond,
+	                              double readBytesPerSecond, double writeBytesPerSecond) {
+		this.minorFaultsPerSecond = minorFaultsPerSecond;
+		this.majorFaultsPerSecond = majorFaultsPerSecond;
+		this.voluntaryContextSwitchesPerSecond = voluntaryContextSwitchesPerSecond;
+		this.involuntaryContextSwitchesPerSecond = involuntaryContextSwitchesPerSecond;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+	}
+
+	public synchronized long getResidentInKB() {
+		return residentInKB;
+	}
+
+	public synchronized long getAnonymousResidentInKB() {
+		return anonymousResidentInKB;
+	}
+
+	public synchronized long getFileResidentInKB() {
+		return fileResidentInKB;
+	}
+
+	public synchronized long getSwapInKB() {
+		return swapInKB;
+	}
+
+	public synchronized long getVirtualInKB() {
+		return virtualInKB;
+	}
+
+	public synchronized long getProportionalInKB() {
+		return proportionalInKB;
+	}
+
+	public synchronized long getHeapCommittedInKB() {
+		return heapCommittedInKB;
+	}
+
+	public synchronized long getNonHeapCommittedInKB() {
+		return nonHeapCommittedInKB;
+	}
+
+	public synchronized long getResidentBeyondHeapInKB() {
+		return Math.max(0, residentInKB - heapCommittedInKB);
+	}
+
+	public synchronized int getThreadCount() {
+		return threadCount;
+	}
+
+	public synchronized int getFileDescriptorCount() {
+		return fileDescriptorCount;
+	}
+
+	public synchronized long getFileDescriptorLimit() {
+		return fileDescriptorLimit;
+	}
+
+	public synchronized double getFileDescriptorPercentage() {
+		return fileDescriptorLimit > 0 ? 100.0 * fileDescriptorCount / fileDescriptorLimit : 0.0;
+	}
+
+	public synchronized double getCpuPercentage() {
+		return cpuPercentage;
+	}
+
+	public synchronized double getHostCpuPercentage() {
+		return hostCpuPercentage;
+	}
+
+	public synchronized double getHostBusyPercentage() {
+		return hostBusyPercentage;
+	}
+
+	public synchronized double getMinorFaultsPerSecond() {
+		return minorFaultsPerSecond;
+	}
+
+	public synchronized double getMajorFaultsPerSecond() {
+		return majorFaultsPerSecond;
+	}
+
+	public synchronized double getVoluntaryContextSwitchesPerSecond() {
+		return voluntaryContextSwitchesPerSecond;
+	}
+
+	public synchronized double getInvoluntaryContextSwitchesPerSecond() {
+		return involuntaryContextSwitchesPerSecond;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
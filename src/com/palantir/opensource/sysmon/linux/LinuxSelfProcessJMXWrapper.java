@@ -0,0 +1,428 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.CpuStatLine;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors what this JVM's own process costs the host: native memory, page faults, context
+ * switches, file descriptors, disk I/O and its share of the host's CPU.</p>
+ * <p>
+ * {@link java.lang.management.OperatingSystemMXBean} only reports some of this, so each tick
+ * reads <code>/proc/self/stat</code>, <code>status</code>, <code>io</code> and
+ * <code>limits</code>, counts <code>/proc/self/fd</code>, and reads the aggregate
+ * <code>cpu</code> line of <code>/proc/stat</code>, all through files opened once and re-read
+ * with positional reads ({@link PositionalFileReader}).  Resident memory is published next to the
+ * heap and non-heap memory the JVM has committed, so memory used outside the heap shows up.  The
+ * proportional set size comes from <code>/proc/self/smaps_rollup</code>, which walks the page
+ * tables and takes longer the larger the heap, so it is read less often.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * <code>sysmon.linux.beanpath:type=self-process</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=self-process</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.self.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_SELF_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.self.pssPeriodMillis</td>
+ * <td>period, in milliseconds, between reads of the proportional set size; 0 turns them off</td>
+ * <td><code>60000</code></td>
+ * <td>{@link #CONFIG_KEY_SELF_PSS_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxSelfProcessJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxSelfProcessJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".self";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SELF_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_SELF_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Time between reads of the proportional set size.  0 turns them off.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SELF_PSS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_SELF_PSS_PERIOD = CONFIG_KEY_PREFIX + ".pssPeriodMillis";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SELF_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_SELF_PERIOD = 5000;
+	/**
+	 * Default time between reads of the proportional set size, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SELF_PSS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_SELF_PSS_PERIOD = 60000;
+
+	public static final String OBJECT_NAME = ":type=self-process";
+
+	static final File SELF_PATH = new File("/proc/self");
+
+	/**
+	 * Line of <code>/proc/self/limits</code> with the limit on open file descriptors.
+	 */
+	static final String OPEN_FILES_LIMIT = "Max open files";
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final long pssPeriodNanos;
+	final File selfPath;
+	/**
+	 * Whether the size of <code>/proc/self/fd</code> is its number of entries, which is only so in
+	 * procfs (and, before 6.2, not even there: it is 0).
+	 */
+	final boolean fdCountFromSize;
+	final LinuxSelfProcess bean;
+	final LinuxMetricHistory history;
+	final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	final ProcessStatLine statLine = new ProcessStatLine();
+	final KeyValueTable status = new KeyValueTable();
+	final KeyValueTable io = new KeyValueTable();
+	final KeyValueTable rollup = new KeyValueTable();
+	final long[] hostColumns = new long[CpuStatLine.TIME_COLUMNS];
+	final File fdPath;
+	PositionalFileReader statReader;
+	PositionalFileReader statusReader;
+	PositionalFileReader ioReader;
+	PositionalFileReader limitsReader;
+	PositionalFileReader rollupReader;
+	PositionalFileReader hostStatReader;
+	long cpuTicks = 0;
+	long hostTicks = 0;
+	long hostBusyTicks = 0;
+	long minorFaults = 0;
+	long majorFaults = 0;
+	long voluntary = 0;
+	long involuntary = 0;
+	long readBytes = 0;
+	long writeBytes = 0;
+	long readNanos = 0;
+	long pssNanos = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxSelfProcessJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, SELF_PATH, CpuStatLine.STAT_PATH, true);
+	}
+
+	/**
+	 * @param fdCountFromSize whether <code>selfPath</code> is in procfs, whose <code>fd</code>
+	 * directories report their number of entries as their size.
+	 */
+	LinuxSelfProcessJMXWrapper(Properties config, File selfPath, File hostStatPath,
+	                           boolean fdCountFromSize) throws LinuxMonitoringException {
+		super(LinuxSelfProcessJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		String key = CONFIG_KEY_SELF_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_SELF_PERIOD);
+			key = CONFIG_KEY_SELF_PSS_PERIOD;
+			this.pssPeriodNanos = PropertiesUtils.extractLong(config, key,
+			                                                  DEFAULT_SELF_PSS_PERIOD) * 1000000L;
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		this.bean = new LinuxSelfProcess(beanPath + OBJECT_NAME);
+		this.history = new LinuxMetricHistory(config, "self-process");
+		this.selfPath = selfPath;
+		this.fdCountFromSize = fdCountFromSize;
+		this.fdPath = new File(selfPath, "fd");
+
+		// check to make sure it will all work
+		try {
+			statReader = new PositionalFileReader(new File(selfPath, "stat"), 512);
+			statusReader = new PositionalFileReader(new File(selfPath, "status"), 2048);
+		} catch (IOException e) {
+			close();
+			throw new LinuxMonitoringException("No such path: " + selfPath.getAbsolutePath() +
+							"/stat. Can't read process statistics. (Is /proc mounted?)", e);
+		}
+		ioReader = PositionalFileReader.openIfReadable(new File(selfPath, "io"), 256);
+		limitsReader = PositionalFileReader.openIfReadable(new File(selfPath, "limits"), 2048);
+		if(pssPeriodNanos > 0) {
+			rollupReader = PositionalFileReader.openIfReadable(new File(selfPath, "smaps_rollup"), 1024);
+		}
+		hostStatReader = PositionalFileReader.openIfReadable(hostStatPath, 4096);
+		if(hostStatReader == null) {
+			log.info("Can't read " + hostStatPath.getAbsolutePath() +
+			         "; the host's CPU time won't be compared.");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+			JMXUtils.registerMBean(bean, bean.objectName);
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   bean.objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down self process monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(PositionalFileReader reader : new PositionalFileReader[] { statReader, statusReader,
+		                                                              ioReader, limitsReader,
+		                                                              rollupReader, hostStatReader }) {
+			if(reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long cpuTicks;
+		final long minorFaults;
+		final long majorFaults;
+		final int threads;
+		try {
+			final int length = statReader.read();
+			if(!statLine.parse(statReader.getBuffer(), length)) {
+				throw new LinuxMonitoringException("Can't parse " + statReader.getFile());
+			}
+			cpuTicks = statLine.getCpuTicks();
+			minorFaults = statLine.get(ProcessStatLine.MINFLT);
+			majorFaults = statLine.get(ProcessStatLine.MAJFLT);
+			threads = (int)statLine.get(ProcessStatLine.NUM_THREADS);
+			final int statusLength = statusReader.read();
+			status.parse(statusReader.getBuffer(), statusLength);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final long voluntary = status.get("voluntary_ctxt_switches", 0);
+		final long involuntary = status.get("nonvoluntary_ctxt_switches", 0);
+		long readBytes = 0;
+		long writeBytes = 0;
+		if(ioReader != null) {
+			try {
+				final int length = ioReader.read();
+				io.parse(ioReader.getBuffer(), length);
+				readBytes = io.get("read_bytes", 0);
+				writeBytes = io.get("write_bytes", 0);
+			} catch (IOException e) {
+				log.warn("Can't read " + ioReader.getFile() + "; I/O rates won't be published.", e);
+				ioReader.close();
+				ioReader = null;
+			}
+		}
+		final boolean hostRead = readHostCpu();
+		final long hostTicks = hostColumnsTotal();
+		final long hostBusyTicks = hostTicks - hostColumns[CpuStatLine.IDLE] -
+		                           hostColumns[CpuStatLine.IOWAIT];
+
+		bean.updateMemory(status.get("VmRSS", 0), status.get("RssAnon", 0), status.get("RssFile", 0),
+		                  status.get("VmSwap", 0), status.get("VmSize", 0),
+		                  memory.getHeapMemoryUsage().getCommitted() / 1024,
+		                  memory.getNonHeapMemoryUsage().getCommitted() / 1024);
+		bean.updateCounts(threads, countFileDescriptors(), readOpenFilesLimit());
+
+		final long now = System.nanoTime();
+		if(readNanos != 0 && now > readNanos) {
+			final double seconds = (now - readNanos) / 1e9;
+			final long cpuDelta = CounterRates.delta(this.cpuTicks, cpuTicks, 64);
+			final long hostDelta = hostRead ? CounterRates.delta(this.hostTicks, hostTicks, 64) : 0;
+			final long hostBusyDelta = hostRead ? CounterRates.delta(this.hostBusyTicks, hostBusyTicks, 64) : 0;
+			bean.updateCpu(cpuDelta * 100.0 / ProcessStatLine.CLOCK_TICKS_PER_SECOND / seconds,
+			               hostDelta > 0 ? Math.min(100.0, cpuDelta * 100.0 / hostDelta) : 0.0,
+			               hostBusyDelta > 0 ? Math.min(100.0, cpuDelta * 100.0 / hostBusyDelta) : 0.0);
+			bean.updateRates(CounterRates.delta(this.minorFaults, minorFaults, CounterRates.LONG_BITS) / seconds,
+			                 CounterRates.delta(this.majorFaults, majorFaults, CounterRates.LONG_BITS) / seconds,
+			                 CounterRates.delta(this.voluntary, voluntary, CounterRates.LONG_BITS) / seconds,
+			                 CounterRates.delta(this.involuntary, involuntary, CounterRates.LONG_BITS) / seconds,
+			                 CounterRates.delta(this.readBytes, readBytes, 64) / seconds,
+			                 CounterRates.delta(this.writeBytes, writeBytes, 64) / seconds);
+		}
+		if(rollupReader != null && (pssNanos == 0 || now - pssNanos >= pssPeriodNanos)) {
+			try {
+				final int length = rollupReader.read();
+				rollup.parse(rollupReader.getBuffer(), length);
+				bean.updateProportional(rollup.get("Pss", 0));
+			} catch (IOException e) {
+				log.warn("Can't read " + rollupReader.getFile() +
+				         "; the proportional set size won't be published.", e);
+				rollupReader.close();
+				rollupReader = null;
+			}
+			pssNanos = now;
+		}
+		this.cpuTicks = cpuTicks;
+		this.hostTicks = hostTicks;
+		this.hostBusyTicks = hostBusyTicks;
+		this.minorFaults = minorFaults;
+		this.majorFaults = majorFaults;
+		this.voluntary = voluntary;
+		this.involuntary = involuntary;
+		this.readBytes = readBytes;
+		this.writeBytes = writeBytes;
+		readNanos = now;
+		history.record(bean.objectName, bean);
+	}
+
+	/**
+	 * Reads the time columns of the aggregate <code>cpu</code> line of <code>/proc/stat</code>
+	 * into {@link #hostColumns}.
+	 * @return false if they can't be read.
+	 */
+	private boolean readHostCpu() {
+		if(hostStatReader == null) {
+			return false;
+		}
+		final int length;
+		try {
+			length = hostStatReader.read();
+		} catch (IOException e) {
+			return false;
+		}
+		final byte[] buffer = hostStatReader.getBuffer();
+		if(length < 4 || buffer[0] != 'c' || buffer[1] != 'p' || buffer[2] != 'u' || buffer[3] != ' ') {
+			return false;
+		}
+		CpuStatLine.parseTimes(buffer, 3, length, hostColumns);
+		return true;
+	}
+
+	private long hostColumnsTotal() {
+		long total = 0;
+		for(long column : hostColumns) {
+			total += column;
+		}
+		return total;
+	}
+
+	private int countFileDescriptors() {
+		if(fdCountFromSize) {
+			final long size = fdPath.length();
+			if(size > 0) {
+				return (int)size;
+			}
+		}
+		final String[] fds = fdPath.list();
+		return fds == null ? 0 : fds.length;
+	}
+
+	/**
+	 * @return the soft limit on open files, or 0 if it can't be read.
+	 */
+	private long readOpenFilesLimit() {
+		if(limitsReader == null) {
+			return 0;
+		}
+		try {
+			final int length = limitsReader.read();
+			final String limits = new String(limitsReader.getBuffer(), 0, length, "US-ASCII");
+			final int line = limits.indexOf(OPEN_FILES_LIMIT);
+			if(line < 0) {
+				return 0;
+			}
+			final int start = line + OPEN_FILES_LIMIT.length();
+			return PositionalFileReader.parseLong(limitsReader.getBuffer(), start, length);
+		} catch (IOException e) {
+			return 0;
+		} catch (NumberFormatException e) {
+			// unlimited
+			return 0;
+		}
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+}
@@ -0,0 +1,121 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for the resource use of this JVM's own process, published by
+ * {@link LinuxSelfProcessJMXWrapper}.
+ */
+public interface LinuxSelfProcessMBean {
+
+	/**
+	 * @return resident memory, from <code>VmRSS</code> in <code>/proc/self/status</code>.
+	 */
+	public abstract long getResidentInKB();
+
+	/**
+	 * @return resident memory not backed by a file: the heap, thread stacks, native allocations.
+	 */
+	public abstract long getAnonymousResidentInKB();
+
+	/**
+	 * @return resident memory backed by files, such as mapped jars and libraries.
+	 */
+	public abstract long getFileResidentInKB();
+
+	public abstract long getSwapInKB();
+
+	public abstract long getVirtualInKB();
+
+	/**
+	 * @return the proportional set size: resident memory, with each shared page divided among the
+	 * processes sharing it.  Read less often than the other values, and 0 if it can't be read.
+	 */
+	public abstract long getProportionalInKB();
+
+	/**
+	 * @return memory committed to the Java heap, as the JVM reports it.
+	 */
+	public abstract long getHeapCommittedInKB();
+
+	/**
+	 * @return memory committed to non-heap pools such as metaspace and the code cache, as the JVM
+	 * reports it.
+	 */
+	public abstract long getNonHeapCommittedInKB();
+
+	/**
+	 * @return resident memory beyond the committed heap: roughly what the JVM uses outside the
+	 * heap, including thread stacks, direct buffers and native allocations.  0 while the heap is
+	 * not all resident.
+	 */
+	public abstract long getResidentBeyondHeapInKB();
+
+	public abstract int getThreadCount();
+
+	/**
+	 * @return open file descriptors, or 0 if they can't be counted.
+	 */
+	public abstract int getFileDescriptorCount();
+
+	/**
+	 * @return the soft limit on open file descriptors, or 0 if it can't be read.
+	 */
+	public abstract long getFileDescriptorLimit();
+
+	/**
+	 * @return open file descriptors as a percentage of the limit, or 0 if the limit is unknown.
+	 */
+	public abstract double getFileDescriptorPercentage();
+
+	/**
+	 * @return user plus system CPU time as a percentage of one CPU.
+	 */
+	public abstract double getCpuPercentage();
+
+	/**
+	 * @return user plus system CPU time as a percentage of the CPU time of the whole host, all
+	 * CPUs together.
+	 */
+	public abstract double getHostCpuPercentage();
+
+	/**
+	 * @return user plus system CPU time as a percentage of the time the host's CPUs were busy:
+	 * how much of the host's load is this JVM.
+	 */
+	public abstract double getHostBusyPercentage();
+
+	public abstract double getMinorFaultsPerSecond();
+
+	/**
+	 * @return page faults that needed I/O, per second.
+	 */
+	public abstract double getMajorFaultsPerSecond();
+
+	public abstract double getVoluntaryContextSwitchesPerSecond();
+
+	public abstract double getInvoluntaryContextSwitchesPerSecond();
+
+	/**
+	 * @return bytes read from storage per second, or 0 if I/O statistics can't be read.
+	 */
+	public abstract double getReadBytesPerSecond();
+
+	/**
+	 * @return bytes written to storage per second, or 0 if I/O statistics can't be read.
+	 */
+	public abstract double getWriteBytesPerSecond();
+
+	public abstract long getTimestamp();
+}
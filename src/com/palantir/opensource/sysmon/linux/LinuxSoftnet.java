@@ -0,0 +1,126 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the softnet statistics of one CPU, or of all of
+ * them, used by {@link LinuxSoftnetJMXWrapper}.
+ */
+public class LinuxSoftnet implements LinuxSoftnetMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String cpu;
+
+	private long processed = 0;
+	private long dropped = 0;
+	private long timeSqueeze = 0;
+	private long receivedRps = 0;
+	private long flowLimitCount = 0;
+	private double processedPerSecond = 0;
+	private double droppedPerSecond = 0;
+	private double timeSqueezePerSecond = 0;
+	private double receivedRpsPerSecond = 0;
+	private double flowLimitCountPerSecond = 0;
+	private int squeezingCpuCount = 0;
+	private String squeezingCpus = "";
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxSoftnet(String objectName, String cpu) {
+		this.objectName = objectName;
+		this.cpu = cpu;
+	}
+
+	/**
+	 * Publishes a new reading.
+	 * @param counters processed, dropped, time squeeze, received RPS and flow limit counts.
+	 * @param rates per-second rates of the same, or null if this is the first reading.
+	 */
+	synchronized void update(long[] counters, double[] rates, int squeezingCpuCount,
+	                         String squeezingCpus) {
+		processed = counters[0];
+		dropped = counters[1];
+		timeSqueeze = counters[2];
+		receivedRps = counters[3];
+		flowLimitCount = counters[4];
+		if(rates != null) {
+			processedPerSecond = rates[0];
+			droppedPerSecond = rates[1];
+			timeSqueezePerSecond = rates[2];
+			receivedRpsPerSecond = rates[3];
+			flowLimitCountPerSecond = rates[4];
+		}
+		this.squeezingCpuCount = squeezingCpuCount;
+		this.squeezingCpus = squeezingCpus;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getCpu() {
+		return cpu;
+	}
+
+	public synchronized long getProcessed() {
+		return processed;
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	public synchronized long getTimeSqueeze() {
+		return timeSqueeze;
+	}
+
+	public synchronized long getReceivedRps() {
+		return receivedRps;
+	}
+
+	public synchronized long getFlowLimitCount() {
+		return flowLimitCount;
+	}
+
+	public synchronized double getProcessedPerSecond() {
+		return processedPerSecond;
+	}
+
+	public synchronized double getDroppedPerSecond() {
+		return droppedPerSecond;
+	}
+
+	public synchronized double getTimeSqueezePerSecond() {
+		return timeSqueezePerSecond;
+	}
+
+	public synchronized double getReceivedRpsPerSecond() {
+		return receivedRpsPerSecond;
+	}
+
+	public synchronized double getFlowLimitCountPerSecond() {
+		return flowLimitCountPerSecond;
+	}
+
+	public synchronized int getSqueezingCpuCount() {
+		return squeezingCpuCount;
+	}
+
+	public synchronized String getSqueezingCpus() {
+		return squeezingCpus;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
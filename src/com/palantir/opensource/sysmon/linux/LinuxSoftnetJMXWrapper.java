@@ -0,0 +1,378 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors per-CPU packet processing from <code>/proc/net/softnet_stat</code>.</p>
+ * <p>
+ * Each line of the file holds one CPU's counters in hex: packets processed by the receive
+ * softirq, packets dropped because the input backlog was full, and "time squeezes", where the
+ * softirq ran out of <code>netdev_budget</code> or time with packets still waiting.  A rising
+ * squeeze rate is the leading indicator of receive drops, so CPUs whose squeeze rate is above
+ * a threshold are flagged.
+ * </p><p>
+ * The file is kept open and re-read with positional reads ({@link PositionalFileReader}).
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each CPU will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=softnet,cpu=&lt;cpu number&gt;</code><br/>
+ * The sum over all CPUs, with the list of CPUs above the squeeze threshold, will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=softnet,cpu=total</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=softnet</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.softnet.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>2000</code></td>
+ * <td>{@link #CONFIG_KEY_SOFTNET_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.softnet.squeezeThreshold</td>
+ * <td>time squeezes per second above which a CPU is flagged</td>
+ * <td><code>10.0</code></td>
+ * <td>{@link #CONFIG_KEY_SOFTNET_SQUEEZE_THRESHOLD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxSoftnetJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxSoftnetJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".softnet";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SOFTNET_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_SOFTNET_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Time squeezes per second above which a CPU is flagged.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SOFTNET_SQUEEZE_THRESHOLD default value
+	 */
+	public static final String CONFIG_KEY_SOFTNET_SQUEEZE_THRESHOLD = CONFIG_KEY_PREFIX + ".squeezeThreshold";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SOFTNET_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_SOFTNET_PERIOD = 2000;
+	/**
+	 * Default squeeze threshold, in time squeezes per second.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SOFTNET_SQUEEZE_THRESHOLD for config key to override default value.
+	 */
+	public static final double DEFAULT_SOFTNET_SQUEEZE_THRESHOLD = 10.0;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=softnet,cpu=";
+
+	static final File DATA_PATH = new File("/proc/net/softnet_stat");
+
+	/**
+	 * Columns of the counters published, in the order {@link LinuxSoftnet#update} takes them:
+	 * processed, dropped, time_squeeze, received_rps and flow_limit_count.
+	 */
+	static final int[] COLUMNS = { 0, 1, 2, 9, 10 };
+	/**
+	 * Column holding the CPU number, on kernels that have it.  Older kernels list online CPUs in
+	 * order, one per line.
+	 */
+	static final int CPU_COLUMN = 12;
+	static final int TIME_SQUEEZE = 2;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final double squeezeThreshold;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	final PositionalFileReader reader;
+	volatile boolean shutdown = false;
+
+	final Map<String, CpuState> cpus = new HashMap<String, CpuState>();
+	final LinuxSoftnet total;
+	private long previousNanos = 0;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxSoftnetJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxSoftnetJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxSoftnetJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_SOFTNET_PERIOD,
+			                                          DEFAULT_SOFTNET_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_SOFTNET_PERIOD, e);
+		}
+		try {
+			this.squeezeThreshold = PropertiesUtils.extractDouble(config,
+			                                                      CONFIG_KEY_SOFTNET_SQUEEZE_THRESHOLD,
+			                                                      DEFAULT_SOFTNET_SQUEEZE_THRESHOLD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_SOFTNET_SQUEEZE_THRESHOLD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "softnet");
+		this.total = new LinuxSoftnet(beanPrefix + "total", "total");
+
+		// check to make sure it will all work
+		if(!dataPath.exists()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							". Can't read softnet statistics. (Is /proc mounted?)");
+		}
+		if(!dataPath.canRead()) {
+			throw new LinuxMonitoringException("Permission denied: " + dataPath.getAbsolutePath());
+		}
+		try {
+			this.reader = new PositionalFileReader(dataPath, 4096);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Could not open " + dataPath.getAbsolutePath(), e);
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+			JMXUtils.registerMBean(total, total.objectName);
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   total.objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down softnet monitoring due to error.",e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the whole file in one pass, without building strings for the values.
+	 */
+	void readData() throws LinuxMonitoringException {
+		final int length;
+		try {
+			length = reader.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final long nanos = System.nanoTime();
+		final double seconds = previousNanos == 0 ? 0.0 : (nanos - previousNanos) / 1e9;
+		previousNanos = nanos;
+		final byte[] buffer = reader.getBuffer();
+
+		final long[] totalCounters = new long[COLUMNS.length];
+		final double[] totalRates = new double[COLUMNS.length];
+		final StringBuilder squeezing = new StringBuilder();
+		int squeezingCount = 0;
+		final long[] columns = new long[CPU_COLUMN + 1];
+		int lineNumber = 0;
+		int position = 0;
+		for(Iterator<CpuState> it = cpus.values().iterator(); it.hasNext();) {
+			it.next().seen = false;
+		}
+		while(position < length) {
+			int end = position;
+			while(end < length && buffer[end] != '\n') {
+				end++;
+			}
+			final int columnCount;
+			try {
+				columnCount = parseHexColumns(buffer, position, end, columns);
+			} catch (NumberFormatException e) {
+				throw new LinuxMonitoringException("Could not parse " + reader.getFile(), e);
+			}
+			position = end + 1;
+			if(columnCount < 3) {
+				continue;
+			}
+			final String cpu = Long.toString(columnCount > CPU_COLUMN ? columns[CPU_COLUMN] : lineNumber);
+			lineNumber++;
+			CpuState state = cpus.get(cpu);
+			if(state == null) {
+				state = new CpuState(cpu);
+				cpus.put(cpu, state);
+			}
+			state.seen = true;
+			final long[] counters = new long[COLUMNS.length];
+			for(int i = 0; i < COLUMNS.length; i++) {
+				counters[i] = COLUMNS[i] < columnCount ? columns[COLUMNS[i]] : 0;
+				totalCounters[i] += counters[i];
+			}
+			double[] rates = null;
+			if(state.primed && seconds > 0) {
+				rates = new double[COLUMNS.length];
+				for(int i = 0; i < rates.length; i++) {
+					rates[i] = CounterRates.delta(state.previous[i], counters[i], 32) / seconds;
+					totalRates[i] += rates[i];
+				}
+			}
+			System.arraycopy(counters, 0, state.previous, 0, counters.length);
+			state.primed = true;
+			final boolean squeezed = rates != null && rates[TIME_SQUEEZE] > squeezeThreshold;
+			if(squeezed) {
+				squeezingCount++;
+				if(squeezing.length() > 0) {
+					squeezing.append(',');
+				}
+				squeezing.append(cpu);
+			}
+			state.bean.update(counters, rates, squeezed ? 1 : 0, squeezed ? cpu : "");
+			history.record(state.bean.objectName, state.bean);
+		}
+
+		for(Iterator<CpuState> it = cpus.values().iterator(); it.hasNext();) {
+			CpuState state = it.next();
+			if(!state.seen) {
+				// CPU went offline
+				it.remove();
+				JMXUtils.unregisterMBeanCatchAndLogExceptions(state.bean.objectName);
+				history.remove(state.bean.objectName);
+			} else if(!state.registered) {
+				try {
+					JMXUtils.registerMBean(state.bean, state.bean.objectName);
+					state.registered = true;
+				} catch (JMException e) {
+					throw new LinuxMonitoringException("Error while registering bean to path " +
+					                                   state.bean.objectName, e);
+				}
+			}
+		}
+		total.update(totalCounters, seconds > 0 ? totalRates : null, squeezingCount,
+		             squeezing.toString());
+		history.record(total.objectName, total);
+	}
+
+	/**
+	 * Parses the whitespace-separated hex numbers in <code>buffer[start, end)</code>.
+	 * @return the number of columns on the line; only the first <code>columns.length</code> are
+	 * stored.
+	 */
+	static int parseHexColumns(byte[] buffer, int start, int end, long[] columns) {
+		int count = 0;
+		int i = start;
+		while(i < end) {
+			while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+				i++;
+			}
+			if(i == end) {
+				break;
+			}
+			long value = 0;
+			while(i < end && buffer[i] != ' ' && buffer[i] != '\t') {
+				final int digit = Character.digit((char)buffer[i], 16);
+				if(digit < 0) {
+					throw new NumberFormatException("Bad hex digit in " +
+					                                new String(buffer, start, end - start));
+				}
+				value = (value << 4) | digit;
+				i++;
+			}
+			if(count < columns.length) {
+				columns[count] = value;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	final class CpuState {
+		final LinuxSoftnet bean;
+		final long[] previous = new long[COLUMNS.length];
+		boolean primed = false;
+		boolean registered = false;
+		boolean seen = false;
+
+		CpuState(String cpu) {
+			bean = new LinuxSoftnet(beanPrefix + cpu, cpu);
+		}
+	}
+}
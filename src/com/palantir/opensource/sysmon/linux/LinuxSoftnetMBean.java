@@ -0,0 +1,70 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for {@link LinuxSoftnetJMXWrapper}.
+ */
+public interface LinuxSoftnetMBean {
+
+	/**
+	 * @return the CPU these values are for, or <code>total</code> for the sum over all CPUs.
+	 */
+	public abstract String getCpu();
+
+	public abstract long getProcessed();
+
+	public abstract long getDropped();
+
+	public abstract long getTimeSqueeze();
+
+	public abstract long getReceivedRps();
+
+	public abstract long getFlowLimitCount();
+
+	/**
+	 * @return packets processed per second by the network receive softirq.
+	 */
+	public abstract double getProcessedPerSecond();
+
+	/**
+	 * @return packets per second dropped because the input backlog was full.
+	 */
+	public abstract double getDroppedPerSecond();
+
+	/**
+	 * @return times per second the receive softirq ran out of budget or time with work left.
+	 */
+	public abstract double getTimeSqueezePerSecond();
+
+	/**
+	 * @return inter-processor interrupts per second sent to wake this CPU for RPS.
+	 */
+	public abstract double getReceivedRpsPerSecond();
+
+	public abstract double getFlowLimitCountPerSecond();
+
+	/**
+	 * @return the number of CPUs whose time squeeze rate is above the configured threshold: 0 or
+	 * 1 for a single CPU.
+	 */
+	public abstract int getSqueezingCpuCount();
+
+	/**
+	 * @return comma-separated CPUs whose time squeeze rate is above the configured threshold.
+	 */
+	public abstract String getSqueezingCpus();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,412 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors detailed network interface statistics from sysfs.</p>
+ * <p>
+ * <code>/proc/net/dev</code> (see {@link LinuxNetStatJMXWrapper}) leaves out counters such as
+ * <code>rx_missed_errors</code>, <code>rx_over_errors</code> and <code>tx_aborted_errors</code>.
+ * This monitor reads every counter in <code>/sys/class/net/&lt;interface&gt;/statistics</code>,
+ * the byte queue limits and timeouts of each queue in
+ * <code>/sys/class/net/&lt;interface&gt;/queues</code>, and the link speed, from which it
+ * computes utilization.
+ * </p><p>
+ * Every file is opened once, when its interface is found, and re-read with positional reads
+ * ({@link PositionalFileReader}), so a check costs one <code>pread(2)</code> per file.  The
+ * interface list is rescanned once a minute.  Off by default.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each device will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=net-sysfs,devicename=&lt;devicename&gt;</code><br/>
+ * Recent history of the devices' values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=net-sysfs</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.sysfsnet.enabled</td>
+ * <td>whether to run this monitor at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_SYSFSNET_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.sysfsnet.periodMillis</td>
+ * <td>period, in milliseconds, between interface statistics checks</td>
+ * <td><code>2000</code></td>
+ * <td>{@link #CONFIG_KEY_SYSFSNET_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ * @see <a href='https://www.kernel.org/doc/Documentation/ABI/testing/sysfs-class-net-statistics'>sysfs-class-net-statistics</a>
+ */
+public class LinuxSysfsNetJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxSysfsNetJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".sysfsnet";
+	/**
+	 * Set to <code>true</code> to turn on this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SYSFSNET_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_SYSFSNET_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_SYSFSNET_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_SYSFSNET_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * The monitor is off unless asked for.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SYSFSNET_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_SYSFSNET_ENABLED = false;
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_SYSFSNET_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_SYSFSNET_PERIOD = 2000;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=net-sysfs,devicename=";
+
+	static final File DATA_PATH = new File("/sys/class/net");
+
+	/**
+	 * How often to look for interfaces that have come or gone, in milliseconds.
+	 */
+	static final long RESCAN_PERIOD = 60000L;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final String beanPrefix;
+	final LinuxMetricHistory history;
+	volatile boolean shutdown = false;
+	private long lastScan = 0;
+
+	final Map<String, SysfsInterface> interfaces = new HashMap<String, SysfsInterface>();
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxSysfsNetJMXWrapper(Properties config) throws LinuxMonitoringException {
+		super(LinuxSysfsNetJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.beanPrefix = beanPath + OBJECT_NAME_PREFIX;
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_SYSFSNET_PERIOD,
+			                                          DEFAULT_SYSFSNET_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_SYSFSNET_PERIOD, e);
+		}
+		this.history = new LinuxMetricHistory(config, "net-sysfs");
+
+		// check to make sure it will all work
+		if(!DATA_PATH.exists()) {
+			throw new LinuxMonitoringException("No such path: " + DATA_PATH.getAbsolutePath() +
+							". Can't read network statistics. (Is /sys mounted?)");
+		}
+		if(!DATA_PATH.canRead()) {
+			throw new LinuxMonitoringException("Permission denied: " + DATA_PATH.getAbsolutePath());
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down sysfs network monitoring due to error.",e);
+		} finally {
+			for(SysfsInterface iface : interfaces.values()) {
+				iface.close();
+			}
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long now = System.currentTimeMillis();
+		if(now - lastScan >= RESCAN_PERIOD) {
+			scan();
+			lastScan = now;
+		}
+		Iterator<SysfsInterface> it = interfaces.values().iterator();
+		while(it.hasNext()) {
+			SysfsInterface iface = it.next();
+			try {
+				iface.read();
+				history.record(iface.bean.objectName, iface.bean);
+			} catch (IOException e) {
+				log.info(iface.name + " could not be read (device removed?): " + e.getMessage());
+				it.remove();
+				removeInterface(iface);
+			}
+		}
+	}
+
+	/**
+	 * Picks up new interfaces and drops those that are gone.
+	 */
+	private void scan() throws LinuxMonitoringException {
+		final String[] names = DATA_PATH.list();
+		if(names == null) {
+			throw new LinuxMonitoringException("Could not list " + DATA_PATH.getAbsolutePath());
+		}
+		final Set<String> present = new HashSet<String>(Arrays.asList(names));
+		Iterator<SysfsInterface> it = interfaces.values().iterator();
+		while(it.hasNext()) {
+			SysfsInterface iface = it.next();
+			if(!present.contains(iface.name)) {
+				it.remove();
+				log.info(iface.name + " is no longer present");
+				removeInterface(iface);
+			}
+		}
+		for(String name : names) {
+			if(interfaces.containsKey(name)) {
+				continue;
+			}
+			final File statistics = new File(new File(DATA_PATH, name), "statistics");
+			if(!statistics.isDirectory()) {
+				// e.g. bonding_masters
+				continue;
+			}
+			final SysfsInterface iface;
+			try {
+				iface = new SysfsInterface(name);
+			} catch (IOException e) {
+				log.warn("Could not open sysfs statistics for " + name, e);
+				continue;
+			}
+			try {
+				JMXUtils.registerMBean(iface.bean, iface.bean.objectName);
+			} catch (JMException e) {
+				iface.close();
+				throw new LinuxMonitoringException("Error while registering MXBean " +
+				                                   iface.bean.objectName, e);
+			}
+			interfaces.put(name, iface);
+		}
+	}
+
+	private void removeInterface(SysfsInterface iface) {
+		iface.close();
+		JMXUtils.unregisterMBeanCatchAndLogExceptions(iface.bean.objectName);
+		history.remove(iface.bean.objectName);
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+
+	/**
+	 * The open files of one interface and the previous reading of its counters.
+	 */
+	final class SysfsInterface {
+		final String name;
+		final LinuxSysfsNetworkInterface bean;
+		final String[] statisticNames;
+		final PositionalFileReader[] statistics;
+		final long[] previous;
+		long previousNanos = 0;
+		boolean primed = false;
+		final String[] queueNames;
+		final PositionalFileReader[] queues;
+		final PositionalFileReader speed;
+		final PositionalFileReader operState;
+
+		SysfsInterface(String name) throws IOException {
+			this.name = name;
+			this.bean = new LinuxSysfsNetworkInterface(beanPrefix + name, name);
+			final File dir = new File(DATA_PATH, name);
+			boolean opened = false;
+			String[] files = new File(dir, "statistics").list();
+			if(files == null) {
+				throw new IOException("Could not list statistics of " + name);
+			}
+			Arrays.sort(files);
+			statisticNames = files;
+			statistics = new PositionalFileReader[files.length];
+			previous = new long[files.length];
+			final Map<String, File> queueFiles = new TreeMap<String, File>();
+			final String[] queueDirs = new File(dir, "queues").list();
+			if(queueDirs != null) {
+				for(String queue : queueDirs) {
+					final File queueDir = new File(new File(dir, "queues"), queue);
+					if(queue.startsWith("tx-")) {
+						queueFiles.put(queue + ".limit", new File(queueDir, "byte_queue_limits/limit"));
+						queueFiles.put(queue + ".inflight", new File(queueDir, "byte_queue_limits/inflight"));
+						queueFiles.put(queue + ".tx_timeout", new File(queueDir, "tx_timeout"));
+					} else if(queue.startsWith("rx-")) {
+						queueFiles.put(queue + ".rps_flow_cnt", new File(queueDir, "rps_flow_cnt"));
+					}
+				}
+			}
+			// not every driver has every queue file, and some are root-only
+			for(Iterator<File> it = queueFiles.values().iterator(); it.hasNext();) {
+				File f = it.next();
+				if(!f.canRead()) {
+					it.remove();
+				}
+			}
+			queueNames = queueFiles.keySet().toArray(new String[queueFiles.size()]);
+			queues = new PositionalFileReader[queueNames.length];
+			PositionalFileReader speedReader = null;
+			PositionalFileReader operStateReader = null;
+			try {
+				for(int i = 0; i < files.length; i++) {
+					statistics[i] = new PositionalFileReader(new File(new File(dir, "statistics"), files[i]), 32);
+				}
+				for(int i = 0; i < queueNames.length; i++) {
+					queues[i] = new PositionalFileReader(queueFiles.get(queueNames[i]), 32);
+				}
+				speedReader = new PositionalFileReader(new File(dir, "speed"), 32);
+				operStateReader = new PositionalFileReader(new File(dir, "operstate"), 32);
+				opened = true;
+			} finally {
+				speed = speedReader;
+				operState = operStateReader;
+				if(!opened) {
+					close();
+				}
+			}
+		}
+
+		void read() throws IOException {
+			final Map<String, Long> values = new HashMap<String, Long>();
+			final long[] current = new long[statistics.length];
+			for(int i = 0; i < statistics.length; i++) {
+				current[i] = statistics[i].readLong();
+				values.put(statisticNames[i], current[i]);
+			}
+			final long nanos = System.nanoTime();
+			Map<String, Double> rates = null;
+			if(primed && nanos > previousNanos) {
+				rates = new HashMap<String, Double>();
+				final double seconds = (nanos - previousNanos) / 1e9;
+				for(int i = 0; i < current.length; i++) {
+					rates.put(statisticNames[i], CounterRates.delta(previous[i], current[i], 64) / seconds);
+				}
+			}
+			System.arraycopy(current, 0, previous, 0, current.length);
+			previousNanos = nanos;
+			primed = true;
+
+			final Map<String, Long> queueValues = new HashMap<String, Long>();
+			for(int i = 0; i < queues.length; i++) {
+				queueValues.put(queueNames[i], queues[i].readLong());
+			}
+			long speedMbps;
+			try {
+				speedMbps = speed.readLong();
+			} catch (IOException e) {
+				// EINVAL when the link is down or the driver doesn't know
+				speedMbps = -1;
+			} catch (NumberFormatException e) {
+				speedMbps = -1;
+			}
+			bean.update(operState.readString(), speedMbps, values, rates, queueValues);
+		}
+
+		void close() {
+			for(PositionalFileReader reader : statistics) {
+				if(reader != null) {
+					reader.close();
+				}
+			}
+			for(PositionalFileReader reader : queues) {
+				if(reader != null) {
+					reader.close();
+				}
+			}
+			if(speed != null) {
+				speed.close();
+			}
+			if(operState != null) {
+				operState.close();
+			}
+		}
+	}
+}
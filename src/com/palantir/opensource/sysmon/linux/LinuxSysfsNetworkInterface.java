@@ -0,0 +1,150 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data container and JMX MBean implementation for the sysfs statistics of one network interface,
+ * used by {@link LinuxSysfsNetJMXWrapper}.
+ */
+public class LinuxSysfsNetworkInterface implements LinuxSysfsNetworkInterfaceMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String interfaceName;
+
+	private String operState = "unknown";
+	private long linkSpeedMbps = -1;
+	private double rxUtilizationPercentage = Double.NaN;
+	private double txUtilizationPercentage = Double.NaN;
+	private double rxMissedErrorsPerSecond = 0;
+	private double rxOverErrorsPerSecond = 0;
+	private double txAbortedErrorsPerSecond = 0;
+	private double rxDroppedPerSecond = 0;
+	private double txDroppedPerSecond = 0;
+	private Map<String, Long> statistics = Collections.emptyMap();
+	private Map<String, Double> statisticsPerSecond = Collections.emptyMap();
+	private Map<String, Long> queueStatistics = Collections.emptyMap();
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxSysfsNetworkInterface(String objectName, String interfaceName) {
+		this.objectName = objectName;
+		this.interfaceName = interfaceName;
+	}
+
+	/**
+	 * Publishes a new reading.
+	 * @param rates per-second rates of the statistics, or null if this is the first reading.
+	 */
+	synchronized void update(String operState,
+	                         long linkSpeedMbps,
+	                         Map<String, Long> statistics,
+	                         Map<String, Double> rates,
+	                         Map<String, Long> queueStatistics) {
+		this.operState = operState;
+		this.linkSpeedMbps = linkSpeedMbps;
+		this.statistics = Collections.unmodifiableMap(new TreeMap<String, Long>(statistics));
+		this.queueStatistics = Collections.unmodifiableMap(new TreeMap<String, Long>(queueStatistics));
+		this.timestamp = System.currentTimeMillis();
+		if(rates == null) {
+			return;
+		}
+		this.statisticsPerSecond = Collections.unmodifiableMap(new TreeMap<String, Double>(rates));
+		this.rxMissedErrorsPerSecond = rate(rates, "rx_missed_errors");
+		this.rxOverErrorsPerSecond = rate(rates, "rx_over_errors");
+		this.txAbortedErrorsPerSecond = rate(rates, "tx_aborted_errors");
+		this.rxDroppedPerSecond = rate(rates, "rx_dropped");
+		this.txDroppedPerSecond = rate(rates, "tx_dropped");
+		this.rxUtilizationPercentage = utilization(rate(rates, "rx_bytes"));
+		this.txUtilizationPercentage = utilization(rate(rates, "tx_bytes"));
+	}
+
+	private static double rate(Map<String, Double> rates, String name) {
+		Double rate = rates.get(name);
+		return rate == null ? 0.0 : rate.doubleValue();
+	}
+
+	private double utilization(double bytesPerSecond) {
+		if(linkSpeedMbps <= 0) {
+			return Double.NaN;
+		}
+		return 100.0 * bytesPerSecond * 8.0 / (linkSpeedMbps * 1000000.0);
+	}
+
+	public String getInterfaceName() {
+		return interfaceName;
+	}
+
+	public synchronized String getOperState() {
+		return operState;
+	}
+
+	public synchronized long getLinkSpeedMbps() {
+		return linkSpeedMbps;
+	}
+
+	public synchronized double getRxUtilizationPercentage() {
+		return rxUtilizationPercentage;
+	}
+
+	public synchronized double getTxUtilizationPercentage() {
+		return txUtilizationPercentage;
+	}
+
+	public synchronized double getRxMissedErrorsPerSecond() {
+		return rxMissedErrorsPerSecond;
+	}
+
+	public synchronized double getRxOverErrorsPerSecond() {
+		return rxOverErrorsPerSecond;
+	}
+
+	public synchronized double getTxAbortedErrorsPerSecond() {
+		return txAbortedErrorsPerSecond;
+	}
+
+	public synchronized double getRxDroppedPerSecond() {
+		return rxDroppedPerSecond;
+	}
+
+	public synchronized double getTxDroppedPerSecond() {
+		return txDroppedPerSecond;
+	}
+
+	public synchronized Map<String, Long> getStatistics() {
+		return statistics;
+	}
+
+	public synchronized Map<String, Double> getStatisticsPerSecond() {
+		return statisticsPerSecond;
+	}
+
+	public synchronized Map<String, Long> getQueueStatistics() {
+		return queueStatistics;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return interfaceName + " (" + getOperState() + ", " + getLinkSpeedMbps() + "Mbps)";
+	}
+}
@@ -0,0 +1,76 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxSysfsNetJMXWrapper}.
+ */
+public interface LinuxSysfsNetworkInterfaceMBean {
+
+	public abstract String getInterfaceName();
+
+	/**
+	 * @return the kernel's operational state of the interface, for example <code>up</code>.
+	 */
+	public abstract String getOperState();
+
+	/**
+	 * @return negotiated link speed in megabits per second, or -1 if unknown (virtual devices,
+	 * link down).
+	 */
+	public abstract long getLinkSpeedMbps();
+
+	/**
+	 * @return received bits per second as a percentage of the link speed, or NaN if the speed is
+	 * unknown.
+	 */
+	public abstract double getRxUtilizationPercentage();
+
+	/**
+	 * @return sent bits per second as a percentage of the link speed, or NaN if the speed is
+	 * unknown.
+	 */
+	public abstract double getTxUtilizationPercentage();
+
+	public abstract double getRxMissedErrorsPerSecond();
+
+	public abstract double getRxOverErrorsPerSecond();
+
+	public abstract double getTxAbortedErrorsPerSecond();
+
+	public abstract double getRxDroppedPerSecond();
+
+	public abstract double getTxDroppedPerSecond();
+
+	/**
+	 * @return every counter in the interface's <code>statistics</code> directory, by file name.
+	 */
+	public abstract Map<String, Long> getStatistics();
+
+	/**
+	 * @return the per-second rate of every counter in {@link #getStatistics()}.
+	 */
+	public abstract Map<String, Double> getStatisticsPerSecond();
+
+	/**
+	 * @return per-queue values, keyed <code>&lt;queue&gt;.&lt;name&gt;</code>: the byte queue
+	 * limit and bytes in flight of transmit queues, their timeout counts, and the flow count of
+	 * receive queues.
+	 */
+	public abstract Map<String, Long> getQueueStatistics();
+
+	public abstract long getTimestamp();
+}
@@ -0,0 +1,118 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the states of the host's tasks, used by
+ * {@link LinuxTaskStatesJMXWrapper}.
+ */
+public class LinuxTaskStates implements LinuxTaskStatesMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+
+	private int running = 0;
+	private int sleeping = 0;
+	private int diskSleep = 0;
+	private int stopped = 0;
+	private int zombie = 0;
+	private int idle = 0;
+	private int other = 0;
+	private int longDiskSleep = 0;
+	private double longestDiskSleepSeconds = 0;
+	private Map<String, Integer> longDiskSleepByWaitChannel = Collections.emptyMap();
+	private long scanMillis = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxTaskStates(String objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * @param counts number of tasks in each of {@link LinuxTaskStatesJMXWrapper}'s states.
+	 * @param longDiskSleepByWaitChannel published as passed, so must not be changed afterwards.
+	 */
+	synchronized void update(int[] counts, int longDiskSleep, double longestDiskSleepSeconds,
+	                         Map<String, Integer> longDiskSleepByWaitChannel, long scanMillis) {
+		this.running = counts[LinuxTaskStatesJMXWrapper.RUNNING];
+		this.sleeping = counts[LinuxTaskStatesJMXWrapper.SLEEPING];
+		this.diskSleep = counts[LinuxTaskStatesJMXWrapper.DISK_SLEEP];
+		this.stopped = counts[LinuxTaskStatesJMXWrapper.STOPPED];
+		this.zombie = counts[LinuxTaskStatesJMXWrapper.ZOMBIE];
+		this.idle = counts[LinuxTaskStatesJMXWrapper.IDLE];
+		this.other = counts[LinuxTaskStatesJMXWrapper.OTHER];
+		this.longDiskSleep = longDiskSleep;
+		this.longestDiskSleepSeconds = longestDiskSleepSeconds;
+		this.longDiskSleepByWaitChannel = longDiskSleepByWaitChannel;
+		this.scanMillis = scanMillis;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	public synchronized int getSleeping() {
+		return sleeping;
+	}
+
+	public synchronized int getDiskSleep() {
+		return diskSleep;
+	}
+
+	public synchronized int getStopped() {
+		return stopped;
+	}
+
+	public synchronized int getZombie() {
+		return zombie;
+	}
+
+	public synchronized int getIdle() {
+		return idle;
+	}
+
+	public synchronized int getOther() {
+		return other;
+	}
+
+	public synchronized int getTotal() {
+		return running + sleeping + diskSleep + stopped + zombie + idle + other;
+	}
+
+	public synchronized int getLongDiskSleep() {
+		return longDiskSleep;
+	}
+
+	public synchronized double getLongestDiskSleepSeconds() {
+		return longestDiskSleepSeconds;
+	}
+
+	public synchronized Map<String, Integer> getLongDiskSleepByWaitChannel() {
+		return longDiskSleepByWaitChannel;
+	}
+
+	public synchronized long getScanMillis() {
+		return scanMillis;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
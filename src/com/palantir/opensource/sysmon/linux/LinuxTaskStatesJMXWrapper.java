@@ -0,0 +1,407 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Counts the host's tasks by scheduler state, and finds out what tasks stuck in
+ * uninterruptible sleep are waiting for.</p>
+ * <p>
+ * Tasks in uninterruptible sleep (state <code>D</code>), typically waiting on a slow disk or an
+ * unresponsive NFS server, count towards the load average just like runnable ones, so
+ * {@link LinuxLoadAverageJMXWrapper} can't tell a load spike from a storage stall.  Each tick reads
+ * the state of every task (every thread, unless configured otherwise) from
+ * <code>/proc/&lt;pid&gt;/task/&lt;tid&gt;/stat</code>.  Only the first few bytes of each file
+ * are read, into one reused buffer, which keeps a scan of tens of thousands of tasks cheap.
+ * </p><p>
+ * Tasks seen in uninterruptible sleep are remembered until they leave it.  Once one has been
+ * seen there for longer than a threshold, its <code>wchan</code> file, the kernel function it is
+ * waiting in (<code>nfs_wait_bit_killable</code>, <code>io_schedule</code>, ...), is read on each
+ * tick, and the long sleeps are counted by wait channel.  Checks are a period apart, so a task
+ * seen in uninterruptible sleep on consecutive checks is taken to have been there all along.
+ * Off by default.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * <code>sysmon.linux.beanpath:type=task-states</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=task-states</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.taskstates.enabled</td>
+ * <td>whether to run this monitor at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_TASK_STATES_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.taskstates.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_TASK_STATES_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.taskstates.threads</td>
+ * <td>whether to count every thread, rather than only the main thread of each process</td>
+ * <td><code>true</code></td>
+ * <td>{@link #CONFIG_KEY_TASK_STATES_THREADS}</td></tr>
+ * <tr><td>sysmon.linux.taskstates.diskSleepThresholdMillis</td>
+ * <td>time, in milliseconds, a task must be in uninterruptible sleep before its wait channel is read</td>
+ * <td><code>10000</code></td>
+ * <td>{@link #CONFIG_KEY_TASK_STATES_DISK_SLEEP_THRESHOLD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxTaskStatesJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxTaskStatesJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".taskstates";
+	/**
+	 * Set to <code>true</code> to turn on this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TASK_STATES_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_TASK_STATES_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TASK_STATES_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_TASK_STATES_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Set to <code>false</code> to only check the main thread of each process, which is cheaper
+	 * but misses the other threads of multi-threaded processes.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TASK_STATES_THREADS default value
+	 */
+	public static final String CONFIG_KEY_TASK_STATES_THREADS = CONFIG_KEY_PREFIX + ".threads";
+	/**
+	 * Time a task must be in uninterruptible sleep to count as a long sleep.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TASK_STATES_DISK_SLEEP_THRESHOLD default value
+	 */
+	public static final String CONFIG_KEY_TASK_STATES_DISK_SLEEP_THRESHOLD =
+		CONFIG_KEY_PREFIX + ".diskSleepThresholdMillis";
+	/**
+	 * The monitor is off unless asked for.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TASK_STATES_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_TASK_STATES_ENABLED = false;
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TASK_STATES_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_TASK_STATES_PERIOD = 5000;
+	/**
+	 * Every thread is checked by default.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TASK_STATES_THREADS for config key to override default value.
+	 */
+	public static final boolean DEFAULT_TASK_STATES_THREADS = true;
+	/**
+	 * Default time, in milliseconds, before an uninterruptible sleep counts as long.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TASK_STATES_DISK_SLEEP_THRESHOLD for config key to override default value.
+	 */
+	public static final long DEFAULT_TASK_STATES_DISK_SLEEP_THRESHOLD = 10000;
+
+	public static final String OBJECT_NAME = ":type=task-states";
+
+	static final File DATA_PATH = new File("/proc");
+
+	/**
+	 * Wait channel reported where the kernel doesn't give one.
+	 */
+	static final String UNKNOWN_WAIT_CHANNEL = "unknown";
+
+	static final int RUNNING = 0;
+	static final int SLEEPING = 1;
+	static final int DISK_SLEEP = 2;
+	static final int STOPPED = 3;
+	static final int ZOMBIE = 4;
+	static final int IDLE = 5;
+	static final int OTHER = 6;
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final boolean threads;
+	final long thresholdNanos;
+	final File dataPath;
+	final LinuxTaskStates bean;
+	final LinuxMetricHistory history;
+	/**
+	 * Tasks in uninterruptible sleep, by thread id.
+	 */
+	final Map<Integer, DiskSleeper> sleepers = new HashMap<Integer, DiskSleeper>();
+	final int[] counts = new int[OTHER + 1];
+	/**
+	 * Enough of a stat file to hold the pid, the name (at most 16 bytes, in parentheses) and the
+	 * state.
+	 */
+	final byte[] scratch = new byte[64];
+	final byte[] wchan = new byte[128];
+	int generation = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxTaskStatesJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxTaskStatesJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxTaskStatesJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		String key = CONFIG_KEY_TASK_STATES_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_TASK_STATES_PERIOD);
+			key = CONFIG_KEY_TASK_STATES_DISK_SLEEP_THRESHOLD;
+			this.thresholdNanos = PropertiesUtils.extractLong(config, key,
+			                                                  DEFAULT_TASK_STATES_DISK_SLEEP_THRESHOLD) * 1000000L;
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		this.threads = PropertiesUtils.extractBoolean(config, CONFIG_KEY_TASK_STATES_THREADS,
+		                                              DEFAULT_TASK_STATES_THREADS);
+		this.bean = new LinuxTaskStates(beanPath + OBJECT_NAME);
+		this.history = new LinuxMetricHistory(config, "task-states");
+		this.dataPath = dataPath;
+
+		// check to make sure it will all work
+		if(!new File(dataPath, "self/stat").canRead()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							"/self/stat. Can't read task states. (Is /proc mounted?)");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+			JMXUtils.registerMBean(bean, bean.objectName);
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   bean.objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down task state monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		sleepers.clear();
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long start = System.nanoTime();
+		final String[] pids = dataPath.list();
+		if(pids == null) {
+			throw new LinuxMonitoringException("Can't list " + dataPath.getAbsolutePath());
+		}
+		generation++;
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		for(String pid : pids) {
+			if(pid.length() == 0 || pid.charAt(0) < '0' || pid.charAt(0) > '9') {
+				continue;
+			}
+			if(threads) {
+				final File taskPath = new File(dataPath, pid + "/task");
+				final String[] tids = taskPath.list();
+				if(tids == null) {
+					// exited since the listing
+					continue;
+				}
+				for(String tid : tids) {
+					readTask(tid, new File(taskPath, tid), start);
+				}
+			} else {
+				readTask(pid, new File(dataPath, pid), start);
+			}
+		}
+
+		final long now = System.nanoTime();
+		int longDiskSleep = 0;
+		long longestNanos = 0;
+		final Map<String, Integer> byWaitChannel = new TreeMap<String, Integer>();
+		for(Iterator<DiskSleeper> it = sleepers.values().iterator(); it.hasNext();) {
+			final DiskSleeper sleeper = it.next();
+			if(sleeper.generation != generation) {
+				it.remove();
+				continue;
+			}
+			longestNanos = Math.max(longestNanos, now - sleeper.sinceNanos);
+			if(now - sleeper.sinceNanos < thresholdNanos) {
+				continue;
+			}
+			longDiskSleep++;
+			final String channel = readWaitChannel(sleeper.dir);
+			final Integer count = byWaitChannel.get(channel);
+			byWaitChannel.put(channel, count == null ? 1 : count + 1);
+		}
+		bean.update(counts, longDiskSleep, longestNanos / 1e9, byWaitChannel,
+		            (now - start) / 1000000L);
+		history.record(bean.objectName, bean);
+	}
+
+	/**
+	 * Counts the state of one task, and remembers it if it is in uninterruptible sleep.
+	 */
+	private void readTask(String tid, File dir, long now) {
+		final int length;
+		try {
+			length = PositionalFileReader.readOnce(new File(dir, "stat"), scratch);
+		} catch (IOException e) {
+			// exited since the listing
+			return;
+		}
+		// the name may contain anything, including parentheses, but no field after it does
+		int paren = length - 1;
+		while(paren >= 0 && scratch[paren] != ')') {
+			paren--;
+		}
+		if(paren < 0 || paren + 2 >= length) {
+			return;
+		}
+		final int state = stateIndex((char)scratch[paren + 2]);
+		counts[state]++;
+		if(state != DISK_SLEEP) {
+			return;
+		}
+		final Integer id = Integer.valueOf(tid);
+		DiskSleeper sleeper = sleepers.get(id);
+		if(sleeper == null) {
+			sleeper = new DiskSleeper(dir, now);
+			sleepers.put(id, sleeper);
+		}
+		sleeper.generation = generation;
+	}
+
+	static int stateIndex(char state) {
+		switch(state) {
+		case 'R': return RUNNING;
+		case 'S': return SLEEPING;
+		case 'D': return DISK_SLEEP;
+		case 'T':
+		case 't': return STOPPED;
+		case 'Z':
+		case 'X': return ZOMBIE;
+		case 'I': return IDLE;
+		default: return OTHER;
+		}
+	}
+
+	/**
+	 * @return the kernel function the task is waiting in, or {@link #UNKNOWN_WAIT_CHANNEL}.
+	 */
+	private String readWaitChannel(File dir) {
+		final int length;
+		try {
+			length = PositionalFileReader.readOnce(new File(dir, "wchan"), wchan);
+		} catch (IOException e) {
+			return UNKNOWN_WAIT_CHANNEL;
+		}
+		final String channel = new String(wchan, 0, length).trim();
+		// "0" when the kernel won't say, for example without the permission to see symbols
+		return channel.length() == 0 || channel.equals("0") ? UNKNOWN_WAIT_CHANNEL : channel;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * A task in uninterruptible sleep.
+	 */
+	static final class DiskSleeper {
+		final File dir;
+		final long sinceNanos;
+		int generation;
+
+		DiskSleeper(File dir, long sinceNanos) {
+			this.dir = dir;
+			this.sinceNanos = sinceNanos;
+		}
+	}
+}
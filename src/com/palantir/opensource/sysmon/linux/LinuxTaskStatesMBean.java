@@ -0,0 +1,87 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for the states of the host's tasks, published by
+ * {@link LinuxTaskStatesJMXWrapper}.
+ */
+public interface LinuxTaskStatesMBean {
+
+	/**
+	 * @return tasks running or waiting for a CPU (<code>R</code>).
+	 */
+	public abstract int getRunning();
+
+	/**
+	 * @return tasks in interruptible sleep (<code>S</code>).
+	 */
+	public abstract int getSleeping();
+
+	/**
+	 * @return tasks in uninterruptible sleep (<code>D</code>), usually waiting on storage or a
+	 * network filesystem.  They count towards the load average.
+	 */
+	public abstract int getDiskSleep();
+
+	/**
+	 * @return tasks stopped by a signal or a tracer (<code>T</code> and <code>t</code>).
+	 */
+	public abstract int getStopped();
+
+	/**
+	 * @return tasks that exited and haven't been reaped (<code>Z</code> and <code>X</code>).
+	 */
+	public abstract int getZombie();
+
+	/**
+	 * @return idle kernel threads (<code>I</code>), which sleep uninterruptibly but don't count
+	 * towards the load average.
+	 */
+	public abstract int getIdle();
+
+	/**
+	 * @return tasks in any other state.
+	 */
+	public abstract int getOther();
+
+	public abstract int getTotal();
+
+	/**
+	 * @return tasks seen in uninterruptible sleep for at least the configured threshold.
+	 */
+	public abstract int getLongDiskSleep();
+
+	/**
+	 * @return how long the longest uninterruptible sleep still going on has lasted so far, in
+	 * seconds, counted from the first check that saw it.  0 if there is none.
+	 */
+	public abstract double getLongestDiskSleepSeconds();
+
+	/**
+	 * @return the number of long uninterruptible sleeps in each kernel function the tasks are
+	 * waiting in (<code>/proc/&lt;pid&gt;/wchan</code>), or <code>unknown</code> where the
+	 * kernel doesn't say.
+	 */
+	public abstract Map<String, Integer> getLongDiskSleepByWaitChannel();
+
+	/**
+	 * @return how long reading the state of every task took, in milliseconds.
+	 */
+	public abstract long getScanMillis();
+
+	public abstract long getTimestamp();
+}
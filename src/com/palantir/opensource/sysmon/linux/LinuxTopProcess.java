@@ -0,0 +1,103 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for the process at one rank, used by
+ * {@link LinuxTopProcessesJMXWrapper}.
+ */
+public class LinuxTopProcess implements LinuxTopProcessMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String rankedBy;
+	final int rank;
+
+	private int pid = 0;
+	private String name = "";
+	private double cpuPercentage = 0;
+	private long residentInKB = 0;
+	private double majorFaultsPerSecond = 0;
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxTopProcess(String objectName, String rankedBy, int rank) {
+		this.objectName = objectName;
+		this.rankedBy = rankedBy;
+		this.rank = rank;
+	}
+
+	synchronized void update(int pid, String name, double cpuPercentage, long residentInKB,
+	                         double majorFaultsPerSecond, double readBytesPerSecond,
+	                         double writeBytesPerSecond) {
+		this.pid = pid;
+		this.name = name;
+		this.cpuPercentage = cpuPercentage;
+		this.residentInKB = residentInKB;
+		this.majorFaultsPerSecond = majorFaultsPerSecond;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * No process at this rank.
+	 */
+	void clear() {
+		update(0, "", 0.0, 0, 0.0, 0.0, 0.0);
+	}
+
+	public String getRankedBy() {
+		return rankedBy;
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public synchronized int getPid() {
+		return pid;
+	}
+
+	public synchronized String getName() {
+		return name;
+	}
+
+	public synchronized double getCpuPercentage() {
+		return cpuPercentage;
+	}
+
+	public synchronized long getResidentInKB() {
+		return residentInKB;
+	}
+
+	public synchronized double getMajorFaultsPerSecond() {
+		return majorFaultsPerSecond;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,64 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for one rank of {@link LinuxTopProcessesJMXWrapper}.
+ */
+public interface LinuxTopProcessMBean {
+
+	/**
+	 * @return what processes are ranked by: <code>cpu</code>, <code>rss</code>,
+	 * <code>major-faults</code>, <code>read</code> or <code>write</code>.
+	 */
+	public abstract String getRankedBy();
+
+	/**
+	 * @return the rank, starting from 1.
+	 */
+	public abstract int getRank();
+
+	/**
+	 * @return the process at this rank, or 0 if fewer processes than ranks had anything to rank.
+	 */
+	public abstract int getPid();
+
+	/**
+	 * @return the process's command name, or an empty string if there is no process at this rank.
+	 */
+	public abstract String getName();
+
+	/**
+	 * @return user plus system CPU time as a percentage of one CPU.
+	 */
+	public abstract double getCpuPercentage();
+
+	public abstract long getResidentInKB();
+
+	public abstract double getMajorFaultsPerSecond();
+
+	/**
+	 * @return bytes read from storage per second (<code>read_bytes</code> in
+	 * <code>/proc/&lt;pid&gt;/io</code>).  0 for processes whose I/O statistics can't be read.
+	 */
+	public abstract double getReadBytesPerSecond();
+
+	/**
+	 * @return bytes written to storage per second (<code>write_bytes</code> in
+	 * <code>/proc/&lt;pid&gt;/io</code>).  0 for processes whose I/O statistics can't be read.
+	 */
+	public abstract double getWriteBytesPerSecond();
+
+	public abstract long getTimestamp();
+}
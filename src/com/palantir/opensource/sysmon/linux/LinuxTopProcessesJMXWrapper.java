@@ -0,0 +1,699 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors the processes on the host using the most CPU, memory and I/O.</p>
+ * <p>
+ * Processes are ranked by CPU time, resident set size, major page faults and bytes read from and
+ * written to storage, from <code>/proc/&lt;pid&gt;/stat</code> and
+ * <code>/proc/&lt;pid&gt;/io</code>.  The top processes of each ranking are published as one bean
+ * per rank, so bean names stay the same as processes come and go: a JMX client watching the
+ * busiest process watches <code>rank=1</code>, and its <code>Pid</code> and <code>Name</code>
+ * say which process that is.
+ * </p><p>
+ * On hosts with tens of thousands of processes a full rescan every tick is expensive, so the scan
+ * is incremental.  The monitor keeps the last reading of every process in primitive arrays sorted
+ * by PID.  Each tick lists <code>/proc</code> once, merges the listing into the arrays to drop
+ * processes that have exited and add new ones, and then reads at most
+ * <code>maxProcessesPerTick</code> processes: first the current top processes, whose files are
+ * kept open and re-read with positional reads ({@link PositionalFileReader}), then processes
+ * never read before, then the rest in turn, picking up where the last tick stopped.  Rates are
+ * computed over the time between a process's own readings, so they stay correct however long a
+ * process waits for its turn.  A PID reused by a new process is recognized by its start time.
+ * </p><p>
+ * <code>/proc/&lt;pid&gt;/io</code> can only be read for processes of the same user, unless the
+ * JVM has <code>CAP_SYS_PTRACE</code>; other processes don't show up in the I/O rankings.
+ * Off by default.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each rank will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=top-processes,by=&lt;ranking&gt;,rank=&lt;n&gt;</code><br/>
+ * where the ranking is one of <code>cpu</code>, <code>rss</code>, <code>major-faults</code>,
+ * <code>read</code> and <code>write</code>.<br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=top-processes</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.topprocesses.enabled</td>
+ * <td>whether to run this monitor at all</td>
+ * <td><code>false</code></td>
+ * <td>{@link #CONFIG_KEY_TOP_PROCESSES_ENABLED}</td></tr>
+ * <tr><td>sysmon.linux.topprocesses.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>10000</code></td>
+ * <td>{@link #CONFIG_KEY_TOP_PROCESSES_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.topprocesses.count</td>
+ * <td>number of processes published for each ranking</td>
+ * <td><code>10</code></td>
+ * <td>{@link #CONFIG_KEY_TOP_PROCESSES_COUNT}</td></tr>
+ * <tr><td>sysmon.linux.topprocesses.maxProcessesPerTick</td>
+ * <td>most processes read each tick</td>
+ * <td><code>2000</code></td>
+ * <td>{@link #CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxTopProcessesJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxTopProcessesJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".topprocesses";
+	/**
+	 * Set to <code>true</code> to turn on this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TOP_PROCESSES_ENABLED default value
+	 */
+	public static final String CONFIG_KEY_TOP_PROCESSES_ENABLED = CONFIG_KEY_PREFIX + ".enabled";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TOP_PROCESSES_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_TOP_PROCESSES_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Number of processes published for each ranking.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TOP_PROCESSES_COUNT default value
+	 */
+	public static final String CONFIG_KEY_TOP_PROCESSES_COUNT = CONFIG_KEY_PREFIX + ".count";
+	/**
+	 * Most processes read each tick.  Bounds the work done per tick on hosts with many processes,
+	 * at the cost of reading each process less often than every tick.
+	 * Config key: {@value}
+	 * @see #DEFAULT_TOP_PROCESSES_MAX_PER_TICK default value
+	 */
+	public static final String CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK = CONFIG_KEY_PREFIX + ".maxProcessesPerTick";
+	/**
+	 * The monitor is off unless asked for.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TOP_PROCESSES_ENABLED for config key to override default value.
+	 */
+	public static final boolean DEFAULT_TOP_PROCESSES_ENABLED = false;
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TOP_PROCESSES_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_TOP_PROCESSES_PERIOD = 10000;
+	/**
+	 * Default number of processes published for each ranking.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TOP_PROCESSES_COUNT for config key to override default value.
+	 */
+	public static final int DEFAULT_TOP_PROCESSES_COUNT = 10;
+	/**
+	 * Default for the most processes read each tick.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK for config key to override default value.
+	 */
+	public static final int DEFAULT_TOP_PROCESSES_MAX_PER_TICK = 2000;
+
+	public static final String OBJECT_NAME_PREFIX = ":type=top-processes,by=";
+
+	static final File DATA_PATH = new File("/proc");
+
+	static final String[] RANKINGS = { "cpu", "rss", "major-faults", "read", "write" };
+	static final int CPU = 0;
+	static final int RSS = 1;
+	static final int MAJOR_FAULTS = 2;
+	static final int READ = 3;
+	static final int WRITE = 4;
+
+	static final byte[] READ_BYTES = { 'r', 'e', 'a', 'd', '_', 'b', 'y', 't', 'e', 's', ':' };
+	static final byte[] WRITE_BYTES = { 'w', 'r', 'i', 't', 'e', '_', 'b', 'y', 't', 'e', 's', ':' };
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final int count;
+	final int maxProcessesPerTick;
+	final File dataPath;
+	final LinuxMetricHistory history;
+	/**
+	 * Indexed by ranking, then rank.
+	 */
+	final LinuxTopProcess[][] ranks;
+	final ProcessStatLine statLine = new ProcessStatLine();
+	final byte[] scratch = new byte[4096];
+	ProcessCache cache = new ProcessCache(0);
+	ProcessCache spare = new ProcessCache(0);
+	int[] listed = new int[0];
+	/**
+	 * Slots of the current top processes, per ranking.
+	 */
+	final int[][] topSlots;
+	final double[] topValues;
+	boolean[] wanted = new boolean[0];
+	/**
+	 * The last process read in turn; the next tick carries on after it.
+	 */
+	int cursorPid = 0;
+	/**
+	 * Processes read during the last tick.
+	 */
+	int readCount = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxTopProcessesJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxTopProcessesJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxTopProcessesJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		String key = CONFIG_KEY_TOP_PROCESSES_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_TOP_PROCESSES_PERIOD);
+			key = CONFIG_KEY_TOP_PROCESSES_COUNT;
+			this.count = PropertiesUtils.extractInteger(config, key, DEFAULT_TOP_PROCESSES_COUNT);
+			key = CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK;
+			this.maxProcessesPerTick = PropertiesUtils.extractInteger(config, key,
+			                                                          DEFAULT_TOP_PROCESSES_MAX_PER_TICK);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		if(count < 1) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_TOP_PROCESSES_COUNT + ": " + count);
+		}
+		if(maxProcessesPerTick < count * RANKINGS.length) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK + ": " +
+			                                   maxProcessesPerTick + " is less than the " +
+			                                   count * RANKINGS.length + " top processes re-read " +
+			                                   "every tick");
+		}
+		this.history = new LinuxMetricHistory(config, "top-processes");
+		this.ranks = new LinuxTopProcess[RANKINGS.length][count];
+		for(int r = 0; r < RANKINGS.length; r++) {
+			for(int i = 0; i < count; i++) {
+				ranks[r][i] = new LinuxTopProcess(beanPath + OBJECT_NAME_PREFIX + RANKINGS[r] +
+				                                  ",rank=" + (i + 1), RANKINGS[r], i + 1);
+			}
+		}
+		this.topSlots = new int[RANKINGS.length][count];
+		this.topValues = new double[count];
+
+		// check to make sure it will all work
+		this.dataPath = dataPath;
+		if(!new File(dataPath, "self/stat").canRead()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							"/self/stat. Can't read process statistics. (Is /proc mounted?)");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			for(LinuxTopProcess[] ranking : ranks) {
+				for(LinuxTopProcess rank : ranking) {
+					objectName = rank.objectName;
+					JMXUtils.registerMBean(rank, objectName);
+				}
+			}
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down top process monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(int slot = 0; slot < cache.size; slot++) {
+			cache.closeReaders(slot);
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final long tickStart = System.nanoTime();
+		merge(list());
+
+		int budget = maxProcessesPerTick;
+		// the current top processes, every tick
+		for(int slot = 0; slot < cache.size; slot++) {
+			if(cache.statReaders[slot] != null) {
+				read(slot);
+				budget--;
+			}
+		}
+		// new processes
+		for(int slot = 0; slot < cache.size && budget > 0; slot++) {
+			if(cache.readNanos[slot] == 0) {
+				read(slot);
+				budget--;
+			}
+		}
+		// then the rest, in turn
+		if(cache.size > 0) {
+			int slot = Arrays.binarySearch(cache.pids, 0, cache.size, cursorPid + 1);
+			if(slot < 0) {
+				slot = -slot - 1;
+			}
+			for(int seen = 0; seen < cache.size && budget > 0; seen++, slot++) {
+				if(slot == cache.size) {
+					slot = 0;
+				}
+				if(cache.readNanos[slot] != 0 && cache.readNanos[slot] - tickStart >= 0) {
+					// already read this tick
+					continue;
+				}
+				read(slot);
+				cursorPid = cache.pids[slot];
+				budget--;
+			}
+		}
+		readCount = maxProcessesPerTick - budget;
+
+		rank();
+	}
+
+	/**
+	 * @return the number of PIDs listed, which are at the start of {@link #listed}, sorted.
+	 */
+	private int list() throws LinuxMonitoringException {
+		final String[] names = dataPath.list();
+		if(names == null) {
+			throw new LinuxMonitoringException("Can't list " + dataPath.getAbsolutePath());
+		}
+		if(listed.length < names.length) {
+			listed = new int[names.length];
+		}
+		int listedCount = 0;
+		for(String name : names) {
+			int pid = 0;
+			int i = 0;
+			while(i < name.length() && name.charAt(i) >= '0' && name.charAt(i) <= '9') {
+				pid = pid * 10 + (name.charAt(i) - '0');
+				i++;
+			}
+			if(i > 0 && i == name.length()) {
+				listed[listedCount++] = pid;
+			}
+		}
+		Arrays.sort(listed, 0, listedCount);
+		return listedCount;
+	}
+
+	/**
+	 * Drops processes that have exited and adds new ones, keeping the cache sorted by PID.
+	 */
+	private void merge(int listedCount) {
+		spare.ensureCapacity(listedCount);
+		int from = 0;
+		int to = 0;
+		for(int i = 0; i < listedCount; i++) {
+			final int pid = listed[i];
+			while(from < cache.size && cache.pids[from] < pid) {
+				// exited
+				cache.closeReaders(from++);
+			}
+			if(from < cache.size && cache.pids[from] == pid) {
+				cache.copy(from++, spare, to++);
+			} else {
+				spare.clear(to++, pid);
+			}
+		}
+		while(from < cache.size) {
+			cache.closeReaders(from++);
+		}
+		spare.size = to;
+		final ProcessCache previous = cache;
+		cache = spare;
+		spare = previous;
+		spare.size = 0;
+	}
+
+	/**
+	 * Reads one process and updates its rates.
+	 */
+	private void read(int slot) {
+		final ProcessCache c = cache;
+		final int pid = c.pids[slot];
+		try {
+			final byte[] buffer;
+			final int length;
+			if(c.statReaders[slot] != null) {
+				length = c.statReaders[slot].read();
+				buffer = c.statReaders[slot].getBuffer();
+			} else {
+				length = PositionalFileReader.readOnce(new File(dataPath, pid + "/stat"), scratch);
+				buffer = scratch;
+			}
+			if(!statLine.parse(buffer, length)) {
+				return;
+			}
+		} catch (IOException e) {
+			// exited since the listing, or the PID was reused under an open file
+			c.closeReaders(slot);
+			return;
+		}
+		final long startTime = statLine.get(ProcessStatLine.STARTTIME);
+		if(c.readNanos[slot] != 0 && startTime != c.startTimes[slot]) {
+			// a new process with the same PID
+			c.closeReaders(slot);
+			c.clear(slot, pid);
+		}
+		final long cpuTicks = statLine.getCpuTicks();
+		final long majorFaults = statLine.get(ProcessStatLine.MAJFLT);
+		final long residentInKB = statLine.getResidentInKB();
+		long readBytes = 0;
+		long writeBytes = 0;
+		if(!c.ioDenied[slot]) {
+			try {
+				final byte[] buffer;
+				final int length;
+				if(c.ioReaders[slot] != null) {
+					length = c.ioReaders[slot].read();
+					buffer = c.ioReaders[slot].getBuffer();
+				} else {
+					length = PositionalFileReader.readOnce(new File(dataPath, pid + "/io"), scratch);
+					buffer = scratch;
+				}
+				readBytes = ioValue(buffer, length, READ_BYTES);
+				writeBytes = ioValue(buffer, length, WRITE_BYTES);
+			} catch (IOException e) {
+				// another user's process
+				c.ioDenied[slot] = true;
+			}
+		}
+		final long now = System.nanoTime();
+		final double[][] values = c.values;
+		if(c.readNanos[slot] != 0 && now > c.readNanos[slot]) {
+			final double seconds = (now - c.readNanos[slot]) / 1e9;
+			values[CPU][slot] = CounterRates.delta(c.cpuTicks[slot], cpuTicks, 64) * 100.0 /
+			                    ProcessStatLine.CLOCK_TICKS_PER_SECOND / seconds;
+			values[MAJOR_FAULTS][slot] = CounterRates.delta(c.majorFaults[slot], majorFaults,
+			                                                CounterRates.LONG_BITS) / seconds;
+			values[READ][slot] = CounterRates.delta(c.readBytes[slot], readBytes, 64) / seconds;
+			values[WRITE][slot] = CounterRates.delta(c.writeBytes[slot], writeBytes, 64) / seconds;
+		}
+		values[RSS][slot] = residentInKB;
+		c.startTimes[slot] = startTime;
+		c.cpuTicks[slot] = cpuTicks;
+		c.majorFaults[slot] = majorFaults;
+		c.readBytes[slot] = readBytes;
+		c.writeBytes[slot] = writeBytes;
+		c.readNanos[slot] = now;
+	}
+
+	/**
+	 * Ranks the cached processes, publishes the top ones and keeps their files open.
+	 */
+	private void rank() {
+		final ProcessCache c = cache;
+		if(wanted.length < c.size) {
+			wanted = new boolean[c.pids.length];
+		}
+		Arrays.fill(wanted, false);
+		for(int r = 0; r < RANKINGS.length; r++) {
+			final double[] values = c.values[r];
+			final int[] top = topSlots[r];
+			int n = 0;
+			for(int slot = 0; slot < c.size; slot++) {
+				final double value = values[slot];
+				if(value <= 0 || (n == count && value <= topValues[n - 1])) {
+					continue;
+				}
+				int i = n < count ? n++ : n - 1;
+				while(i > 0 && topValues[i - 1] < value) {
+					topValues[i] = topValues[i - 1];
+					top[i] = top[i - 1];
+					i--;
+				}
+				topValues[i] = value;
+				top[i] = slot;
+			}
+			for(int i = 0; i < count; i++) {
+				final LinuxTopProcess bean = ranks[r][i];
+				if(i < n) {
+					final int slot = top[i];
+					wanted[slot] = true;
+					bean.update(c.pids[slot], c.getName(slot), c.values[CPU][slot],
+					            (long)c.values[RSS][slot], c.values[MAJOR_FAULTS][slot],
+					            c.values[READ][slot], c.values[WRITE][slot]);
+				} else {
+					bean.clear();
+				}
+				history.record(bean.objectName, bean);
+			}
+		}
+		for(int slot = 0; slot < c.size; slot++) {
+			if(wanted[slot]) {
+				c.openReaders(slot);
+			} else {
+				c.closeReaders(slot);
+			}
+		}
+	}
+
+	/**
+	 * @return the value on the line of <code>/proc/&lt;pid&gt;/io</code> starting with the key,
+	 * or 0 if there is none.
+	 */
+	static long ioValue(byte[] buffer, int length, byte[] key) {
+		int position = 0;
+		while(position < length) {
+			boolean match = position + key.length <= length;
+			for(int k = 0; match && k < key.length; k++) {
+				match = buffer[position + k] == key[k];
+			}
+			int end = position;
+			while(end < length && buffer[end] != '\n') {
+				end++;
+			}
+			if(match) {
+				return PositionalFileReader.parseLong(buffer, position + key.length, end);
+			}
+			position = end + 1;
+		}
+		return 0;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * The last reading of every process, in parallel arrays sorted by PID.
+	 */
+	final class ProcessCache {
+		int size = 0;
+		int[] pids;
+		long[] startTimes;
+		long[] cpuTicks;
+		long[] majorFaults;
+		long[] readBytes;
+		long[] writeBytes;
+		/**
+		 * When each process was last read, or 0 if never.
+		 */
+		long[] readNanos;
+		/**
+		 * Indexed by ranking, then slot.
+		 */
+		double[][] values;
+		String[] names;
+		/**
+		 * Open only for the current top processes.
+		 */
+		PositionalFileReader[] statReaders;
+		PositionalFileReader[] ioReaders;
+		boolean[] ioDenied;
+
+		ProcessCache(int capacity) {
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			pids = new int[capacity];
+			startTimes = new long[capacity];
+			cpuTicks = new long[capacity];
+			majorFaults = new long[capacity];
+			readBytes = new long[capacity];
+			writeBytes = new long[capacity];
+			readNanos = new long[capacity];
+			values = new double[RANKINGS.length][capacity];
+			names = new String[capacity];
+			statReaders = new PositionalFileReader[capacity];
+			ioReaders = new PositionalFileReader[capacity];
+			ioDenied = new boolean[capacity];
+		}
+
+		/**
+		 * Makes room for at least <code>capacity</code> processes, discarding the contents.
+		 */
+		void ensureCapacity(int capacity) {
+			if(pids.length < capacity) {
+				allocate(Math.max(capacity, pids.length + pids.length / 2));
+			}
+		}
+
+		void copy(int from, ProcessCache to, int slot) {
+			to.pids[slot] = pids[from];
+			to.startTimes[slot] = startTimes[from];
+			to.cpuTicks[slot] = cpuTicks[from];
+			to.majorFaults[slot] = majorFaults[from];
+			to.readBytes[slot] = readBytes[from];
+			to.writeBytes[slot] = writeBytes[from];
+			to.readNanos[slot] = readNanos[from];
+			for(int r = 0; r < RANKINGS.length; r++) {
+				to.values[r][slot] = values[r][from];
+			}
+			to.names[slot] = names[from];
+			to.statReaders[slot] = statReaders[from];
+			to.ioReaders[slot] = ioReaders[from];
+			to.ioDenied[slot] = ioDenied[from];
+		}
+
+		/**
+		 * Starts a slot for a process not read yet.
+		 */
+		void clear(int slot, int pid) {
+			pids[slot] = pid;
+			startTimes[slot] = 0;
+			cpuTicks[slot] = 0;
+			majorFaults[slot] = 0;
+			readBytes[slot] = 0;
+			writeBytes[slot] = 0;
+			readNanos[slot] = 0;
+			for(int r = 0; r < RANKINGS.length; r++) {
+				values[r][slot] = 0;
+			}
+			names[slot] = null;
+			statReaders[slot] = null;
+			ioReaders[slot] = null;
+			ioDenied[slot] = false;
+		}
+
+		void openReaders(int slot) {
+			final File dir = new File(dataPath, Integer.toString(pids[slot]));
+			try {
+				if(statReaders[slot] == null) {
+					statReaders[slot] = new PositionalFileReader(new File(dir, "stat"), 512);
+				}
+				if(ioReaders[slot] == null && !ioDenied[slot]) {
+					ioReaders[slot] = new PositionalFileReader(new File(dir, "io"), 256);
+				}
+			} catch (IOException e) {
+				// exited, or io isn't readable; read again next tick either way
+			}
+		}
+
+		void closeReaders(int slot) {
+			if(statReaders[slot] != null) {
+				statReaders[slot].close();
+				statReaders[slot] = null;
+			}
+			if(ioReaders[slot] != null) {
+				ioReaders[slot].close();
+				ioReaders[slot] = null;
+			}
+		}
+
+		/**
+		 * @return the process's command name, read the first time it is asked for.
+		 */
+		String getName(int slot) {
+			if(names[slot] == null) {
+				try {
+					final int length = PositionalFileReader.readOnce(new File(dataPath, pids[slot] +
+					                                                            "/comm"), scratch);
+					names[slot] = new String(scratch, 0, length, "US-ASCII").trim();
+				} catch (IOException e) {
+					// exited; named again if it is still here next tick
+					return "";
+				}
+			}
+			return names[slot];
+		}
+	}
+}
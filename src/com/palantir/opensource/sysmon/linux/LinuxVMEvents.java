@@ -0,0 +1,119 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data container and JMX MBean implementation for the kernel's virtual memory event counters in
+ * <code>/proc/vmstat</code>, used by {@link LinuxVMEventsJMXWrapper}.
+ */
+public class LinuxVMEvents implements LinuxVMEventsMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+
+	private final double[] rates = new double[LinuxVMEventsJMXWrapper.RATES.length];
+	private long oomKills = 0;
+	private Map<String, Long> counters = Collections.emptyMap();
+	private Map<String, Double> perSecond = Collections.emptyMap();
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxVMEvents(String objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Publishes the counters of a reading.  The map is published as passed and must not be
+	 * modified afterwards.
+	 */
+	synchronized void update(Map<String, Long> counters, long oomKills) {
+		this.counters = counters;
+		this.oomKills = oomKills;
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Publishes the rates since the previous reading.  The map is published as passed and must not
+	 * be modified afterwards.
+	 * @param rates in the order of {@link LinuxVMEventsJMXWrapper#RATES}.
+	 */
+	synchronized void updateRates(double[] rates, Map<String, Double> perSecond) {
+		System.arraycopy(rates, 0, this.rates, 0, this.rates.length);
+		this.perSecond = perSecond;
+	}
+
+	public synchronized double getPageFaultsPerSecond() {
+		return rates[0];
+	}
+
+	public synchronized double getMajorFaultsPerSecond() {
+		return rates[1];
+	}
+
+	public synchronized double getSwapInPerSecond() {
+		return rates[2];
+	}
+
+	public synchronized double getSwapOutPerSecond() {
+		return rates[3];
+	}
+
+	public synchronized double getKswapdScanPerSecond() {
+		return rates[4];
+	}
+
+	public synchronized double getDirectScanPerSecond() {
+		return rates[5];
+	}
+
+	public synchronized double getDirectStealPerSecond() {
+		return rates[6];
+	}
+
+	public synchronized double getAllocStallsPerSecond() {
+		return rates[7];
+	}
+
+	public synchronized double getCompactStallsPerSecond() {
+		return rates[8];
+	}
+
+	public synchronized double getThpFaultFallbackPerSecond() {
+		return rates[9];
+	}
+
+	public synchronized double getOomKillsPerSecond() {
+		return rates[10];
+	}
+
+	public synchronized long getOomKills() {
+		return oomKills;
+	}
+
+	public synchronized Map<String, Long> getCounters() {
+		return counters;
+	}
+
+	public synchronized Map<String, Double> getPerSecond() {
+		return perSecond;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
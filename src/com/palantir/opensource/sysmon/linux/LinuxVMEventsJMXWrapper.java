@@ -0,0 +1,343 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors the kernel's virtual memory event counters in <code>/proc/vmstat</code>: page
+ * faults, swapping, reclaim, allocation stalls, compaction and OOM kills.</p>
+ * <p>
+ * Rates of direct reclaim and allocation stalls are published as attributes of their own, since
+ * they explain many otherwise unexplained application pauses: a thread that has to reclaim memory
+ * before its allocation succeeds stops until it has.  Counters split by zone on some kernels
+ * (such as <code>allocstall_normal</code> and <code>allocstall_movable</code>) are summed.  The
+ * values and rates of all counters in a configurable allow-list are published as maps.
+ * </p><p>
+ * The file is kept open and re-read with positional reads ({@link PositionalFileReader}).
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * <code>sysmon.linux.beanpath:type=vm-events</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=vm-events</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.vmevents.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>2000</code></td>
+ * <td>{@link #CONFIG_KEY_VMEVENTS_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.vmevents.counters</td>
+ * <td>comma-separated counters published in the maps.  A trailing <code>*</code> matches any
+ * counter starting with what comes before it, and <code>*</code> alone matches every counter.</td>
+ * <td><code>pgfault,pgmajfault,pswpin,pswpout,pgscan_*,pgsteal_*,allocstall*,oom_kill,compact_*,thp_fault_*,thp_collapse_alloc*,workingset_refault*</code></td>
+ * <td>{@link #CONFIG_KEY_VMEVENTS_COUNTERS}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxVMEventsJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxVMEventsJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".vmevents";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_VMEVENTS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_VMEVENTS_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Comma-separated allow-list of counters published in the maps.
+	 * Config key: {@value}
+	 * @see #DEFAULT_VMEVENTS_COUNTERS default value
+	 */
+	public static final String CONFIG_KEY_VMEVENTS_COUNTERS = CONFIG_KEY_PREFIX + ".counters";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_VMEVENTS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_VMEVENTS_PERIOD = 2000;
+	/**
+	 * Default allow-list: faults, swapping, reclaim, stalls, OOM kills, compaction and huge pages.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_VMEVENTS_COUNTERS for config key to override default value.
+	 */
+	public static final String DEFAULT_VMEVENTS_COUNTERS =
+		"pgfault,pgmajfault,pswpin,pswpout,pgscan_*,pgsteal_*,allocstall*,oom_kill,compact_*," +
+		"thp_fault_*,thp_collapse_alloc*,workingset_refault*";
+
+	public static final String OBJECT_NAME = ":type=vm-events";
+
+	static final File DATA_PATH = new File("/proc/vmstat");
+
+	/**
+	 * Counters summed into each rate attribute of {@link LinuxVMEvents}, in order.
+	 */
+	static final String[] RATES = {
+		"pgfault", "pgmajfault", "pswpin", "pswpout", "pgscan_kswapd*", "pgscan_direct*",
+		"pgsteal_direct*", "allocstall*", "compact_stall", "thp_fault_fallback", "oom_kill",
+	};
+	/**
+	 * Counts throttling of direct reclaim, not pages, although its name says otherwise.
+	 */
+	static final String PGSCAN_DIRECT_THROTTLE = "pgscan_direct_throttle";
+	static final String OOM_KILL = "oom_kill";
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final String[] allowList;
+	final LinuxMetricHistory history;
+	final PositionalFileReader reader;
+	final KeyValueTable table = new KeyValueTable();
+	final LinuxVMEvents bean;
+	volatile boolean shutdown = false;
+
+	private long[] previous = new long[0];
+	private long previousNanos = 0;
+	private boolean primed = false;
+	private int[] allowed = new int[0];
+	/**
+	 * Counters summed into each rate attribute.
+	 */
+	private int[][] rateCounters = new int[RATES.length][0];
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxVMEventsJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH);
+	}
+
+	LinuxVMEventsJMXWrapper(Properties config, File dataPath) throws LinuxMonitoringException {
+		super(LinuxVMEventsJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		this.bean = new LinuxVMEvents(beanPath + OBJECT_NAME);
+		try {
+			this.period = PropertiesUtils.extractLong(config, CONFIG_KEY_VMEVENTS_PERIOD,
+			                                          DEFAULT_VMEVENTS_PERIOD);
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " +
+			                                   CONFIG_KEY_VMEVENTS_PERIOD, e);
+		}
+		final List<String> allowList = new ArrayList<String>();
+		for(String counter : config.getProperty(CONFIG_KEY_VMEVENTS_COUNTERS,
+		                                        DEFAULT_VMEVENTS_COUNTERS).split(",")) {
+			if(counter.trim().length() > 0) {
+				allowList.add(counter.trim());
+			}
+		}
+		this.allowList = allowList.toArray(new String[allowList.size()]);
+		this.history = new LinuxMetricHistory(config, "vm-events");
+
+		// check to make sure it will all work
+		if(!dataPath.exists()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							". Can't read VM event counters. (Is /proc mounted?)");
+		}
+		if(!dataPath.canRead()) {
+			throw new LinuxMonitoringException("Permission denied: " + dataPath.getAbsolutePath());
+		}
+		try {
+			this.reader = new PositionalFileReader(dataPath, 8192);
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Could not open " + dataPath.getAbsolutePath(), e);
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		try {
+			readData();
+			JMXUtils.registerMBean(bean, bean.objectName);
+		} catch (JMException e) {
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   bean.objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down VM event monitoring due to error.",e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	void readData() throws LinuxMonitoringException {
+		final int length;
+		try {
+			length = reader.read();
+		} catch (IOException e) {
+			throw new LinuxMonitoringException("Unexpected IOException during processing.",e);
+		}
+		final long nanos = System.nanoTime();
+		table.parse(reader.getBuffer(), length);
+		if(table.isLayoutChanged()) {
+			relayout();
+		}
+		final double seconds = primed ? (nanos - previousNanos) / 1e9 : 0.0;
+
+		final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+		for(int i : allowed) {
+			counters.put(table.getKey(i), table.getValue(i));
+		}
+		bean.update(counters, table.get(OOM_KILL, 0));
+		if(seconds > 0) {
+			final Map<String, Double> perSecond = new LinkedHashMap<String, Double>();
+			for(int i : allowed) {
+				perSecond.put(table.getKey(i), rate(i, seconds));
+			}
+			final double[] rates = new double[RATES.length];
+			for(int r = 0; r < RATES.length; r++) {
+				for(int i : rateCounters[r]) {
+					rates[r] += rate(i, seconds);
+				}
+			}
+			bean.updateRates(rates, perSecond);
+		}
+		for(int i = 0; i < previous.length; i++) {
+			previous[i] = table.getValue(i);
+		}
+		previousNanos = nanos;
+		primed = true;
+		history.record(bean.objectName, bean);
+	}
+
+	private double rate(int counter, double seconds) {
+		return CounterRates.delta(previous[counter], table.getValue(counter), CounterRates.LONG_BITS) /
+		       seconds;
+	}
+
+	/**
+	 * Counters came or went: start over without rates, and match the counters again.
+	 */
+	private void relayout() {
+		previous = new long[table.size()];
+		primed = false;
+		final List<Integer> allowed = new ArrayList<Integer>();
+		final List<List<Integer>> rateCounters = new ArrayList<List<Integer>>();
+		for(int r = 0; r < RATES.length; r++) {
+			rateCounters.add(new ArrayList<Integer>());
+		}
+		for(int i = 0; i < table.size(); i++) {
+			final String key = table.getKey(i);
+			for(String pattern : allowList) {
+				if(matches(pattern, key)) {
+					allowed.add(i);
+					break;
+				}
+			}
+			if(key.equals(PGSCAN_DIRECT_THROTTLE)) {
+				continue;
+			}
+			for(int r = 0; r < RATES.length; r++) {
+				if(matches(RATES[r], key)) {
+					rateCounters.get(r).add(i);
+				}
+			}
+		}
+		this.allowed = toArray(allowed);
+		for(int r = 0; r < RATES.length; r++) {
+			this.rateCounters[r] = toArray(rateCounters.get(r));
+		}
+	}
+
+	/**
+	 * @return whether a counter is the one named by a pattern, or starts with what comes before the
+	 * pattern's trailing <code>*</code>.
+	 */
+	static boolean matches(String pattern, String key) {
+		if(pattern.endsWith("*")) {
+			return key.startsWith(pattern.substring(0, pattern.length() - 1));
+		}
+		return key.equals(pattern);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+	}
+}
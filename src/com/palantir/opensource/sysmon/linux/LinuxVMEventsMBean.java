@@ -0,0 +1,84 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.Map;
+
+/**
+ * MBean interface for {@link LinuxVMEventsJMXWrapper}.  Rates are 0 for counters the running
+ * kernel doesn't have.
+ */
+public interface LinuxVMEventsMBean {
+
+	public abstract double getPageFaultsPerSecond();
+
+	/**
+	 * @return page faults per second that had to wait for a read from disk.
+	 */
+	public abstract double getMajorFaultsPerSecond();
+
+	public abstract double getSwapInPerSecond();
+
+	public abstract double getSwapOutPerSecond();
+
+	/**
+	 * @return pages per second scanned by the background reclaim thread, kswapd.
+	 */
+	public abstract double getKswapdScanPerSecond();
+
+	/**
+	 * @return pages per second scanned by allocating processes reclaiming memory themselves.
+	 * Every one of those allocations stalls.
+	 */
+	public abstract double getDirectScanPerSecond();
+
+	/**
+	 * @return pages per second reclaimed by allocating processes.
+	 */
+	public abstract double getDirectStealPerSecond();
+
+	/**
+	 * @return allocations per second that stalled in direct reclaim, summed over all zones.
+	 */
+	public abstract double getAllocStallsPerSecond();
+
+	/**
+	 * @return allocations per second that stalled in direct compaction.
+	 */
+	public abstract double getCompactStallsPerSecond();
+
+	/**
+	 * @return page faults per second that wanted a transparent huge page and got a small page.
+	 */
+	public abstract double getThpFaultFallbackPerSecond();
+
+	public abstract double getOomKillsPerSecond();
+
+	/**
+	 * @return processes killed by the OOM killer since boot.
+	 */
+	public abstract long getOomKills();
+
+	/**
+	 * @return the value of every counter in the allow-list.
+	 */
+	public abstract Map<String, Long> getCounters();
+
+	/**
+	 * @return the rate of every counter in the allow-list.
+	 */
+	public abstract Map<String, Double> getPerSecond();
+
+	public abstract long getTimestamp();
+}
@@ -43,7 +43,9 @@ import com.palantir.opensource.sysmon.util.PropertiesUtils;
  * traps, and cpu activity.
  *
  * <h3>JMX Data Path</h3>
- * <code>sysmon.linux.beanpath:type=linux-vmstat</code>
+ * <code>sysmon.linux.beanpath:type=linux-vmstat</code><br/>
+ * Recent history of its values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=linux-vmstat</code>
  * <p></p>
  *
  * <h3>Configuration parameters</h3>
@@ -132,6 +134,7 @@ public class LinuxVMStatJMXWrapper extends Thread implements Monitor {
 	public static final String BEAN_TYPE =  ":type=linux-vmstat";
 
 	final LinuxVMStat canonicalBean;
+	final LinuxMetricHistory history;
 	final String beanPath;
 	final String vmstatCmd[];
 	final String vmstatPath;
@@ -173,6 +176,8 @@ public class LinuxVMStatJMXWrapper extends Thread implements Monitor {
 			throw new LinuxMonitoringException("Exception while attempting register bean at path " +
 			                                   beanPath,e);
 		}
+		this.history = new LinuxMetricHistory(config, "linux-vmstat");
+		history.register();
 
 
 		vmstatPath = config.getProperty(CONFIG_KEY_VMSTAT_PATH,DEFAULT_VMSTAT_PATH);
@@ -243,6 +248,7 @@ public class LinuxVMStatJMXWrapper extends Thread implements Monitor {
 						try {
 							LinuxVMStat dataBean = processLine(line);
 							canonicalBean.takeValues(dataBean); // updates the JMX bean
+							history.record(beanPath, canonicalBean);
 							continue;
 						} catch (LinuxMonitoringException e) {
 							log.error(e);
@@ -0,0 +1,157 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * Data container and JMX MBean implementation for one watched process, used by
+ * {@link LinuxWatchedProcessesJMXWrapper}.
+ */
+public class LinuxWatchedProcess implements LinuxWatchedProcessMBean {
+
+	/**
+	 * full objectName of this object in the JMX bean hierarchy.
+	 */
+	final String objectName;
+	final String name;
+
+	private int pid = 0;
+	private String commandLine = "";
+	private int restartCount = 0;
+	private double cpuPercentage = 0;
+	private long residentInKB = 0;
+	private long proportionalInKB = 0;
+	private int threadCount = 0;
+	private int fileDescriptorCount = 0;
+	private double voluntaryContextSwitchesPerSecond = 0;
+	private double involuntaryContextSwitchesPerSecond = 0;
+	private double readBytesPerSecond = 0;
+	private double writeBytesPerSecond = 0;
+	private long timestamp = System.currentTimeMillis();
+
+	LinuxWatchedProcess(String objectName, String name) {
+		this.objectName = objectName;
+		this.name = name;
+	}
+
+	/**
+	 * A process was found.
+	 * @param restarted whether it replaces one that exited.
+	 */
+	synchronized void started(int pid, String commandLine, boolean restarted) {
+		this.pid = pid;
+		this.commandLine = commandLine;
+		if(restarted) {
+			restartCount++;
+		}
+		timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * The process exited.
+	 */
+	synchronized void stopped() {
+		pid = 0;
+		cpuPercentage = 0;
+		residentInKB = 0;
+		proportionalInKB = 0;
+		threadCount = 0;
+		fileDescriptorCount = 0;
+		voluntaryContextSwitchesPerSecond = 0;
+		involuntaryContextSwitchesPerSecond = 0;
+		readBytesPerSecond = 0;
+		writeBytesPerSecond = 0;
+		timestamp = System.currentTimeMillis();
+	}
+
+	synchronized void update(long residentInKB, int threadCount, int fileDescriptorCount) {
+		this.residentInKB = residentInKB;
+		this.threadCount = threadCount;
+		this.fileDescriptorCount = fileDescriptorCount;
+		timestamp = System.currentTimeMillis();
+	}
+
+	synchronized void updateProportional(long proportionalInKB) {
+		this.proportionalInKB = proportionalInKB;
+	}
+
+	synchronized void updateRates(double cpuPercentage, double voluntaryContextSwitchesPerSecond,
+	                              double involuntaryContextSwitchesPerSecond,
+	                              double readBytesPerSecond, double writeBytesPerSecond) {
+		this.cpuPercentage = cpuPercentage;
+		this.voluntaryContextSwitchesPerSecond = voluntaryContextSwitchesPerSecond;
+		this.involuntaryContextSwitchesPerSecond = involuntaryContextSwitchesPerSecond;
+		this.readBytesPerSecond = readBytesPerSecond;
+		this.writeBytesPerSecond = writeBytesPerSecond;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized boolean isRunning() {
+		return pid != 0;
+	}
+
+	public synchronized int getPid() {
+		return pid;
+	}
+
+	public synchronized String getCommandLine() {
+		return commandLine;
+	}
+
+	public synchronized int getRestartCount() {
+		return restartCount;
+	}
+
+	public synchronized double getCpuPercentage() {
+		return cpuPercentage;
+	}
+
+	public synchronized long getResidentInKB() {
+		return residentInKB;
+	}
+
+	public synchronized long getProportionalInKB() {
+		return proportionalInKB;
+	}
+
+	public synchronized int getThreadCount() {
+		return threadCount;
+	}
+
+	public synchronized int getFileDescriptorCount() {
+		return fileDescriptorCount;
+	}
+
+	public synchronized double getVoluntaryContextSwitchesPerSecond() {
+		return voluntaryContextSwitchesPerSecond;
+	}
+
+	public synchronized double getInvoluntaryContextSwitchesPerSecond() {
+		return involuntaryContextSwitchesPerSecond;
+	}
+
+	public synchronized double getReadBytesPerSecond() {
+		return readBytesPerSecond;
+	}
+
+	public synchronized double getWriteBytesPerSecond() {
+		return writeBytesPerSecond;
+	}
+
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,78 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+/**
+ * MBean interface for one process watched by {@link LinuxWatchedProcessesJMXWrapper}.
+ */
+public interface LinuxWatchedProcessMBean {
+
+	/**
+	 * @return the name the process was given in the config.
+	 */
+	public abstract String getName();
+
+	public abstract boolean isRunning();
+
+	/**
+	 * @return the process being watched, or 0 if none is running.
+	 */
+	public abstract int getPid();
+
+	/**
+	 * @return the command line of the process being watched, with arguments separated by spaces.
+	 */
+	public abstract String getCommandLine();
+
+	/**
+	 * @return the number of times the watched process exited and another was found in its place.
+	 */
+	public abstract int getRestartCount();
+
+	/**
+	 * @return user plus system CPU time as a percentage of one CPU.
+	 */
+	public abstract double getCpuPercentage();
+
+	public abstract long getResidentInKB();
+
+	/**
+	 * @return the proportional set size: resident memory, with each shared page divided among the
+	 * processes sharing it.  Read less often than the other values, and 0 if it can't be read.
+	 */
+	public abstract long getProportionalInKB();
+
+	public abstract int getThreadCount();
+
+	/**
+	 * @return open file descriptors, or 0 if they can't be counted.
+	 */
+	public abstract int getFileDescriptorCount();
+
+	public abstract double getVoluntaryContextSwitchesPerSecond();
+
+	public abstract double getInvoluntaryContextSwitchesPerSecond();
+
+	/**
+	 * @return bytes read from storage per second, or 0 if I/O statistics can't be read.
+	 */
+	public abstract double getReadBytesPerSecond();
+
+	/**
+	 * @return bytes written to storage per second, or 0 if I/O statistics can't be read.
+	 */
+	public abstract double getWriteBytesPerSecond();
+
+	public abstract long getTimestamp();
+}
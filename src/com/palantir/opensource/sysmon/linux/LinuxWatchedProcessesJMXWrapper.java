@@ -0,0 +1,623 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.management.JMException;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.palantir.opensource.sysmon.Monitor;
+import com.palantir.opensource.sysmon.util.CounterRates;
+import com.palantir.opensource.sysmon.util.InterruptTimerTask;
+import com.palantir.opensource.sysmon.util.JMXUtils;
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+import com.palantir.opensource.sysmon.util.PropertiesUtils;
+
+/**
+ * <p>Monitors the resource use of a few processes named in the config.</p>
+ * <p>
+ * Each watched process is named in {@link #CONFIG_KEY_WATCHED_NAMES} and found either by a
+ * regular expression matched against its command line (<code>&lt;name&gt;.cmdline</code>) or
+ * by a pidfile (<code>&lt;name&gt;.pidfile</code>).  If both are given, the process in the
+ * pidfile must also match the expression, which guards against stale pidfiles.  If several
+ * processes match an expression, the oldest is watched, which for forking servers is usually the
+ * parent.
+ * </p><p>
+ * Processes are found when the monitor starts and again only when a watched process exits;
+ * processes not found are looked for again every <code>resolvePeriodMillis</code>.  Looking for
+ * a process by command line walks <code>/proc</code>, but watching one doesn't: each tick is a
+ * positional read ({@link PositionalFileReader}) of its already open <code>stat</code>,
+ * <code>status</code> and <code>io</code> files, plus a <code>stat(2)</code> of its
+ * <code>fd</code> directory, which on kernels since 6.2 reports the number of open descriptors
+ * (older kernels list the directory instead).  The proportional set size comes from
+ * <code>smaps_rollup</code>, which costs the kernel a walk of the process's page tables, so it is
+ * read less often.
+ * </p><p>
+ * The I/O statistics, descriptors and proportional set size of another user's process can only
+ * be read if the JVM has <code>CAP_SYS_PTRACE</code>; they are 0 otherwise.
+ * This monitor only runs if at least one process is named.
+ * </p>
+ * <h3>JMX Data Path</h3>
+ * Each watched process will be at:<br/>
+ * <code>sysmon.linux.beanpath:type=watched-process,name=&lt;name&gt;</code><br/>
+ * Recent history of their values ({@link LinuxMetricHistory}) will be at:
+ * <code>sysmon.linux.beanpath:type=metric-history,source=watched-processes</code>
+ *
+ * <h3>Configuration parameters</h3>
+ * <em>Note that any value not set in the config file will use the default value.</em>
+ * <table cellspacing=5 cellpadding=5><tr><th>Config Key</th><th>Description</th><th>Default Value</th><th>Constant</th></tr>
+ * <tr><td>sysmon.linux.watched.names</td>
+ * <td>comma-separated names of the processes to watch, made of letters, digits, '.', '_' and '-'</td>
+ * <td><code>""</code></td>
+ * <td>{@link #CONFIG_KEY_WATCHED_NAMES}</td></tr>
+ * <tr><td>sysmon.linux.watched.&lt;name&gt;.cmdline</td>
+ * <td>regular expression found in the command line (arguments separated by spaces) of the
+ * process</td>
+ * <td><em>none</em></td>
+ * <td>{@link #CMDLINE_SUFFIX}</td></tr>
+ * <tr><td>sysmon.linux.watched.&lt;name&gt;.pidfile</td>
+ * <td>file holding the PID of the process</td>
+ * <td><em>none</em></td>
+ * <td>{@link #PIDFILE_SUFFIX}</td></tr>
+ * <tr><td>sysmon.linux.watched.periodMillis</td>
+ * <td>period, in milliseconds, between checks</td>
+ * <td><code>5000</code></td>
+ * <td>{@link #CONFIG_KEY_WATCHED_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.watched.resolvePeriodMillis</td>
+ * <td>period, in milliseconds, between looks for processes that aren't running</td>
+ * <td><code>60000</code></td>
+ * <td>{@link #CONFIG_KEY_WATCHED_RESOLVE_PERIOD}</td></tr>
+ * <tr><td>sysmon.linux.watched.pssPeriodMillis</td>
+ * <td>period, in milliseconds, between reads of the proportional set size; 0 turns them off</td>
+ * <td><code>60000</code></td>
+ * <td>{@link #CONFIG_KEY_WATCHED_PSS_PERIOD}</td></tr>
+ * </tr></table>
+ * @see Monitor Lifecycle documentation
+ */
+public class LinuxWatchedProcessesJMXWrapper extends Thread implements Monitor {
+
+	static final Logger log = LogManager.getLogger(LinuxWatchedProcessesJMXWrapper.class);
+
+	/**
+	 * Prefix used for config options for this class in config files.
+	 * Prefix: {@value}
+	 */
+	static final String CONFIG_KEY_PREFIX = LinuxMonitor.CONFIG_KEY_PREFIX + ".watched";
+	/**
+	 * Comma-separated names of the processes to watch.  Nothing is watched by default.
+	 * Config key: {@value}
+	 * @see #DEFAULT_WATCHED_NAMES default value
+	 */
+	public static final String CONFIG_KEY_WATCHED_NAMES = CONFIG_KEY_PREFIX + ".names";
+	/**
+	 * Configuration parameter that controls the time between checks for this monitor.
+	 * Config key: {@value}
+	 * @see #DEFAULT_WATCHED_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_WATCHED_PERIOD = CONFIG_KEY_PREFIX + ".periodMillis";
+	/**
+	 * Time between looks for watched processes that aren't running.
+	 * Config key: {@value}
+	 * @see #DEFAULT_WATCHED_RESOLVE_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_WATCHED_RESOLVE_PERIOD = CONFIG_KEY_PREFIX + ".resolvePeriodMillis";
+	/**
+	 * Time between reads of the proportional set size.  0 turns them off.
+	 * Config key: {@value}
+	 * @see #DEFAULT_WATCHED_PSS_PERIOD default value
+	 */
+	public static final String CONFIG_KEY_WATCHED_PSS_PERIOD = CONFIG_KEY_PREFIX + ".pssPeriodMillis";
+	/**
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_WATCHED_NAMES for config key to override default value.
+	 */
+	public static final String DEFAULT_WATCHED_NAMES = "";
+	/**
+	 * Default value for how often to update values, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_WATCHED_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_WATCHED_PERIOD = 5000;
+	/**
+	 * Default time between looks for processes that aren't running, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_WATCHED_RESOLVE_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_WATCHED_RESOLVE_PERIOD = 60000;
+	/**
+	 * Default time between reads of the proportional set size, in milliseconds.
+	 * Default: {@value}
+	 * @see #CONFIG_KEY_WATCHED_PSS_PERIOD for config key to override default value.
+	 */
+	public static final long DEFAULT_WATCHED_PSS_PERIOD = 60000;
+
+	/**
+	 * Appended to {@link #CONFIG_KEY_PREFIX} and a process's name to give the key of the regular
+	 * expression its command line must match.
+	 * Suffix: {@value}
+	 */
+	public static final String CMDLINE_SUFFIX = ".cmdline";
+	/**
+	 * Appended to {@link #CONFIG_KEY_PREFIX} and a process's name to give the key of its pidfile.
+	 * Suffix: {@value}
+	 */
+	public static final String PIDFILE_SUFFIX = ".pidfile";
+
+	public static final String OBJECT_NAME_PREFIX = ":type=watched-process,name=";
+
+	static final File DATA_PATH = new File("/proc");
+
+	static final Pattern NAME_PATTERN = Pattern.compile("[\\w.-]+");
+
+	/**
+	 * How long to sleep between checks.
+	 */
+	final long period;
+	final long resolvePeriodNanos;
+	final long pssPeriodNanos;
+	final File dataPath;
+	/**
+	 * Whether the size of a <code>/proc/&lt;pid&gt;/fd</code> directory is its number of entries,
+	 * which is only so in procfs (and, before 6.2, not even there: it is 0).
+	 */
+	final boolean fdCountFromSize;
+	final LinuxMetricHistory history;
+	final List<Watch> watches = new ArrayList<Watch>();
+	final ProcessStatLine statLine = new ProcessStatLine();
+	final byte[] scratch = new byte[32768];
+	long lastResolveNanos = 0;
+	volatile boolean shutdown = false;
+
+	/**
+	 * Constructs a new monitor.  Checks config and throws errors if there are problems.
+	 * Does not start the background thread.
+	 * @param config
+	 * @throws LinuxMonitoringException
+	 */
+	public LinuxWatchedProcessesJMXWrapper(Properties config) throws LinuxMonitoringException {
+		this(config, DATA_PATH, true);
+	}
+
+	/**
+	 * @param fdCountFromSize whether <code>dataPath</code> is procfs, whose <code>fd</code>
+	 * directories report their number of entries as their size.
+	 */
+	LinuxWatchedProcessesJMXWrapper(Properties config, File dataPath, boolean fdCountFromSize)
+		throws LinuxMonitoringException {
+		super(LinuxWatchedProcessesJMXWrapper.class.getSimpleName());
+		this.setDaemon(true);
+		if(config == null) {
+			config = new Properties();
+		}
+
+		final String beanPath = config.getProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH,
+		                                           LinuxMonitor.DEFAULT_JMX_BEAN_PATH);
+		String key = CONFIG_KEY_WATCHED_PERIOD;
+		try {
+			this.period = PropertiesUtils.extractLong(config, key, DEFAULT_WATCHED_PERIOD);
+			key = CONFIG_KEY_WATCHED_RESOLVE_PERIOD;
+			this.resolvePeriodNanos = PropertiesUtils.extractLong(config, key,
+			                                                      DEFAULT_WATCHED_RESOLVE_PERIOD) * 1000000L;
+			key = CONFIG_KEY_WATCHED_PSS_PERIOD;
+			this.pssPeriodNanos = PropertiesUtils.extractLong(config, key,
+			                                                  DEFAULT_WATCHED_PSS_PERIOD) * 1000000L;
+		} catch (NumberFormatException e) {
+			throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+		}
+		this.history = new LinuxMetricHistory(config, "watched-processes");
+		this.dataPath = dataPath;
+		this.fdCountFromSize = fdCountFromSize;
+
+		for(String name : config.getProperty(CONFIG_KEY_WATCHED_NAMES, DEFAULT_WATCHED_NAMES).split(",")) {
+			name = name.trim();
+			if(name.length() == 0) {
+				continue;
+			}
+			if(!NAME_PATTERN.matcher(name).matches()) {
+				throw new LinuxMonitoringException("Invalid config parameter for " +
+				                                   CONFIG_KEY_WATCHED_NAMES + ": " + name);
+			}
+			Pattern cmdline = null;
+			key = CONFIG_KEY_PREFIX + "." + name + CMDLINE_SUFFIX;
+			final String regex = config.getProperty(key);
+			if(regex != null) {
+				try {
+					cmdline = Pattern.compile(regex);
+				} catch (PatternSyntaxException e) {
+					throw new LinuxMonitoringException("Invalid config parameter for " + key, e);
+				}
+			}
+			final String pidfile = config.getProperty(CONFIG_KEY_PREFIX + "." + name + PIDFILE_SUFFIX);
+			if(cmdline == null && pidfile == null) {
+				throw new LinuxMonitoringException("Neither " + key + " nor " + CONFIG_KEY_PREFIX +
+				                                   "." + name + PIDFILE_SUFFIX + " is set");
+			}
+			watches.add(new Watch(new LinuxWatchedProcess(beanPath + OBJECT_NAME_PREFIX + name, name),
+			                      cmdline, pidfile == null ? null : new File(pidfile)));
+		}
+		if(watches.isEmpty()) {
+			throw new LinuxMonitoringException("No processes to watch in " + CONFIG_KEY_WATCHED_NAMES);
+		}
+
+		// check to make sure it will all work
+		if(!new File(dataPath, "self/stat").canRead()) {
+			throw new LinuxMonitoringException("No such path: " + dataPath.getAbsolutePath() +
+							"/self/stat. Can't read process statistics. (Is /proc mounted?)");
+		}
+
+		// tick once
+		InterruptTimerTask timer = InterruptTimerTask.setInterruptTimer(10000L);
+		String objectName = null;
+		try {
+			readData();
+			for(Watch watch : watches) {
+				if(watch.pid == 0) {
+					log.info("No process found for " + watch.bean.name + "; looking again every " +
+					         resolvePeriodNanos / 1000000L + "ms");
+				}
+				objectName = watch.bean.objectName;
+				JMXUtils.registerMBean(watch.bean, objectName);
+			}
+		} catch (JMException e) {
+			cleanup();
+			throw new LinuxMonitoringException("Error while registering bean to path " +
+			                                   objectName, e);
+		}
+		finally {
+			timer.cancel();
+		}
+		history.register();
+	}
+
+	/**
+	 * Starts the background thread that does the work of this monitor.
+	 */
+	public void startMonitoring() {
+		start();
+	}
+
+	/**
+	 * Shuts down the background thread that does the work of this monitor.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * background thread to exit.
+	 */
+	public void stopMonitoring() throws InterruptedException {
+		shutdown = true;
+		this.join(this.period * 4);
+		if(this.isAlive()){
+			log.error(this.getName() + " did not die after four periods.");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			do {
+				readData();
+				Thread.sleep(this.period);
+			} while(!shutdown);
+		} catch (Exception e) {
+			log.error("Shutting down watched process monitoring due to error.",e);
+		} finally {
+			close();
+		}
+	}
+
+	void close() {
+		for(Watch watch : watches) {
+			watch.close();
+		}
+	}
+
+	void readData() {
+		boolean exited = false;
+		boolean missing = false;
+		for(Watch watch : watches) {
+			if(watch.pid != 0 && !watch.read()) {
+				log.info("Watched process " + watch.bean.name + " (" + watch.pid + ") exited");
+				watch.close();
+				watch.bean.stopped();
+				exited = true;
+			}
+			missing |= watch.pid == 0;
+		}
+		final long now = System.nanoTime();
+		if(exited || (missing && (lastResolveNanos == 0 || now - lastResolveNanos >= resolvePeriodNanos))) {
+			resolve();
+			lastResolveNanos = now;
+		}
+		for(Watch watch : watches) {
+			history.record(watch.bean.objectName, watch.bean);
+		}
+	}
+
+	/**
+	 * Looks for the watched processes that aren't running: from their pidfiles if they have
+	 * them, otherwise in one walk of <code>/proc</code> for all of them.
+	 */
+	void resolve() {
+		final List<Watch> byCmdline = new ArrayList<Watch>();
+		for(Watch watch : watches) {
+			if(watch.pid != 0) {
+				continue;
+			}
+			if(watch.pidfile == null) {
+				byCmdline.add(watch);
+				continue;
+			}
+			final int pid;
+			try {
+				pid = (int)PositionalFileReader.parseLong(scratch, 0,
+				                                          PositionalFileReader.readOnce(watch.pidfile, scratch));
+			} catch (IOException e) {
+				continue;
+			} catch (NumberFormatException e) {
+				log.warn("No PID in " + watch.pidfile.getAbsolutePath() + " for " + watch.bean.name);
+				continue;
+			}
+			final String commandLine = readCommandLine(pid);
+			if(commandLine != null && (watch.cmdline == null || watch.cmdline.matcher(commandLine).find())) {
+				watch.start(pid, commandLine);
+			}
+		}
+		if(byCmdline.isEmpty()) {
+			return;
+		}
+		final String[] names = dataPath.list();
+		if(names == null) {
+			return;
+		}
+		final int[] pids = new int[byCmdline.size()];
+		final long[] startTimes = new long[byCmdline.size()];
+		final String[] commandLines = new String[byCmdline.size()];
+		for(String name : names) {
+			if(name.length() == 0 || name.charAt(0) < '0' || name.charAt(0) > '9') {
+				continue;
+			}
+			final int pid;
+			try {
+				pid = Integer.parseInt(name);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			final String commandLine = readCommandLine(pid);
+			if(commandLine == null || commandLine.length() == 0) {
+				// exited, or a kernel thread
+				continue;
+			}
+			for(int i = 0; i < pids.length; i++) {
+				if(!byCmdline.get(i).cmdline.matcher(commandLine).find()) {
+					continue;
+				}
+				final long startTime = readStartTime(pid);
+				if(startTime >= 0 && (pids[i] == 0 || startTime < startTimes[i])) {
+					pids[i] = pid;
+					startTimes[i] = startTime;
+					commandLines[i] = commandLine;
+				}
+			}
+		}
+		for(int i = 0; i < pids.length; i++) {
+			if(pids[i] != 0) {
+				byCmdline.get(i).start(pids[i], commandLines[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return the command line with arguments separated by spaces, or null if the process
+	 * exited.
+	 */
+	private String readCommandLine(int pid) {
+		try {
+			final int length = PositionalFileReader.readOnce(new File(dataPath, pid + "/cmdline"), scratch);
+			for(int i = 0; i < length; i++) {
+				if(scratch[i] == 0) {
+					scratch[i] = ' ';
+				}
+			}
+			return new String(scratch, 0, length, "UTF-8").trim();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the start time of the process, or -1 if it exited.
+	 */
+	private long readStartTime(int pid) {
+		try {
+			final int length = PositionalFileReader.readOnce(new File(dataPath, pid + "/stat"), scratch);
+			return statLine.parse(scratch, length) ? statLine.get(ProcessStatLine.STARTTIME) : -1;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	public void cleanup() {
+		this.shutdown = true;
+		close();
+	}
+
+	/**
+	 * One watched process: how to find it, and its open files and last reading once found.
+	 */
+	final class Watch {
+		final LinuxWatchedProcess bean;
+		final Pattern cmdline;
+		final File pidfile;
+		final KeyValueTable status = new KeyValueTable();
+		final KeyValueTable io = new KeyValueTable();
+		final KeyValueTable rollup = new KeyValueTable();
+		boolean started = false;
+		int pid = 0;
+		long startTime = 0;
+		File fdPath;
+		PositionalFileReader statReader;
+		PositionalFileReader statusReader;
+		PositionalFileReader ioReader;
+		PositionalFileReader rollupReader;
+		long cpuTicks = 0;
+		long voluntary = 0;
+		long involuntary = 0;
+		long readBytes = 0;
+		long writeBytes = 0;
+		long readNanos = 0;
+		long pssNanos = 0;
+
+		Watch(LinuxWatchedProcess bean, Pattern cmdline, File pidfile) {
+			this.bean = bean;
+			this.cmdline = cmdline;
+			this.pidfile = pidfile;
+		}
+
+		/**
+		 * Opens the process's files and takes a first reading.
+		 */
+		void start(int pid, String commandLine) {
+			final File dir = new File(dataPath, Integer.toString(pid));
+			try {
+				statReader = new PositionalFileReader(new File(dir, "stat"), 512);
+				statusReader = new PositionalFileReader(new File(dir, "status"), 2048);
+			} catch (IOException e) {
+				// exited already
+				close();
+				return;
+			}
+			ioReader = PositionalFileReader.openIfReadable(new File(dir, "io"), 256);
+			if(pssPeriodNanos > 0) {
+				rollupReader = PositionalFileReader.openIfReadable(new File(dir, "smaps_rollup"), 1024);
+			}
+			fdPath = new File(dir, "fd");
+			this.pid = pid;
+			startTime = -1;
+			readNanos = 0;
+			pssNanos = 0;
+			if(!read()) {
+				close();
+				return;
+			}
+			log.info("Watching process " + pid + " as " + bean.name);
+			bean.started(pid, commandLine, started);
+			started = true;
+		}
+
+		/**
+		 * @return false if the process exited.
+		 */
+		boolean read() {
+			final long residentInKB;
+			final int threads;
+			final long cpuTicks;
+			final long voluntary;
+			final long involuntary;
+			try {
+				final int length = statReader.read();
+				if(!statLine.parse(statReader.getBuffer(), length)) {
+					return false;
+				}
+				if(startTime != -1 && statLine.get(ProcessStatLine.STARTTIME) != startTime) {
+					// the PID was reused
+					return false;
+				}
+				startTime = statLine.get(ProcessStatLine.STARTTIME);
+				cpuTicks = statLine.getCpuTicks();
+				residentInKB = statLine.getResidentInKB();
+				threads = (int)statLine.get(ProcessStatLine.NUM_THREADS);
+				final int statusLength = statusReader.read();
+				status.parse(statusReader.getBuffer(), statusLength);
+				voluntary = status.get("voluntary_ctxt_switches", 0);
+				involuntary = status.get("nonvoluntary_ctxt_switches", 0);
+			} catch (IOException e) {
+				return false;
+			}
+			long readBytes = 0;
+			long writeBytes = 0;
+			if(ioReader != null) {
+				try {
+					final int length = ioReader.read();
+					io.parse(ioReader.getBuffer(), length);
+					readBytes = io.get("read_bytes", 0);
+					writeBytes = io.get("write_bytes", 0);
+				} catch (IOException e) {
+					// exited; the stat read next tick will tell
+				}
+			}
+			final long now = System.nanoTime();
+			bean.update(residentInKB, threads, countFileDescriptors());
+			if(readNanos != 0 && now > readNanos) {
+				final double seconds = (now - readNanos) / 1e9;
+				bean.updateRates(CounterRates.delta(this.cpuTicks, cpuTicks, 64) * 100.0 /
+				                 ProcessStatLine.CLOCK_TICKS_PER_SECOND / seconds,
+				                 CounterRates.delta(this.voluntary, voluntary, CounterRates.LONG_BITS) / seconds,
+				                 CounterRates.delta(this.involuntary, involuntary, CounterRates.LONG_BITS) / seconds,
+				                 CounterRates.delta(this.readBytes, readBytes, 64) / seconds,
+				                 CounterRates.delta(this.writeBytes, writeBytes, 64) / seconds);
+			}
+			if(rollupReader != null && (pssNanos == 0 || now - pssNanos >= pssPeriodNanos)) {
+				try {
+					final int length = rollupReader.read();
+					rollup.parse(rollupReader.getBuffer(), length);
+					bean.updateProportional(rollup.get("Pss", 0));
+				} catch (IOException e) {
+					// exited; the stat read next tick will tell
+				}
+				pssNanos = now;
+			}
+			this.cpuTicks = cpuTicks;
+			this.voluntary = voluntary;
+			this.involuntary = involuntary;
+			this.readBytes = readBytes;
+			this.writeBytes = writeBytes;
+			readNanos = now;
+			return true;
+		}
+
+		private int countFileDescriptors() {
+			if(fdCountFromSize) {
+				final long size = fdPath.length();
+				if(size > 0) {
+					return (int)size;
+				}
+			}
+			final String[] fds = fdPath.list();
+			return fds == null ? 0 : fds.length;
+		}
+
+		void close() {
+			pid = 0;
+			for(PositionalFileReader reader : new PositionalFileReader[] { statReader, statusReader,
+			                                                              ioReader, rollupReader }) {
+				if(reader != null) {
+					reader.close();
+				}
+			}
+			statReader = null;
+			statusReader = null;
+			ioReader = null;
+			rollupReader = null;
+		}
+	}
+}
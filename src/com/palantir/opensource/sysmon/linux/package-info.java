@@ -23,6 +23,8 @@
  * <p>
  * Currently, the following specific monitors are implemented:
  * <ul>
+ * <li><strong>CPU topology</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxCpuTopologyJMXWrapper}) -
+ * CPU utilization per physical core and per socket, and how many cores have every hyperthread busy.</li>
  * <li><strong>Diskspace</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxDiskspaceJMXWrapper})
  * - how full the different block storage devices in the system are.</li>
  * <li><strong>Entropy Pool</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxEntropyLevelJMXWrapper})
@@ -32,14 +34,66 @@
  * <a href='http://linux.die.net/man/1/iostat'>iostat</a>.</li>
  * <li><strong>Load Average</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxLoadAverageJMXWrapper}) -
  * the one, ten, and fifteen minuted load averages.</li>
+ * <li><strong>Memory</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxMemInfoJMXWrapper}) -
+ * every value in <code>/proc/meminfo</code>, with available memory and commit ratio percentages.</li>
  * <li><strong>Network statistics</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxNetStatJMXWrapper}) -
  * measurements of network traffic.</li>
+ * <li><strong>NUMA</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxNumaJMXWrapper}) -
+ * memory, local and remote allocation rates, and this JVM's residency on each NUMA node.</li>
+ * <li><strong>Scheduler statistics</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxSchedStatJMXWrapper}) -
+ * how long runnable tasks wait for a CPU, per CPU and for each of the monitored process's threads.</li>
+ * <li><strong>Self process</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxSelfProcessJMXWrapper}) -
+ * this JVM's native memory next to its committed heap, page faults, context switches, file
+ * descriptors against their limit, disk I/O and share of the host's CPU.</li>
+ * <li><strong>Mount I/O</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxMountIOJMXWrapper}) -
+ * disk throughput, latency and utilization of each mounted filesystem, with the device-mapper
+ * and physical devices behind it.</li>
+ * <li><strong>NFS</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxNfsJMXWrapper}) -
+ * rates, round-trip and execute times of each NFS mount's operations, with its retransmits and
+ * transport backlog.</li>
+ * <li><strong>Softnet statistics</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxSoftnetJMXWrapper}) -
+ * per-CPU packet processing, backlog drops and time squeezes.</li>
+ * <li><strong>Interrupts</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxInterruptsJMXWrapper}) -
+ * interrupt and softirq rates per CPU, per line and per device, and how evenly they are spread.</li>
  * <li><strong>Linux VM statistics</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxVMStatJMXWrapper})-
  * performance measurements of the Linux virtual machine (not the Java VM), as provided by
  * <a href='http://linux.die.net/man/8/vmstat'>vmstat</a>.</li>
+ * <li><strong>VM events</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxVMEventsJMXWrapper}) -
+ * rates of page faults, swapping, direct reclaim, allocation stalls, compaction and OOM kills
+ * from <code>/proc/vmstat</code>.</li>
  * </ul>
  * </p>
  * <p>
+ * The following monitors are off unless turned on in the config, as each reads a good deal more
+ * than the monitors above:
+ * <ul>
+ * <li><strong>Detailed network statistics</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxSysfsNetJMXWrapper}) -
+ * every sysfs counter of each network interface, per-queue limits, link speed and utilization.</li>
+ * <li><strong>CPU frequency and idle states</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxCpuFrequencyJMXWrapper}) -
+ * current frequency, thermal throttling and idle state residency of each CPU.</li>
+ * <li><strong>Top processes</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxTopProcessesJMXWrapper}) -
+ * the processes on the host using the most CPU, memory, major faults and disk I/O.</li>
+ * <li><strong>Hot threads</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxHotThreadsJMXWrapper}) -
+ * the threads of this JVM using the most CPU and disk I/O, by Java thread name.</li>
+ * <li><strong>Task states</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxTaskStatesJMXWrapper}) -
+ * the host's tasks by scheduler state, and what tasks stuck in uninterruptible sleep wait on.</li>
+ * <li><strong>Watched processes</strong> ({@link com.palantir.opensource.sysmon.linux.LinuxWatchedProcessesJMXWrapper}) -
+ * CPU, memory, threads, file descriptors, context switches and disk I/O of processes named in the
+ * config, found by command line or pidfile.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Optionally, the values of all of the above can also be exported to a memory-mapped file for
+ * non-JVM readers ({@link com.palantir.opensource.sysmon.linux.LinuxMappedFileExporter}).
+ * </p>
+ * <p>
+ * Each of the above monitors also retains a compressed, in-memory history of its values, along
+ * with min/max/average rollups at coarser resolutions
+ * ({@link com.palantir.opensource.sysmon.linux.LinuxMetricHistory}).  The I/O and network
+ * monitors additionally publish percentile histograms of latency, utilization and throughput
+ * ({@link com.palantir.opensource.sysmon.linux.LinuxHistogram}).
+ * </p>
+ * <p>
  * See individual monitor documentation for details on configuration,
  * {@link com.palantir.opensource.sysmon.SysmonDaemon} for examples and usage.
  * </p>
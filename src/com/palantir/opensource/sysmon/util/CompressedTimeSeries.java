@@ -0,0 +1,389 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * An in-memory, append-only series of (timestamp, value) samples, compressed with the scheme
+ * described in the Facebook Gorilla paper: timestamps are stored as delta-of-deltas and values
+ * as the XOR of their IEEE 754 bits with the previous value.  Regularly sampled, slowly changing
+ * metrics typically cost one to two bytes per sample instead of sixteen.
+ * </p><p>
+ * Samples are packed into fixed-size <code>long[]</code> blocks.  Each block starts with an
+ * uncompressed sample, so whole blocks can be dropped once they fall out of the retention
+ * window and range scans can skip blocks that do not overlap the requested range.
+ * </p><p>
+ * Timestamps must be non-decreasing; out-of-order samples are rejected.  Instances are thread
+ * safe.
+ * </p>
+ *
+ * @see <a href='http://www.vldb.org/pvldb/vol8/p1816-teller.pdf'>Gorilla: A Fast, Scalable,
+ * In-Memory Time Series Database</a>
+ */
+public final class CompressedTimeSeries {
+
+	/**
+	 * Callback for {@link CompressedTimeSeries#scan(long, long, SampleVisitor)}.
+	 */
+	public interface SampleVisitor {
+		public void visit(long timestamp, double value);
+	}
+
+	/**
+	 * Magic number at the start of blobs produced by {@link #export(long, long)}: 'SYTS'.
+	 */
+	public static final int EXPORT_MAGIC = 0x53595453;
+	public static final byte EXPORT_VERSION = 1;
+
+	/**
+	 * Words per block.  1KB blocks hold several hundred typical samples.
+	 */
+	static final int BLOCK_WORDS = 128;
+	/**
+	 * Worst case size of one encoded sample: 4 + 64 bits of timestamp, 1 + 1 + 5 + 6 + 64 of value.
+	 */
+	static final int MAX_SAMPLE_BITS = 145;
+
+	private final long retentionMillis;
+	private final List<Block> blocks = new ArrayList<Block>();
+	private Block current = null;
+	private int sampleCount = 0;
+
+	/**
+	 * @param retentionMillis how long samples are kept.  Blocks are dropped whole, so up to one
+	 * block's worth of older samples may be retained as well.
+	 */
+	public CompressedTimeSeries(long retentionMillis) {
+		this.retentionMillis = retentionMillis;
+	}
+
+	/**
+	 * Adds a sample to the end of the series.
+	 * @return false if the sample was rejected because it is older than the newest sample.
+	 */
+	public synchronized boolean append(long timestamp, double value) {
+		if(current != null && timestamp < current.lastTimestamp) {
+			return false;
+		}
+		if(current == null || !current.hasRoomForSample()) {
+			current = new Block(BLOCK_WORDS, false);
+			blocks.add(current);
+		}
+		current.append(timestamp, value);
+		sampleCount++;
+		evict(timestamp - retentionMillis);
+		return true;
+	}
+
+	private void evict(long oldest) {
+		int expired = 0;
+		// never drop the block being written to
+		while(expired < blocks.size() - 1 && blocks.get(expired).lastTimestamp < oldest) {
+			sampleCount -= blocks.get(expired).count;
+			expired++;
+		}
+		if(expired > 0) {
+			blocks.subList(0, expired).clear();
+		}
+	}
+
+	/**
+	 * Calls the visitor for each sample with <code>start &lt;= timestamp &lt;= end</code>, in order.
+	 */
+	public synchronized void scan(long start, long end, SampleVisitor visitor) {
+		for(Block block : blocks) {
+			if(block.lastTimestamp < start) {
+				continue;
+			}
+			if(block.firstTimestamp > end) {
+				break;
+			}
+			block.decode(start, end, visitor);
+		}
+	}
+
+	/**
+	 * Re-encodes the samples within <code>[start, end]</code> as a single compressed stream.
+	 * The blob is a big-endian header (int magic {@link #EXPORT_MAGIC}, byte version, int sample
+	 * count, int bit length) followed by the encoded words.
+	 * @see #decode(byte[], SampleVisitor)
+	 */
+	public byte[] export(long start, long end) {
+		final Block out = new Block(BLOCK_WORDS, true);
+		scan(start, end, new SampleVisitor() {
+			public void visit(long timestamp, double value) {
+				out.append(timestamp, value);
+			}
+		});
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(17 + out.bitCount / 8 + 8);
+			DataOutputStream data = new DataOutputStream(bytes);
+			data.writeInt(EXPORT_MAGIC);
+			data.writeByte(EXPORT_VERSION);
+			data.writeInt(out.count);
+			data.writeInt(out.bitCount);
+			final int words = (out.bitCount + 63) >>> 6;
+			for(int i = 0; i < words; i++) {
+				data.writeLong(out.words[i]);
+			}
+			data.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("I/O error writing to memory", e);
+		}
+	}
+
+	/**
+	 * Decodes a blob produced by {@link #export(long, long)}.
+	 * @throws IOException if the blob is truncated or not an exported series.
+	 */
+	public static void decode(byte[] blob, SampleVisitor visitor) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(blob));
+		if(data.readInt() != EXPORT_MAGIC) {
+			throw new IOException("Not an exported time series");
+		}
+		final byte version = data.readByte();
+		if(version != EXPORT_VERSION) {
+			throw new IOException("Unsupported export version: " + version);
+		}
+		final int count = data.readInt();
+		final int bitCount = data.readInt();
+		final int words = (bitCount + 63) >>> 6;
+		final Block block = new Block(words, false);
+		// blocks hold at least one word, but an empty export has none
+		for(int i = 0; i < words; i++) {
+			block.words[i] = data.readLong();
+		}
+		block.count = count;
+		block.bitCount = bitCount;
+		block.decode(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+	}
+
+	public synchronized int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * @return approximate memory used by the encoded samples, in bytes.
+	 */
+	public synchronized long getSizeInBytes() {
+		return (long)blocks.size() * (BLOCK_WORDS * 8 + 48);
+	}
+
+	/**
+	 * @return timestamp of the newest sample, or {@link Long#MIN_VALUE} if empty.
+	 */
+	public synchronized long getLastTimestamp() {
+		return current == null ? Long.MIN_VALUE : current.lastTimestamp;
+	}
+
+	/**
+	 * @return timestamp of the oldest retained sample, or {@link Long#MAX_VALUE} if empty.
+	 */
+	public synchronized long getFirstTimestamp() {
+		return blocks.isEmpty() ? Long.MAX_VALUE : blocks.get(0).firstTimestamp;
+	}
+
+	/**
+	 * A run of encoded samples.  The first sample is stored raw; the rest are stored relative to
+	 * their predecessor.
+	 */
+	static final class Block {
+		long[] words;
+		final boolean growable;
+		int bitCount = 0;
+		int count = 0;
+		long firstTimestamp;
+		long lastTimestamp;
+		// encoder state
+		private long lastDelta;
+		private long lastValueBits;
+		private int lastLeading = -1;
+		private int lastTrailing;
+
+		Block(int words, boolean growable) {
+			this.words = new long[Math.max(words, 1)];
+			this.growable = growable;
+		}
+
+		boolean hasRoomForSample() {
+			return bitCount + MAX_SAMPLE_BITS <= words.length * 64;
+		}
+
+		void append(long timestamp, double value) {
+			if(growable && !hasRoomForSample()) {
+				long[] grown = new long[words.length * 2];
+				System.arraycopy(words, 0, grown, 0, words.length);
+				words = grown;
+			}
+			final long valueBits = Double.doubleToRawLongBits(value);
+			if(count == 0) {
+				firstTimestamp = timestamp;
+				write(timestamp, 64);
+				write(valueBits, 64);
+				lastDelta = 0;
+			} else {
+				final long delta = timestamp - lastTimestamp;
+				writeDeltaOfDelta(delta - lastDelta);
+				lastDelta = delta;
+				writeXor(valueBits ^ lastValueBits);
+			}
+			lastTimestamp = timestamp;
+			lastValueBits = valueBits;
+			count++;
+		}
+
+		private void writeDeltaOfDelta(long dod) {
+			if(dod == 0) {
+				write(0, 1);
+			} else if(dod >= -63 && dod <= 64) {
+				write(0x2, 2);
+				write(dod + 63, 7);
+			} else if(dod >= -255 && dod <= 256) {
+				write(0x6, 3);
+				write(dod + 255, 9);
+			} else if(dod >= -2047 && dod <= 2048) {
+				write(0xE, 4);
+				write(dod + 2047, 12);
+			} else {
+				write(0xF, 4);
+				write(dod, 64);
+			}
+		}
+
+		private void writeXor(long xor) {
+			if(xor == 0) {
+				write(0, 1);
+				return;
+			}
+			write(1, 1);
+			final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+			final int trailing = Long.numberOfTrailingZeros(xor);
+			if(lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+				// fits in the previous window of meaningful bits
+				write(0, 1);
+				write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+			} else {
+				final int significant = 64 - leading - trailing;
+				write(1, 1);
+				write(leading, 5);
+				write(significant - 1, 6);
+				write(xor >>> trailing, significant);
+				lastLeading = leading;
+				lastTrailing = trailing;
+			}
+		}
+
+		/**
+		 * Writes the low <code>n</code> bits of <code>value</code>, most significant first.
+		 */
+		private void write(long value, int n) {
+			if(n < 64) {
+				value &= (1L << n) - 1;
+			}
+			final int word = bitCount >>> 6;
+			final int free = 64 - (bitCount & 63);
+			if(n <= free) {
+				words[word] |= value << (free - n);
+			} else {
+				final int spill = n - free;
+				words[word] |= value >>> spill;
+				words[word + 1] |= value << (64 - spill);
+			}
+			bitCount += n;
+		}
+
+		void decode(long start, long end, SampleVisitor visitor) {
+			final Reader in = new Reader(words);
+			long timestamp = 0;
+			long delta = 0;
+			long valueBits = 0;
+			int leading = 0;
+			int trailing = 0;
+			for(int i = 0; i < count; i++) {
+				if(i == 0) {
+					timestamp = in.read(64);
+					valueBits = in.read(64);
+				} else {
+					delta += in.readDeltaOfDelta();
+					timestamp += delta;
+					if(in.read(1) != 0) {
+						if(in.read(1) != 0) {
+							leading = (int)in.read(5);
+							final int significant = (int)in.read(6) + 1;
+							trailing = 64 - leading - significant;
+						}
+						valueBits ^= in.read(64 - leading - trailing) << trailing;
+					}
+				}
+				if(timestamp > end) {
+					return;
+				}
+				if(timestamp >= start) {
+					visitor.visit(timestamp, Double.longBitsToDouble(valueBits));
+				}
+			}
+		}
+	}
+
+	private static final class Reader {
+		final long[] words;
+		int position = 0;
+
+		Reader(long[] words) {
+			this.words = words;
+		}
+
+		long read(int n) {
+			final int word = position >>> 6;
+			final int available = 64 - (position & 63);
+			long result;
+			if(n <= available) {
+				result = words[word] >>> (available - n);
+			} else {
+				final int spill = n - available;
+				result = (words[word] << spill) | (words[word + 1] >>> (64 - spill));
+			}
+			if(n < 64) {
+				result &= (1L << n) - 1;
+			}
+			position += n;
+			return result;
+		}
+
+		long readDeltaOfDelta() {
+			if(read(1) == 0) {
+				return 0;
+			}
+			if(read(1) == 0) {
+				return read(7) - 63;
+			}
+			if(read(1) == 0) {
+				return read(9) - 255;
+			}
+			if(read(1) == 0) {
+				return read(12) - 2047;
+			}
+			return read(64);
+		}
+	}
+}
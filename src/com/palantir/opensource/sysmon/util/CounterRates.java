@@ -0,0 +1,212 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+/**
+ * <p>
+ * Per-second rates of a fixed set of monotonic counters over several sliding windows at once
+ * (for example the last 1, 10 and 60 seconds), all derived from a single stream of samples.
+ * </p><p>
+ * Each sample is reduced to per-counter deltas, which are accumulated into running totals.  The
+ * totals are kept in a ring at the resolution of the shortest window: samples closer together
+ * than that replace the newest entry rather than adding one, so memory is bounded by the ratio of
+ * the longest window to the shortest however often samples are taken.  The rate over a window is
+ * the difference between the newest totals and those of the newest entry at least a window old,
+ * divided by the time between them.
+ * </p><p>
+ * Counters that go backwards are handled by {@link #delta(long, long, int)}, which needs to know
+ * how wide each counter is in the kernel: a 32-bit counter that goes backwards may have wrapped,
+ * while a 64-bit one has been reset.  Timestamps should come from {@link System#nanoTime()}.
+ * Instances are thread safe.
+ * </p>
+ */
+public final class CounterRates {
+
+	private static final long WRAP_32 = 1L << 32;
+
+	/**
+	 * Width in bits of the kernel's <code>unsigned long</code>, which many counters are kept in.
+	 * Taken from the JVM's own data model, which matches the kernel's on all but 32-bit JVMs on
+	 * 64-bit kernels.
+	 */
+	public static final int LONG_BITS =
+		"32".equals(System.getProperty("sun.arch.data.model")) ? 32 : 64;
+
+	private final int[] counterBits;
+	private final long[] windowNanos;
+	private final long resolutionNanos;
+	private final long[] times;
+	private final long[][] totals;
+	private final long[] lastRaw;
+	private final long[] runningTotals;
+	/**
+	 * Next slot to write.
+	 */
+	private int head = 0;
+	private int size = 0;
+
+	/**
+	 * @param counterBits width in bits of each counter tracked, 32 or 64.
+	 * @param windowNanos lengths of the windows rates are reported over, in nanoseconds.
+	 */
+	public CounterRates(int[] counterBits, long[] windowNanos) {
+		for(int bits : counterBits) {
+			checkBits(bits);
+		}
+		if(windowNanos.length == 0) {
+			throw new IllegalArgumentException("Need at least one window");
+		}
+		long shortest = Long.MAX_VALUE;
+		long longest = 0;
+		for(long window : windowNanos) {
+			if(window <= 0) {
+				throw new IllegalArgumentException("Windows must be positive: " + window);
+			}
+			shortest = Math.min(shortest, window);
+			longest = Math.max(longest, window);
+		}
+		final int counters = counterBits.length;
+		this.counterBits = counterBits.clone();
+		this.windowNanos = windowNanos.clone();
+		this.resolutionNanos = shortest;
+		final int capacity = (int)Math.min(longest / shortest + 2, Integer.MAX_VALUE);
+		this.times = new long[capacity];
+		this.totals = new long[capacity][counters];
+		this.lastRaw = new long[counters];
+		this.runningTotals = new long[counters];
+	}
+
+	private static void checkBits(int bits) {
+		if(bits != 32 && bits != 64) {
+			throw new IllegalArgumentException("Counters are 32 or 64 bits wide, not " + bits);
+		}
+	}
+
+	/**
+	 * How much a counter advanced between two readings.  If it went backwards, a 32-bit counter
+	 * is taken to have wrapped if that makes the step less than half its range, and a 64-bit
+	 * counter only if the previous reading was in the top half of its range, which no counter
+	 * gets to by counting; otherwise the counter is taken to have been reset to zero in between,
+	 * so the current reading is all new.  Readings are treated as unsigned.
+	 * @param bits width of the counter in the kernel, 32 or 64; see {@link #LONG_BITS}.
+	 */
+	public static long delta(long previous, long current, int bits) {
+		checkBits(bits);
+		// unsigned comparison
+		if(current + Long.MIN_VALUE >= previous + Long.MIN_VALUE) {
+			return current - previous;
+		}
+		if(bits == 32) {
+			if(previous >= 0 && previous < WRAP_32 && current >= 0) {
+				final long wrapped = current + WRAP_32 - previous;
+				if(wrapped < WRAP_32 / 2) {
+					return wrapped;
+				}
+			}
+		} else if(previous < 0) {
+			// unsigned subtraction; plausible only if it is small
+			final long wrapped = current - previous;
+			if(wrapped >= 0 && wrapped < Long.MAX_VALUE / 2) {
+				return wrapped;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Adds a sample of every counter.  Samples whose timestamp is not after the previous one are
+	 * ignored.  While the newest entry is less than the shortest window after the one before it,
+	 * each sample replaces it.
+	 * @param nanoTime when the counters were read.
+	 * @param values the raw counter readings, in the order the counters were defined.
+	 */
+	public synchronized void update(long nanoTime, long[] values) {
+		if(values.length != runningTotals.length) {
+			throw new IllegalArgumentException("Expected " + runningTotals.length + " values, got " +
+			                                   values.length);
+		}
+		if(size > 0) {
+			if(nanoTime - times[newest()] <= 0) {
+				return;
+			}
+			for(int i = 0; i < values.length; i++) {
+				runningTotals[i] += delta(lastRaw[i], values[i], counterBits[i]);
+			}
+		}
+		System.arraycopy(values, 0, lastRaw, 0, values.length);
+		if(size >= 2 && times[newest()] - times[(head - 2 + times.length) % times.length] < resolutionNanos) {
+			head = newest();
+			size--;
+		}
+		times[head] = nanoTime;
+		System.arraycopy(runningTotals, 0, totals[head], 0, runningTotals.length);
+		head = (head + 1) % times.length;
+		if(size < times.length) {
+			size++;
+		}
+	}
+
+	private int newest() {
+		return (head - 1 + times.length) % times.length;
+	}
+
+	/**
+	 * @param counter index of the counter
+	 * @param window index of the window, as passed to the constructor.
+	 * @return the per-second rate of the counter over the window, or NaN until there are two
+	 * samples.  If less than a full window has been seen, the rate is over what has.
+	 */
+	public synchronized double rate(int counter, int window) {
+		if(size < 2) {
+			return Double.NaN;
+		}
+		final int newest = newest();
+		final long target = times[newest] - windowNanos[window];
+		final int oldest = (head - size + times.length) % times.length;
+		int from = oldest;
+		// walk back from the newest until a sample is at least a window old
+		for(int n = 1; n < size; n++) {
+			final int slot = (newest - n + times.length) % times.length;
+			if(times[slot] - target <= 0) {
+				from = slot;
+				break;
+			}
+		}
+		final long elapsed = times[newest] - times[from];
+		return (totals[newest][counter] - totals[from][counter]) * 1e9 / elapsed;
+	}
+
+	/**
+	 * @return the rates of the counter over each window, in the order the windows were defined.
+	 */
+	public synchronized double[] rates(int counter) {
+		final double[] rates = new double[windowNanos.length];
+		for(int i = 0; i < rates.length; i++) {
+			rates[i] = rate(counter, i);
+		}
+		return rates;
+	}
+
+	/**
+	 * @return the index of the passed window, or -1 if it is not one of those tracked.
+	 */
+	public int indexOfWindow(long nanos) {
+		for(int i = 0; i < windowNanos.length; i++) {
+			if(windowNanos[i] == nanos) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,79 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Parses the time columns of the <code>cpu</code> and <code>cpuN</code> lines of
+ * <code>/proc/stat</code>.
+ * </p><p>
+ * Columns are numbered from zero after the line's name, in <code>USER_HZ</code> ticks (see
+ * {@link ProcessStatLine#CLOCK_TICKS_PER_SECOND}).  Only the columns counted as time are parsed:
+ * guest time is already included in user time.  Older kernels have fewer columns.
+ * </p>
+ */
+public final class CpuStatLine {
+
+	public static final File STAT_PATH = new File("/proc/stat");
+
+	public static final int USER = 0;
+	public static final int NICE = 1;
+	public static final int SYSTEM = 2;
+	public static final int IDLE = 3;
+	public static final int IOWAIT = 4;
+	public static final int IRQ = 5;
+	public static final int SOFTIRQ = 6;
+	public static final int STEAL = 7;
+	/**
+	 * Number of columns counted as time: user, nice, system, idle, iowait, irq, softirq and steal.
+	 */
+	public static final int TIME_COLUMNS = 8;
+
+	private CpuStatLine() {
+		// static only
+	}
+
+	/**
+	 * Parses the time columns of a line, without allocating.  Columns the line doesn't have are
+	 * set to zero.
+	 * @param offset index just after the line's name.
+	 * @param end index of the end of the line.
+	 * @param columns receives the columns; at most its length are parsed.
+	 * @return the number of columns the line has, at most the length of <code>columns</code>.
+	 */
+	public static int parseTimes(byte[] buffer, int offset, int end, long[] columns) {
+		int i = offset;
+		int count = 0;
+		while(count < columns.length) {
+			while(i < end && buffer[i] == ' ') {
+				i++;
+			}
+			if(i == end || buffer[i] < '0' || buffer[i] > '9') {
+				break;
+			}
+			long value = 0;
+			while(i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				value = value * 10 + (buffer[i] - '0');
+				i++;
+			}
+			columns[count++] = value;
+		}
+		for(int c = count; c < columns.length; c++) {
+			columns[c] = 0;
+		}
+		return count;
+	}
+}
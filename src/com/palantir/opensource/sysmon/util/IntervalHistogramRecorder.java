@@ -0,0 +1,94 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Records values into a {@link LogLinearHistogram} while letting another thread take the
+ * histogram of everything recorded since its last call, without stopping the recorder.
+ * </p><p>
+ * Two histograms are kept: an active one that {@link #record(long)} writes to and an inactive one.
+ * {@link #getIntervalHistogram(LogLinearHistogram)} swaps them and waits for any in-flight
+ * recording into the old active histogram to finish before handing back its contents.  Recording
+ * never takes a lock or waits; it costs two atomic increments on top of the histogram update.
+ * </p><p>
+ * Any number of threads may read.  Values should be recorded by one thread at a time.
+ * </p>
+ */
+public final class IntervalHistogramRecorder {
+
+	private volatile LogLinearHistogram active;
+	private LogLinearHistogram inactive;
+
+	// writer/reader phaser: the sign of startEpoch says which end counter writers will bump
+	private final AtomicLong startEpoch = new AtomicLong(0);
+	private final AtomicLong evenEndEpoch = new AtomicLong(0);
+	private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * @see LogLinearHistogram#LogLinearHistogram(int, int)
+	 */
+	public IntervalHistogramRecorder(int precisionBits, int maxValueBits) {
+		active = new LogLinearHistogram(precisionBits, maxValueBits);
+		inactive = active.newEmptyCopy();
+	}
+
+	public void record(long value) {
+		final long critical = startEpoch.getAndIncrement();
+		try {
+			active.record(value);
+		} finally {
+			if(critical < 0) {
+				oddEndEpoch.getAndIncrement();
+			} else {
+				evenEndEpoch.getAndIncrement();
+			}
+		}
+	}
+
+	/**
+	 * Returns everything recorded since the previous call and starts a new interval.
+	 * @param target histogram to copy the interval into, or null to allocate a new one.
+	 * @return <code>target</code> or the newly allocated histogram.
+	 */
+	public synchronized LogLinearHistogram getIntervalHistogram(LogLinearHistogram target) {
+		inactive.reset();
+		final LogLinearHistogram completed = active;
+		active = inactive;
+		flipPhase();
+		inactive = completed;
+		if(target == null) {
+			target = completed.newEmptyCopy();
+		}
+		completed.copyInto(target);
+		return target;
+	}
+
+	/**
+	 * Waits until no writer can still be recording into the histogram that was active before the
+	 * swap.  Must be called while holding the lock.
+	 */
+	private void flipPhase() {
+		final boolean nextPhaseIsEven = startEpoch.get() < 0;
+		final long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+		(nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+		final long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+		final AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+		while(previousEndEpoch.get() != startValueAtFlip) {
+			Thread.yield();
+		}
+	}
+}
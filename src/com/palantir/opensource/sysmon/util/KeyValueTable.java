@@ -0,0 +1,183 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Parses files of one named number per line, such as <code>/proc/meminfo</code>
+ * (<code>MemTotal:  6158152 kB</code>) and <code>/proc/vmstat</code> (<code>pgmajfault 42</code>).
+ * The key is everything before the first colon or, on lines without one, the first word.  Units
+ * after the number are ignored, and lines without a number are skipped.
+ * </p><p>
+ * Values are indexed by key rather than by position, so keys that a newer kernel adds or an older
+ * one lacks need no code changes.  Parsing is a single pass over the raw bytes into a reused
+ * <code>long[]</code>; keys only become strings, and the index is only rebuilt, when they differ
+ * from the previous parse.
+ * </p><p>
+ * Instances are not thread safe.
+ * </p>
+ */
+public final class KeyValueTable {
+
+	private String[] keys = new String[0];
+	private long[] values = new long[0];
+	private int size = 0;
+	private Map<String, Integer> index = new HashMap<String, Integer>();
+	private boolean layoutChanged = true;
+
+	/**
+	 * Parses a whole file.
+	 */
+	public void parse(byte[] buffer, int length) {
+		layoutChanged = false;
+		int count = 0;
+		int position = 0;
+		while(position < length) {
+			int lineEnd = position;
+			int colon = -1;
+			while(lineEnd < length && buffer[lineEnd] != '\n') {
+				if(colon < 0 && buffer[lineEnd] == ':') {
+					colon = lineEnd;
+				}
+				lineEnd++;
+			}
+			final int keyStart = skipSpaces(buffer, position, lineEnd);
+			int keyEnd;
+			int i;
+			if(colon >= 0) {
+				keyEnd = colon;
+				while(keyEnd > keyStart && (buffer[keyEnd - 1] == ' ' || buffer[keyEnd - 1] == '\t')) {
+					keyEnd--;
+				}
+				i = colon + 1;
+			} else {
+				keyEnd = keyStart;
+				while(keyEnd < lineEnd && buffer[keyEnd] != ' ' && buffer[keyEnd] != '\t') {
+					keyEnd++;
+				}
+				i = keyEnd;
+			}
+			position = lineEnd + 1;
+			i = skipSpaces(buffer, i, lineEnd);
+			final boolean negative = i < lineEnd && buffer[i] == '-';
+			if(negative) {
+				i++;
+			}
+			if(keyEnd == keyStart || i == lineEnd || buffer[i] < '0' || buffer[i] > '9') {
+				continue;
+			}
+			long value = 0;
+			while(i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9') {
+				value = value * 10 + (buffer[i] - '0');
+				i++;
+			}
+			if(count == keys.length) {
+				final int capacity = Math.max(16, count * 2);
+				final String[] largerKeys = new String[capacity];
+				System.arraycopy(keys, 0, largerKeys, 0, count);
+				keys = largerKeys;
+				final long[] largerValues = new long[capacity];
+				System.arraycopy(values, 0, largerValues, 0, count);
+				values = largerValues;
+			}
+			if(!sameAscii(keys[count], buffer, keyStart, keyEnd)) {
+				keys[count] = new String(buffer, keyStart, keyEnd - keyStart);
+				layoutChanged = true;
+			}
+			values[count] = negative ? -value : value;
+			count++;
+		}
+		if(count != size) {
+			layoutChanged = true;
+			size = count;
+		}
+		if(layoutChanged) {
+			final Map<String, Integer> index = new HashMap<String, Integer>();
+			for(int k = 0; k < size; k++) {
+				index.put(keys[k], k);
+			}
+			this.index = index;
+		}
+	}
+
+	private static int skipSpaces(byte[] buffer, int i, int end) {
+		while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean sameAscii(String s, byte[] buffer, int start, int end) {
+		if(s == null || s.length() != end - start) {
+			return false;
+		}
+		for(int i = start; i < end; i++) {
+			if(s.charAt(i - start) != buffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the keys, or their order, differ from the previous parse.
+	 */
+	public boolean isLayoutChanged() {
+		return layoutChanged;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getKey(int i) {
+		return keys[i];
+	}
+
+	public long getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * @return the position of a key in the last parse, or -1 if it wasn't there.
+	 */
+	public int indexOf(String key) {
+		final Integer i = index.get(key);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * @return the value of a key in the last parse, or <code>defaultValue</code> if it wasn't
+	 * there.
+	 */
+	public long get(String key, long defaultValue) {
+		final Integer i = index.get(key);
+		return i == null ? defaultValue : values[i];
+	}
+
+	/**
+	 * @return a new map of every key to its value, in file order.
+	 */
+	public Map<String, Long> toMap() {
+		final Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < size; i++) {
+			map.put(keys[i], values[i]);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,167 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+/**
+ * <p>
+ * Least-squares linear trend of a value over a sliding time window, such as the last hour of a
+ * filesystem's used space, for forecasting when it will reach a limit.
+ * </p><p>
+ * Samples are kept in a ring and the regression's sums are kept running, so adding a sample and
+ * reading the slope are O(1): each sample is added to the sums when it arrives and subtracted
+ * when it leaves the window.  Times are taken relative to the oldest sample in the window, and the
+ * sums are shifted to match whenever it changes, so precision doesn't decay with uptime; they are
+ * recomputed from the ring once per pass around it to shed accumulated rounding, which keeps the
+ * cost amortized O(1).  Instances are not thread safe.
+ * </p>
+ */
+public final class LinearTrend {
+
+	private final long windowMillis;
+	private final long[] times;
+	private final double[] values;
+	/**
+	 * Oldest sample in the ring.
+	 */
+	private int tail = 0;
+	private int size = 0;
+	private int sinceRecompute = 0;
+
+	/**
+	 * Time, in millis, that the sums' times are relative to: that of the oldest sample.
+	 */
+	private long base = 0;
+	private double sumT = 0;
+	private double sumTT = 0;
+	private double sumY = 0;
+	private double sumTY = 0;
+
+	/**
+	 * @param windowMillis how far back samples are kept.
+	 * @param capacity most samples kept; when full, the oldest is dropped even if it is still in
+	 * the window.
+	 */
+	public LinearTrend(long windowMillis, int capacity) {
+		if(windowMillis <= 0) {
+			throw new IllegalArgumentException("Window must be positive: " + windowMillis);
+		}
+		if(capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		}
+		this.windowMillis = windowMillis;
+		this.times = new long[capacity];
+		this.values = new double[capacity];
+	}
+
+	/**
+	 * Adds a sample, dropping those that have left the window.
+	 * @param timeMillis time of the sample, no earlier than the previous sample's.
+	 */
+	public void add(long timeMillis, double value) {
+		if(size > 0 && timeMillis < times[(tail + size - 1) % times.length]) {
+			throw new IllegalArgumentException("Sample out of order: " + timeMillis);
+		}
+		while(size > 0 && (size == times.length || timeMillis - times[tail] > windowMillis)) {
+			final double t = seconds(times[tail]);
+			final double y = values[tail];
+			sumT -= t;
+			sumTT -= t * t;
+			sumY -= y;
+			sumTY -= t * y;
+			tail = (tail + 1) % times.length;
+			size--;
+		}
+		final int head = (tail + size) % times.length;
+		times[head] = timeMillis;
+		values[head] = value;
+		size++;
+		if(++sinceRecompute >= times.length) {
+			recompute();
+			return;
+		}
+		if(size == 1) {
+			base = timeMillis;
+			sumT = 0;
+			sumTT = 0;
+			sumY = 0;
+			sumTY = 0;
+		} else if(times[tail] != base) {
+			rebase(times[tail]);
+		}
+		final double t = seconds(timeMillis);
+		sumT += t;
+		sumTT += t * t;
+		sumY += value;
+		sumTY += t * value;
+	}
+
+	/**
+	 * Moves the sums' times to be relative to <code>newBase</code>.
+	 */
+	private void rebase(long newBase) {
+		final double d = (newBase - base) / 1000.0;
+		// sum of (t - d)^2 and of (t - d) * y, in terms of the sums over t
+		sumTT = sumTT - 2 * d * sumT + (size - 1) * d * d;
+		sumTY = sumTY - d * sumY;
+		sumT = sumT - (size - 1) * d;
+		base = newBase;
+	}
+
+	/**
+	 * Rebuilds the sums from the samples in the ring.
+	 */
+	private void recompute() {
+		sinceRecompute = 0;
+		base = times[tail];
+		sumT = 0;
+		sumTT = 0;
+		sumY = 0;
+		sumTY = 0;
+		for(int i = 0; i < size; i++) {
+			final int index = (tail + i) % times.length;
+			final double t = seconds(times[index]);
+			sumT += t;
+			sumTT += t * t;
+			sumY += values[index];
+			sumTY += t * values[index];
+		}
+	}
+
+	private double seconds(long timeMillis) {
+		return (timeMillis - base) / 1000.0;
+	}
+
+	public int getSampleCount() {
+		return size;
+	}
+
+	/**
+	 * @return the time, in millis, between the oldest and newest samples kept.
+	 */
+	public long getSpanMillis() {
+		return size == 0 ? 0 : times[(tail + size - 1) % times.length] - times[tail];
+	}
+
+	/**
+	 * @return the slope of the least-squares line through the samples, in units per second, or
+	 * {@link Double#NaN} if fewer than two samples at different times are kept.
+	 */
+	public double getSlope() {
+		final double denominator = size * sumTT - sumT * sumT;
+		if(size < 2 || denominator <= 0) {
+			return Double.NaN;
+		}
+		return (size * sumTY - sumT * sumY) / denominator;
+	}
+}
@@ -0,0 +1,155 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A fixed-memory histogram of non-negative long values with bounded relative error, in the
+ * style of <a href='http://hdrhistogram.org/'>HdrHistogram</a>.
+ * </p><p>
+ * Values are grouped into power-of-two ranges, each of which is split linearly into
+ * <code>2^(precisionBits - 1)</code> buckets, so any recorded value is reported to within
+ * <code>1 / 2^(precisionBits - 1)</code> of itself.  Recording is a couple of shifts and an array
+ * increment.  Values above <code>2^maxValueBits - 1</code> are clamped; negative values are
+ * recorded as zero.
+ * </p><p>
+ * Instances are not thread safe; see {@link IntervalHistogramRecorder} for concurrent recording
+ * and reading.
+ * </p>
+ */
+public final class LogLinearHistogram {
+
+	private final int precisionBits;
+	private final int halfBucketCount;
+	private final long maxValue;
+	private final long[] counts;
+	private long totalCount = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	/**
+	 * @param precisionBits bits of precision kept for each value, between 2 and 16.
+	 * @param maxValueBits largest recordable value is <code>2^maxValueBits - 1</code>, up to 63.
+	 */
+	public LogLinearHistogram(int precisionBits, int maxValueBits) {
+		if(precisionBits < 2 || precisionBits > 16) {
+			throw new IllegalArgumentException("precisionBits must be between 2 and 16: " + precisionBits);
+		}
+		if(maxValueBits < precisionBits || maxValueBits > 63) {
+			throw new IllegalArgumentException("maxValueBits must be between precisionBits and 63: " +
+			                                   maxValueBits);
+		}
+		this.precisionBits = precisionBits;
+		this.halfBucketCount = 1 << (precisionBits - 1);
+		this.maxValue = maxValueBits == 63 ? Long.MAX_VALUE : (1L << maxValueBits) - 1;
+		this.counts = new long[indexOf(maxValue) + 1];
+	}
+
+	private int indexOf(long value) {
+		// the power-of-two range, zero for values that fit in precisionBits
+		final int shift = 64 - Long.numberOfLeadingZeros(value | (halfBucketCount * 2 - 1)) - precisionBits;
+		return shift * halfBucketCount + (int)(value >>> shift);
+	}
+
+	private long highestEquivalentValue(int index) {
+		final int shift = index < 2 * halfBucketCount ? 0 : index / halfBucketCount - 1;
+		final long subBucket = index - (long)shift * halfBucketCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		} else if(value > maxValue) {
+			value = maxValue;
+		}
+		counts[indexOf(value)]++;
+		totalCount++;
+		if(value < min) {
+			min = value;
+		}
+		if(value > max) {
+			max = value;
+		}
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return the largest recorded value (exact), or 0 if empty.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the smallest recorded value (exact), or 0 if empty.
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the largest value equivalent (to within the histogram's precision) to the value at
+	 * the passed percentile, never more than {@link #getMax()}.  0 if empty.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if(totalCount == 0) {
+			return 0;
+		}
+		final double p = Math.min(Math.max(percentile, 0.0), 100.0);
+		final long rank = Math.max(1, (long)Math.ceil(p / 100.0 * totalCount));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return Math.min(highestEquivalentValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * Copies the contents of this histogram into <code>target</code>, which must have the same
+	 * configuration.
+	 */
+	public void copyInto(LogLinearHistogram target) {
+		if(target.counts.length != counts.length || target.precisionBits != precisionBits) {
+			throw new IllegalArgumentException("Histogram configurations do not match");
+		}
+		System.arraycopy(counts, 0, target.counts, 0, counts.length);
+		target.totalCount = totalCount;
+		target.min = min;
+		target.max = max;
+	}
+
+	/**
+	 * @return a new, empty histogram with the same configuration as this one.
+	 */
+	public LogLinearHistogram newEmptyCopy() {
+		return new LogLinearHistogram(precisionBits, 64 - Long.numberOfLeadingZeros(maxValue));
+	}
+}
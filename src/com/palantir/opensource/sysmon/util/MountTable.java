@@ -0,0 +1,362 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * The mounts of this process's mount namespace, from <code>/proc/self/mountinfo</code>, each
+ * resolved to the block device behind it.
+ * </p><p>
+ * A mount only names its device by number (<code>253:3</code>), and tools name the same device
+ * differently: <code>/proc/diskstats</code> and <code>iostat</code> say <code>dm-3</code> where
+ * <code>df</code> says <code>/dev/mapper/vg-data</code>.  Each mount is resolved through
+ * <code>/sys/block</code> to its kernel name, its device-mapper name if it has one, and the whole
+ * disks underneath it, following the <code>slaves</code> directories of device-mapper and md
+ * devices down to partitions and from partitions up to their disks.
+ * </p><p>
+ * {@link #refresh()} re-reads mountinfo, but only parses it and walks <code>/sys/block</code>
+ * again when its contents changed, so calling it every tick costs one read.  Instances are not
+ * thread safe.
+ * </p>
+ */
+public final class MountTable {
+
+	public static final File MOUNTINFO_PATH = new File("/proc/self/mountinfo");
+	public static final File SYS_BLOCK_PATH = new File("/sys/block");
+
+	final PositionalFileReader reader;
+	final File sysBlockPath;
+	private byte[] contents = new byte[0];
+	private List<Mount> mounts = Collections.emptyList();
+	private int changeCount = 0;
+
+	/**
+	 * Opens the mount table.  Call {@link #refresh()} to read it.
+	 * @throws IOException if <code>mountInfoPath</code> can't be opened.
+	 */
+	public MountTable(File mountInfoPath, File sysBlockPath) throws IOException {
+		this.reader = new PositionalFileReader(mountInfoPath, 8192);
+		this.sysBlockPath = sysBlockPath;
+	}
+
+	/**
+	 * Re-reads the mount table.
+	 * @return true if it changed since the last call (and on the first call).
+	 */
+	public boolean refresh() throws IOException {
+		final int length = reader.read();
+		final byte[] buffer = reader.getBuffer();
+		if(changeCount > 0 && unchanged(buffer, length)) {
+			return false;
+		}
+		contents = new byte[length];
+		System.arraycopy(buffer, 0, contents, 0, length);
+		final Map<String, BlockDevice> devices = readBlockDevices();
+		final List<Mount> mounts = new ArrayList<Mount>();
+		for(String line : new String(contents, "UTF-8").split("\n")) {
+			final Mount mount = parse(line, devices);
+			if(mount != null) {
+				mounts.add(mount);
+			}
+		}
+		this.mounts = Collections.unmodifiableList(mounts);
+		changeCount++;
+		return true;
+	}
+
+	private boolean unchanged(byte[] buffer, int length) {
+		if(length != contents.length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(buffer[i] != contents[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the mounts as of the last {@link #refresh()}, in mount order: a mount listed later
+	 * hides one on the same mount point listed earlier.
+	 */
+	public List<Mount> getMounts() {
+		return mounts;
+	}
+
+	/**
+	 * @return the number of times the table was found changed and parsed.
+	 */
+	public int getChangeCount() {
+		return changeCount;
+	}
+
+	public void close() {
+		reader.close();
+	}
+
+	/**
+	 * Parses a mountinfo line:
+	 * <pre>
+	 * 36 35 98:0 /mnt1 /mnt/parent rw,noatime master:1 - ext3 /dev/root rw,errors=continue
+	 * </pre>
+	 * @return the mount, or null if the line isn't one.
+	 */
+	static Mount parse(String line, Map<String, BlockDevice> devices) {
+		final String[] fields = line.trim().split(" ");
+		// the optional fields end with a lone "-"
+		int separator = 6;
+		while(separator < fields.length && !fields[separator].equals("-")) {
+			separator++;
+		}
+		if(fields.length < 5 || separator + 2 >= fields.length) {
+			return null;
+		}
+		final String device = fields[2];
+		final int colon = device.indexOf(':');
+		if(colon < 0) {
+			return null;
+		}
+		final int major;
+		final int minor;
+		try {
+			major = Integer.parseInt(device.substring(0, colon));
+			minor = Integer.parseInt(device.substring(colon + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new Mount(major, minor, unescape(fields[4]), unescape(fields[separator + 1]),
+		                 unescape(fields[separator + 2]), devices.get(device));
+	}
+
+	/**
+	 * Undoes the octal escaping of spaces, tabs, newlines and backslashes in mountinfo.
+	 */
+	public static String unescape(String field) {
+		if(field.indexOf('\\') < 0) {
+			return field;
+		}
+		final StringBuilder sb = new StringBuilder(field.length());
+		for(int i = 0; i < field.length(); i++) {
+			final char c = field.charAt(i);
+			if(c == '\\' && isOctal(field, i + 1, i + 4)) {
+				sb.append((char)Integer.parseInt(field.substring(i + 1, i + 4), 8));
+				i += 3;
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isOctal(String s, int start, int end) {
+		if(end > s.length()) {
+			return false;
+		}
+		for(int i = start; i < end; i++) {
+			if(s.charAt(i) < '0' || s.charAt(i) > '7') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Walks <code>/sys/block</code>: every disk, device-mapper and md device, and the partitions
+	 * in their directories.
+	 * @return the devices by <code>major:minor</code>.
+	 */
+	private Map<String, BlockDevice> readBlockDevices() {
+		final Map<String, BlockDevice> byNumber = new HashMap<String, BlockDevice>();
+		final Map<String, BlockDevice> byName = new HashMap<String, BlockDevice>();
+		final String[] disks = sysBlockPath.list();
+		if(disks == null) {
+			return byNumber;
+		}
+		for(String name : disks) {
+			final File dir = new File(sysBlockPath, name);
+			final BlockDevice disk = new BlockDevice(name, null, readSmallFile(new File(dir, "dm/name")),
+			                                         list(new File(dir, "slaves")));
+			add(disk, readSmallFile(new File(dir, "dev")), byNumber, byName);
+			for(String child : list(dir)) {
+				if(child.startsWith(name) && new File(dir, child + "/partition").exists()) {
+					add(new BlockDevice(child, disk, null, new String[0]),
+					    readSmallFile(new File(dir, child + "/dev")), byNumber, byName);
+				}
+			}
+		}
+		for(BlockDevice device : byName.values()) {
+			final TreeSet<String> disksUnder = new TreeSet<String>();
+			device.collectDisks(byName, disksUnder, 0);
+			device.disks = disksUnder.toArray(new String[disksUnder.size()]);
+		}
+		return byNumber;
+	}
+
+	private static void add(BlockDevice device, String number, Map<String, BlockDevice> byNumber,
+	                        Map<String, BlockDevice> byName) {
+		if(number != null) {
+			byNumber.put(number, device);
+		}
+		byName.put(device.name, device);
+	}
+
+	private static String[] list(File dir) {
+		final String[] names = dir.list();
+		return names == null ? new String[0] : names;
+	}
+
+	/**
+	 * @return the trimmed contents of a sysfs attribute, or null if it can't be read.
+	 */
+	private static String readSmallFile(File file) {
+		if(!file.exists()) {
+			return null;
+		}
+		final byte[] buffer = new byte[256];
+		try {
+			final int length = PositionalFileReader.readOnce(file, buffer);
+			return new String(buffer, 0, length, "US-ASCII").trim();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A block device, as named in <code>/sys/block</code>.
+	 */
+	static final class BlockDevice {
+		final String name;
+		final BlockDevice parent;
+		final String deviceMapperName;
+		final String[] slaves;
+		String[] disks;
+
+		BlockDevice(String name, BlockDevice parent, String deviceMapperName, String[] slaves) {
+			this.name = name;
+			this.parent = parent;
+			this.deviceMapperName = deviceMapperName;
+			this.slaves = slaves;
+		}
+
+		void collectDisks(Map<String, BlockDevice> byName, TreeSet<String> disks, int depth) {
+			if(parent != null) {
+				disks.add(parent.name);
+			} else if(slaves.length == 0 || depth > 16) {
+				disks.add(name);
+			} else {
+				for(String slave : slaves) {
+					final BlockDevice device = byName.get(slave);
+					if(device == null) {
+						disks.add(slave);
+					} else {
+						device.collectDisks(byName, disks, depth + 1);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * One mount.
+	 */
+	public static final class Mount {
+		private final int major;
+		private final int minor;
+		private final String mountPoint;
+		private final String fileSystemType;
+		private final String source;
+		private final BlockDevice device;
+
+		Mount(int major, int minor, String mountPoint, String fileSystemType, String source,
+		      BlockDevice device) {
+			this.major = major;
+			this.minor = minor;
+			this.mountPoint = mountPoint;
+			this.fileSystemType = fileSystemType;
+			this.source = source;
+			this.device = device;
+		}
+
+		public int getMajor() {
+			return major;
+		}
+
+		public int getMinor() {
+			return minor;
+		}
+
+		/**
+		 * @return where the filesystem is mounted, as <code>df</code> prints it.
+		 */
+		public String getMountPoint() {
+			return mountPoint;
+		}
+
+		public String getFileSystemType() {
+			return fileSystemType;
+		}
+
+		/**
+		 * @return what was mounted: a device path, <code>server:/export</code> for NFS, or a
+		 * placeholder such as <code>tmpfs</code>.
+		 */
+		public String getSource() {
+			return source;
+		}
+
+		/**
+		 * @return whether the mount is backed by a block device listed in <code>/sys/block</code>.
+		 */
+		public boolean isBlockDevice() {
+			return device != null;
+		}
+
+		/**
+		 * @return the kernel's name for the device, as in <code>/proc/diskstats</code>
+		 * (<code>sda1</code>, <code>dm-3</code>), or null if it isn't a block device.
+		 */
+		public String getDeviceName() {
+			return device == null ? null : device.name;
+		}
+
+		/**
+		 * @return the device-mapper name (<code>vg-data</code>), or null.
+		 */
+		public String getDeviceMapperName() {
+			return device == null ? null : device.deviceMapperName;
+		}
+
+		/**
+		 * @return the whole disks the mount is on, sorted; empty if it isn't a block device.
+		 */
+		public String[] getDisks() {
+			return device == null ? new String[0] : device.disks.clone();
+		}
+
+		@Override
+		public String toString() {
+			return mountPoint + " (" + major + ":" + minor + " " + fileSystemType + " " + source + ")";
+		}
+	}
+}
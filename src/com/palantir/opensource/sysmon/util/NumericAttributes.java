@@ -0,0 +1,124 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The numeric attributes of an MBean class, as declared by its management interface (the
+ * implemented interface whose name ends in <code>MBean</code>).  Lookups are done reflectively
+ * once per class and cached, so extracting values on each sample is a plain array walk.
+ * </p>
+ * Attributes are ordered by name.
+ */
+public final class NumericAttributes {
+
+	private static final ConcurrentMap<Class<?>, NumericAttributes> cache =
+		new ConcurrentHashMap<Class<?>, NumericAttributes>();
+
+	private final String[] names;
+	private final Method[] getters;
+
+	private NumericAttributes(List<Method> getters) {
+		this.getters = getters.toArray(new Method[getters.size()]);
+		this.names = new String[this.getters.length];
+		for(int i = 0; i < this.getters.length; i++) {
+			names[i] = this.getters[i].getName().substring(3);
+		}
+	}
+
+	/**
+	 * @return the (cached) numeric attributes of the passed MBean class.
+	 */
+	public static NumericAttributes forClass(Class<?> beanClass) {
+		NumericAttributes attributes = cache.get(beanClass);
+		if(attributes == null) {
+			attributes = new NumericAttributes(findGetters(beanClass));
+			NumericAttributes existing = cache.putIfAbsent(beanClass, attributes);
+			if(existing != null) {
+				attributes = existing;
+			}
+		}
+		return attributes;
+	}
+
+	private static List<Method> findGetters(Class<?> beanClass) {
+		List<Method> getters = new ArrayList<Method>();
+		for(Class<?> c = beanClass; c != null; c = c.getSuperclass()) {
+			for(Class<?> iface : c.getInterfaces()) {
+				if(!iface.getName().endsWith("MBean")) {
+					continue;
+				}
+				for(Method m : iface.getMethods()) {
+					if(m.getName().startsWith("get") && m.getName().length() > 3 &&
+					   m.getParameterTypes().length == 0 && isNumeric(m.getReturnType())) {
+						getters.add(m);
+					}
+				}
+			}
+		}
+		Method[] sorted = getters.toArray(new Method[getters.size()]);
+		Arrays.sort(sorted, new Comparator<Method>() {
+			public int compare(Method o1, Method o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		return Arrays.asList(sorted);
+	}
+
+	static boolean isNumeric(Class<?> type) {
+		return (type.isPrimitive() && type != boolean.class && type != char.class && type != void.class) ||
+		       Number.class.isAssignableFrom(type);
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return the index of the named attribute, or -1 if it is not a numeric attribute.
+	 */
+	public int indexOf(String name) {
+		for(int i = 0; i < names.length; i++) {
+			if(names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the value of the attribute at <code>index</code>, or {@link Double#NaN} if it is
+	 * null or cannot be read.
+	 */
+	public double getValue(Object bean, int index) {
+		try {
+			Object value = getters[index].invoke(bean);
+			return value == null ? Double.NaN : ((Number)value).doubleValue();
+		} catch (Exception e) {
+			return Double.NaN;
+		}
+	}
+}
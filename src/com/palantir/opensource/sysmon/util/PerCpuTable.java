@@ -0,0 +1,226 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+/**
+ * <p>
+ * Parses the per-CPU counter tables in <code>/proc/interrupts</code> and
+ * <code>/proc/softirqs</code>: a header line naming the CPUs, then one line per source with a
+ * label, a counter per CPU and, for interrupts, a free-form description.
+ * </p><p>
+ * Parsing is a single pass over the raw bytes into a preallocated <code>long[][]</code> that is
+ * reused from one parse to the next.  Labels and descriptions only become strings when they
+ * differ from the previous parse, so the steady state allocates nothing, which matters on hosts
+ * with hundreds of CPUs and interrupt lines.  Rows with fewer counters than CPUs (such as
+ * <code>ERR</code> and <code>MIS</code>) have the rest left at zero.
+ * </p><p>
+ * Instances are not thread safe.
+ * </p>
+ */
+public final class PerCpuTable {
+
+	private String[] cpuNames = new String[0];
+	private String[] rowNames = new String[0];
+	private String[] descriptions = new String[0];
+	private long[][] values = new long[0][0];
+	private int rowCount = 0;
+	private int cpuCount = 0;
+	private boolean layoutChanged = true;
+
+	/**
+	 * Parses a whole file.
+	 * @throws NumberFormatException if the contents are not a per-CPU table.
+	 */
+	public void parse(byte[] buffer, int length) {
+		layoutChanged = false;
+		int position = 0;
+		// header: CPU names
+		int lineEnd = lineEnd(buffer, position, length);
+		int cpus = 0;
+		int i = position;
+		while(true) {
+			i = skipSpaces(buffer, i, lineEnd);
+			if(i == lineEnd) {
+				break;
+			}
+			final int start = i;
+			i = tokenEnd(buffer, i, lineEnd);
+			if(cpus == cpuNames.length) {
+				cpuNames = grow(cpuNames, cpus + 1);
+			}
+			if(!sameAscii(cpuNames[cpus], buffer, start, i)) {
+				cpuNames[cpus] = new String(buffer, start, i - start);
+				layoutChanged = true;
+			}
+			cpus++;
+		}
+		if(cpus == 0) {
+			throw new NumberFormatException("No CPUs in header line");
+		}
+		if(cpus != cpuCount) {
+			layoutChanged = true;
+			cpuCount = cpus;
+		}
+		position = lineEnd + 1;
+
+		int rows = 0;
+		while(position < length) {
+			lineEnd = lineEnd(buffer, position, length);
+			i = skipSpaces(buffer, position, lineEnd);
+			final int labelStart = i;
+			while(i < lineEnd && buffer[i] != ':') {
+				i++;
+			}
+			if(i == lineEnd) {
+				// blank or unrecognized line
+				position = lineEnd + 1;
+				continue;
+			}
+			final int labelEnd = i;
+			i++;
+			if(rows == rowNames.length) {
+				final int capacity = Math.max(16, rows * 2);
+				rowNames = grow(rowNames, capacity);
+				descriptions = grow(descriptions, capacity);
+			}
+			if(rows == values.length || values[rows].length < cpuCount) {
+				final long[][] larger = new long[Math.max(values.length, rowNames.length)][];
+				for(int r = 0; r < larger.length; r++) {
+					larger[r] = r < values.length && values[r].length >= cpuCount ?
+					            values[r] : new long[cpuCount];
+				}
+				values = larger;
+			}
+			if(!sameAscii(rowNames[rows], buffer, labelStart, labelEnd)) {
+				rowNames[rows] = new String(buffer, labelStart, labelEnd - labelStart);
+				layoutChanged = true;
+			}
+			final long[] row = values[rows];
+			int cpu = 0;
+			while(cpu < cpuCount) {
+				i = skipSpaces(buffer, i, lineEnd);
+				if(i == lineEnd || buffer[i] < '0' || buffer[i] > '9') {
+					break;
+				}
+				long value = 0;
+				while(i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9') {
+					value = value * 10 + (buffer[i] - '0');
+					i++;
+				}
+				row[cpu++] = value;
+			}
+			while(cpu < cpuCount) {
+				row[cpu++] = 0;
+			}
+			final int descriptionStart = skipSpaces(buffer, i, lineEnd);
+			int descriptionEnd = lineEnd;
+			while(descriptionEnd > descriptionStart && buffer[descriptionEnd - 1] <= ' ') {
+				descriptionEnd--;
+			}
+			if(!sameAscii(descriptions[rows], buffer, descriptionStart, descriptionEnd)) {
+				descriptions[rows] = new String(buffer, descriptionStart,
+				                                descriptionEnd - descriptionStart);
+				layoutChanged = true;
+			}
+			rows++;
+			position = lineEnd + 1;
+		}
+		if(rows != rowCount) {
+			layoutChanged = true;
+			rowCount = rows;
+		}
+	}
+
+	private static int lineEnd(byte[] buffer, int position, int length) {
+		while(position < length && buffer[position] != '\n') {
+			position++;
+		}
+		return position;
+	}
+
+	private static int skipSpaces(byte[] buffer, int i, int end) {
+		while(i < end && (buffer[i] == ' ' || buffer[i] == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	private static int tokenEnd(byte[] buffer, int i, int end) {
+		while(i < end && buffer[i] != ' ' && buffer[i] != '\t') {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean sameAscii(String s, byte[] buffer, int start, int end) {
+		if(s == null || s.length() != end - start) {
+			return false;
+		}
+		for(int i = start; i < end; i++) {
+			if(s.charAt(i - start) != buffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] grow(String[] array, int size) {
+		final String[] larger = new String[Math.max(size, array.length * 2)];
+		System.arraycopy(array, 0, larger, 0, array.length);
+		return larger;
+	}
+
+	/**
+	 * @return whether the CPUs, rows or descriptions differ from the previous parse, in which case
+	 * values can't be compared with those of the previous parse row by row.
+	 */
+	public boolean isLayoutChanged() {
+		return layoutChanged;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getCpuCount() {
+		return cpuCount;
+	}
+
+	/**
+	 * @return the header name of a column, for example <code>CPU3</code>.
+	 */
+	public String getCpuName(int cpu) {
+		return cpuNames[cpu];
+	}
+
+	/**
+	 * @return the label of a row, for example <code>24</code>, <code>LOC</code> or
+	 * <code>NET_RX</code>.
+	 */
+	public String getRowName(int row) {
+		return rowNames[row];
+	}
+
+	/**
+	 * @return whatever followed the counters on a row, for example the interrupt chip and device
+	 * names.  Empty if nothing did.
+	 */
+	public String getDescription(int row) {
+		return descriptions[row];
+	}
+
+	public long get(int row, int cpu) {
+		return values[row][cpu];
+	}
+}
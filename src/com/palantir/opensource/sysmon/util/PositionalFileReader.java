@@ -0,0 +1,187 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * Re-reads a small file, such as a sysfs attribute or a file in /proc, through a channel that is
+ * opened once and kept open.  Every {@link #read()} is a positional read from offset zero into a
+ * reused buffer, so polling the file costs one <code>pread(2)</code> per tick instead of an open,
+ * a read and a close.
+ * </p><p>
+ * sysfs and procfs regenerate a file's contents whenever it is read from the start, so each read
+ * sees current values.  Instances are not thread safe.
+ * </p>
+ */
+public final class PositionalFileReader {
+
+	final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private ByteBuffer buffer;
+	private int length = 0;
+
+	/**
+	 * Opens the file.
+	 * @param bufferSize initial buffer size; the buffer grows as needed.
+	 * @throws IOException if the file can't be opened for reading.
+	 */
+	public PositionalFileReader(File file, int bufferSize) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+	}
+
+	/**
+	 * Opens a file if it exists and is readable, for files that not every kernel or device has.
+	 * @param bufferSize initial buffer size; the buffer grows as needed.
+	 * @return the reader, or null.
+	 */
+	public static PositionalFileReader openIfReadable(File file, int bufferSize) {
+		try {
+			return new PositionalFileReader(file, bufferSize);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the whole file.
+	 * @return the number of bytes read, which are available from {@link #getBuffer()}.
+	 * @throws IOException on read errors, for example if the device behind a sysfs file went away.
+	 */
+	public int read() throws IOException {
+		length = 0;
+		buffer.clear();
+		while(true) {
+			final int count = channel.read(buffer, length);
+			if(count < 0) {
+				break;
+			}
+			length += count;
+			if(!buffer.hasRemaining()) {
+				final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @return the buffer holding the bytes of the last read, from index zero.  Only valid until
+	 * the next read.
+	 */
+	public byte[] getBuffer() {
+		return buffer.array();
+	}
+
+	/**
+	 * @return the number of bytes in the last read.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Reads the file and parses the leading (optionally negative) decimal number in it.
+	 * @throws NumberFormatException if the file doesn't start with a number.
+	 */
+	public long readLong() throws IOException {
+		read();
+		return parseLong(getBuffer(), 0, length);
+	}
+
+	/**
+	 * Reads the file as text, with surrounding whitespace removed.
+	 */
+	public String readString() throws IOException {
+		read();
+		return new String(getBuffer(), 0, length, "US-ASCII").trim();
+	}
+
+	/**
+	 * Opens, reads and closes a file that isn't worth keeping open, such as a stat file of one of
+	 * thousands of processes.
+	 * @return the number of bytes read into <code>buffer</code>, at most its length.
+	 * @throws IOException if the file can't be opened or read.
+	 */
+	public static int readOnce(File file, byte[] buffer) throws IOException {
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			int length = 0;
+			while(length < buffer.length) {
+				final int count = in.read(buffer, length, buffer.length - length);
+				if(count < 0) {
+					break;
+				}
+				length += count;
+			}
+			return length;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses the first decimal number in <code>bytes[offset, end)</code>, skipping leading
+	 * whitespace, without allocating.
+	 * @throws NumberFormatException if there is no number there.
+	 */
+	public static long parseLong(byte[] bytes, int offset, int end) {
+		int i = offset;
+		while(i < end && (bytes[i] == ' ' || bytes[i] == '\t' || bytes[i] == '\n')) {
+			i++;
+		}
+		boolean negative = false;
+		if(i < end && bytes[i] == '-') {
+			negative = true;
+			i++;
+		}
+		final int start = i;
+		long value = 0;
+		while(i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+			value = value * 10 + (bytes[i] - '0');
+			i++;
+		}
+		if(i == start) {
+			throw new NumberFormatException("No number in " + new String(bytes, offset, end - offset));
+		}
+		return negative ? -value : value;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Closes the underlying file, ignoring errors.
+	 */
+	public void close() {
+		try {
+			raf.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
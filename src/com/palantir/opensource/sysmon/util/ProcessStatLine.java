@@ -0,0 +1,188 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Parses the one-line <code>/proc/&lt;pid&gt;/stat</code> and
+ * <code>/proc/&lt;pid&gt;/task/&lt;tid&gt;/stat</code> files.
+ * </p><p>
+ * Fields are numbered as in <a href='http://man7.org/linux/man-pages/man5/proc.5.html'>proc(5)</a>,
+ * starting from one.  The command name (field 2) may itself contain spaces and parentheses, so the
+ * numeric fields are found from the last closing parenthesis.  Parsing is a single pass over the
+ * raw bytes into a reused <code>long[]</code>; the name only becomes a string when asked for.
+ * </p><p>
+ * Instances are not thread safe.
+ * </p>
+ */
+public final class ProcessStatLine {
+
+	public static final int STATE = 3;
+	public static final int PPID = 4;
+	public static final int MINFLT = 10;
+	public static final int MAJFLT = 12;
+	public static final int UTIME = 14;
+	public static final int STIME = 15;
+	public static final int NUM_THREADS = 20;
+	public static final int STARTTIME = 22;
+	public static final int VSIZE = 23;
+	public static final int RSS = 24;
+	public static final int PROCESSOR = 39;
+	public static final int DELAYACCT_BLKIO_TICKS = 42;
+
+	/**
+	 * <code>USER_HZ</code>, the unit of the time fields.  The kernel reports times in hundredths of
+	 * a second to user space on every architecture Java runs on.
+	 */
+	public static final int CLOCK_TICKS_PER_SECOND = 100;
+
+	private static int pageSizeInKB = 0;
+
+	private final long[] fields = new long[64];
+	private int fieldCount = 0;
+	private byte[] buffer = null;
+	private int nameStart = 0;
+	private int nameEnd = 0;
+	private byte state = '?';
+
+	/**
+	 * Parses a stat line.
+	 * @return false if it isn't one.
+	 */
+	public boolean parse(byte[] buffer, int length) {
+		this.buffer = buffer;
+		fieldCount = 0;
+		int open = 0;
+		while(open < length && buffer[open] != '(') {
+			open++;
+		}
+		int close = length - 1;
+		while(close > open && buffer[close] != ')') {
+			close--;
+		}
+		if(open >= length || close <= open) {
+			return false;
+		}
+		fields[0] = PositionalFileReader.parseLong(buffer, 0, open);
+		nameStart = open + 1;
+		nameEnd = close;
+		int i = close + 1;
+		while(i < length && buffer[i] == ' ') {
+			i++;
+		}
+		if(i == length) {
+			return false;
+		}
+		state = buffer[i];
+		// fields[1] is the name, fields[2] the state
+		fieldCount = STATE;
+		i++;
+		while(i < length && fieldCount < fields.length) {
+			while(i < length && buffer[i] == ' ') {
+				i++;
+			}
+			if(i == length || buffer[i] == '\n') {
+				break;
+			}
+			final boolean negative = buffer[i] == '-';
+			if(negative) {
+				i++;
+			}
+			long value = 0;
+			while(i < length && buffer[i] >= '0' && buffer[i] <= '9') {
+				value = value * 10 + (buffer[i] - '0');
+				i++;
+			}
+			fields[fieldCount++] = negative ? -value : value;
+		}
+		return true;
+	}
+
+	/**
+	 * @param field field number, as in proc(5).
+	 * @return the value, or 0 for fields this kernel doesn't have.
+	 */
+	public long get(int field) {
+		return field <= fieldCount && field > STATE ? fields[field - 1] : 0;
+	}
+
+	public int getPid() {
+		return (int)fields[0];
+	}
+
+	/**
+	 * @return the state letter, such as <code>R</code>, <code>S</code> or <code>D</code>.
+	 */
+	public char getState() {
+		return (char)state;
+	}
+
+	/**
+	 * @return the command name, without parentheses.
+	 */
+	public String getName() {
+		return new String(buffer, nameStart, nameEnd - nameStart);
+	}
+
+	/**
+	 * @return user plus system time, in clock ticks.
+	 */
+	public long getCpuTicks() {
+		return get(UTIME) + get(STIME);
+	}
+
+	/**
+	 * @return the resident set size in KB.
+	 */
+	public long getResidentInKB() {
+		return get(RSS) * getPageSizeInKB();
+	}
+
+	/**
+	 * @return the size of a base page, from the first mapping in <code>/proc/self/smaps</code>,
+	 * or 4 if that can't be read.
+	 */
+	public static synchronized int getPageSizeInKB() {
+		if(pageSizeInKB == 0) {
+			pageSizeInKB = 4;
+			final File smaps = new File("/proc/self/smaps");
+			if(smaps.canRead()) {
+				try {
+					final BufferedReader reader = new BufferedReader(new FileReader(smaps));
+					try {
+						String line;
+						while((line = reader.readLine()) != null) {
+							if(line.startsWith("KernelPageSize:")) {
+								pageSizeInKB = Integer.parseInt(line.substring(15).replace("kB", "").trim());
+								break;
+							}
+						}
+					} finally {
+						reader.close();
+					}
+				} catch (IOException e) {
+					// keep the default
+				} catch (NumberFormatException e) {
+					// keep the default
+				}
+			}
+		}
+		return pageSizeInKB;
+	}
+}
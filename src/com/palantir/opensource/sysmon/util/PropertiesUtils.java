@@ -57,4 +57,39 @@ public class PropertiesUtils {
 		}
 	}
 
+	/**
+	 * Returns the double value at the specified key.
+	 * @param p {@link Properties} object to extract values from
+	 * @param key key to be extracted
+	 * @param defaultValue default value to use if specified key doesn't exist
+	 * @return the double stored in the {@link Properties} object.
+	 * @throws NumberFormatException if the value stored in the {@link Properties} object
+	 * does not parse as a double.
+	 */
+	public static final double extractDouble(Properties p, String key, double defaultValue) throws NumberFormatException {
+		String doubleProperty = p.getProperty(key);
+		if(doubleProperty == null){
+			return defaultValue;
+		} else {
+			return Double.parseDouble(doubleProperty.trim());
+		}
+	}
+
+	/**
+	 * Returns the boolean value at the specified key.
+	 * @param p {@link Properties} object to extract values from
+	 * @param key key to be extracted
+	 * @param defaultValue default value to use if specified key doesn't exist
+	 * @return <code>true</code> if the value stored in the {@link Properties} object is
+	 * "true" (ignoring case), <code>false</code> for any other stored value.
+	 */
+	public static final boolean extractBoolean(Properties p, String key, boolean defaultValue) {
+		String booleanProperty = p.getProperty(key);
+		if(booleanProperty == null){
+			return defaultValue;
+		} else {
+			return Boolean.parseBoolean(booleanProperty.trim());
+		}
+	}
+
 }
@@ -0,0 +1,223 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Downsampled aggregates of a single series at several resolutions (for example, one-second
+ * buckets for the last minute, one-minute buckets for the last hour and one-hour buckets for the
+ * last few days).  Each bucket keeps the min, max, sum, count and last value of the samples that
+ * fell into it.
+ * </p><p>
+ * Each resolution is a fixed ring of buckets indexed by <code>timestamp / resolution</code>, so
+ * adding a sample is O(1) per resolution and memory is bounded no matter how long the series
+ * runs.  NaN samples are ignored.  Instances are thread safe.
+ * </p>
+ */
+public final class RollupSeries {
+
+	/**
+	 * The aggregate of a range of samples.
+	 */
+	public static final class Aggregate {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0.0;
+		long count = 0;
+		double last = Double.NaN;
+		long lastBucket = Long.MIN_VALUE;
+
+		/**
+		 * Accumulates a single sample.  Samples must be added oldest first; NaN is ignored.
+		 */
+		public void add(double value) {
+			if(Double.isNaN(value)) {
+				return;
+			}
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sum += value;
+			count++;
+			last = value;
+		}
+
+		/**
+		 * @return the smallest sample, or NaN if there were none.
+		 */
+		public double getMin() {
+			return count == 0 ? Double.NaN : min;
+		}
+
+		/**
+		 * @return the largest sample, or NaN if there were none.
+		 */
+		public double getMax() {
+			return count == 0 ? Double.NaN : max;
+		}
+
+		public double getSum() {
+			return sum;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the mean of the samples, or NaN if there were none.
+		 */
+		public double getAverage() {
+			return count == 0 ? Double.NaN : sum / count;
+		}
+
+		/**
+		 * @return the most recent sample, or NaN if there were none.
+		 */
+		public double getLast() {
+			return last;
+		}
+	}
+
+	private final Resolution[] resolutions;
+
+	/**
+	 * @param resolutionMillis bucket width of each resolution, finest first.
+	 * @param buckets number of buckets retained at each resolution.
+	 */
+	public RollupSeries(long[] resolutionMillis, int[] buckets) {
+		if(resolutionMillis.length != buckets.length) {
+			throw new IllegalArgumentException("Need a bucket count for each resolution");
+		}
+		resolutions = new Resolution[resolutionMillis.length];
+		for(int i = 0; i < resolutions.length; i++) {
+			if(resolutionMillis[i] <= 0 || buckets[i] <= 0) {
+				throw new IllegalArgumentException("Resolutions and bucket counts must be positive");
+			}
+			if(i > 0 && resolutionMillis[i] <= resolutionMillis[i - 1]) {
+				throw new IllegalArgumentException("Resolutions must be listed finest first");
+			}
+			resolutions[i] = new Resolution(resolutionMillis[i], buckets[i]);
+		}
+	}
+
+	public synchronized void add(long timestamp, double value) {
+		if(Double.isNaN(value)) {
+			return;
+		}
+		for(Resolution r : resolutions) {
+			r.add(timestamp, value);
+		}
+	}
+
+	/**
+	 * Aggregates the samples in <code>[start, end]</code>, using the finest resolution that still
+	 * covers <code>start</code>.  Buckets are included whole, so the result may include samples
+	 * up to one bucket width before <code>start</code>.
+	 */
+	public synchronized Aggregate aggregate(long start, long end) {
+		Resolution chosen = resolutions[resolutions.length - 1];
+		for(Resolution r : resolutions) {
+			if(r.oldestRetainedStart(end) <= start) {
+				chosen = r;
+				break;
+			}
+		}
+		Aggregate result = new Aggregate();
+		chosen.aggregate(start, end, result);
+		return result;
+	}
+
+	/**
+	 * @return the total time span retained by the coarsest resolution, in milliseconds.
+	 */
+	public long getRetainedMillis() {
+		Resolution coarsest = resolutions[resolutions.length - 1];
+		return coarsest.width * coarsest.buckets.length;
+	}
+
+	private static final class Resolution {
+		final long width;
+		/**
+		 * <code>timestamp / width</code> of the data in each slot, or {@link Long#MIN_VALUE}.
+		 */
+		final long[] buckets;
+		final double[] min;
+		final double[] max;
+		final double[] sum;
+		final long[] count;
+		final double[] last;
+
+		Resolution(long width, int size) {
+			this.width = width;
+			buckets = new long[size];
+			Arrays.fill(buckets, Long.MIN_VALUE);
+			min = new double[size];
+			max = new double[size];
+			sum = new double[size];
+			count = new long[size];
+			last = new double[size];
+		}
+
+		void add(long timestamp, double value) {
+			final long bucket = timestamp / width;
+			final int slot = (int)(bucket % buckets.length);
+			if(buckets[slot] != bucket) {
+				if(buckets[slot] > bucket) {
+					// older than anything this slot can hold any more
+					return;
+				}
+				buckets[slot] = bucket;
+				min[slot] = value;
+				max[slot] = value;
+				sum[slot] = value;
+				count[slot] = 1;
+			} else {
+				if(value < min[slot]) {
+					min[slot] = value;
+				}
+				if(value > max[slot]) {
+					max[slot] = value;
+				}
+				sum[slot] += value;
+				count[slot]++;
+			}
+			last[slot] = value;
+		}
+
+		long oldestRetainedStart(long end) {
+			return (end / width - buckets.length + 1) * width;
+		}
+
+		void aggregate(long start, long end, Aggregate result) {
+			final long first = Math.max(start / width, end / width - buckets.length + 1);
+			final long lastBucket = end / width;
+			for(int slot = 0; slot < buckets.length; slot++) {
+				final long bucket = buckets[slot];
+				if(bucket < first || bucket > lastBucket) {
+					continue;
+				}
+				result.min = Math.min(result.min, min[slot]);
+				result.max = Math.max(result.max, max[slot]);
+				result.sum += sum[slot];
+				result.count += count[slot];
+				if(bucket > result.lastBucket) {
+					result.lastBucket = bucket;
+					result.last = last[slot];
+				}
+			}
+		}
+	}
+}
@@ -29,6 +29,26 @@ public class AllLinuxTests extends TestSuite {
 		suite.addTestSuite(LoadAverageTest.class);
 		suite.addTestSuite(EntropyLevelTest.class);
 		suite.addTestSuite(NetStatTest.class);
+		suite.addTestSuite(MappedFileExporterTest.class);
+		suite.addTestSuite(MetricHistoryTest.class);
+		suite.addTestSuite(HistogramTest.class);
+		suite.addTestSuite(SysfsNetTest.class);
+		suite.addTestSuite(SoftnetTest.class);
+		suite.addTestSuite(InterruptsTest.class);
+		suite.addTestSuite(MemInfoTest.class);
+		suite.addTestSuite(VMEventsTest.class);
+		suite.addTestSuite(NumaTest.class);
+		suite.addTestSuite(CpuTopologyTest.class);
+		suite.addTestSuite(CpuFrequencyTest.class);
+		suite.addTestSuite(SchedStatTest.class);
+		suite.addTestSuite(TopProcessesTest.class);
+		suite.addTestSuite(WatchedProcessesTest.class);
+		suite.addTestSuite(HotThreadsTest.class);
+		suite.addTestSuite(SelfProcessTest.class);
+		suite.addTestSuite(TaskStatesTest.class);
+		suite.addTestSuite(MountIOTest.class);
+		suite.addTestSuite(DiskspaceIsolationTest.class);
+		suite.addTestSuite(NfsTest.class);
 		return suite;
 	}
 	
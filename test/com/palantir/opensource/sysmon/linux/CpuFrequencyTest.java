@@ -0,0 +1,118 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class CpuFrequencyTest extends LinuxBaseTest {
+
+	LinuxCpuFrequencyJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxCpuFrequencyJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("cpufreq");
+		// cpu0 has everything, cpu1 only cpufreq, cpu2 is offline
+		File cpu0 = new File(root, "cpu0");
+		assertTrue(new File(cpu0, "cpufreq").mkdirs());
+		assertTrue(new File(cpu0, "thermal_throttle").mkdirs());
+		write(new File(cpu0, "cpufreq/scaling_cur_freq"), "1800000\n");
+		write(new File(cpu0, "cpufreq/cpuinfo_max_freq"), "3600000\n");
+		write(new File(cpu0, "thermal_throttle/core_throttle_count"), "5\n");
+		write(new File(cpu0, "thermal_throttle/package_throttle_count"), "7\n");
+		// listed out of order, and past state9, to check that states are sorted by number
+		String[] names = { "POLL", "C1", "C1E", "C3", "C6", "C7s", "C8", "C9", "C10", "C10-deep", "DEEPEST" };
+		for(int i = 0; i < names.length; i++) {
+			File state = new File(cpu0, "cpuidle/state" + i);
+			assertTrue(state.mkdirs());
+			write(new File(state, "name"), names[i] + "\n");
+			write(new File(state, "time"), "1000\n");
+		}
+		File cpu1 = new File(root, "cpu1");
+		assertTrue(new File(cpu1, "cpufreq").mkdirs());
+		write(new File(cpu1, "cpufreq/scaling_cur_freq"), "3000000\n");
+		write(new File(cpu1, "cpufreq/cpuinfo_max_freq"), "3000000\n");
+		assertTrue(new File(root, "cpu2").mkdirs());
+		assertTrue(new File(root, "cpuidle").mkdirs());
+
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.cpufreq");
+		wrapper = new LinuxCpuFrequencyJMXWrapper(config, root);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.close();
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testFrequencyAndThrottling() throws Exception {
+		assertEquals(2, wrapper.cpus.size());
+		LinuxCpuFrequency cpu0 = wrapper.cpus.get(0).bean;
+		LinuxCpuFrequency cpu1 = wrapper.cpus.get(1).bean;
+		assertEquals("0", cpu0.getCpu());
+		assertEquals(1800.0, cpu0.getFrequencyMHz(), 0.0001);
+		assertEquals(3600.0, cpu0.getMaxFrequencyMHz(), 0.0001);
+		assertEquals(50.0, cpu0.getFrequencyPercentage(), 0.0001);
+		assertEquals(5, cpu0.getCoreThrottleCount());
+		assertEquals(100.0, cpu1.getFrequencyPercentage(), 0.0001);
+		assertEquals(2400.0, wrapper.total.getFrequencyMHz(), 0.0001);
+		assertEquals(12, wrapper.total.getPackageThrottleCount() + wrapper.total.getCoreThrottleCount());
+
+		Thread.sleep(100);
+		write(new File(root, "cpu0/cpufreq/scaling_cur_freq"), "3600000\n");
+		write(new File(root, "cpu0/thermal_throttle/core_throttle_count"), "25\n");
+		wrapper.readData();
+
+		assertEquals(3600.0, cpu0.getFrequencyMHz(), 0.0001);
+		assertTrue(cpu0.getCoreThrottlesPerSecond() > 0);
+		assertEquals(0.0, cpu0.getPackageThrottlesPerSecond(), 0.0);
+		assertEquals(1, cpu0.getThrottlingCpuCount());
+		assertEquals(0, cpu1.getThrottlingCpuCount());
+		assertEquals(1, wrapper.total.getThrottlingCpuCount());
+		assertEquals(cpu0.getCoreThrottlesPerSecond(), wrapper.total.getCoreThrottlesPerSecond(), 0.0001);
+		assertEquals(3300.0, wrapper.total.getFrequencyMHz(), 0.0001);
+	}
+
+	public void testIdleResidency() throws Exception {
+		LinuxCpuFrequency cpu0 = wrapper.cpus.get(0).bean;
+		Thread.sleep(100);
+		// far more idle time than has passed in the deepest state, a little in C1
+		write(new File(root, "cpu0/cpuidle/state1/time"), "2000\n");
+		write(new File(root, "cpu0/cpuidle/state10/time"), "1000000000\n");
+		wrapper.readData();
+
+		Map<String, Double> residency = cpu0.getIdleResidencyPercentage();
+		assertEquals(11, residency.size());
+		assertEquals("POLL", residency.keySet().iterator().next());
+		assertEquals(0.0, residency.get("C6"), 0.0);
+		double c1 = residency.get("C1");
+		assertTrue("C1 residency " + c1, c1 > 0.0 && c1 <= 1.0);
+		// clamped
+		assertEquals(100.0, residency.get("DEEPEST"), 0.0);
+		assertEquals(100.0, cpu0.getDeepestIdleResidencyPercentage(), 0.0);
+		assertTrue(cpu0.getTimestamp() > 0);
+
+		// cpu1 has no idle states, so the total is cpu0's
+		assertEquals(100.0, wrapper.total.getDeepestIdleResidencyPercentage(), 0.0);
+		assertEquals(c1, wrapper.total.getIdleResidencyPercentage().get("C1"), 0.0001);
+	}
+}
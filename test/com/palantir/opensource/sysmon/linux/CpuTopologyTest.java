@@ -0,0 +1,103 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class CpuTopologyTest extends LinuxBaseTest {
+
+	// two sockets of two cores of two hyperthreads: cpuN and cpuN+4 are siblings
+	static final String[] SIBLINGS = { "0,4", "1,5", "2,6", "3,7", "0,4", "1,5", "2,6", "3,7" };
+	static final int[] PACKAGES = { 0, 0, 1, 1, 0, 0, 1, 1 };
+
+	File stat;
+	LinuxCpuTopologyJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxCpuTopologyJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("cpu");
+		for(int cpu = 0; cpu < SIBLINGS.length; cpu++) {
+			File topology = new File(root, "cpu" + cpu + "/topology");
+			assertTrue(topology.mkdirs());
+			write(new File(topology, "thread_siblings_list"), SIBLINGS[cpu] + "\n");
+			write(new File(topology, "physical_package_id"), PACKAGES[cpu] + "\n");
+		}
+		// offline, so no topology
+		assertTrue(new File(root, "cpu8").mkdirs());
+		assertTrue(new File(root, "cpufreq").mkdirs());
+		stat = new File(root, "stat");
+		writeStat(new long[8]);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.cputopology");
+		wrapper = new LinuxCpuTopologyJMXWrapper(config, root, stat);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.reader.close();
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testRollups() throws Exception {
+		assertEquals(2, wrapper.sockets.length);
+		assertEquals(8, wrapper.total.getLogicalCpuCount());
+		assertEquals(4, wrapper.total.getCoreCount());
+		assertEquals(2, wrapper.sockets[1].getCoreCount());
+		assertEquals(4, wrapper.sockets[1].getLogicalCpuCount());
+
+		// out of every 100 ticks, this many are busy
+		writeStat(new long[] { 90, 100, 10, 60, 80, 0, 10, 70 });
+		wrapper.readData();
+
+		LinuxCpuTopology socket0 = wrapper.sockets[0];
+		LinuxCpuTopology socket1 = wrapper.sockets[1];
+		assertEquals("0", socket0.getSocket());
+		assertEquals(67.5, socket0.getUtilizationPercentage(), 0.0001);
+		assertEquals(95.0, socket0.getCoreUtilizationPercentage(), 0.0001);
+		assertEquals(1, socket0.getCoresWithAllSiblingsBusy());
+		assertEquals(90.0, socket0.getCoreUtilization().get("0,4"), 0.0001);
+		assertEquals(2, socket0.getCoreUtilization().size());
+		assertEquals(37.5, socket1.getUtilizationPercentage(), 0.0001);
+		assertEquals(40.0, socket1.getCoreUtilizationPercentage(), 0.0001);
+		assertEquals(1, socket1.getCoresWithAllSiblingsBusy());
+		assertEquals(52.5, wrapper.total.getUtilizationPercentage(), 0.0001);
+		assertEquals(67.5, wrapper.total.getCoreUtilizationPercentage(), 0.0001);
+		assertEquals(2, wrapper.total.getCoresWithAllSiblingsBusy());
+		assertEquals(4, wrapper.total.getCoreUtilization().size());
+	}
+
+	private long[] busy = new long[8];
+	private long[] idle = new long[8];
+
+	/**
+	 * Advances each CPU by 100 ticks, of which <code>busyTicks</code> are busy.
+	 */
+	private void writeStat(long[] busyTicks) throws Exception {
+		StringBuilder contents = new StringBuilder("cpu  0 0 0 0 0 0 0 0 0 0\n");
+		for(int cpu = 0; cpu < busyTicks.length; cpu++) {
+			busy[cpu] += busyTicks[cpu];
+			idle[cpu] += 100 - busyTicks[cpu];
+			contents.append("cpu" + cpu + " " + busy[cpu] + " 0 0 " + idle[cpu] + " 0 0 0 0 0 0\n");
+		}
+		contents.append("intr 287589 0 0 0 0\nctxt 1234\n");
+		write(stat, contents.toString());
+	}
+}
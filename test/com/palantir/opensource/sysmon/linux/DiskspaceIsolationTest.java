@@ -0,0 +1,203 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.LinearTrend;
+
+
+public class DiskspaceIsolationTest extends LinuxBaseTest {
+
+	static final String BEAN_PATH = "sysmon.test.diskspace";
+
+	static final String MTAB =
+		"/dev/sda1 /ok ext4 rw 0 0\n" +
+		"server:/export /hung nfs rw 0 0\n" +
+		"cgroup /pseudo cgroup rw 0 0\n" +
+		"/dev/sdb1 /with\\040space ext4 rw 0 0\n" +
+		"/dev/sda1 /ok/bind ext4 rw 0 0\n" +
+		// separate filesystems sharing a placeholder source
+		"overlay /containers/a overlay rw 0 0\n" +
+		"overlay /containers/b overlay rw 0 0\n";
+
+	LinuxDiskspaceJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// the hung mount is expected to be warned about
+		installLoggingErrorDetector(LinuxDiskspaceJMXWrapper.class, Level.ERROR);
+		createRoot("mtab");
+		write(new File(root, "mtab"), MTAB);
+		write(new File(root, "hang"), "");
+		// stands in for df: hangs on /hung while the hang file exists, reports nothing on /pseudo,
+		// and reports the megabytes in the used file as used (and ten times as many inodes)
+		File df = new File(root, "df");
+		write(df, "#!/bin/sh\n" +
+		          "for last; do :; done\n" +
+		          "if [ \"$last\" = /hung ] && [ -f " + root.getAbsolutePath() + "/hang ]; then exec sleep 30; fi\n" +
+		          "size=100; if [ \"$last\" = /pseudo ]; then size=0; fi\n" +
+		          "used=40; if [ -f " + root.getAbsolutePath() + "/used ]; then used=`cat " +
+		          root.getAbsolutePath() + "/used`; fi\n" +
+		          "if [ \"$2\" = -i ]; then\n" +
+		          "  echo 'Filesystem Inodes IUsed IFree IUse% Mounted on'\n" +
+		          "  echo \"fake ${size}0 $((used * 10)) $((1000 - used * 10)) 25% $last\"\n" +
+		          "else\n" +
+		          "  echo 'Filesystem 1048576-blocks Used Available Capacity Mounted on'\n" +
+		          "  echo \"fake ${size}M ${used}M $((100 - used))M 40% $last\"\n" +
+		          "fi\n");
+		// File.setExecutable is Java 6
+		assertEquals(0, Runtime.getRuntime().exec(new String[] { "chmod", "+x", df.getAbsolutePath() })
+		                       .waitFor());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testHungMountIsIsolated() throws Exception {
+		long start = System.currentTimeMillis();
+		wrapper = new LinuxDiskspaceJMXWrapper(newConfig());
+		assertTrue("Waited on the hung mount", System.currentTimeMillis() - start < 5000);
+
+		assertEquals(6, wrapper.mounts.size());
+		assertNull(wrapper.mounts.get("/ok/bind"));
+		assertEquals("/containers/a", wrapper.mounts.get("/containers/a").bean.getMountPoint());
+		assertEquals("/containers/b", wrapper.mounts.get("/containers/b").bean.getMountPoint());
+		assertTrue(wrapper.mounts.get("/pseudo").empty);
+		assertNull(wrapper.mounts.get("/pseudo").bean);
+
+		LinuxFileSystem ok = wrapper.mounts.get("/ok").bean;
+		assertEquals(Long.valueOf(100), ok.getTotalMegabytes());
+		assertEquals(Long.valueOf(1000), ok.getTotalInodes());
+		assertEquals(Byte.valueOf((byte)25), ok.getPercentageInodesUsed());
+		assertEquals("ext4", ok.getFilesytemType());
+		assertNotNull(ok.getStatLatencyInMillis());
+		assertFalse(ok.isStale());
+		assertEquals("/with space", wrapper.mounts.get("/with space").bean.getMountPoint());
+		assertEquals(Boolean.FALSE, lookupJMXValue(BEAN_PATH + LinuxDiskspaceJMXWrapper.OBJECT_NAME_PREFIX +
+		                                           "/ok", "Stale"));
+
+		LinuxDiskspaceJMXWrapper.MountState hung = wrapper.mounts.get("/hung");
+		assertTrue(hung.bean.isStale());
+		assertNull(hung.bean.getTotalMegabytes());
+		assertEquals(1, hung.failures);
+
+		// quarantined: not checked again, and doesn't hold up the others
+		start = System.currentTimeMillis();
+		wrapper.readData();
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertNull(hung.pending);
+		assertEquals(1, hung.failures);
+		assertFalse(ok.isStale());
+
+		// recovers once the quarantine is over
+		assertTrue(new File(root, "hang").delete());
+		Thread.sleep(hung.quarantinedUntil - System.currentTimeMillis() + 10);
+		wrapper.readData();
+		assertEquals(0, hung.failures);
+		assertFalse(hung.bean.isStale());
+		assertEquals(Long.valueOf(100), hung.bean.getTotalMegabytes());
+
+		// unmounted
+		write(new File(root, "mtab"), "/dev/sda1 /ok ext4 rw 0 0\n");
+		wrapper.readData();
+		assertEquals(1, wrapper.mounts.size());
+	}
+
+	public void testFillForecast() throws Exception {
+		write(new File(root, "mtab"), "/dev/sda1 /ok ext4 rw 0 0\n");
+		write(new File(root, "used"), "40\n");
+		wrapper = new LinuxDiskspaceJMXWrapper(newConfig());
+		LinuxFileSystem ok = wrapper.mounts.get("/ok").bean;
+		for(int used = 41; used <= 44; used++) {
+			if(used < 43) {
+				// too few checks to go by yet
+				assertNull(ok.getFillRateInMegabytesPerSecond());
+				assertNull(ok.getSecondsUntilFull());
+			}
+			Thread.sleep(100);
+			write(new File(root, "used"), used + "\n");
+			wrapper.readData();
+		}
+		// about one megabyte per 100ms, give or take the time each check takes
+		double fillRate = ok.getFillRateInMegabytesPerSecond();
+		assertTrue("Fill rate " + fillRate, fillRate > 2 && fillRate < 11);
+		assertEquals(56 / fillRate, ok.getSecondsUntilFull(), 0.0001);
+		assertEquals(10 * fillRate, ok.getInodeFillRatePerSecond(), 0.0001);
+		assertEquals(560 / ok.getInodeFillRatePerSecond(), ok.getSecondsUntilInodesFull(), 0.0001);
+
+		// space being freed: no forecast of filling up
+		for(int used = 43; used >= 30; used--) {
+			Thread.sleep(100);
+			write(new File(root, "used"), used + "\n");
+			wrapper.readData();
+		}
+		assertTrue(ok.getFillRateInMegabytesPerSecond() < 0);
+		assertNull(ok.getSecondsUntilFull());
+		assertNull(ok.getSecondsUntilInodesFull());
+	}
+
+	public void testLinearTrend() throws Exception {
+		LinearTrend trend = new LinearTrend(60000L, 1000);
+		assertTrue(Double.isNaN(trend.getSlope()));
+		// a day of samples every ten seconds, rising 2/s for the first half and falling 3/s after
+		final long start = 1300000000000L;
+		for(int i = 0; i <= 8640; i++) {
+			final long time = start + 10000L * i;
+			final double value = i <= 4320 ? 1e9 + 20.0 * i : 1e9 + 86400 - 30.0 * (i - 4320);
+			trend.add(time, value);
+			if(i == 4320) {
+				assertEquals(2.0, trend.getSlope(), 1e-6);
+			}
+		}
+		assertEquals(7, trend.getSampleCount());
+		assertEquals(60000L, trend.getSpanMillis());
+		assertEquals(-3.0, trend.getSlope(), 1e-6);
+
+		// the capacity bounds the samples kept, whatever the window
+		trend = new LinearTrend(Long.MAX_VALUE, 3);
+		trend.add(0, 0);
+		trend.add(1000, 1);
+		trend.add(2000, 2);
+		trend.add(3000, 5);
+		assertEquals(3, trend.getSampleCount());
+		assertEquals(2.0, trend.getSlope(), 1e-9);
+		try {
+			trend.add(2999, 0);
+			fail("Sample out of order accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private Properties newConfig() {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, BEAN_PATH);
+		config.setProperty(LinuxDiskspaceJMXWrapper.CONFIG_KEY_DF_PATH, new File(root, "df").getAbsolutePath());
+		config.setProperty(LinuxDiskspaceJMXWrapper.CONFIG_KEY_MTAB_PATH, new File(root, "mtab").getAbsolutePath());
+		config.setProperty(LinuxDiskspaceJMXWrapper.CONFIG_KEY_DF_PERIOD, "1");
+		config.setProperty(LinuxDiskspaceJMXWrapper.CONFIG_KEY_DF_TIMEOUT, "500");
+		return config;
+	}
+}
@@ -51,6 +51,12 @@ public class DiskspaceTest extends LinuxBaseTest {
 		"UsedInodes",
 		"AvailableInodes",
 		"PercentageInodesUsed",
+		"StatLatencyInMillis",
+		"Stale",
+		"FillRateInMegabytesPerSecond",
+		"SecondsUntilFull",
+		"InodeFillRatePerSecond",
+		"SecondsUntilInodesFull",
 	};
 	
 	@Override
@@ -0,0 +1,134 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.IntervalHistogramRecorder;
+import com.palantir.opensource.sysmon.util.LogLinearHistogram;
+
+
+public class HistogramTest extends LinuxBaseTest {
+
+	static final String BEAN_NAME = "sysmon.test.histogram:type=io-device,devicename=sdz";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxMetricHistory.class, Level.ERROR, Level.WARN);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		checkForErrorMessages();
+	}
+
+	public void testPercentilesAreWithinPrecision() throws Exception {
+		LogLinearHistogram histogram = new LogLinearHistogram(7, 48);
+		Random random = new Random(42);
+		long[] values = new long[100000];
+		for(int i = 0; i < values.length; i++) {
+			// spread over many orders of magnitude
+			values[i] = (long)Math.exp(random.nextDouble() * 30);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(values.length, histogram.getTotalCount());
+		assertEquals(values[0], histogram.getMin());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		for(double p : new double[] { 1.0, 50.0, 90.0, 99.0, 99.9 }) {
+			long exact = values[(int)Math.ceil(p / 100.0 * values.length) - 1];
+			long reported = histogram.getValueAtPercentile(p);
+			assertTrue("p" + p + ": " + reported + " below " + exact, reported >= exact);
+			assertTrue("p" + p + ": " + reported + " too far above " + exact,
+			           reported <= exact + exact / 64 + 1);
+		}
+		assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100.0));
+
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getMin());
+		assertEquals((1L << 48) - 1, histogram.getMax());
+
+		histogram.reset();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(99.0));
+	}
+
+	public void testIntervalsDoNotLoseRecordedValues() throws Exception {
+		final IntervalHistogramRecorder recorder = new IntervalHistogramRecorder(7, 48);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final int recordCount = 1000000;
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for(int i = 0; i < recordCount; i++) {
+					recorder.record(i % 1000);
+				}
+				done.set(true);
+			}
+		};
+		writer.start();
+		long total = 0;
+		LogLinearHistogram interval = null;
+		while(!done.get()) {
+			interval = recorder.getIntervalHistogram(interval);
+			total += interval.getTotalCount();
+		}
+		writer.join();
+		total += recorder.getIntervalHistogram(interval).getTotalCount();
+		assertEquals(recordCount, total);
+	}
+
+	public void testHistogramsArePublished() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.histogram");
+		config.setProperty(LinuxMetricHistory.CONFIG_KEY_HISTOGRAM_WINDOW, "1");
+		LinuxMetricHistory history =
+			new LinuxMetricHistory(config, "io-device",
+			                       LinuxIOStatJMXWrapper.DEFAULT_IOSTAT_HISTOGRAMS);
+		LinuxIOStat bean = new LinuxIOStat(BEAN_NAME, history);
+		final long now = System.currentTimeMillis();
+		for(int i = 1; i <= 1000; i++) {
+			bean.averageWaitTimeInMillis = i / 10.0f;
+			history.record(BEAN_NAME, bean, now);
+		}
+		// starts the next window, publishing the one above
+		history.record(BEAN_NAME, bean, now + 2000L);
+
+		final ObjectName name = new ObjectName("sysmon.test.histogram:type=histogram," +
+		                                       "source=io-device,devicename=sdz," +
+		                                       "attribute=AverageWaitTimeInMillis");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		assertTrue(server.isRegistered(name));
+		assertEquals(1000L, server.getAttribute(name, "Count"));
+		assertEquals(100.0, (Double)server.getAttribute(name, "Max"), 0.001);
+		assertEquals(50.0, (Double)server.getAttribute(name, "P50"), 50.0 / 64);
+		assertEquals(99.0, (Double)server.getAttribute(name, "P99"), 99.0 / 64);
+		assertNotNull(history.getHistogram(BEAN_NAME, "BandwidthUtilizationPercentage"));
+		assertNull(history.getHistogram(BEAN_NAME, "ReadsPerSecond"));
+
+		history.remove(BEAN_NAME);
+		assertFalse(server.isRegistered(name));
+	}
+}
@@ -0,0 +1,219 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.linux.LinuxHotThreadsJMXWrapper.DumpedThread;
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+
+
+public class HotThreadsTest extends LinuxBaseTest {
+
+	static final String DUMP =
+		"2011-06-01 12:00:00\n" +
+		"Full thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode, sharing):\n" +
+		"\n" +
+		"\"sysmon-hot-thread-busy\" #21 prio=5 os_prio=0 cpu=200.00ms elapsed=1.00s " +
+		"tid=0x00007f78f4024ef0 nid=0x3e9 runnable  [0x00007f78d8dfe000]\n" +
+		"   java.lang.Thread.State: RUNNABLE\n" +
+		"\n" +
+		"\"sysmon-hot-thread-idle\" #22 prio=5 os_prio=0 cpu=0.10ms elapsed=1.00s " +
+		"tid=0x00007f78f4025ef0 nid=0x3ea waiting on condition  [0x00007f78d8cfe000]\n" +
+		"   java.lang.Thread.State: WAITING (parking)\n" +
+		"\n" +
+		"\"C2 CompilerThread0\" #6 daemon prio=9 os_prio=0 cpu=5.00ms elapsed=1.00s " +
+		"tid=0x00007f78f4026ef0 nid=0x3eb waiting on condition  [0x0000000000000000]\n" +
+		"   java.lang.Thread.State: RUNNABLE\n" +
+		"\n" +
+		"\"GC Thread#0\" os_prio=0 cpu=1.21ms elapsed=1.00s tid=0x00007f78f403b2a0 nid=0x3ec runnable  \n" +
+		"\n" +
+		"JNI global refs: 15, weak refs: 0\n";
+
+	LinuxHotThreadsJMXWrapper wrapper;
+	MBeanServer server;
+	FakeDiagnosticCommand diagnosticCommand;
+
+	public interface FakeDiagnosticCommandMBean {
+		String threadPrint(String[] options);
+	}
+
+	public static class FakeDiagnosticCommand implements FakeDiagnosticCommandMBean {
+		int dumps = 0;
+
+		public String threadPrint(String[] options) {
+			dumps++;
+			return DUMP;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxHotThreadsJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		assertTrue(new File(root, "task").mkdirs());
+
+		server = MBeanServerFactory.newMBeanServer();
+		diagnosticCommand = new FakeDiagnosticCommand();
+		server.registerMBean(diagnosticCommand,
+		                     new ObjectName(LinuxHotThreadsJMXWrapper.DIAGNOSTIC_COMMAND));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testHotThreads() throws Exception {
+		writeTask(1001, "sysmon-hot-thre", 20, 0, 0);
+		writeTask(1002, "sysmon-hot-thre", 0, 0, 0);
+		writeTask(1004, "GC Thread#0", 5, 0, 0);
+		wrapper = newWrapper();
+		Thread.sleep(100);
+		writeTask(1001, "sysmon-hot-thre", 40, 0, 0);
+		writeTask(1002, "sysmon-hot-thre", 0, 0, 4096);
+		writeTask(1004, "GC Thread#0", 15, 0, 0);
+		wrapper.readData();
+
+		LinuxHotThread first = wrapper.ranks[LinuxHotThreadsJMXWrapper.CPU][0];
+		assertEquals(1001, first.getTid());
+		assertEquals(21, first.getJavaThreadId());
+		assertEquals("sysmon-hot-thread-busy", first.getName());
+		LinuxHotThread second = wrapper.ranks[LinuxHotThreadsJMXWrapper.CPU][1];
+		assertEquals(1004, second.getTid());
+		assertEquals(-1, second.getJavaThreadId());
+		assertEquals("GC Thread#0", second.getName());
+		// each thread's rate is over the time between its own reads
+		assertEquals(2.0, first.getCpuPercentage() / second.getCpuPercentage(), 0.05);
+		// only threads that did something
+		assertEquals(0, wrapper.ranks[LinuxHotThreadsJMXWrapper.CPU][2].getTid());
+
+		LinuxHotThread io = wrapper.ranks[LinuxHotThreadsJMXWrapper.IO][0];
+		assertEquals(1002, io.getTid());
+		assertEquals(22, io.getJavaThreadId());
+		assertTrue(io.getWriteBytesPerSecond() > 0);
+		assertEquals(0, wrapper.ranks[LinuxHotThreadsJMXWrapper.IO][1].getTid());
+	}
+
+	public void testMatchingOnlyForNewThreads() throws Exception {
+		writeTask(1001, "sysmon-hot-thre", 20, 0, 0);
+		wrapper = newWrapper();
+		assertEquals(1, wrapper.matchCount);
+		wrapper.readData();
+		wrapper.readData();
+		assertEquals(1, wrapper.matchCount);
+
+		writeTask(1002, "sysmon-hot-thre", 0, 0, 0);
+		wrapper.readData();
+		assertEquals(2, wrapper.matchCount);
+		assertEquals(2, diagnosticCommand.dumps);
+		assertEquals(21, wrapper.tasks.get("1001").javaThreadId);
+		assertEquals(22, wrapper.tasks.get("1002").javaThreadId);
+
+		// exited threads are forgotten without asking the JVM
+		write(new File(root, "task/1001/stat"), "");
+		FileUtils.deleteDirectory(new File(root, "task/1001"));
+		wrapper.readData();
+		assertEquals(1, wrapper.tasks.size());
+		assertEquals(2, wrapper.matchCount);
+		assertEquals(2, diagnosticCommand.dumps);
+	}
+
+	public void testUnnamedNativeThreads() throws Exception {
+		// JVMs before Java 9 don't name native threads, so only the thread dump tells them apart
+		writeTask(1001, "java", 20, 0, 0);
+		writeTask(1002, "java", 0, 0, 0);
+		writeTask(1004, "java", 0, 0, 0);
+		writeTask(1005, "java", 0, 0, 0);
+		writeTask(1012, "java", 0, 0, 0);
+		wrapper = newWrapper();
+
+		assertEquals(21, wrapper.tasks.get("1001").javaThreadId);
+		assertEquals("sysmon-hot-thread-busy", wrapper.tasks.get("1001").name);
+		assertEquals(22, wrapper.tasks.get("1002").javaThreadId);
+		assertEquals("sysmon-hot-thread-idle", wrapper.tasks.get("1002").name);
+		assertEquals(-1, wrapper.tasks.get("1004").javaThreadId);
+		assertEquals("GC Thread#0", wrapper.tasks.get("1004").name);
+		// threads missing from the dump aren't guessed at
+		assertEquals(-1, wrapper.tasks.get("1005").javaThreadId);
+		assertEquals("java", wrapper.tasks.get("1005").name);
+		assertEquals(-1, wrapper.tasks.get("1012").javaThreadId);
+		assertEquals("java", wrapper.tasks.get("1012").name);
+	}
+
+	public void testNoThreadDumps() throws Exception {
+		server = MBeanServerFactory.newMBeanServer();
+		writeTask(1001, "java", 20, 0, 0);
+		writeTask(1002, "sysmon-hot-thre", 0, 0, 0);
+		wrapper = newWrapper();
+
+		assertNull(wrapper.diagnosticCommand);
+		assertEquals(-1, wrapper.tasks.get("1001").javaThreadId);
+		assertEquals("java", wrapper.tasks.get("1001").name);
+		assertEquals(-1, wrapper.tasks.get("1002").javaThreadId);
+		assertEquals("sysmon-hot-thre", wrapper.tasks.get("1002").name);
+	}
+
+	public void testParseThreadDump() throws Exception {
+		Map<Integer, DumpedThread> threads = LinuxHotThreadsJMXWrapper.parseThreadDump(
+			DUMP +
+			// native ids are decimal from Java 19 on, and names may hold quotes
+			"\"say \"hi\" #7\" #30 prio=5 os_prio=0 cpu=0.00ms elapsed=0.10s tid=0x00007f78f4027ef0 " +
+			"nid=1013 waiting on condition  [0x00007f78d8bfe000]\n");
+		assertEquals(5, threads.size());
+		assertEquals("sysmon-hot-thread-busy", threads.get(0x3e9).name);
+		assertEquals(21, threads.get(0x3e9).javaThreadId);
+		assertEquals("C2 CompilerThread0", threads.get(0x3eb).name);
+		assertEquals(6, threads.get(0x3eb).javaThreadId);
+		assertEquals("GC Thread#0", threads.get(0x3ec).name);
+		assertEquals(-1, threads.get(0x3ec).javaThreadId);
+		assertEquals("say \"hi\" #7", threads.get(1013).name);
+		assertEquals(30, threads.get(1013).javaThreadId);
+	}
+
+	private LinuxHotThreadsJMXWrapper newWrapper() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.hotthreads." + getName());
+		config.setProperty(LinuxHotThreadsJMXWrapper.CONFIG_KEY_HOT_THREADS_COUNT, "3");
+		return new LinuxHotThreadsJMXWrapper(config, new File(root, "task"), server);
+	}
+
+	private void writeTask(int tid, String name, long ticks, long readBytes, long writeBytes)
+		throws Exception {
+		File dir = new File(root, "task/" + tid);
+		assertTrue(dir.isDirectory() || dir.mkdirs());
+		write(new File(dir, "comm"), name + "\n");
+		StringBuilder stat = new StringBuilder(tid + " (" + name + ") S");
+		for(int field = 4; field <= 52; field++) {
+			stat.append(' ').append(field == ProcessStatLine.UTIME ? ticks : 0);
+		}
+		write(new File(dir, "stat"), stat.append('\n').toString());
+		write(new File(dir, "io"), "rchar: 1\nwchar: 2\nread_bytes: " + readBytes + "\nwrite_bytes: " +
+		                           writeBytes + "\ncancelled_write_bytes: 0\n");
+	}
+}
@@ -0,0 +1,184 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.PerCpuTable;
+
+
+public class InterruptsTest extends LinuxBaseTest {
+
+	static final String HEADER =
+		"           CPU0       CPU1       CPU2       CPU3       \n";
+
+	static final String FIRST = HEADER +
+		"  0:         10          0          0          0   IO-APIC   2-edge      timer\n" +
+		" 40:       1000          0          0          0  PCI-MSI 524288-edge      nvme0q0\n" +
+		" 41:       1000          0          0          0  PCI-MSI 524289-edge      nvme0q1\n" +
+		" 42:       1000          0          0          0  PCI-MSI 524290-edge      nvme0q2\n" +
+		" 50:          0        500          0          0  PCI-MSI 1048576-edge      eth0-TxRx-0\n" +
+		" 51:          0          0        500          0  PCI-MSI 1048577-edge      eth0-TxRx-1\n" +
+		"NMI:          0          0          0          0   Non-maskable interrupts\n" +
+		"LOC:        100        100        100        100   Local timer interrupts\n" +
+		"ERR:          0\n" +
+		"MIS:          0\n";
+
+	static final String SECOND = HEADER +
+		"  0:         10          0          0          0   IO-APIC   2-edge      timer\n" +
+		" 40:       1000          0          0          0  PCI-MSI 524288-edge      nvme0q0\n" +
+		" 41:     101000          0          0          0  PCI-MSI 524289-edge      nvme0q1\n" +
+		" 42:     101000          0          0          0  PCI-MSI 524290-edge      nvme0q2\n" +
+		" 50:          0      50500          0          0  PCI-MSI 1048576-edge      eth0-TxRx-0\n" +
+		" 51:          0          0      50500          0  PCI-MSI 1048577-edge      eth0-TxRx-1\n" +
+		"NMI:          0          0          0          0   Non-maskable interrupts\n" +
+		"LOC:       1100       1100       1100       1100   Local timer interrupts\n" +
+		"ERR:          7\n" +
+		"MIS:          0\n";
+
+	static final String SOFTIRQ_HEADER =
+		"                    CPU0       CPU1       CPU2       CPU3       \n";
+
+	static final String SOFTIRQS_FIRST = SOFTIRQ_HEADER +
+		"          HI:          0          0          0          0\n" +
+		"       TIMER:        100        100        100        100\n" +
+		"      NET_RX:       1000          0          0          0\n";
+
+	static final String SOFTIRQS_SECOND = SOFTIRQ_HEADER +
+		"          HI:          0          0          0          0\n" +
+		"       TIMER:        200        200        200        200\n" +
+		"      NET_RX:      51000          0          0          0\n";
+
+	File interrupts;
+	File softirqs;
+	LinuxInterruptsJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxInterruptsJMXWrapper.class, Level.ERROR, Level.WARN);
+		interrupts = File.createTempFile("interrupts", ".txt");
+		interrupts.deleteOnExit();
+		softirqs = File.createTempFile("softirqs", ".txt");
+		softirqs.deleteOnExit();
+		write(interrupts, FIRST);
+		write(softirqs, SOFTIRQS_FIRST);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.interrupts");
+		wrapper = new LinuxInterruptsJMXWrapper(config, interrupts, softirqs);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for(LinuxInterruptsJMXWrapper.Table table : wrapper.tables) {
+			table.reader.close();
+		}
+		checkForErrorMessages();
+	}
+
+	public void testRatesAndImbalance() throws Exception {
+		LinuxInterrupts hardirq = wrapper.tables.get(0).bean;
+		LinuxInterrupts softirq = wrapper.tables.get(1).bean;
+		assertEquals("hardirq", hardirq.getSource());
+		assertEquals(4, hardirq.getCpuCount());
+		assertEquals(4410L, hardirq.getTotal());
+		assertEquals("PCI-MSI 524289-edge      nvme0q1", hardirq.getDescriptions().get("41"));
+		assertEquals(0.0, hardirq.getTotalPerSecond(), 0.0);
+
+		Thread.sleep(100);
+		write(interrupts, SECOND);
+		write(softirqs, SOFTIRQS_SECOND);
+		wrapper.readData();
+
+		assertEquals("CPU0", hardirq.getBusiestCpu());
+		assertTrue(hardirq.getPerSecondByLine().get("41") > 0.0);
+		assertEquals(0.0, hardirq.getPerSecondByLine().get("40"), 0.0);
+		assertTrue(hardirq.getPerSecondByLine().get("ERR") > 0.0);
+		assertEquals(hardirq.getPerSecondByLine().get("41") + hardirq.getPerSecondByLine().get("42"),
+		             hardirq.getPerSecondByGroup().get("nvme0"), 0.001);
+		// every NVMe queue on CPU0, the NIC queues on a CPU each
+		assertEquals(1.0, hardirq.getImbalanceByGroup().get("nvme0"), 0.001);
+		assertEquals(0.0, hardirq.getImbalanceByGroup().get("eth0"), 0.001);
+		assertEquals(2, hardirq.getPerSecondByGroup().size());
+		assertEquals(1, hardirq.getImbalancedGroupCount());
+		assertEquals("nvme0", hardirq.getImbalancedGroups());
+		assertEquals(0.0, hardirq.getImbalanceByLine().get("LOC"), 0.001);
+		assertTrue(hardirq.getImbalanceScore() > 0.0);
+		double sum = 0;
+		for(double rate : hardirq.getPerSecondByCpu().values()) {
+			sum += rate;
+		}
+		assertEquals(hardirq.getTotalPerSecond(), sum, 0.001);
+
+		assertEquals(4, softirq.getCpuCount());
+		assertEquals(3, softirq.getPerSecondByGroup().size());
+		assertEquals(1.0, softirq.getImbalanceByGroup().get("NET_RX"), 0.001);
+		assertEquals(0.0, softirq.getImbalanceByGroup().get("TIMER"), 0.001);
+		assertEquals("NET_RX", softirq.getImbalancedGroups());
+
+		// a new interrupt line: no rates until it has been seen twice
+		final String third = SECOND + " 60:          5          0          0          0  PCI-MSI 2097152-edge      nvme1q0\n";
+		write(interrupts, third);
+		wrapper.readData();
+		assertFalse(hardirq.getPerSecondByLine().containsKey("60"));
+		write(interrupts, third);
+		wrapper.readData();
+		assertEquals(0.0, hardirq.getPerSecondByLine().get("60"), 0.0);
+		assertEquals(3, hardirq.getPerSecondByGroup().size());
+		assertEquals(0, hardirq.getImbalancedGroupCount());
+	}
+
+	public void testTableIsReusedBetweenParses() throws Exception {
+		PerCpuTable table = new PerCpuTable();
+		byte[] first = FIRST.getBytes("US-ASCII");
+		table.parse(first, first.length);
+		assertTrue(table.isLayoutChanged());
+		assertEquals(4, table.getCpuCount());
+		assertEquals(10, table.getRowCount());
+		assertEquals("MIS", table.getRowName(9));
+		assertEquals("", table.getDescription(9));
+		assertEquals(500L, table.get(5, 2));
+		String label = table.getRowName(1);
+
+		byte[] second = SECOND.getBytes("US-ASCII");
+		table.parse(second, second.length);
+		assertFalse(table.isLayoutChanged());
+		assertSame(label, table.getRowName(1));
+		assertEquals(101000L, table.get(2, 0));
+		assertEquals(7L, table.get(8, 0));
+		assertEquals(0L, table.get(8, 3));
+
+		byte[] fewer = (HEADER + "LOC:        100        100        100        100   Local timer interrupts\n").getBytes("US-ASCII");
+		table.parse(fewer, fewer.length);
+		assertTrue(table.isLayoutChanged());
+		assertEquals(1, table.getRowCount());
+		assertEquals("LOC", table.getRowName(0));
+	}
+
+	public void testImbalance() throws Exception {
+		double[] rates = { 10, 10, 10, 10 };
+		assertEquals(0.0, LinuxInterruptsJMXWrapper.imbalance(rates, 4, 4), 0.0);
+		rates = new double[] { 40, 0, 0, 0 };
+		assertEquals(1.0, LinuxInterruptsJMXWrapper.imbalance(rates, 4, 4), 0.0);
+		// one queue can only be on one CPU
+		assertEquals(0.0, LinuxInterruptsJMXWrapper.imbalance(rates, 4, 1), 0.0);
+		rates = new double[] { 20, 20, 0, 0 };
+		assertEquals(0.0, LinuxInterruptsJMXWrapper.imbalance(rates, 4, 2), 0.0);
+		assertEquals(1.0 / 3, LinuxInterruptsJMXWrapper.imbalance(rates, 4, 4), 0.0001);
+		assertEquals(0.0, LinuxInterruptsJMXWrapper.imbalance(new double[4], 4, 4), 0.0);
+	}
+}
@@ -13,6 +13,12 @@
 //   limitations under the License.
 package com.palantir.opensource.sysmon.linux;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
 import com.palantir.opensource.sysmon.BaseTest;
 
 
@@ -36,4 +42,42 @@ public abstract class LinuxBaseTest extends BaseTest {
 							   "Good luck! (Things will probably break)");
 		}
 	}
+
+	/**
+	 * Temporary directory that fake <code>/proc</code> and <code>/sys</code> files are laid out
+	 * in, if {@link #createRoot(String)} was called.  Deleted by {@link #tearDown()}.
+	 */
+	protected File root = null;
+
+	/**
+	 * Creates an empty temporary directory as {@link #root}.
+	 */
+	protected File createRoot(String prefix) throws IOException {
+		root = File.createTempFile(prefix, "");
+		assertTrue(root.delete());
+		assertTrue(root.mkdirs());
+		return root;
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(root != null) {
+			FileUtils.deleteDirectory(root);
+			root = null;
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Writes a file, creating its directory if need be.
+	 */
+	protected static void write(File file, String contents) throws IOException {
+		file.getParentFile().mkdirs();
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write(contents);
+		} finally {
+			out.close();
+		}
+	}
 }
@@ -0,0 +1,167 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.JMXUtils;
+
+
+public class MappedFileExporterTest extends LinuxBaseTest {
+
+	static final String TEST_DOMAIN = "sysmon.test.mmap";
+	static final String FIRST_BEAN = TEST_DOMAIN + ":type=test,name=first";
+	static final String SECOND_BEAN = TEST_DOMAIN + ":type=test,name=second";
+
+	public static interface ExportedMBean {
+		public long getCount();
+		public Double getRatio();
+		public String getLabel();
+	}
+
+	public static class Exported implements ExportedMBean {
+		volatile long count = 0;
+		volatile Double ratio = null;
+		public long getCount() {
+			return count;
+		}
+		public Double getRatio() {
+			return ratio;
+		}
+		public String getLabel() {
+			return "not exported";
+		}
+	}
+
+	File exportFile;
+	LinuxMappedFileExporter exporter;
+	Exported first = new Exported();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxMappedFileExporter.class, Level.ERROR, Level.WARN);
+		JMXUtils.registerMBean(first, FIRST_BEAN);
+		exportFile = File.createTempFile("MappedFileExporterTest", ".mmap");
+		exporter = new LinuxMappedFileExporter(generateConfig());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		exporter.stopMonitoring();
+		JMXUtils.unregisterMBeanCatchAndLogExceptions(FIRST_BEAN);
+		assertFalse("Export file was not removed on shutdown", exportFile.exists());
+		checkForErrorMessages();
+	}
+
+	public void testValuesAreWrittenInPlace() throws Exception {
+		MappedByteBuffer view = map();
+		assertEquals(LinuxMappedFileExporter.MAGIC, view.getInt(0));
+		assertEquals(2, view.getInt(LinuxMappedFileExporter.OFFSET_SLOT_COUNT));
+		int layoutVersion = view.getInt(LinuxMappedFileExporter.OFFSET_LAYOUT_VERSION);
+
+		assertEquals(0L, readLong(view, FIRST_BEAN, "Count"));
+		assertTrue(Double.isNaN(readDouble(view, FIRST_BEAN, "Ratio")));
+
+		long generation = view.getLong(LinuxMappedFileExporter.OFFSET_GENERATION);
+		assertEquals("Generation should be even between ticks", 0, generation % 2);
+
+		first.count = 42;
+		first.ratio = 0.5;
+		exporter.writeData();
+
+		assertEquals(generation + 2, view.getLong(LinuxMappedFileExporter.OFFSET_GENERATION));
+		assertEquals(layoutVersion, view.getInt(LinuxMappedFileExporter.OFFSET_LAYOUT_VERSION));
+		assertEquals(42L, readLong(view, FIRST_BEAN, "Count"));
+		assertEquals(0.5, readDouble(view, FIRST_BEAN, "Ratio"), 0.0);
+	}
+
+	public void testLayoutIsRebuiltForNewBeans() throws Exception {
+		int layoutVersion = map().getInt(LinuxMappedFileExporter.OFFSET_LAYOUT_VERSION);
+		Exported second = new Exported();
+		second.count = 7;
+		JMXUtils.registerMBean(second, SECOND_BEAN);
+		try {
+			exporter.writeData();
+			MappedByteBuffer view = map();
+			assertEquals(layoutVersion + 1, view.getInt(LinuxMappedFileExporter.OFFSET_LAYOUT_VERSION));
+			assertEquals(4, view.getInt(LinuxMappedFileExporter.OFFSET_SLOT_COUNT));
+			assertEquals(7L, readLong(view, SECOND_BEAN, "Count"));
+		} finally {
+			JMXUtils.unregisterMBeanCatchAndLogExceptions(SECOND_BEAN);
+		}
+	}
+
+	MappedByteBuffer map() throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(exportFile, "r");
+		try {
+			MappedByteBuffer view = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			view.order(view.get(4) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			return view;
+		} finally {
+			raf.close();
+		}
+	}
+
+	long readLong(MappedByteBuffer view, String bean, String attribute) throws Exception {
+		int slot = findSlot(view, bean, attribute);
+		assertEquals(LinuxMappedFileExporter.TYPE_LONG, view.get(slot + 12));
+		return view.getLong(view.getInt(slot + 8));
+	}
+
+	double readDouble(MappedByteBuffer view, String bean, String attribute) throws Exception {
+		int slot = findSlot(view, bean, attribute);
+		assertEquals(LinuxMappedFileExporter.TYPE_DOUBLE, view.get(slot + 12));
+		return view.getDouble(view.getInt(slot + 8));
+	}
+
+	int findSlot(MappedByteBuffer view, String bean, String attribute) throws Exception {
+		String canonicalName = new ObjectName(bean).getCanonicalName();
+		int slots = view.getInt(LinuxMappedFileExporter.OFFSET_SLOT_COUNT);
+		int table = view.getInt(LinuxMappedFileExporter.OFFSET_SLOT_TABLE);
+		for(int i = 0; i < slots; i++) {
+			int slot = table + i * LinuxMappedFileExporter.SLOT_SIZE;
+			if(readString(view, view.getInt(slot)).equals(canonicalName) &&
+			   readString(view, view.getInt(slot + 4)).equals(attribute)) {
+				return slot;
+			}
+		}
+		fail("No slot for " + bean + " " + attribute);
+		return -1;
+	}
+
+	String readString(MappedByteBuffer view, int offset) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = offset; view.get(i) != 0; i++) {
+			sb.append((char)view.get(i));
+		}
+		return sb.toString();
+	}
+
+	public Properties generateConfig() {
+		Properties p = new Properties();
+		p.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, TEST_DOMAIN);
+		p.setProperty(LinuxMappedFileExporter.CONFIG_KEY_MMAP_PATH, exportFile.getAbsolutePath());
+		return p;
+	}
+}
@@ -0,0 +1,142 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.KeyValueTable;
+
+
+public class MemInfoTest extends LinuxBaseTest {
+
+	// a 4 TB host, more than an Integer number of kilobytes can hold
+	static final String MEMINFO =
+		"MemTotal:       4294967296 kB\n" +
+		"MemFree:        1073741824 kB\n" +
+		"MemAvailable:   3221225472 kB\n" +
+		"Buffers:           70552 kB\n" +
+		"Cached:           544636 kB\n" +
+		"Active(file):     158264 kB\n" +
+		"Inactive(file):   447440 kB\n" +
+		"SwapTotal:       1000000 kB\n" +
+		"SwapFree:         750000 kB\n" +
+		"Dirty:              1264 kB\n" +
+		"Writeback:            16 kB\n" +
+		"Shmem:              9484 kB\n" +
+		"Slab:              51452 kB\n" +
+		"SReclaimable:      32868 kB\n" +
+		"CommitLimit:     2000000 kB\n" +
+		"Committed_AS:    3000000 kB\n" +
+		"ShinyNewKey:          42 kB\n" +
+		"AnonHugePages:     20480 kB\n" +
+		"HugePages_Total:     512\n" +
+		"HugePages_Free:      128\n" +
+		"Hugepagesize:       2048 kB\n";
+
+	// a kernel from before MemAvailable
+	static final String OLD_MEMINFO =
+		"MemTotal:        1000000 kB\n" +
+		"MemFree:          100000 kB\n" +
+		"Active(file):     200000 kB\n" +
+		"Inactive(file):   100000 kB\n" +
+		"SReclaimable:      50000 kB\n";
+
+	File data;
+	LinuxMemInfoJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxMemInfoJMXWrapper.class, Level.ERROR, Level.WARN);
+		data = File.createTempFile("meminfo", ".txt");
+		data.deleteOnExit();
+		write(MEMINFO);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.meminfo");
+		wrapper = new LinuxMemInfoJMXWrapper(config, data);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.reader.close();
+		checkForErrorMessages();
+	}
+
+	public void testValuesAndPercentages() throws Exception {
+		LinuxMemInfo bean = wrapper.bean;
+		assertEquals(4294967296L, bean.getMemTotalInKB());
+		assertEquals(3221225472L, bean.getMemAvailableInKB());
+		assertFalse(bean.isMemAvailableEstimated());
+		assertEquals(75.0, bean.getAvailablePercentage(), 0.0001);
+		assertEquals(150.0, bean.getCommitRatioPercentage(), 0.0001);
+		assertEquals(25.0, bean.getSwapUsedPercentage(), 0.0001);
+		assertEquals(75.0, bean.getHugePagesUsedPercentage(), 0.0001);
+		assertEquals(3000000L, bean.getCommittedASInKB());
+		assertEquals(512L, bean.getHugePagesTotal());
+		assertEquals(2048L, bean.getHugePageSizeInKB());
+		assertEquals(16L, bean.getWritebackInKB());
+		// keys this code has never heard of, and ones this kernel doesn't have
+		assertEquals(42L, bean.getValues().get("ShinyNewKey").longValue());
+		assertEquals(0L, bean.getPageTablesInKB());
+
+		// same keys, new values
+		write(MEMINFO.replace("Writeback:            16", "Writeback:          2048"));
+		wrapper.readData();
+		assertEquals(2048L, bean.getWritebackInKB());
+		assertEquals(2048L, bean.getValues().get("Writeback").longValue());
+
+		write(OLD_MEMINFO);
+		wrapper.readData();
+		assertTrue(bean.isMemAvailableEstimated());
+		assertEquals(450000L, bean.getMemAvailableInKB());
+		assertEquals(45.0, bean.getAvailablePercentage(), 0.0001);
+		assertEquals(0.0, bean.getSwapUsedPercentage(), 0.0);
+		assertNull(bean.getValues().get("ShinyNewKey"));
+	}
+
+	public void testKeyValueTable() throws Exception {
+		KeyValueTable table = new KeyValueTable();
+		byte[] first = "pgfault 12\npgmajfault 3\nnr_weird -5\n\nNode 0 MemTotal:  100 kB\nno number here\n".getBytes("US-ASCII");
+		table.parse(first, first.length);
+		assertTrue(table.isLayoutChanged());
+		assertEquals(4, table.size());
+		assertEquals(3L, table.get("pgmajfault", -1));
+		assertEquals(-5L, table.get("nr_weird", -1));
+		assertEquals(100L, table.get("Node 0 MemTotal", -1));
+		assertEquals(-1L, table.get("no", -1));
+		String key = table.getKey(0);
+
+		byte[] second = "pgfault 13\npgmajfault 4\nnr_weird 0\n\nNode 0 MemTotal:  100 kB\n".getBytes("US-ASCII");
+		table.parse(second, second.length);
+		assertFalse(table.isLayoutChanged());
+		assertSame(key, table.getKey(0));
+		assertEquals(1, table.indexOf("pgmajfault"));
+
+		byte[] third = "pgmajfault 5\n".getBytes("US-ASCII");
+		table.parse(third, third.length);
+		assertTrue(table.isLayoutChanged());
+		assertEquals(0, table.indexOf("pgmajfault"));
+		assertEquals(-1, table.indexOf("pgfault"));
+	}
+
+	private void write(String contents) throws Exception {
+		FileWriter out = new FileWriter(data);
+		out.write(contents);
+		out.close();
+	}
+}
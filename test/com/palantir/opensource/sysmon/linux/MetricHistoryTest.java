@@ -0,0 +1,223 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.CompressedTimeSeries;
+import com.palantir.opensource.sysmon.util.RollupSeries;
+
+
+public class MetricHistoryTest extends LinuxBaseTest {
+
+	static final String BEAN_NAME = "sysmon.test.history:type=test,name=first";
+
+	public static interface RecordedMBean {
+		public long getCount();
+		public float getRate();
+		public String getLabel();
+	}
+
+	public static class Recorded implements RecordedMBean {
+		long count = 0;
+		float rate = 0.0f;
+		public long getCount() {
+			return count;
+		}
+		public float getRate() {
+			return rate;
+		}
+		public String getLabel() {
+			return "not recorded";
+		}
+	}
+
+	static class Collector implements CompressedTimeSeries.SampleVisitor {
+		final List<Long> timestamps = new ArrayList<Long>();
+		final List<Double> values = new ArrayList<Double>();
+		public void visit(long timestamp, double value) {
+			timestamps.add(timestamp);
+			values.add(value);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxMetricHistory.class, Level.ERROR, Level.WARN);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		checkForErrorMessages();
+	}
+
+	public void testSeriesRoundTrips() throws Exception {
+		CompressedTimeSeries series = new CompressedTimeSeries(Long.MAX_VALUE / 2);
+		Random random = new Random(42);
+		long[] timestamps = new long[5000];
+		double[] values = new double[timestamps.length];
+		long t = 1300000000000L;
+		for(int i = 0; i < timestamps.length; i++) {
+			// mostly regular, with the occasional jitter and gap
+			t += 1000 + (i % 7 == 0 ? random.nextInt(50) : 0) + (i % 997 == 0 ? 3600000 : 0);
+			timestamps[i] = t;
+			values[i] = i % 3 == 0 ? values[Math.max(i - 1, 0)] :
+			            i % 3 == 1 ? (float)random.nextGaussian() : random.nextDouble() * 1e12;
+			assertTrue(series.append(timestamps[i], values[i]));
+		}
+		assertEquals(timestamps.length, series.getSampleCount());
+		assertTrue("Series did not compress: " + series.getSizeInBytes() + " bytes",
+		           series.getSizeInBytes() < timestamps.length * 16);
+
+		Collector all = new Collector();
+		series.scan(Long.MIN_VALUE, Long.MAX_VALUE, all);
+		assertEquals(timestamps.length, all.timestamps.size());
+		for(int i = 0; i < timestamps.length; i++) {
+			assertEquals(timestamps[i], all.timestamps.get(i).longValue());
+			assertEquals(values[i], all.values.get(i).doubleValue(), 0.0);
+		}
+
+		Collector window = new Collector();
+		series.scan(timestamps[1000], timestamps[1999], window);
+		assertEquals(1000, window.timestamps.size());
+		assertEquals(timestamps[1000], window.timestamps.get(0).longValue());
+
+		Collector exported = new Collector();
+		CompressedTimeSeries.decode(series.export(timestamps[1000], timestamps[1999]), exported);
+		assertEquals(window.timestamps, exported.timestamps);
+		assertEquals(window.values, exported.values);
+	}
+
+	public void testOldBlocksAreEvicted() throws Exception {
+		CompressedTimeSeries series = new CompressedTimeSeries(60000L);
+		for(int i = 0; i < 100000; i++) {
+			series.append(1000L * i, i);
+		}
+		assertTrue(series.getFirstTimestamp() < 1000L * 99999 - 60000L);
+		assertTrue("Too many samples retained: " + series.getSampleCount(),
+		           series.getSampleCount() < 2000);
+		assertFalse("Out of order sample accepted", series.append(0, 0));
+	}
+
+	public void testHistoryIsExported() throws Exception {
+		LinuxMetricHistory history = new LinuxMetricHistory(new Properties(), "test");
+		Recorded bean = new Recorded();
+		for(int i = 0; i < 10; i++) {
+			bean.count = i;
+			bean.rate = i / 2.0f;
+			history.record(BEAN_NAME, bean, 1000L * i);
+		}
+		assertEquals(2, history.getSeriesCount());
+		assertEquals(20, history.getSampleCount());
+		assertEquals("Count", history.attributeNames(BEAN_NAME)[0]);
+
+		String csv = history.exportCsv(BEAN_NAME, "Rate", 2000, 3000);
+		assertEquals("timestamp,Rate\n2000,1.0\n3000,1.5\n", csv);
+
+		Collector exported = new Collector();
+		CompressedTimeSeries.decode(history.exportBinary(BEAN_NAME, "Count", 0, 9000), exported);
+		assertEquals(10, exported.values.size());
+		assertEquals(9.0, exported.values.get(9).doubleValue(), 0.0);
+
+		// a window with no samples exports as an empty series
+		Collector empty = new Collector();
+		CompressedTimeSeries.decode(history.exportBinary(BEAN_NAME, "Count", 20000, 30000), empty);
+		assertEquals(0, empty.values.size());
+
+		history.remove(BEAN_NAME);
+		assertEquals(0, history.getSeriesCount());
+	}
+
+	public void testRollupsAggregateAtEachResolution() throws Exception {
+		RollupSeries rollups = new RollupSeries(new long[] { 1000L, 60000L }, new int[] { 60, 60 });
+		final long start = 3600000L * 24;
+		// one sample a second for an hour, with a single spike half way through
+		for(int i = 0; i < 3600; i++) {
+			rollups.add(start + 1000L * i, i == 1800 ? 100.0 : i % 10);
+		}
+		rollups.add(start + 5, Double.NaN);
+		final long end = start + 3599000L;
+
+		RollupSeries.Aggregate lastMinute = rollups.aggregate(end - 59000L, end);
+		assertEquals(60, lastMinute.getCount());
+		assertEquals(0.0, lastMinute.getMin(), 0.0);
+		assertEquals(9.0, lastMinute.getMax(), 0.0);
+		assertEquals(4.5, lastMinute.getAverage(), 0.0);
+		assertEquals(9.0, lastMinute.getLast(), 0.0);
+
+		// too far back for the one-second buckets, answered by the one-minute ones
+		RollupSeries.Aggregate lastHour = rollups.aggregate(end - 3599000L, end);
+		assertEquals(3600, lastHour.getCount());
+		assertEquals(100.0, lastHour.getMax(), 0.0);
+
+		RollupSeries.Aggregate empty = rollups.aggregate(end + 3600000L, end + 3600000L);
+		assertEquals(0, empty.getCount());
+		assertTrue(Double.isNaN(empty.getMax()));
+	}
+
+	public void testHistoryRollupsAreQueryable() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMetricHistory.CONFIG_KEY_HISTORY_RETENTION, "0");
+		config.setProperty(LinuxMetricHistory.CONFIG_KEY_HISTORY_ROLLUPS, "1:10, 60:5");
+		LinuxMetricHistory history = new LinuxMetricHistory(config, "test");
+		Recorded bean = new Recorded();
+		bean.count = 3;
+		history.record(BEAN_NAME, bean);
+		bean.count = 7;
+		history.record(BEAN_NAME, bean);
+		assertEquals(0, history.getSampleCount());
+		assertEquals(7.0, history.rollupMax(BEAN_NAME, "Count", 60), 0.0);
+		assertEquals(3.0, history.rollupMin(BEAN_NAME, "Count", 60), 0.0);
+		assertEquals(5.0, history.rollupAverage(BEAN_NAME, "Count", 60), 0.0);
+		assertEquals(7.0, history.rollupLast(BEAN_NAME, "Count", 60), 0.0);
+		assertEquals(2, history.rollupCount(BEAN_NAME, "Count", 60));
+
+		config.setProperty(LinuxMetricHistory.CONFIG_KEY_HISTORY_ROLLUPS, "60:5,1:10");
+		try {
+			new LinuxMetricHistory(config, "test");
+			fail("Accepted rollups listed coarsest first");
+		} catch (LinuxMonitoringException e) {
+			// expected
+		}
+	}
+
+	public void testWindowedQueries() throws Exception {
+		LinuxMetricHistory history = new LinuxMetricHistory(new Properties(), "test");
+		LinuxIOStat bean = new LinuxIOStat(BEAN_NAME, history);
+		final long now = System.currentTimeMillis();
+		for(int i = 1; i <= 100; i++) {
+			bean.averageWaitTimeInMillis = i;
+			history.record(BEAN_NAME, bean, now - 1000L * (100 - i) - 500L);
+		}
+		assertEquals(100.0, bean.max("AverageWaitTimeInMillis", 3600), 0.0);
+		assertEquals(1.0, bean.min("AverageWaitTimeInMillis", 3600), 0.0);
+		assertEquals(50.5, bean.avg("AverageWaitTimeInMillis", 3600), 0.0);
+		assertEquals(99.0, bean.percentile("AverageWaitTimeInMillis", 3600, 99), 0.0);
+		assertEquals(50.0, bean.percentile("AverageWaitTimeInMillis", 3600, 50), 0.0);
+		// only the last ten samples
+		assertEquals(91.0, bean.min("AverageWaitTimeInMillis", 10), 0.0);
+		try {
+			bean.max("Device", 60);
+			fail("Non-numeric attribute accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,145 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class MountIOTest extends LinuxBaseTest {
+
+	static final String ROOT_MOUNT = "22 1 8:1 / / rw,relatime shared:1 - ext4 /dev/sda1 rw\n";
+	static final String PROC_MOUNT = "23 22 0:22 / /proc rw,relatime shared:12 - proc proc rw\n";
+	static final String DATA_MOUNT = "30 22 253:0 / /data rw,noatime - xfs /dev/mapper/vg-data rw,attr2\n";
+	static final String BIND_MOUNT = "31 22 8:1 /srv /mnt/my\\040disk rw,relatime shared:1 - ext4 /dev/sda1 rw\n";
+
+	LinuxMountIOJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxMountIOJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		// two disks, and a logical volume on a partition of each
+		writeDevice("sda", "8:0", null);
+		writeDevice("sda/sda1", "8:1", null);
+		writeDevice("sda/sda2", "8:2", null);
+		writeDevice("sdb", "8:16", null);
+		writeDevice("sdb/sdb1", "8:17", null);
+		writeDevice("dm-0", "253:0", "vg-data");
+		write(new File(root, "sys/block/dm-0/slaves/sda2"), "");
+		write(new File(root, "sys/block/dm-0/slaves/sdb1"), "");
+		write(new File(root, "mountinfo"), ROOT_MOUNT + PROC_MOUNT + DATA_MOUNT + BIND_MOUNT);
+		writeDiskstats(0, 0);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testMountsAreResolved() throws Exception {
+		wrapper = newWrapper();
+		assertEquals(3, wrapper.mounts.size());
+		assertNull(wrapper.mounts.get("/proc"));
+
+		LinuxMountIO data = wrapper.mounts.get("/data").bean;
+		assertEquals("dm-0", data.getDeviceName());
+		assertEquals("vg-data", data.getDeviceMapperName());
+		assertEquals("sda,sdb", data.getDisks());
+		assertEquals("xfs", data.getFileSystemType());
+
+		LinuxMountIO rootMount = wrapper.mounts.get("/").bean;
+		assertEquals("sda1", rootMount.getDeviceName());
+		assertEquals("", rootMount.getDeviceMapperName());
+		assertEquals("sda", rootMount.getDisks());
+		assertEquals("sda1", wrapper.mounts.get("/mnt/my disk").bean.getDeviceName());
+	}
+
+	public void testRates() throws Exception {
+		wrapper = newWrapper();
+		Thread.sleep(100);
+		writeDiskstats(100, 1);
+		wrapper.readData();
+
+		LinuxMountIO data = wrapper.mounts.get("/data").bean;
+		assertEquals(2.0, data.getWritesPerSecond() / data.getReadsPerSecond(), 0.0001);
+		assertEquals(8 * 512.0, data.getReadBytesPerSecond() / data.getReadsPerSecond(), 0.0001);
+		assertEquals(4.0, data.getAverageReadLatencyInMillis(), 0.0);
+		assertEquals(1.5, data.getAverageWriteLatencyInMillis(), 0.0);
+		assertEquals(3, data.getInFlight());
+		assertTrue(data.getUtilizationPercentage() > 0);
+
+		LinuxMountIO rootMount = wrapper.mounts.get("/").bean;
+		assertEquals(1.0, rootMount.getAverageReadLatencyInMillis(), 0.0);
+		// a bind mount of the same device
+		assertEquals(rootMount.getReadsPerSecond(), wrapper.mounts.get("/mnt/my disk").bean.getReadsPerSecond(), 0.0);
+	}
+
+	public void testMountTableChanges() throws Exception {
+		wrapper = newWrapper();
+		wrapper.readData();
+		wrapper.readData();
+		assertEquals(1, wrapper.mountTable.getChangeCount());
+
+		write(new File(root, "mountinfo"), ROOT_MOUNT + PROC_MOUNT + BIND_MOUNT);
+		wrapper.readData();
+		assertEquals(2, wrapper.mountTable.getChangeCount());
+		assertEquals(2, wrapper.mounts.size());
+		assertNull(wrapper.mounts.get("/data"));
+		assertNull(wrapper.byDevice.get("dm-0"));
+	}
+
+	private LinuxMountIOJMXWrapper newWrapper() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.mountio." + getName());
+		return new LinuxMountIOJMXWrapper(config, new File(root, "mountinfo"), new File(root, "sys/block"),
+		                                  new File(root, "diskstats"));
+	}
+
+	private void writeDevice(String path, String number, String deviceMapperName) throws Exception {
+		File dir = new File(root, "sys/block/" + path);
+		write(new File(dir, "dev"), number + "\n");
+		if(path.indexOf('/') > 0) {
+			write(new File(dir, "partition"), "1\n");
+		}
+		if(deviceMapperName != null) {
+			write(new File(dir, "dm/name"), deviceMapperName + "\n");
+		}
+	}
+
+	/**
+	 * @param ios reads since the start; each device wrote twice as often.
+	 */
+	private void writeDiskstats(long ios, long inFlight) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		String[] names = { "sda", "sda1", "sda2", "sdb", "sdb1", "dm-0" };
+		String[] numbers = { "8 0", "8 1", "8 2", "8 16", "8 17", "253 0" };
+		for(int d = 0; d < names.length; d++) {
+			// read latency of 1ms on the disks, 4ms through the logical volume
+			long readMillis = ios * (names[d].equals("dm-0") ? 4 : 1);
+			sb.append(String.format("%4s %7s %s %d 0 %d %d %d 0 %d %d %d %d %d 0 0 0 0\n",
+			                        numbers[d].split(" ")[0], numbers[d].split(" ")[1], names[d],
+			                        ios, ios * 8, readMillis, ios * 2, ios * 16, ios * 3,
+			                        inFlight * 3, ios / 2, ios));
+		}
+		write(new File(root, "diskstats"), sb.toString());
+	}
+}
@@ -29,6 +29,8 @@ import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import com.palantir.opensource.sysmon.util.CounterRates;
+
 
 
 public class NetStatTest extends LinuxBaseTest {
@@ -63,6 +65,23 @@ public class NetStatTest extends LinuxBaseTest {
 		"PacketsPerSecondReceived",
 		"PacketsPerSecondSent",
 		"Timespan",
+		"RateWindowsInSeconds",
+		"BytesReceivedRates",
+		"BytesSentRates",
+		"PacketsReceivedRates",
+		"PacketsSentRates",
+		"BytesPerSecondReceivedOneMinute",
+		"BytesPerSecondReceivedFiveMinute",
+		"BytesPerSecondReceivedFifteenMinute",
+		"BytesPerSecondSentOneMinute",
+		"BytesPerSecondSentFiveMinute",
+		"BytesPerSecondSentFifteenMinute",
+		"PacketsPerSecondReceivedOneMinute",
+		"PacketsPerSecondReceivedFiveMinute",
+		"PacketsPerSecondReceivedFifteenMinute",
+		"PacketsPerSecondSentOneMinute",
+		"PacketsPerSecondSentFiveMinute",
+		"PacketsPerSecondSentFifteenMinute",
 		};
 	
 	@Override
@@ -111,6 +130,107 @@ public class NetStatTest extends LinuxBaseTest {
 	}
 	
 	
+	public void testWindowedQueriesArePublished() throws Exception {
+		ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + "lo");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Double max = (Double)server.invoke(objectName, "max",
+		                                   new Object[] { "BytesSent", Long.valueOf(60) },
+		                                   new String[] { String.class.getName(), long.class.getName() });
+		Long current = (Long)lookupJMXValue(objectName.toString(), "BytesSent");
+		assertTrue("Windowed max " + max + " is ahead of current value " + current,
+		           max.doubleValue() <= current.longValue());
+	}
+
+	public void testCounterWrapAndReset() throws Exception {
+		assertEquals(10, CounterRates.delta(5, 15, 64));
+		// 32-bit wraparound
+		assertEquals(20, CounterRates.delta(0xFFFFFFF0L, 4, 32));
+		// 64-bit wraparound
+		assertEquals(20, CounterRates.delta(-16L, 4, 64));
+		// device reset
+		assertEquals(4, CounterRates.delta(1L << 40, 4, 64));
+		// a 64-bit counter can't wrap from below 2^32, so it was reset
+		assertEquals(1000, CounterRates.delta(3000000000L, 1000, 64));
+		// while a 32-bit one at the same reading can
+		assertEquals(1000 + (1L << 32) - 3000000000L, CounterRates.delta(3000000000L, 1000, 32));
+		try {
+			CounterRates.delta(0, 1, 16);
+			fail("Only 32- and 64-bit counters");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		LinuxNetworkInterface previous = new LinuxNetworkInterface("test");
+		previous.bytesReceived = 1L << 40;
+		LinuxNetworkInterface current = new LinuxNetworkInterface("test");
+		current.bytesReceived = 100;
+		current.readNanos = previous.readNanos + 1000000000L;
+		previous.compute(current);
+		assertEquals(100, previous.getBytesPerSecondReceived());
+
+		// link flap on a 64-bit counter that hasn't reached 2^32
+		previous = new LinuxNetworkInterface("test");
+		previous.bytesReceived = 3000000000L;
+		current = new LinuxNetworkInterface("test");
+		current.bytesReceived = 1000;
+		current.readNanos = previous.readNanos + 1000000000L;
+		previous.compute(current);
+		assertEquals(1000, previous.getBytesPerSecondReceived());
+	}
+
+	public void testRatesUseReadTimeAndAreSmoothed() throws Exception {
+		LinuxNetworkInterface bean = new LinuxNetworkInterface("test");
+		final long second = 1000000000L;
+		// 100GbE: a byte count where float would lose the low digits
+		bean.bytesSent = 1L << 50;
+		for(int i = 1; i <= 600; i++) {
+			LinuxNetworkInterface current = new LinuxNetworkInterface("test");
+			current.bytesSent = bean.bytesSent + 12500000001L;
+			current.readNanos = bean.readNanos + second;
+			// wall clock stepped backwards; must not matter
+			current.lastUpdated = bean.lastUpdated - 3600000L;
+			bean.compute(current);
+			bean.bytesSent = current.bytesSent;
+			bean.readNanos = current.readNanos;
+			if(i == 1) {
+				assertEquals(12500000001L, bean.getBytesPerSecondSent());
+				assertEquals(1000, bean.getTimespan());
+			}
+		}
+		assertEquals(12500000001.0, bean.getBytesPerSecondSentOneMinute(), 1.0);
+		// averages start from the first rate, so a steady rate is reported as is
+		assertEquals(12500000001.0, bean.getBytesPerSecondSentFifteenMinute(), 1.0);
+
+		LinuxNetworkInterface stale = new LinuxNetworkInterface("test");
+		stale.readNanos = bean.readNanos - second;
+		bean.compute(stale);
+		assertEquals(12500000001L, bean.getBytesPerSecondSent());
+	}
+
+	public void testRatesOverSeveralWindows() throws Exception {
+		final long second = 1000000000L;
+		CounterRates rates = new CounterRates(new int[] { 64 },
+		                                      new long[] { second, 10 * second, 60 * second });
+		assertTrue(Double.isNaN(rates.rate(0, 0)));
+		long counter = 0;
+		// 100/s for two minutes, sampled ten times a second, then 1000/s for five seconds
+		for(int tick = 0; tick <= 1250; tick++) {
+			rates.update(tick * second / 10, new long[] { counter });
+			counter += tick < 1200 ? 10 : 100;
+		}
+		// windows start at the retained sample nearest a window back, within a second
+		assertEquals(1000.0, rates.rate(0, 0), 1.0);
+		assertEquals(550.0, rates.rate(0, 1), 55.0);
+		assertEquals(175.0, rates.rate(0, 2), 5.0);
+		assertEquals(1, rates.indexOfWindow(10 * second));
+		assertEquals(-1, rates.indexOfWindow(5 * second));
+
+		ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + "lo");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		double[] windowRates = (double[])server.getAttribute(objectName, "BytesSentRates");
+		assertEquals(3, windowRates.length);
+	}
+
 	static final int LO_PORT = 10234;
 	static final InetAddress LOCALHOST;
 	static {
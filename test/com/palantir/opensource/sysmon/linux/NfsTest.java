@@ -0,0 +1,171 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class NfsTest extends LinuxBaseTest {
+
+	static final String BEAN_PATH = "sysmon.test.nfs";
+
+	static final String ROOT_MOUNT =
+		"device /dev/sda1 mounted on / with fstype ext4\n";
+
+	LinuxNfsJMXWrapper wrapper;
+	/**
+	 * Mounts of other filesystems listed first.
+	 */
+	String otherMounts = ROOT_MOUNT;
+	String homeOptions = "rw,vers=4.1,rsize=1048576,wsize=1048576,namlen=255,acregmin=3,hard,proto=tcp";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxNfsJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		writeMountstats(0, true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.cleanup();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testOperationLatencies() throws Exception {
+		wrapper = newWrapper();
+		assertEquals(2, wrapper.mounts.size());
+		LinuxNfsJMXWrapper.NfsMount home = wrapper.mounts.get("/home");
+		assertEquals("filer:/export/home", home.bean.getServer());
+		assertEquals("nfs4", home.bean.getFileSystemType());
+		// published, but not seen on this mount
+		assertNull(home.operations[2]);
+
+		Thread.sleep(100);
+		writeMountstats(100, true);
+		wrapper.readData();
+
+		assertEquals("tcp", home.bean.getTransport());
+		LinuxNfsOperation read = home.operations[0];
+		assertEquals("READ", read.getOperation());
+		assertEquals("/home", read.getMountPoint());
+		assertEquals(0.5, read.getAverageQueueTimeInMillis(), 0.0);
+		assertEquals(4.0, read.getAverageRttInMillis(), 0.0);
+		assertEquals(5.0, read.getAverageExecuteTimeInMillis(), 0.0);
+		assertEquals(0.1, read.getRetransmitsPerSecond() / read.getOperationsPerSecond(), 0.0001);
+		assertEquals(32768.0, read.getReceivedBytesPerSecond() / read.getOperationsPerSecond(), 0.0001);
+		assertEquals(0.0, read.getErrorsPerSecond(), 0.0);
+		assertEquals(0.01, home.operations[1].getErrorsPerSecond() / home.operations[1].getOperationsPerSecond(),
+		             0.0001);
+
+		// every operation counts towards the mount, published or not
+		assertEquals(3.0, home.bean.getOperationsPerSecond() / read.getOperationsPerSecond(), 0.0001);
+		assertEquals(0.2, home.bean.getRetransmitsPerSecond() / read.getOperationsPerSecond(), 0.0001);
+		assertEquals(2.0, home.bean.getAverageBacklogQueueLength(), 0.0);
+		assertEquals(2.0, home.bean.getReadBytesPerSecond() / home.bean.getServerReadBytesPerSecond(), 0.0001);
+
+		// UDP lays out its transport counters differently
+		LinuxNfsJMXWrapper.NfsMount scratch = wrapper.mounts.get("/mnt/scratch space");
+		assertEquals("udp", scratch.bean.getTransport());
+		assertEquals(0.5, scratch.bean.getAverageBacklogQueueLength(), 0.0);
+		assertEquals(1.0, scratch.operations[2].getAverageRttInMillis(), 0.0);
+	}
+
+	public void testUnmount() throws Exception {
+		wrapper = newWrapper();
+		assertEquals(2, wrapper.mounts.size());
+		writeMountstats(100, false);
+		wrapper.readData();
+		assertEquals(1, wrapper.mounts.size());
+		assertNull(wrapper.mounts.get("/mnt/scratch space"));
+	}
+
+	public void testLargeFile() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 5000; i++) {
+			sb.append("device cgroup mounted on /sys/fs/cgroup/").append(i).append(" with fstype cgroup\n");
+		}
+		otherMounts = sb.toString();
+		sb.setLength(0);
+		while(sb.length() < LinuxNfsJMXWrapper.BUFFER_SIZE * 2) {
+			sb.append("rw,");
+		}
+		homeOptions = sb.toString();
+		writeMountstats(0, true);
+		assertTrue(new File(root, "mountstats").length() > LinuxNfsJMXWrapper.BUFFER_SIZE * 10);
+		wrapper = newWrapper();
+		writeMountstats(100, true);
+		wrapper.readData();
+		assertEquals(2, wrapper.mounts.size());
+		assertEquals(4.0, wrapper.mounts.get("/home").operations[0].getAverageRttInMillis(), 0.0);
+		assertEquals(1.0, wrapper.mounts.get("/mnt/scratch space").operations[2].getAverageRttInMillis(), 0.0);
+	}
+
+	private LinuxNfsJMXWrapper newWrapper() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, BEAN_PATH);
+		return new LinuxNfsJMXWrapper(config, new File(root, "mountstats"));
+	}
+
+	/**
+	 * @param ops READs since the start; WRITEs and ACCESSes are as many, each with different
+	 * costs.
+	 */
+	private void writeMountstats(long ops, boolean withScratch) throws Exception {
+		StringBuilder sb = new StringBuilder(otherMounts);
+		sb.append("device filer:/export/home mounted on /home with fstype nfs4 statvers=1.1\n");
+		sb.append("\topts:\t").append(homeOptions).append('\n');
+		sb.append("\tage:\t3600\n");
+		sb.append("\tevents:\t1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 21 22 23 24 25 26 27\n");
+		// normal read/write, direct read/write, server read/write, pages
+		sb.append("\tbytes:\t").append(ops * 65536).append(" 0 0 0 ").append(ops * 32768).append(" 0 0 0\n");
+		sb.append("\tRPC iostats version: 1.1  p/v: 100003/4 (nfs)\n");
+		// sends (three per READ), backlog (two per send)
+		sb.append("\txprt:\ttcp 772 1 1 0 0 ").append(ops * 3).append(' ').append(ops * 3)
+		  .append(" 0 ").append(ops * 9).append(' ').append(ops * 6).append(" 2 0 0\n");
+		sb.append("\tper-op statistics\n");
+		sb.append("\t        NULL: 1 1 0 44 24 0 0 0 0\n");
+		sb.append("\t        READ: ").append(ops).append(' ').append(ops + ops / 10).append(" 0 ")
+		  .append(ops * 200).append(' ').append(ops * 32768).append(' ').append(ops / 2).append(' ')
+		  .append(ops * 4).append(' ').append(ops * 5).append(" 0\n");
+		sb.append("\t       WRITE: ").append(ops).append(' ').append(ops + ops / 10).append(" 0 ")
+		  .append(ops * 32768).append(" 200 0 ").append(ops * 2).append(' ').append(ops * 3).append(' ')
+		  .append(ops / 100).append('\n');
+		sb.append("\t      ACCESS: ").append(ops).append(' ').append(ops).append(" 0 100 100 0 ")
+		  .append(ops).append(' ').append(ops).append('\n');
+		sb.append('\n');
+		if(withScratch) {
+			sb.append("device scratch:/vol mounted on /mnt/scratch\\040space with fstype nfs statvers=1.1\n");
+			sb.append("\topts:\trw,vers=3,proto=udp\n");
+			sb.append("\tbytes:\t0 0 0 0 0 0 0 0\n");
+			sb.append("\tRPC iostats version: 1.1  p/v: 100003/3 (nfs)\n");
+			sb.append("\txprt:\tudp 0 0 ").append(ops * 2).append(' ').append(ops * 2).append(" 0 0 ")
+			  .append(ops).append('\n');
+			sb.append("\tper-op statistics\n");
+			// kernels before 5.2 have no errors column
+			sb.append("\t     GETATTR: ").append(ops * 2).append(' ').append(ops * 2).append(" 0 100 100 0 ")
+			  .append(ops * 2).append(' ').append(ops * 2).append('\n');
+			sb.append('\n');
+		}
+		sb.append("device proc mounted on /proc with fstype proc\n");
+		write(new File(root, "mountstats"), sb.toString());
+	}
+}
@@ -0,0 +1,115 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class NumaTest extends LinuxBaseTest {
+
+	static final String NUMA_MAPS =
+		"00400000 default file=/usr/bin/java mapped=2 N0=2 kernelpagesize_kB=4\n" +
+		"7f0000000000 bind:1 anon=1000 dirty=1000 N1=1000 kernelpagesize_kB=4\n" +
+		"7f1000000000 default anon=20 dirty=20 N0=10 N1=10 kernelpagesize_kB=2048\n" +
+		"7fff00000000 default stack anon=3 dirty=3 N0=3 N7=5 kernelpagesize_kB=4\n";
+
+	File numaMaps;
+	LinuxNumaJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxNumaJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("node");
+		assertTrue(new File(root, "node0").mkdirs());
+		assertTrue(new File(root, "node1").mkdirs());
+		assertTrue(new File(root, "possible").createNewFile());
+		writeNode(0, 1000000, 250000, 100, 90, 10);
+		writeNode(1, 1000000, 900000, 50, 10, 40);
+		numaMaps = new File(root, "numa_maps");
+		write(numaMaps, NUMA_MAPS);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.numa");
+		wrapper = new LinuxNumaJMXWrapper(config, root, numaMaps);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.close();
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testNodes() throws Exception {
+		assertEquals(2, wrapper.nodes.size());
+		LinuxNumaNode node0 = wrapper.nodes.get(0).bean;
+		LinuxNumaNode node1 = wrapper.nodes.get(1).bean;
+		assertEquals("0", node0.getNode());
+		assertEquals(1000000L, node0.getMemTotalInKB());
+		assertEquals(750000L, node0.getMemUsedInKB());
+		assertEquals(75.0, node0.getMemUsedPercentage(), 0.0001);
+		assertEquals(100.0, node0.getLocalAllocationPercentage(), 0.0);
+
+		// 8 + 20480 + 12 KB on node 0, 4000 + 20480 KB on node 1; node 7 doesn't exist here
+		assertEquals(20500L, node0.getJvmResidentInKB());
+		assertEquals(24480L, node1.getJvmResidentInKB());
+		assertEquals(100.0 * 20500 / 44980, node0.getJvmResidentPercentage(), 0.0001);
+
+		Thread.sleep(100);
+		writeNode(0, 1000000, 240000, 10100, 9090, 1010);
+		writeNode(1, 1000000, 900000, 50, 10, 40);
+		wrapper.readData();
+		assertEquals(760000L, node0.getMemUsedInKB());
+		assertTrue(node0.getNumaHitPerSecond() > 0.0);
+		assertEquals(node0.getNumaHitPerSecond() / 10, node0.getOtherNodePerSecond(), 0.001);
+		assertEquals(90.0, node0.getLocalAllocationPercentage(), 0.0001);
+		assertEquals(0.0, node1.getNumaHitPerSecond(), 0.0);
+		// numa_maps isn't sampled again until its period is up
+		write(numaMaps, "");
+		wrapper.readData();
+		assertEquals(20500L, node0.getJvmResidentInKB());
+	}
+
+	public void testNumaMaps() throws Exception {
+		long[] resident = new long[8];
+		byte[] maps = NUMA_MAPS.getBytes("US-ASCII");
+		LinuxNumaJMXWrapper.parseNumaMaps(maps, maps.length, resident);
+		assertEquals(20500L, resident[0]);
+		assertEquals(24480L, resident[1]);
+		assertEquals(20L, resident[7]);
+		LinuxNumaJMXWrapper.parseNumaMaps(maps, 0, resident);
+		assertEquals(0L, resident[0]);
+	}
+
+	private void writeNode(int node, long total, long free, long hit, long local, long other)
+		throws Exception {
+		File dir = new File(root, "node" + node);
+		write(new File(dir, "meminfo"),
+		      "Node " + node + " MemTotal:       " + total + " kB\n" +
+		      "Node " + node + " MemFree:        " + free + " kB\n" +
+		      "Node " + node + " MemUsed:        " + (total - free) + " kB\n" +
+		      "Node " + node + " FilePages:       12345 kB\n" +
+		      "Node " + node + " HugePages_Total:     0\n");
+		write(new File(dir, "numastat"),
+		      "numa_hit " + hit + "\n" +
+		      "numa_miss 0\n" +
+		      "numa_foreign 0\n" +
+		      "interleave_hit 0\n" +
+		      "local_node " + local + "\n" +
+		      "other_node " + other + "\n");
+	}
+}
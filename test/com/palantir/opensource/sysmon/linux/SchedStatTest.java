@@ -0,0 +1,143 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+
+
+public class SchedStatTest extends LinuxBaseTest {
+
+	File schedstat;
+	File tasks;
+	LinuxSchedStatJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxSchedStatJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("schedstat");
+		tasks = new File(root, "task");
+		assertTrue(tasks.mkdirs());
+		schedstat = new File(root, "schedstat");
+		writeSchedStat(0, 0, 0);
+		writeTask("100", "java", 0, 0, 0);
+		writeTask("101", "GC Thread#0", 0, 0, 0);
+		writeTask("102", "C2 CompilerThre", 0, 0, 0);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.schedstat");
+		config.setProperty(LinuxSchedStatJMXWrapper.CONFIG_KEY_SCHEDSTAT_TOP_THREADS, "2");
+		wrapper = new LinuxSchedStatJMXWrapper(config, schedstat, tasks);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.close();
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testCpus() throws Exception {
+		assertEquals(2, wrapper.cpus.length);
+		Thread.sleep(100);
+		// cpu0 waited 3ms over 1000 timeslices, cpu1 9ms over 1000
+		writeSchedStat(50000000L, 3000000L, 1000);
+		wrapper.readData();
+
+		LinuxSchedStat cpu0 = wrapper.cpus[0].bean;
+		LinuxSchedStat cpu1 = wrapper.cpus[1].bean;
+		assertEquals("0", cpu0.getCpu());
+		assertEquals(3.0, cpu0.getRunDelayPerTimesliceInMicros(), 0.0001);
+		assertEquals(9.0, cpu1.getRunDelayPerTimesliceInMicros(), 0.0001);
+		assertEquals(6.0, wrapper.total.getRunDelayPerTimesliceInMicros(), 0.0001);
+		assertEquals(3 * cpu0.getRunDelayPercentage(), cpu1.getRunDelayPercentage(), 0.0001);
+		assertEquals((cpu0.getRunDelayPercentage() + cpu1.getRunDelayPercentage()) / 2,
+		             wrapper.total.getRunDelayPercentage(), 0.0001);
+		assertTrue(cpu0.getRunningPercentage() > 0.0 && cpu0.getRunningPercentage() <= 50.0);
+		assertEquals(cpu0.getTimeslicesPerSecond() * 2, wrapper.total.getTimeslicesPerSecond(), 0.0001);
+	}
+
+	public void testThreads() throws Exception {
+		LinuxProcessSchedStat process = wrapper.process;
+		Thread.sleep(100);
+		writeTask("100", "java", 1000000L, 1000L, 10);
+		writeTask("101", "GC Thread#0", 1000000L, 50000L, 10);
+		writeTask("102", "C2 CompilerThre", 1000000L, 20000L, 10);
+		writeTask("103", "new thread", 1000000L, 10000L, 10);
+		wrapper.readData();
+
+		assertEquals(4, process.getThreadCount());
+		// 81us of run delay over 40 timeslices
+		assertEquals(81.0 / 40, process.getRunDelayPerTimesliceInMicros(), 0.0001);
+		Map<String, Double> top = process.getThreadRunDelayPercentage();
+		assertEquals(2, top.size());
+		Iterator<String> names = top.keySet().iterator();
+		assertEquals("GC Thread#0 (101)", names.next());
+		assertEquals("C2 CompilerThre (102)", names.next());
+		assertEquals(2.5 * top.get("C2 CompilerThre (102)"), top.get("GC Thread#0 (101)"), 0.0001);
+
+		// a thread exits
+		FileUtils.deleteDirectory(new File(tasks, "101"));
+		Thread.sleep(100);
+		writeTask("100", "java", 2000000L, 2000L, 20);
+		wrapper.readData();
+		assertEquals(3, process.getThreadCount());
+		assertEquals(3, wrapper.tasks.size());
+		assertEquals(0.1, process.getRunDelayPerTimesliceInMicros(), 0.0001);
+		assertEquals("java (100)", process.getThreadRunDelayPercentage().keySet().iterator().next());
+	}
+
+	public void testWithoutSchedStat() throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.schedstat.noschedstat");
+		LinuxSchedStatJMXWrapper processOnly =
+			new LinuxSchedStatJMXWrapper(config, new File(root, "missing"), tasks);
+		try {
+			assertNull(processOnly.total);
+			assertNotNull(processOnly.process);
+		} finally {
+			processOnly.close();
+		}
+
+		config.setProperty(LinuxSchedStatJMXWrapper.CONFIG_KEY_SCHEDSTAT_THREADS_ENABLED, "false");
+		try {
+			new LinuxSchedStatJMXWrapper(config, new File(root, "missing"), tasks);
+			fail("Started with nothing to monitor");
+		} catch (LinuxMonitoringException e) {
+			// expected
+		}
+	}
+
+	private void writeSchedStat(long running, long waiting, long timeslices) throws Exception {
+		write(schedstat, "version 15\n" +
+		                 "timestamp 4295032640\n" +
+		                 "cpu0 0 0 0 0 0 0 " + running + " " + waiting + " " + timeslices + "\n" +
+		                 "domain0 00000003 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n" +
+		                 "cpu1 0 0 0 0 0 0 " + running + " " + 3 * waiting + " " + timeslices + "\n" +
+		                 "domain0 00000003 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n");
+	}
+
+	private void writeTask(String id, String name, long running, long waiting, long timeslices)
+		throws Exception {
+		File dir = new File(tasks, id);
+		dir.mkdirs();
+		write(new File(dir, "comm"), name + "\n");
+		write(new File(dir, "schedstat"), running + " " + waiting + " " + timeslices + "\n");
+	}
+}
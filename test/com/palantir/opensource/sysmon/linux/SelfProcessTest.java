@@ -0,0 +1,157 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+
+
+public class SelfProcessTest extends LinuxBaseTest {
+
+	File self;
+	LinuxSelfProcessJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxSelfProcessJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		self = new File(root, "self");
+		assertTrue(new File(self, "fd").mkdirs());
+		for(int fd = 0; fd < 8; fd++) {
+			write(new File(self, "fd/" + fd), "");
+		}
+		write(new File(self, "limits"),
+		      "Limit                     Soft Limit           Hard Limit           Units     \n" +
+		      "Max processes             63704                63704                processes \n" +
+		      "Max open files            32                   4096                 files     \n");
+		write(new File(self, "smaps_rollup"), "00400000-7ffc0000 ---p 00000000 00:00 0  [rollup]\n" +
+		                                      "Rss:              900000 kB\nPss:              800000 kB\n");
+		writeSelf(0, 0, 0, 0, 0);
+		writeHost(0, 0);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testFootprint() throws Exception {
+		wrapper = newWrapper();
+		LinuxSelfProcess bean = wrapper.bean;
+		assertEquals(1000000, bean.getResidentInKB());
+		assertEquals(700000, bean.getAnonymousResidentInKB());
+		assertEquals(300000, bean.getFileResidentInKB());
+		assertEquals(2048, bean.getSwapInKB());
+		assertEquals(800000, bean.getProportionalInKB());
+		assertTrue(bean.getHeapCommittedInKB() > 0);
+		assertEquals(Math.max(0, 1000000 - bean.getHeapCommittedInKB()), bean.getResidentBeyondHeapInKB());
+		assertEquals(42, bean.getThreadCount());
+		assertEquals(8, bean.getFileDescriptorCount());
+		assertEquals(32, bean.getFileDescriptorLimit());
+		assertEquals(25.0, bean.getFileDescriptorPercentage(), 0.0);
+		assertEquals(0.0, bean.getCpuPercentage(), 0.0);
+	}
+
+	public void testRates() throws Exception {
+		wrapper = newWrapper();
+		LinuxSelfProcess bean = wrapper.bean;
+		Thread.sleep(100);
+		// 50 ticks of the host's 1000, which were 200 busy and 800 idle
+		writeSelf(50, 100, 10, 2048, 4096);
+		writeHost(200, 800);
+		wrapper.readData();
+		assertTrue(bean.getCpuPercentage() > 0);
+		assertEquals(5.0, bean.getHostCpuPercentage(), 0.0001);
+		assertEquals(25.0, bean.getHostBusyPercentage(), 0.0001);
+		assertEquals(10.0, bean.getMinorFaultsPerSecond() / bean.getMajorFaultsPerSecond(), 0.0001);
+		assertEquals(3.0, bean.getVoluntaryContextSwitchesPerSecond() /
+		                  bean.getInvoluntaryContextSwitchesPerSecond(), 0.0001);
+		assertEquals(2.0, bean.getWriteBytesPerSecond() / bean.getReadBytesPerSecond(), 0.0001);
+	}
+
+	public void testOptionalFilesMissing() throws Exception {
+		assertTrue(new File(self, "io").delete());
+		assertTrue(new File(self, "limits").delete());
+		assertTrue(new File(self, "smaps_rollup").delete());
+		wrapper = new LinuxSelfProcessJMXWrapper(newConfig(), self, new File(root, "missing"), false);
+		Thread.sleep(100);
+		writeSelf(50, 100, 10, 2048, 4096);
+		wrapper.readData();
+		LinuxSelfProcess bean = wrapper.bean;
+		assertTrue(bean.getCpuPercentage() > 0);
+		assertEquals(0.0, bean.getHostCpuPercentage(), 0.0);
+		assertEquals(0.0, bean.getReadBytesPerSecond(), 0.0);
+		assertEquals(0, bean.getFileDescriptorLimit());
+		assertEquals(0.0, bean.getFileDescriptorPercentage(), 0.0);
+		assertEquals(0, bean.getProportionalInKB());
+	}
+
+	public void testFileDescriptorCountFromSize() throws Exception {
+		// procfs reports a fd directory's number of entries as its size; a file stands in for it
+		FileUtils.deleteDirectory(new File(self, "fd"));
+		write(new File(self, "fd"), "01234");
+		wrapper = new LinuxSelfProcessJMXWrapper(newConfig(), self, new File(root, "stat"), true);
+		assertEquals(5, wrapper.bean.getFileDescriptorCount());
+		assertEquals(15.625, wrapper.bean.getFileDescriptorPercentage(), 0.0);
+	}
+
+	private Properties newConfig() {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.self." + getName());
+		return config;
+	}
+
+	private LinuxSelfProcessJMXWrapper newWrapper() throws Exception {
+		return new LinuxSelfProcessJMXWrapper(newConfig(), self, new File(root, "stat"), false);
+	}
+
+	private void writeSelf(long ticks, long minorFaults, long contextSwitches, long readBytes,
+	                       long writeBytes) throws Exception {
+		StringBuilder stat = new StringBuilder("1234 (java) S");
+		for(int field = 4; field <= 52; field++) {
+			long value = 0;
+			switch(field) {
+			case ProcessStatLine.MINFLT: value = minorFaults; break;
+			case ProcessStatLine.MAJFLT: value = minorFaults / 10; break;
+			case ProcessStatLine.UTIME: value = ticks; break;
+			case ProcessStatLine.NUM_THREADS: value = 42; break;
+			}
+			stat.append(' ').append(value);
+		}
+		write(new File(self, "stat"), stat.append('\n').toString());
+		write(new File(self, "status"), "Name:\tjava\nVmSize:\t 5000000 kB\nVmRSS:\t 1000000 kB\n" +
+		                                "RssAnon:\t  700000 kB\nRssFile:\t  300000 kB\n" +
+		                                "VmSwap:\t    2048 kB\nThreads:\t42\n" +
+		                                "voluntary_ctxt_switches:\t" + 3 * contextSwitches + "\n" +
+		                                "nonvoluntary_ctxt_switches:\t" + contextSwitches + "\n");
+		write(new File(self, "io"), "rchar: 1\nwchar: 2\nread_bytes: " + readBytes + "\nwrite_bytes: " +
+		                            writeBytes + "\ncancelled_write_bytes: 0\n");
+	}
+
+	private void writeHost(long busy, long idle) throws Exception {
+		// user nice system idle iowait irq softirq steal guest guest_nice
+		write(new File(root, "stat"), "cpu  " + busy / 2 + " 0 " + busy / 2 + " " + idle +
+		                              " 0 0 0 0 0 0\ncpu0 0 0 0 0 0 0 0 0 0 0\nintr 0\n");
+	}
+}
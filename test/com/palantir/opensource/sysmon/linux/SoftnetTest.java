@@ -0,0 +1,100 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class SoftnetTest extends LinuxBaseTest {
+
+	static final String FIRST =
+		"0001e240 00000000 00000010 00000000 00000000 00000000 00000000 00000000 00000000 00000005 00000000 00000000 00000000\n" +
+		"000f4240 00000002 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000001\n";
+
+	static final String SECOND =
+		"0001e2a4 00000000 00000010 00000000 00000000 00000000 00000000 00000000 00000000 00000006 00000000 00000000 00000000\n" +
+		"000f4a10 00000003 00002710 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000001\n";
+
+	File data;
+	LinuxSoftnetJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxSoftnetJMXWrapper.class, Level.ERROR, Level.WARN);
+		data = File.createTempFile("softnet_stat", ".txt");
+		data.deleteOnExit();
+		write(FIRST);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.softnet");
+		wrapper = new LinuxSoftnetJMXWrapper(config, data);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.reader.close();
+		checkForErrorMessages();
+	}
+
+	public void testRatesAndSqueezes() throws Exception {
+		assertEquals(2, wrapper.cpus.size());
+		assertEquals(1123456L, wrapper.total.getProcessed());
+		assertEquals(0.0, wrapper.total.getProcessedPerSecond(), 0.0);
+
+		Thread.sleep(100);
+		write(SECOND);
+		wrapper.readData();
+
+		LinuxSoftnet cpu0 = wrapper.cpus.get("0").bean;
+		LinuxSoftnet cpu1 = wrapper.cpus.get("1").bean;
+		assertEquals(123556L, cpu0.getProcessed());
+		assertEquals(6L, cpu0.getReceivedRps());
+		assertEquals(10000L, cpu1.getTimeSqueeze());
+		assertTrue(cpu0.getProcessedPerSecond() > 0.0);
+		assertEquals(0.0, cpu0.getTimeSqueezePerSecond(), 0.0);
+		// 10000 squeezes in about a tenth of a second
+		assertTrue(cpu1.getTimeSqueezePerSecond() > LinuxSoftnetJMXWrapper.DEFAULT_SOFTNET_SQUEEZE_THRESHOLD);
+		assertEquals(0, cpu0.getSqueezingCpuCount());
+		assertEquals(1, cpu1.getSqueezingCpuCount());
+		assertEquals(1, wrapper.total.getSqueezingCpuCount());
+		assertEquals("1", wrapper.total.getSqueezingCpus());
+		assertEquals(cpu0.getProcessedPerSecond() + cpu1.getProcessedPerSecond(),
+		             wrapper.total.getProcessedPerSecond(), 0.001);
+
+		// second CPU goes offline
+		write(SECOND.substring(0, SECOND.indexOf('\n') + 1));
+		wrapper.readData();
+		assertEquals(1, wrapper.cpus.size());
+	}
+
+	public void testHexColumns() throws Exception {
+		long[] columns = new long[4];
+		byte[] line = " ffffffff 0a\t10 1 2 3".getBytes("US-ASCII");
+		assertEquals(6, LinuxSoftnetJMXWrapper.parseHexColumns(line, 0, line.length, columns));
+		assertEquals(0xffffffffL, columns[0]);
+		assertEquals(10, columns[1]);
+		assertEquals(16, columns[2]);
+		assertEquals(1, columns[3]);
+	}
+
+	private void write(String contents) throws Exception {
+		FileWriter out = new FileWriter(data);
+		out.write(contents);
+		out.close();
+	}
+}
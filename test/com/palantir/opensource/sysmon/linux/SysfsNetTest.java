@@ -0,0 +1,108 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.PositionalFileReader;
+
+
+public class SysfsNetTest extends LinuxBaseTest {
+
+	public static final String OBJECT_NAME_PREFIX = LinuxMonitor.DEFAULT_JMX_BEAN_PATH +
+	                                                LinuxSysfsNetJMXWrapper.OBJECT_NAME_PREFIX;
+
+	public static final String ATTRIBUTES[] = {
+		"InterfaceName",
+		"OperState",
+		"LinkSpeedMbps",
+		"RxUtilizationPercentage",
+		"TxUtilizationPercentage",
+		"RxMissedErrorsPerSecond",
+		"RxOverErrorsPerSecond",
+		"TxAbortedErrorsPerSecond",
+		"RxDroppedPerSecond",
+		"TxDroppedPerSecond",
+		"Statistics",
+		"StatisticsPerSecond",
+		"QueueStatistics",
+		"Timestamp",
+	};
+
+	LinuxSysfsNetJMXWrapper wrapper = null;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxSysfsNetJMXWrapper.class, Level.ERROR, Level.WARN);
+		Properties config = new Properties();
+		config.setProperty(LinuxSysfsNetJMXWrapper.CONFIG_KEY_SYSFSNET_PERIOD, "100");
+		wrapper = new LinuxSysfsNetJMXWrapper(config);
+		wrapper.startMonitoring();
+		Thread.sleep(500);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.stopMonitoring();
+			wrapper = null;
+		}
+		checkForErrorMessages();
+	}
+
+	public void testBeanIsPublished() throws Exception {
+		ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + "*");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<ObjectName> mbeans = server.queryNames(objectName, null);
+		assertTrue("No MBeans found matching the sysfs network wrapper!", mbeans.size() > 0);
+		for(ObjectName name : mbeans) {
+			doPublishCheck(name.getCanonicalName(), ATTRIBUTES);
+		}
+
+		ObjectName lo = new ObjectName(OBJECT_NAME_PREFIX + "lo");
+		Map<?, ?> statistics = (Map<?, ?>)server.getAttribute(lo, "Statistics");
+		assertNotNull(statistics.get("rx_bytes"));
+		Map<?, ?> rates = (Map<?, ?>)server.getAttribute(lo, "StatisticsPerSecond");
+		assertNotNull(rates.get("rx_missed_errors"));
+	}
+
+	public void testFilesAreReReadInPlace() throws Exception {
+		File file = File.createTempFile("sysfsnet", ".txt");
+		file.deleteOnExit();
+		write(file, "42\n");
+		PositionalFileReader reader = new PositionalFileReader(file, 4);
+		try {
+			assertEquals(42, reader.readLong());
+			write(file, "1234567890123\n");
+			// grows past the initial buffer without reopening
+			assertEquals(1234567890123L, reader.readLong());
+			write(file, "-1\n");
+			assertEquals(-1, reader.readLong());
+			write(file, "up\n");
+			assertEquals("up", reader.readString());
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class TaskStatesTest extends LinuxBaseTest {
+
+	LinuxTaskStatesJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxTaskStatesJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		write(new File(root, "self/stat"), "1 (java) S 0\n");
+		// a process with one thread stuck on NFS and one running
+		writeTask(100, 100, "java", 'S', "do_epoll_wait");
+		writeTask(100, 101, "nfs reader (1)", 'D', "nfs_wait_bit_killable");
+		writeTask(100, 102, "worker", 'R', "0");
+		// a kernel thread waiting on the disk, an idle one and a zombie
+		writeTask(200, 200, "jbd2/sda1-8", 'D', "0");
+		writeTask(300, 300, "kworker/0:1", 'I', "worker_thread");
+		writeTask(400, 400, "defunct", 'Z', "0");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testStates() throws Exception {
+		wrapper = newWrapper(true, 50);
+		LinuxTaskStates bean = wrapper.bean;
+		assertEquals(1, bean.getRunning());
+		assertEquals(1, bean.getSleeping());
+		assertEquals(2, bean.getDiskSleep());
+		assertEquals(1, bean.getIdle());
+		assertEquals(1, bean.getZombie());
+		assertEquals(6, bean.getTotal());
+		// not for long yet
+		assertEquals(0, bean.getLongDiskSleep());
+		assertTrue(bean.getLongDiskSleepByWaitChannel().isEmpty());
+
+		Thread.sleep(100);
+		wrapper.readData();
+		assertEquals(2, bean.getLongDiskSleep());
+		assertTrue(bean.getLongestDiskSleepSeconds() >= 0.05);
+		assertEquals(1, bean.getLongDiskSleepByWaitChannel().get("nfs_wait_bit_killable").intValue());
+		assertEquals(1, bean.getLongDiskSleepByWaitChannel().get(LinuxTaskStatesJMXWrapper.UNKNOWN_WAIT_CHANNEL).intValue());
+
+		// the NFS server came back; a new sleep starts from scratch
+		writeTask(100, 101, "nfs reader (1)", 'S', "do_epoll_wait");
+		writeTask(500, 500, "dd", 'D', "io_schedule");
+		wrapper.readData();
+		assertEquals(2, bean.getDiskSleep());
+		assertEquals(1, bean.getLongDiskSleep());
+		assertNull(bean.getLongDiskSleepByWaitChannel().get("nfs_wait_bit_killable"));
+		assertNull(bean.getLongDiskSleepByWaitChannel().get("io_schedule"));
+		assertEquals(2, wrapper.sleepers.size());
+	}
+
+	public void testMainThreadsOnly() throws Exception {
+		wrapper = newWrapper(false, 0);
+		LinuxTaskStates bean = wrapper.bean;
+		assertEquals(0, bean.getRunning());
+		assertEquals(1, bean.getSleeping());
+		assertEquals(1, bean.getDiskSleep());
+		assertEquals(4, bean.getTotal());
+		assertEquals(1, bean.getLongDiskSleep());
+	}
+
+	private LinuxTaskStatesJMXWrapper newWrapper(boolean threads, long thresholdMillis) throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.taskstates." + getName());
+		config.setProperty(LinuxTaskStatesJMXWrapper.CONFIG_KEY_TASK_STATES_THREADS, Boolean.toString(threads));
+		config.setProperty(LinuxTaskStatesJMXWrapper.CONFIG_KEY_TASK_STATES_DISK_SLEEP_THRESHOLD,
+		                   Long.toString(thresholdMillis));
+		return new LinuxTaskStatesJMXWrapper(config, root);
+	}
+
+	private void writeTask(int pid, int tid, String name, char state, String wchan) throws Exception {
+		String stat = tid + " (" + name + ") " + state + " 1 " + pid + " " + pid +
+		              " 0 -1 4194560 100 0 0 0 10 5 0 0 20 0 1 0 100 1000 10\n";
+		write(new File(root, pid + "/task/" + tid + "/stat"), stat);
+		write(new File(root, pid + "/task/" + tid + "/wchan"), wchan);
+		if(pid == tid) {
+			write(new File(root, pid + "/stat"), stat);
+			write(new File(root, pid + "/wchan"), wchan);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+
+
+public class TopProcessesTest extends LinuxBaseTest {
+
+	LinuxTopProcessesJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxTopProcessesJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		assertTrue(new File(root, "self").mkdirs());
+		write(new File(root, "self/stat"), statLine(1, "java", 0, 0, 0, 0, 0));
+		assertTrue(new File(root, "sys").mkdirs());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testStatLineParsing() throws Exception {
+		ProcessStatLine line = new ProcessStatLine();
+		byte[] bytes = statLine(42, "a (weird) name", 7, 500, 250, 1000, 123).getBytes();
+		assertTrue(line.parse(bytes, bytes.length));
+		assertEquals(42, line.getPid());
+		assertEquals("a (weird) name", line.getName());
+		assertEquals('S', line.getState());
+		assertEquals(7, line.get(ProcessStatLine.MAJFLT));
+		assertEquals(750, line.getCpuTicks());
+		assertEquals(1000, line.get(ProcessStatLine.RSS));
+		assertEquals(123, line.get(ProcessStatLine.STARTTIME));
+		assertEquals(0, line.get(200));
+		assertFalse(line.parse("garbage".getBytes(), 7));
+	}
+
+	public void testRankings() throws Exception {
+		writeProcess(100, "busy", 0, 0, 0, 100, 1000, 0, 0);
+		writeProcess(200, "big", 0, 0, 0, 50000, 1000, 0, 0);
+		writeProcess(300, "(my) writer", 0, 0, 0, 10, 1000, 0, 0);
+		writeProcess(400, "other user", 0, 0, 0, 10, 1000, -1, -1);
+		wrapper = newWrapper(2, 100);
+
+		LinuxTopProcess[] rss = wrapper.ranks[LinuxTopProcessesJMXWrapper.RSS];
+		assertEquals(200, rss[0].getPid());
+		assertEquals("big", rss[0].getName());
+		assertEquals(50000 * ProcessStatLine.getPageSizeInKB(), rss[0].getResidentInKB());
+		assertEquals(100, rss[1].getPid());
+		// nothing has a rate yet
+		assertEquals(0, wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getPid());
+		assertEquals("", wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getName());
+
+		Thread.sleep(100);
+		writeProcess(100, "busy", 3, 5, 5, 100, 1000, 0, 0);
+		writeProcess(200, "big", 0, 1, 0, 50000, 1000, 0, 0);
+		writeProcess(300, "(my) writer", 0, 0, 0, 10, 1000, 4096, 1 << 20);
+		writeProcess(400, "other user", 0, 0, 100, 10, 1000, -1, -1);
+		wrapper.readData();
+
+		LinuxTopProcess[] cpu = wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU];
+		assertEquals(400, cpu[0].getPid());
+		assertEquals(100, cpu[1].getPid());
+		// each process's rate is over its own time between readings, so only roughly ten times
+		assertEquals(10.0, cpu[0].getCpuPercentage() / cpu[1].getCpuPercentage(), 0.5);
+		assertEquals(100, wrapper.ranks[LinuxTopProcessesJMXWrapper.MAJOR_FAULTS][0].getPid());
+		assertEquals(0, wrapper.ranks[LinuxTopProcessesJMXWrapper.MAJOR_FAULTS][1].getPid());
+
+		LinuxTopProcess writer = wrapper.ranks[LinuxTopProcessesJMXWrapper.WRITE][0];
+		assertEquals(300, writer.getPid());
+		assertEquals("(my) writer", writer.getName());
+		assertEquals(256 * writer.getReadBytesPerSecond(), writer.getWriteBytesPerSecond(), 1.0);
+		assertEquals(300, wrapper.ranks[LinuxTopProcessesJMXWrapper.READ][0].getPid());
+		assertEquals(0, wrapper.ranks[LinuxTopProcessesJMXWrapper.WRITE][1].getPid());
+	}
+
+	public void testChurn() throws Exception {
+		writeProcess(100, "exits", 0, 0, 0, 300, 1000, 0, 0);
+		writeProcess(200, "reused", 0, 1000, 1000, 200, 1000, 0, 0);
+		writeProcess(300, "stays", 0, 0, 0, 100, 1000, 0, 0);
+		wrapper = newWrapper(2, 100);
+		LinuxTopProcess[] rss = wrapper.ranks[LinuxTopProcessesJMXWrapper.RSS];
+		assertEquals(100, rss[0].getPid());
+		assertEquals(200, rss[1].getPid());
+
+		// 100 exits, 200 is a new process with the same PID and 150 starts
+		FileUtils.deleteDirectory(new File(root, "100"));
+		writeProcess(200, "new", 0, 1, 1, 50, 5000, 0, 0);
+		writeProcess(150, "started", 0, 0, 0, 400, 6000, 0, 0);
+		Thread.sleep(100);
+		wrapper.readData();
+
+		assertEquals(3, wrapper.cache.size);
+		assertEquals(150, rss[0].getPid());
+		assertEquals("started", rss[0].getName());
+		assertEquals(300, rss[1].getPid());
+		// not a negative or huge rate from the old process's counters
+		assertEquals(0, wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getPid());
+
+		Thread.sleep(100);
+		writeProcess(200, "new", 0, 2, 1, 50, 5000, 0, 0);
+		wrapper.readData();
+		assertEquals(200, wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getPid());
+		assertEquals("new", wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getName());
+	}
+
+	public void testBudget() throws Exception {
+		for(int pid = 1000; pid < 1050; pid++) {
+			writeProcess(pid, "p" + pid, 0, 0, 0, pid, 1000, 0, 0);
+		}
+		wrapper = newWrapper(1, 10);
+		assertEquals(50, wrapper.cache.size);
+		assertEquals(10, wrapper.readCount);
+		// the top process by RSS takes one read of each later tick, so 10 + 4 * 9 falls short
+		for(int tick = 1; tick < 6; tick++) {
+			wrapper.readData();
+			assertEquals(10, wrapper.readCount);
+		}
+		for(int slot = 0; slot < wrapper.cache.size; slot++) {
+			assertTrue("Process " + wrapper.cache.pids[slot] + " never read",
+			           wrapper.cache.readNanos[slot] != 0);
+		}
+		assertEquals(1049, wrapper.ranks[LinuxTopProcessesJMXWrapper.RSS][0].getPid());
+
+		// the top process is re-read every tick, others in turn
+		Thread.sleep(100);
+		writeProcess(1049, "p1049", 0, 100, 0, 1049, 1000, 0, 0);
+		wrapper.readData();
+		assertEquals(1049, wrapper.ranks[LinuxTopProcessesJMXWrapper.CPU][0].getPid());
+
+		try {
+			newWrapper(2, 9);
+			fail("Accepted a budget smaller than the top processes");
+		} catch (LinuxMonitoringException e) {
+			// expected
+		}
+	}
+
+	private LinuxTopProcessesJMXWrapper newWrapper(int count, int budget) throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.topprocesses." + getName());
+		config.setProperty(LinuxTopProcessesJMXWrapper.CONFIG_KEY_TOP_PROCESSES_COUNT, Integer.toString(count));
+		config.setProperty(LinuxTopProcessesJMXWrapper.CONFIG_KEY_TOP_PROCESSES_MAX_PER_TICK,
+		                   Integer.toString(budget));
+		return new LinuxTopProcessesJMXWrapper(config, root);
+	}
+
+	/**
+	 * @param readBytes negative for an unreadable io file
+	 */
+	private void writeProcess(int pid, String name, long majorFaults, long utime, long stime,
+	                          long rss, long startTime, long readBytes, long writeBytes)
+		throws Exception {
+		File dir = new File(root, Integer.toString(pid));
+		dir.mkdirs();
+		write(new File(dir, "stat"), statLine(pid, name, majorFaults, utime, stime, rss, startTime));
+		write(new File(dir, "comm"), name + "\n");
+		File io = new File(dir, "io");
+		if(readBytes >= 0) {
+			write(io, "rchar: 1\nwchar: 2\nsyscr: 3\nsyscw: 4\nread_bytes: " + readBytes +
+			          "\nwrite_bytes: " + writeBytes + "\ncancelled_write_bytes: 0\n");
+		} else {
+			io.delete();
+		}
+	}
+
+	private static String statLine(int pid, String name, long majorFaults, long utime, long stime,
+	                               long rss, long startTime) {
+		StringBuilder line = new StringBuilder(pid + " (" + name + ") S");
+		for(int field = 4; field <= 52; field++) {
+			long value = 0;
+			switch(field) {
+			case ProcessStatLine.MAJFLT: value = majorFaults; break;
+			case ProcessStatLine.UTIME: value = utime; break;
+			case ProcessStatLine.STIME: value = stime; break;
+			case ProcessStatLine.RSS: value = rss; break;
+			case ProcessStatLine.STARTTIME: value = startTime; break;
+			case 7: value = -1; break;
+			}
+			line.append(' ').append(value);
+		}
+		return line.append('\n').toString();
+	}
+}
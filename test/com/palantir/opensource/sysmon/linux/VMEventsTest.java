@@ -0,0 +1,123 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Properties;
+
+import org.apache.log4j.Level;
+
+
+public class VMEventsTest extends LinuxBaseTest {
+
+	static final String FIRST =
+		"nr_free_pages 844582\n" +
+		"pgfault 1000\n" +
+		"pgmajfault 10\n" +
+		"pswpin 0\n" +
+		"pswpout 0\n" +
+		"allocstall_normal 5\n" +
+		"allocstall_movable 1\n" +
+		"pgscan_kswapd 100\n" +
+		"pgscan_direct 50\n" +
+		"pgscan_direct_throttle 0\n" +
+		"pgsteal_direct 40\n" +
+		"oom_kill 2\n" +
+		"compact_stall 0\n" +
+		"thp_fault_fallback 0\n" +
+		"thp_fault_fallback_charge 0\n";
+
+	static final String SECOND =
+		"nr_free_pages 744582\n" +
+		"pgfault 201000\n" +
+		"pgmajfault 10\n" +
+		"pswpin 0\n" +
+		"pswpout 0\n" +
+		"allocstall_normal 505\n" +
+		"allocstall_movable 501\n" +
+		"pgscan_kswapd 100\n" +
+		"pgscan_direct 100050\n" +
+		"pgscan_direct_throttle 99999\n" +
+		"pgsteal_direct 50040\n" +
+		"oom_kill 3\n" +
+		"compact_stall 0\n" +
+		"thp_fault_fallback 0\n" +
+		"thp_fault_fallback_charge 77777\n";
+
+	File data;
+	LinuxVMEventsJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxVMEventsJMXWrapper.class, Level.ERROR, Level.WARN);
+		data = File.createTempFile("vmstat", ".txt");
+		data.deleteOnExit();
+		write(FIRST);
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.vmevents");
+		config.setProperty(LinuxVMEventsJMXWrapper.CONFIG_KEY_VMEVENTS_COUNTERS,
+		                   "pgmajfault, allocstall*");
+		wrapper = new LinuxVMEventsJMXWrapper(config, data);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wrapper.reader.close();
+		checkForErrorMessages();
+	}
+
+	public void testRatesAndAllowList() throws Exception {
+		LinuxVMEvents bean = wrapper.bean;
+		assertEquals(2L, bean.getOomKills());
+		assertEquals(3, bean.getCounters().size());
+		assertEquals(5L, bean.getCounters().get("allocstall_normal").longValue());
+		assertFalse(bean.getCounters().containsKey("pgfault"));
+		assertTrue(bean.getPerSecond().isEmpty());
+
+		Thread.sleep(100);
+		write(SECOND);
+		wrapper.readData();
+
+		assertEquals(3L, bean.getOomKills());
+		assertEquals(3, bean.getPerSecond().size());
+		assertEquals(0.0, bean.getPerSecond().get("pgmajfault"), 0.0);
+		double allocStalls = bean.getPerSecond().get("allocstall_normal") +
+		                     bean.getPerSecond().get("allocstall_movable");
+		// zones are summed
+		assertEquals(allocStalls, bean.getAllocStallsPerSecond(), 0.001);
+		assertTrue(bean.getAllocStallsPerSecond() > 0.0);
+		// 100000 direct scans against 200000 faults, throttling not counted as scans
+		assertEquals(bean.getPageFaultsPerSecond() / 2, bean.getDirectScanPerSecond(), 0.001);
+		assertEquals(bean.getPageFaultsPerSecond() / 4, bean.getDirectStealPerSecond(), 0.001);
+		assertEquals(0.0, bean.getKswapdScanPerSecond(), 0.0);
+		assertEquals(0.0, bean.getThpFaultFallbackPerSecond(), 0.0);
+		assertTrue(bean.getOomKillsPerSecond() > 0.0);
+		assertEquals(0.0, bean.getSwapOutPerSecond(), 0.0);
+	}
+
+	public void testPatterns() throws Exception {
+		assertTrue(LinuxVMEventsJMXWrapper.matches("pgsteal_*", "pgsteal_direct"));
+		assertTrue(LinuxVMEventsJMXWrapper.matches("*", "nr_free_pages"));
+		assertTrue(LinuxVMEventsJMXWrapper.matches("oom_kill", "oom_kill"));
+		assertFalse(LinuxVMEventsJMXWrapper.matches("thp_fault_fallback", "thp_fault_fallback_charge"));
+	}
+
+	private void write(String contents) throws Exception {
+		FileWriter out = new FileWriter(data);
+		out.write(contents);
+		out.close();
+	}
+}
@@ -0,0 +1,201 @@
+//   Copyright 2011 Palantir Technologies
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+package com.palantir.opensource.sysmon.linux;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+
+import com.palantir.opensource.sysmon.util.ProcessStatLine;
+
+
+public class WatchedProcessesTest extends LinuxBaseTest {
+
+	LinuxWatchedProcessesJMXWrapper wrapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		installLoggingErrorDetector(LinuxWatchedProcessesJMXWrapper.class, Level.ERROR, Level.WARN);
+		createRoot("proc");
+		writeProcess("self", "java", 1, 0, 0, 0, 0);
+		// a server with a child, and an unrelated process
+		writeProcess("100", "postgres\0-D\0/var/lib/db\0", 500, 0, 0, 0, 0);
+		writeProcess("101", "postgres\0-D\0/var/lib/db\0", 900, 0, 0, 0, 0);
+		writeProcess("300", "envoy\0--config\0/etc/envoy.yaml\0", 700, 0, 0, 0, 0);
+		write(new File(root, "envoy.pid"), "300\n");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if(wrapper != null) {
+			wrapper.close();
+		}
+		super.tearDown();
+		checkForErrorMessages();
+	}
+
+	public void testWatching() throws Exception {
+		wrapper = newWrapper("db, sidecar", "db.cmdline", "postgres .*-D", "sidecar.pidfile",
+		                     new File(root, "envoy.pid").getAbsolutePath());
+		LinuxWatchedProcess db = wrapper.watches.get(0).bean;
+		LinuxWatchedProcess sidecar = wrapper.watches.get(1).bean;
+		assertEquals("db", db.getName());
+		// the oldest match
+		assertEquals(100, db.getPid());
+		assertTrue(db.isRunning());
+		assertEquals("postgres -D /var/lib/db", db.getCommandLine());
+		assertEquals(300, sidecar.getPid());
+		assertEquals(1000 * ProcessStatLine.getPageSizeInKB(), db.getResidentInKB());
+		assertEquals(12, db.getThreadCount());
+		assertEquals(3, db.getFileDescriptorCount());
+		assertEquals(2048, db.getProportionalInKB());
+
+		Thread.sleep(100);
+		writeProcess("100", "postgres\0-D\0/var/lib/db\0", 500, 50, 10, 4096, 8192);
+		wrapper.readData();
+		assertTrue(db.getCpuPercentage() > 0);
+		assertEquals(5.0, db.getVoluntaryContextSwitchesPerSecond() / db.getInvoluntaryContextSwitchesPerSecond(), 0.0001);
+		assertEquals(2.0, db.getWriteBytesPerSecond() / db.getReadBytesPerSecond(), 0.0001);
+		assertEquals(0.0, sidecar.getCpuPercentage(), 0.0);
+		assertEquals(0, db.getRestartCount());
+	}
+
+	public void testRestarts() throws Exception {
+		wrapper = newWrapper("db,guarded", "db.cmdline", "postgres", "guarded.pidfile",
+		                     new File(root, "envoy.pid").getAbsolutePath(), "guarded.cmdline", "nginx");
+		LinuxWatchedProcess db = wrapper.watches.get(0).bean;
+		LinuxWatchedProcess guarded = wrapper.watches.get(1).bean;
+		assertEquals(100, db.getPid());
+		// the pidfile's process doesn't match
+		assertFalse(guarded.isRunning());
+
+		// the server exits; its child is found in its place right away
+		exit("100");
+		wrapper.readData();
+		assertEquals(101, db.getPid());
+		assertEquals(1, db.getRestartCount());
+
+		// the PID is reused by another process
+		writeProcess("101", "postgres\0-D\0/var/lib/db\0", 1200, 0, 0, 0, 0);
+		wrapper.readData();
+		assertEquals(101, db.getPid());
+		assertEquals(2, db.getRestartCount());
+
+		exit("101");
+		wrapper.readData();
+		assertFalse(db.isRunning());
+		assertEquals(0, db.getResidentInKB());
+		assertEquals(2, db.getRestartCount());
+	}
+
+	public void testFileDescriptorCountFromSize() throws Exception {
+		// procfs reports a fd directory's number of entries as its size; a file stands in for it
+		FileUtils.deleteDirectory(new File(root, "300/fd"));
+		write(new File(root, "300/fd"), "0123456");
+		wrapper = newWrapper(root, true, "sidecar", "sidecar.pidfile",
+		                     new File(root, "envoy.pid").getAbsolutePath());
+		assertEquals(7, wrapper.watches.get(0).bean.getFileDescriptorCount());
+		wrapper.close();
+
+		// a real process with only stdin, stdout and stderr open: counted from the size from
+		// Linux 6.2 on, and from the entries before
+		Process sleep = new ProcessBuilder("sh", "-c", "echo $$; exec sleep 30").start();
+		try {
+			String pid = new BufferedReader(new InputStreamReader(sleep.getInputStream())).readLine();
+			write(new File(root, "sleep.pid"), pid + "\n");
+			wrapper = newWrapper(LinuxWatchedProcessesJMXWrapper.DATA_PATH, true, "sleep",
+			                     "sleep.pidfile", new File(root, "sleep.pid").getAbsolutePath());
+			assertEquals(Integer.parseInt(pid), wrapper.watches.get(0).bean.getPid());
+			assertEquals(3, wrapper.watches.get(0).bean.getFileDescriptorCount());
+		} finally {
+			sleep.destroy();
+		}
+	}
+
+	public void testConfigErrors() throws Exception {
+		assertConfigRejected("");
+		assertConfigRejected("db");
+		assertConfigRejected("db", "db.cmdline", "postgres(");
+		assertConfigRejected("db,bad name", "db.cmdline", "postgres", "bad name.cmdline", "x");
+	}
+
+	private void assertConfigRejected(String names, String... settings) throws Exception {
+		try {
+			newWrapper(names, settings).close();
+			fail("Accepted " + names);
+		} catch (LinuxMonitoringException e) {
+			// expected
+		}
+	}
+
+	private LinuxWatchedProcessesJMXWrapper newWrapper(String names, String... settings)
+		throws Exception {
+		return newWrapper(root, false, names, settings);
+	}
+
+	private LinuxWatchedProcessesJMXWrapper newWrapper(File dataPath, boolean fdCountFromSize,
+	                                                   String names, String... settings)
+		throws Exception {
+		Properties config = new Properties();
+		config.setProperty(LinuxMonitor.CONFIG_KEY_JMX_BEAN_PATH, "sysmon.test.watched." + getName());
+		config.setProperty(LinuxWatchedProcessesJMXWrapper.CONFIG_KEY_WATCHED_NAMES, names);
+		for(int i = 0; i < settings.length; i += 2) {
+			config.setProperty(LinuxWatchedProcessesJMXWrapper.CONFIG_KEY_PREFIX + "." + settings[i],
+			                   settings[i + 1]);
+		}
+		return new LinuxWatchedProcessesJMXWrapper(config, dataPath, fdCountFromSize);
+	}
+
+	private void writeProcess(String pid, String cmdline, long startTime, long ticks,
+	                          long contextSwitches, long readBytes, long writeBytes) throws Exception {
+		File dir = new File(root, pid);
+		assertTrue(new File(dir, "fd").isDirectory() || new File(dir, "fd").mkdirs());
+		for(int fd = 0; fd < 3; fd++) {
+			write(new File(dir, "fd/" + fd), "");
+		}
+		write(new File(dir, "cmdline"), cmdline);
+		StringBuilder stat = new StringBuilder(pid + " (proc) S");
+		for(int field = 4; field <= 52; field++) {
+			long value = 0;
+			switch(field) {
+			case ProcessStatLine.UTIME: value = ticks; break;
+			case ProcessStatLine.NUM_THREADS: value = 12; break;
+			case ProcessStatLine.STARTTIME: value = startTime; break;
+			case ProcessStatLine.RSS: value = 1000; break;
+			}
+			stat.append(' ').append(value);
+		}
+		write(new File(dir, "stat"), stat.append('\n').toString());
+		write(new File(dir, "status"), "Name:\tproc\nState:\tS (sleeping)\nThreads:\t12\n" +
+		                               "voluntary_ctxt_switches:\t" + 5 * contextSwitches + "\n" +
+		                               "nonvoluntary_ctxt_switches:\t" + contextSwitches + "\n");
+		write(new File(dir, "io"), "rchar: 1\nwchar: 2\nread_bytes: " + readBytes + "\nwrite_bytes: " +
+		                           writeBytes + "\ncancelled_write_bytes: 0\n");
+		write(new File(dir, "smaps_rollup"), "00400000-7ffc0000 ---p 00000000 00:00 0  [rollup]\n" +
+		                                     "Rss:                4000 kB\nPss:                2048 kB\n");
+	}
+
+	/**
+	 * Reading a dead process's open stat file fails, which here is reading an empty one.
+	 */
+	private void exit(String pid) throws Exception {
+		write(new File(root, pid + "/stat"), "");
+		FileUtils.deleteDirectory(new File(root, pid));
+	}
+}
@@ -19,24 +19,58 @@ import java.util.ArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.palantir.opensource.sysmon.linux.LinuxCpuFrequencyJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxCpuTopologyJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxDiskspaceJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxEntropyLevelJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxHotThreadsJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxInterruptsJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxIOStatJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxLoadAverageJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxMemInfoJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxMetricHistory;
 import com.palantir.opensource.sysmon.linux.LinuxMonitor;
+import com.palantir.opensource.sysmon.linux.LinuxMountIOJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxNetStatJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxNfsJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxNumaJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxSchedStatJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxSelfProcessJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxSoftnetJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxSysfsNetJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxTaskStatesJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxTopProcessesJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxVMEventsJMXWrapper;
 import com.palantir.opensource.sysmon.linux.LinuxVMStatJMXWrapper;
+import com.palantir.opensource.sysmon.linux.LinuxWatchedProcessesJMXWrapper;
 
 
 public class JavadocConfigGenerator {
 
 	static Class<?>[] classes = new Class<?>[]{
+					LinuxCpuFrequencyJMXWrapper.class,
+					LinuxCpuTopologyJMXWrapper.class,
 					LinuxDiskspaceJMXWrapper.class,
 					LinuxEntropyLevelJMXWrapper.class,
+					LinuxHotThreadsJMXWrapper.class,
+					LinuxInterruptsJMXWrapper.class,
 					LinuxIOStatJMXWrapper.class,
 					LinuxLoadAverageJMXWrapper.class,
+					LinuxMemInfoJMXWrapper.class,
+					LinuxMetricHistory.class,
+					LinuxMountIOJMXWrapper.class,
 					LinuxNetStatJMXWrapper.class,
+					LinuxNfsJMXWrapper.class,
+					LinuxNumaJMXWrapper.class,
+					LinuxSchedStatJMXWrapper.class,
+					LinuxSelfProcessJMXWrapper.class,
+					LinuxSoftnetJMXWrapper.class,
+					LinuxSysfsNetJMXWrapper.class,
+					LinuxTaskStatesJMXWrapper.class,
+					LinuxTopProcessesJMXWrapper.class,
+					LinuxVMEventsJMXWrapper.class,
 					LinuxVMStatJMXWrapper.class,
+					LinuxWatchedProcessesJMXWrapper.class,
 	};
 	public static void main(String[] args) throws Exception {
 		